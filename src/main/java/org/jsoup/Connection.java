@@ -1,7 +1,9 @@
 package org.jsoup;
 
+import org.jsoup.helper.ResponseCache;
 import org.jsoup.nodes.Document;
 import org.jsoup.parser.Parser;
+import org.jsoup.select.NodeVisitor;
 
 import javax.annotation.Nullable;
 import javax.net.ssl.SSLSocketFactory;
@@ -14,6 +16,8 @@ import java.net.URL;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
 /**
  The Connection interface is a convenient HTTP client and session object to fetch content from the web, and parse them
@@ -316,6 +320,27 @@ public interface Connection {
      */
     Connection postDataCharset(String charset);
 
+    /**
+     Register a decoder for a response Content-Encoding, e.g. {@code br}. Decoders for {@code gzip} and {@code deflate}
+     are registered by default; registering a decoder for one of those replaces the default. Unless the request's
+     {@code Accept-Encoding} header has been set explicitly, it is sent listing all the registered encodings.
+     @param encoding the content encoding name (case-insensitive), as used in the Content-Encoding header
+     @param decoder the decoder to use for responses with that encoding
+     @return this Connection, for chaining
+     @since 1.15.1
+     */
+    Connection contentDecoder(String encoding, ContentDecoder decoder);
+
+    /**
+     Set a cache to store responses in, and to serve responses from. Fresh cached responses are served without making a
+     request; stale responses with a validator are revalidated with a conditional request. See {@link ResponseCache}
+     for details.
+     @param cache the cache to use; or null to not cache (the default)
+     @return this Connection, for chaining
+     @since 1.15.1
+     */
+    Connection responseCache(@Nullable ResponseCache cache);
+
     /**
      * Execute the request as a GET, and parse the result.
      * @return parsed Document
@@ -349,6 +374,46 @@ public interface Connection {
      */
     Response execute() throws IOException;
 
+    /**
+     Execute the request asynchronously, on jsoup's default bounded request executor. The calling thread is not blocked
+     while the request is made and the response headers are read.
+     <p>As with {@link #execute()}, a Connection may only have one request in flight at a time; use {@link #newRequest()}
+     to create a Connection for each concurrent request.</p>
+     @return a Future that will complete with the response object. Exceptions that would be thrown by {@link #execute()}
+     are available as the cause of the {@link java.util.concurrent.ExecutionException} thrown by {@link Future#get()}.
+     @see #executeAsync(Executor)
+     @since 1.15.1
+     */
+    Future<Response> executeAsync();
+
+    /**
+     Execute the request asynchronously, on the supplied Executor.
+     @param executor the executor to run the request on. E.g. a bounded thread pool, or an executor backed by virtual
+     threads.
+     @return a Future that will complete with the response object.
+     @see #executeAsync()
+     @since 1.15.1
+     */
+    Future<Response> executeAsync(Executor executor);
+
+    /**
+     Execute the request as a GET asynchronously, on jsoup's default bounded request executor, and parse the response
+     body once it has been fetched.
+     @return a Future that will complete with the parsed Document.
+     @see #getAsync(Executor)
+     @since 1.15.1
+     */
+    Future<Document> getAsync();
+
+    /**
+     Execute the request as a GET asynchronously on the supplied Executor, and parse the response body once it has been
+     fetched.
+     @param executor the executor to run the request and the parse on.
+     @return a Future that will complete with the parsed Document.
+     @since 1.15.1
+     */
+    Future<Document> getAsync(Executor executor);
+
     /**
      * Get the request object associated with this connection
      * @return request
@@ -689,6 +754,46 @@ public interface Connection {
          */
         String postDataCharset();
 
+        /**
+         Register a decoder for a response Content-Encoding.
+         @param encoding the content encoding name (case-insensitive)
+         @param decoder the decoder to use for responses with that encoding
+         @return this Request, for chaining
+         @see Connection#contentDecoder(String, ContentDecoder)
+         @since 1.15.1
+         */
+        Request contentDecoder(String encoding, ContentDecoder decoder);
+
+        /**
+         Get the decoder registered for a response Content-Encoding.
+         @param encoding the content encoding name (case-insensitive)
+         @return the registered decoder, or null if none
+         @since 1.15.1
+         */
+        @Nullable ContentDecoder contentDecoder(String encoding);
+
+        /**
+         Get the names of the content encodings that have registered decoders, in registration order.
+         @return the content encodings, which are advertised in the Accept-Encoding header
+         @since 1.15.1
+         */
+        List<String> contentEncodings();
+
+        /**
+         Set a cache to store responses in, and to serve responses from.
+         @param cache the cache to use; or null to not cache
+         @return this Request, for chaining
+         @see Connection#responseCache(ResponseCache)
+         @since 1.15.1
+         */
+        Request responseCache(@Nullable ResponseCache cache);
+
+        /**
+         Get the response cache used by this request.
+         @return the cache, or null if not set
+         @since 1.15.1
+         */
+        @Nullable ResponseCache responseCache();
     }
 
     /**
@@ -735,6 +840,21 @@ public interface Connection {
          */
         Document parse() throws IOException;
 
+        /**
+         Read and parse the body of the response incrementally, building the Document as the body is downloaded, vs
+         first buffering the start of the body for charset detection. The listener is notified as each node is inserted
+         and each element is completed, so the start of the document can be processed before the whole body has been
+         received. See {@link org.jsoup.parser.Parser#parseInput(java.io.Reader, String, NodeVisitor)} for details of
+         the callbacks.
+         <p>When the response has no charset in its Content-Type header, only the first 1KB of the body is sniffed for
+         a meta charset declaration.</p>
+         @param listener the listener to notify as the document is built
+         @return the completed Document
+         @throws IOException on error
+         @since 1.15.1
+         */
+        Document parse(NodeVisitor listener) throws IOException;
+
         /**
          * Get the body of the response as a plain string.
          * @return body
@@ -760,11 +880,29 @@ public interface Connection {
          * Get the body of the response as a (buffered) InputStream. You should close the input stream when you're done with it.
          * Other body methods (like bufferUp, body, parse, etc) will not work in conjunction with this method.
          * <p>This method is useful for writing large responses to disk, without buffering them completely into memory first.</p>
+         * <p>If the body has already been buffered (with {@link #bufferUp()}, or as the response was served from a
+         * {@link ResponseCache}), a stream over that buffer is returned.</p>
          * @return the response body input stream
          */
         BufferedInputStream bodyStream();
     }
 
+    /**
+     Decodes a response body that has a Content-Encoding (e.g. gzip compression) applied. Register with {@link
+     Connection#contentDecoder(String, ContentDecoder)}. A decoder may be used for concurrent requests, so should not
+     hold per-response state outside of the stream it returns.
+     @since 1.15.1
+     */
+    interface ContentDecoder {
+        /**
+         Wrap the encoded body stream in a decoding stream. Closing the returned stream must close the encoded stream.
+         @param encoded the response body stream, as received
+         @return a stream that reads the decoded body
+         @throws IOException if the stream cannot be decoded (e.g. an invalid header)
+         */
+        InputStream decode(InputStream encoded) throws IOException;
+    }
+
     /**
      * A Key:Value tuple(+), used for form data.
      */
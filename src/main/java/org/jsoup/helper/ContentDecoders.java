@@ -0,0 +1,262 @@
+package org.jsoup.helper;
+
+import org.jsoup.Connection;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ The built-in {@link Connection.ContentDecoder}s, for the {@code gzip} and {@code deflate} content encodings. Rather than
+ allocating a new native {@link Inflater} per response (as {@link java.util.zip.GZIPInputStream} does), inflaters are
+ borrowed from a bounded pool, and are reset and returned to it when the decoded stream is closed.
+ */
+final class ContentDecoders {
+    static final String GzipEncoding = "gzip";
+    static final String DeflateEncoding = "deflate";
+
+    static final Connection.ContentDecoder Gzip = new Connection.ContentDecoder() {
+        @Override
+        public InputStream decode(InputStream encoded) {
+            return new InflatingInputStream(encoded, true);
+        }
+    };
+
+    static final Connection.ContentDecoder Deflate = new Connection.ContentDecoder() {
+        @Override
+        public InputStream decode(InputStream encoded) {
+            return new InflatingInputStream(encoded, false);
+        }
+    };
+
+    static final int MaxPooled = Math.max(8, Runtime.getRuntime().availableProcessors() * 2);
+    private static final ArrayDeque<Inflater> pool = new ArrayDeque<>(MaxPooled); // guarded by itself
+
+    private ContentDecoders() {}
+
+    static Inflater borrow() {
+        synchronized (pool) {
+            Inflater inflater = pool.pollFirst();
+            if (inflater != null)
+                return inflater;
+        }
+        return new Inflater(true); // raw deflate; gzip headers are read by the stream
+    }
+
+    static void release(Inflater inflater) {
+        inflater.reset();
+        synchronized (pool) {
+            if (pool.size() < MaxPooled) {
+                pool.addFirst(inflater);
+                return;
+            }
+        }
+        inflater.end(); // pool is full; free native memory now rather than on GC
+    }
+
+    static int pooledCount() { // visible for testing
+        synchronized (pool) {
+            return pool.size();
+        }
+    }
+
+    /**
+     Inflates a raw deflate stream, or (if gzip) a gzip stream of one or more members, using a pooled inflater.
+     */
+    static final class InflatingInputStream extends FilterInputStream {
+        private static final int BufferSize = 1024 * 8;
+        private static final int GzipMagic = 0x8b1f;
+        private static final int FHCRC = 2, FEXTRA = 4, FNAME = 8, FCOMMENT = 16; // gzip header flags
+
+        private final boolean gzip;
+        private Inflater inflater;
+        private final CRC32 crc;
+        private final byte[] buf = new byte[BufferSize];
+        private int bufPos = 0, bufLen = 0; // compressed input in buf not yet given to the inflater
+        private boolean headerRead = false;
+        private boolean eof = false;
+        private boolean closed = false;
+
+        InflatingInputStream(InputStream in, boolean gzip) {
+            super(in);
+            this.gzip = gzip;
+            crc = gzip ? new CRC32() : null;
+            inflater = borrow();
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            ensureOpen();
+            Validate.isTrue(off >= 0 && len >= 0 && len <= b.length - off);
+            if (len == 0) return 0;
+            if (eof) return -1;
+            if (gzip && !headerRead) {
+                readHeader(true);
+                headerRead = true;
+            }
+
+            try {
+                int read;
+                while ((read = inflater.inflate(b, off, len)) == 0) {
+                    if (inflater.finished() || inflater.needsDictionary()) {
+                        bufPos = bufLen - inflater.getRemaining(); // unused input, e.g. the gzip trailer
+                        if (gzip && readTrailer())
+                            continue; // another member follows
+                        eof = true;
+                        return -1;
+                    }
+                    if (inflater.needsInput()) {
+                        if (bufPos >= bufLen && fill() == -1)
+                            throw new EOFException("Unexpected end of ZLIB input stream");
+                        inflater.setInput(buf, bufPos, bufLen - bufPos);
+                        bufPos = bufLen;
+                    }
+                }
+                if (gzip)
+                    crc.update(b, off, read);
+                return read;
+            } catch (DataFormatException e) {
+                String message = e.getMessage();
+                throw new ZipException(message != null ? message : "Invalid ZLIB data format");
+            }
+        }
+
+        @Override
+        public int available() throws IOException {
+            ensureOpen();
+            if (eof) return 0;
+            return (bufPos < bufLen || !inflater.needsInput() || in.available() > 0) ? 1 : 0;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            Validate.isTrue(n >= 0, "Skip value must be >= 0");
+            byte[] skipBuf = new byte[(int) Math.min(n, 512)];
+            long skipped = 0;
+            while (skipped < n) {
+                int read = read(skipBuf, 0, (int) Math.min(n - skipped, skipBuf.length));
+                if (read == -1) break;
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public synchronized void mark(int readlimit) {
+            // not supported
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            throw new IOException("mark/reset not supported");
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            release(inflater);
+            inflater = null;
+            in.close();
+        }
+
+        private void ensureOpen() throws IOException {
+            if (closed) throw new IOException("Stream closed");
+        }
+
+        private int fill() throws IOException {
+            int read;
+            do {
+                read = in.read(buf, 0, buf.length);
+            } while (read == 0);
+            bufPos = 0;
+            bufLen = Math.max(read, 0);
+            return read;
+        }
+
+        private int readByte() throws IOException {
+            if (bufPos >= bufLen && fill() == -1)
+                throw new EOFException("Unexpected end of GZIP input stream");
+            return buf[bufPos++] & 0xff;
+        }
+
+        private int readUShort() throws IOException {
+            int b = readByte();
+            return (readByte() << 8) | b;
+        }
+
+        private long readUInt() throws IOException {
+            long s = readUShort();
+            return ((long) readUShort() << 16) | s;
+        }
+
+        /**
+         Reads a gzip member header.
+         @param first if this is the first member; if not, a missing or unrecognised header is the end of the stream
+         @return true if a header was read
+         */
+        private boolean readHeader(boolean first) throws IOException {
+            if (!first && bufPos >= bufLen && in.available() <= 0)
+                return false; // no more members (that we can see without blocking)
+            if (bufPos >= bufLen && fill() == -1) {
+                if (first) throw new EOFException();
+                return false;
+            }
+            if (readUShort() != GzipMagic) {
+                if (first) throw new ZipException("Not in GZIP format");
+                return false; // trailing garbage; ignored
+            }
+            if (readByte() != 8)
+                throw new ZipException("Unsupported compression method");
+            int flags = readByte();
+            for (int i = 0; i < 6; i++) // mtime, xfl, os
+                readByte();
+            if ((flags & FEXTRA) == FEXTRA) {
+                int extraLen = readUShort();
+                for (int i = 0; i < extraLen; i++)
+                    readByte();
+            }
+            if ((flags & FNAME) == FNAME)
+                while (readByte() != 0) {}
+            if ((flags & FCOMMENT) == FCOMMENT)
+                while (readByte() != 0) {}
+            if ((flags & FHCRC) == FHCRC)
+                readUShort();
+            return true;
+        }
+
+        /**
+         Reads and checks the trailer of the current gzip member, and then the header of the next member, if any.
+         @return true if there is another member to inflate
+         */
+        private boolean readTrailer() throws IOException {
+            long expectedCrc = readUInt();
+            long expectedSize = readUInt();
+            if (expectedCrc != crc.getValue() || expectedSize != (inflater.getBytesWritten() & 0xffffffffL))
+                throw new ZipException("Corrupt GZIP trailer");
+
+            if (!readHeader(false))
+                return false;
+            inflater.reset();
+            crc.reset();
+            return true;
+        }
+    }
+}
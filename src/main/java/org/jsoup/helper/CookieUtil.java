@@ -12,6 +12,7 @@ import java.net.URL;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -33,6 +34,15 @@ class CookieUtil {
      headers. If the Cookie Store duplicates any Request cookies (same name and value), they will be discarded.
      */
     static void applyCookiesToRequest(HttpConnection.Request req, HttpURLConnection con) throws IOException {
+        for (Map.Entry<String, String> header : cookieHeaders(req).entrySet())
+            con.addRequestProperty(header.getKey(), header.getValue());
+    }
+
+    /**
+     Get the Cookie (and Cookie2) headers to send with the request, from the Request cookies and the Cookie Store.
+     @return a map of header name to value; empty if there are no cookies to send
+     */
+    static Map<String, String> cookieHeaders(HttpConnection.Request req) throws IOException {
         // Request key/val cookies. LinkedHashSet used to preserve order, as cookie store will return most specific path first
         Set<String> cookieSet = requestCookieSet(req);
         Set<String> cookies2 = null;
@@ -58,10 +68,12 @@ class CookieUtil {
             set.addAll(cookies);
         }
 
+        Map<String, String> headers = new LinkedHashMap<>();
         if (cookieSet.size() > 0)
-            con.addRequestProperty(CookieName, StringUtil.join(cookieSet, Sep));
+            headers.put(CookieName, StringUtil.join(cookieSet, Sep));
         if (cookies2 != null && cookies2.size() > 0)
-            con.addRequestProperty(Cookie2Name, StringUtil.join(cookies2, Sep));
+            headers.put(Cookie2Name, StringUtil.join(cookies2, Sep));
+        return headers;
     }
 
     private static LinkedHashSet<String> requestCookieSet(Connection.Request req) {
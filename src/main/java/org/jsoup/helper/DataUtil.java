@@ -11,6 +11,7 @@ import org.jsoup.nodes.Node;
 import org.jsoup.nodes.XmlDeclaration;
 import org.jsoup.parser.Parser;
 import org.jsoup.select.Elements;
+import org.jsoup.select.NodeVisitor;
 
 import javax.annotation.Nullable;
 import java.io.BufferedReader;
@@ -42,6 +43,7 @@ public final class DataUtil {
     public static final Charset UTF_8 = Charset.forName("UTF-8"); // Don't use StandardCharsets, as those only appear in Android API 19, and we target 10.
     static final String defaultCharsetName = UTF_8.name(); // used if not found in header or meta charset
     private static final int firstReadBufferSize = 1024 * 5;
+    private static final int prescanBufferSize = 1024; // an incremental parse only sniffs the charset in the first 1K, per the HTML spec
     static final int bufferSize = 1024 * 32;
     private static final char[] mimeBoundaryChars =
             "-_1234567890abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
@@ -135,8 +137,22 @@ public final class DataUtil {
     }
 
     static Document parseInputStream(@Nullable InputStream input, @Nullable String charsetName, String baseUri, Parser parser) throws IOException  {
-        if (input == null) // empty body
-            return new Document(baseUri);
+        return parseInputStream(input, charsetName, baseUri, parser, null);
+    }
+
+    /**
+     Parses the input stream; if a listener is supplied, parses incrementally as the stream is read (see {@link
+     Parser#parseInput(java.io.Reader, String, NodeVisitor)}), vs buffering the start of the stream for a trial parse.
+     */
+    static Document parseInputStream(@Nullable InputStream input, @Nullable String charsetName, String baseUri, Parser parser, @Nullable NodeVisitor listener) throws IOException  {
+        if (input == null) { // empty body
+            Document doc = new Document(baseUri);
+            if (listener != null) {
+                listener.head(doc, 0);
+                listener.tail(doc, 0);
+            }
+            return doc;
+        }
         input = ConstrainableInputStream.wrap(input, bufferSize, 0);
 
         @Nullable Document doc = null;
@@ -144,7 +160,8 @@ public final class DataUtil {
         // read the start of the stream and look for a BOM or meta charset
         try {
             input.mark(bufferSize);
-            ByteBuffer firstBytes = readToByteBuffer(input, firstReadBufferSize - 1); // -1 because we read one more to see if completed. First read is < buffer size, so can't be invalid.
+            int firstReadSize = listener == null ? firstReadBufferSize : prescanBufferSize;
+            ByteBuffer firstBytes = readToByteBuffer(input, firstReadSize - 1); // -1 because we read one more to see if completed. First read is < buffer size, so can't be invalid.
             boolean fullyRead = (input.read() == -1);
             input.reset();
 
@@ -197,7 +214,7 @@ public final class DataUtil {
                     foundCharset = foundCharset.trim().replaceAll("[\"']", "");
                     charsetName = foundCharset;
                     doc = null;
-                } else if (!fullyRead) {
+                } else if (!fullyRead || listener != null) { // the listener needs to see the real parse
                     doc = null;
                 }
             } else { // specified by content type header (or by user on file load)
@@ -213,7 +230,7 @@ public final class DataUtil {
                         Validate.isTrue(skipped == 1); // WTF if this fails.
                     }
                     try {
-                        doc = parser.parseInput(reader, baseUri);
+                        doc = listener == null ? parser.parseInput(reader, baseUri) : parser.parseInput(reader, baseUri, listener);
                     } catch (UncheckedIOException e) {
                         // io exception when parsing (not seen before because reading the stream as we go)
                         throw e.ioException();
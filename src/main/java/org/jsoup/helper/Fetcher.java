@@ -0,0 +1,619 @@
+package org.jsoup.helper;
+
+import org.jsoup.Connection;
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.CookieStore;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.jsoup.internal.Normalizer.lowerCase;
+
+/**
+ Fetches many requests concurrently, while limiting the load placed on each host. Requests are queued per host, and
+ dispatched when the host is under its concurrency limit and its minimum interval between requests has passed.
+ Responses with status {@code 429 Too Many Requests} or {@code 503 Service Unavailable} are retried with exponential
+ backoff, or after the delay given by their {@code Retry-After} header; a retry also holds back the other requests queued
+ for that host. All requests share a CookieStore.
+ <p>Example:</p>
+ <pre>{@code
+ Fetcher fetcher = new Fetcher().maxConcurrentPerHost(2).maxRequestsPerSecondPerHost(5);
+ List<Future<Connection.Response>> results = new ArrayList<>();
+ for (String url : urls)
+     results.add(fetcher.submit(url));
+ for (Future<Connection.Response> result : results)
+     Document doc = result.get().parse();
+ fetcher.close();
+ }</pre>
+ <p>The body of each response is read (within the host's concurrency limit) before its Future completes, so the
+ response can be parsed on any thread. Queue depths and request latencies are available for monitoring.</p>
+ <p>A host's state (its queue, limits, and latencies) is held while it has queued or executing requests, or is held back
+ by its rate limit or a retry delay; once idle, it is released, so a long-running crawl of many hosts doesn't retain
+ state for each host it has visited.</p>
+ @since 1.15.1
+ */
+public class Fetcher implements Closeable {
+    private final Connection session;
+    private final CookieStore cookieStore;
+    private int maxConcurrentPerHost = 2;
+    private long minIntervalNanos = 0;
+    private int maxRetries = 3;
+    private long initialBackoffMillis = 1000;
+    private long maxRetryDelayMillis = 60 * 1000;
+    private Executor executor = RequestExecutor.get();
+
+    private final Map<String, Host> hosts = new HashMap<>(); // guarded by this
+    private @Nullable ScheduledThreadPoolExecutor timer; // guarded by this; lazy init
+    private boolean closed = false; // guarded by this
+    private final Histogram latency = new Histogram();
+
+    /**
+     Create a new Fetcher, with default connection settings.
+     */
+    public Fetcher() {
+        this(Jsoup.newSession());
+    }
+
+    /**
+     Create a new Fetcher, using the supplied Connection as the session template for the requests it creates via {@link
+     #newRequest(String)}. The Fetcher's cookie store is shared with the session.
+     @param session the session template
+     */
+    public Fetcher(Connection session) {
+        Validate.notNull(session, "Session must not be null");
+        this.session = session;
+        this.cookieStore = session.cookieStore();
+    }
+
+    /**
+     Set the maximum number of requests in flight to each host. Defaults to 2.
+     @param max the maximum concurrent requests per host
+     @return this Fetcher, for chaining
+     */
+    public synchronized Fetcher maxConcurrentPerHost(int max) {
+        Validate.isTrue(max > 0, "Max concurrent per host must be > 0");
+        maxConcurrentPerHost = max;
+        return this;
+    }
+
+    /**
+     Set the maximum rate at which requests are started to each host. Defaults to unlimited.
+     @param rate the maximum requests per second per host; or 0 for unlimited
+     @return this Fetcher, for chaining
+     */
+    public synchronized Fetcher maxRequestsPerSecondPerHost(double rate) {
+        Validate.isTrue(rate >= 0, "Rate must be >= 0");
+        minIntervalNanos = rate == 0 ? 0 : (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        return this;
+    }
+
+    /**
+     Set how many times a request that gets a 429 or 503 response is retried. Defaults to 3.
+     @param retries the maximum retries; 0 to not retry
+     @return this Fetcher, for chaining
+     */
+    public synchronized Fetcher maxRetries(int retries) {
+        Validate.isTrue(retries >= 0, "Max retries must be >= 0");
+        maxRetries = retries;
+        return this;
+    }
+
+    /**
+     Set the delay before the first retry, when the response has no Retry-After header. The delay doubles for each
+     subsequent retry. Defaults to 1 second.
+     @param millis the initial backoff, in milliseconds
+     @return this Fetcher, for chaining
+     */
+    public synchronized Fetcher retryBackoff(long millis) {
+        Validate.isTrue(millis >= 0, "Backoff must be >= 0");
+        initialBackoffMillis = millis;
+        return this;
+    }
+
+    /**
+     Set the maximum delay before a retry, capping both the backoff and the server's Retry-After. Defaults to 60
+     seconds.
+     @param millis the maximum retry delay, in milliseconds
+     @return this Fetcher, for chaining
+     */
+    public synchronized Fetcher maxRetryDelay(long millis) {
+        Validate.isTrue(millis >= 0, "Max retry delay must be >= 0");
+        maxRetryDelayMillis = millis;
+        return this;
+    }
+
+    /**
+     Set the executor that requests are executed on. Defaults to the same bounded executor as {@link
+     Connection#executeAsync()}.
+     @param executor the executor to run requests on
+     @return this Fetcher, for chaining
+     */
+    public synchronized Fetcher executor(Executor executor) {
+        Validate.notNull(executor, "Executor must not be null");
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     Get the cookie store shared by all requests submitted to this Fetcher.
+     @return the cookie store
+     */
+    public CookieStore cookieStore() {
+        return cookieStore;
+    }
+
+    /**
+     Create a new request for the URL, from this Fetcher's session template.
+     @param url the URL to fetch
+     @return a new Connection, ready to configure and {@link #submit(Connection)}
+     */
+    public Connection newRequest(String url) {
+        return session.newRequest().url(url);
+    }
+
+    /**
+     Queue a GET request for the URL.
+     @param url the URL to fetch
+     @return a Future for the response
+     */
+    public Future<Connection.Response> submit(String url) {
+        return submit(newRequest(url));
+    }
+
+    /**
+     Queue a request. The request will use this Fetcher's cookie store.
+     @param request the request to execute. It should not be modified or executed elsewhere after submission.
+     @return a Future for the response. If the response status is an error (and the request does not ignore HTTP
+     errors), the Future fails with an {@link HttpStatusException}.
+     */
+    public Future<Connection.Response> submit(Connection request) {
+        Validate.notNull(request, "Request must not be null");
+        request.cookieStore(cookieStore);
+        Task task = new Task(request);
+        synchronized (this) {
+            Validate.isFalse(closed, "Fetcher has been closed");
+            Host host = hosts.get(task.host);
+            if (host == null) {
+                host = new Host(task.host);
+                hosts.put(task.host, host);
+            }
+            task.hostState = host;
+            host.queue.addLast(task);
+            dispatch(host);
+        }
+        return task;
+    }
+
+    /**
+     Queue each of the requests.
+     @param requests the requests to execute
+     @return a Future for each response, in the same order as the requests
+     */
+    public List<Future<Connection.Response>> submitAll(Iterable<Connection> requests) {
+        List<Future<Connection.Response>> futures = new ArrayList<>();
+        for (Connection request : requests)
+            futures.add(submit(request));
+        return futures;
+    }
+
+    /**
+     Get the number of requests waiting to be dispatched, across all hosts (including those waiting to retry).
+     @return the queue depth
+     */
+    public synchronized int queueDepth() {
+        int depth = 0;
+        for (Host host : hosts.values())
+            depth += host.queue.size();
+        return depth;
+    }
+
+    /**
+     Get the number of requests waiting to be dispatched to a host.
+     @param host the host name
+     @return the queue depth for that host
+     */
+    public synchronized int queueDepth(String host) {
+        Host state = hosts.get(lowerCase(host));
+        return state == null ? 0 : state.queue.size();
+    }
+
+    /**
+     Get the number of requests currently executing, across all hosts.
+     @return the active count
+     */
+    public synchronized int activeCount() {
+        int active = 0;
+        for (Host host : hosts.values())
+            active += host.active;
+        return active;
+    }
+
+    /**
+     Get the number of hosts whose state is held: those with requests queued or executing, or held back by a rate limit
+     or retry delay.
+     @return the host count
+     */
+    public synchronized int hostCount() {
+        return hosts.size();
+    }
+
+    /**
+     Get the histogram of request latencies (time to execute and read the response body, per attempt), across all hosts.
+     @return the latency histogram
+     */
+    public Histogram latency() {
+        return latency;
+    }
+
+    /**
+     Get the histogram of request latencies for a host, while it has requests queued or executing.
+     @param host the host name
+     @return the latency histogram for that host (empty if it has no current requests, so its state is not held)
+     */
+    public synchronized Histogram latency(String host) {
+        Host state = hosts.get(lowerCase(host));
+        return state == null ? new Histogram() : state.latency;
+    }
+
+    /**
+     Close this Fetcher: new requests are rejected, and queued requests are cancelled. Requests already executing are
+     allowed to complete.
+     */
+    @Override
+    public void close() {
+        List<Task> cancelled = new ArrayList<>();
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            for (Host host : hosts.values()) {
+                cancelled.addAll(host.queue);
+                host.queue.clear();
+            }
+            if (timer != null)
+                timer.shutdownNow();
+        }
+        for (Task task : cancelled)
+            task.cancel(false);
+    }
+
+    /** Dispatch as many of the host's queued requests as its limits allow. Called with the lock held. */
+    private void dispatch(final Host host) {
+        while (!closed && host.active < maxConcurrentPerHost && !host.queue.isEmpty()) {
+            long now = System.nanoTime();
+            if (now - host.nextStart < 0) { // wait for the rate limit, or a retry delay
+                scheduleDispatch(host, host.nextStart - now);
+                return;
+            }
+            final Task task = host.queue.pollFirst();
+            if (task.isDone())
+                continue; // cancelled while queued
+            host.active++;
+            host.nextStart = now + minIntervalNanos;
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                host.active--;
+                task.fail(e);
+            }
+        }
+        if (!closed && host.active == 0 && host.queue.isEmpty())
+            evict(host);
+    }
+
+    /** Release an idle host's state, once its rate limit or retry delay has passed. Called with the lock held. */
+    private void evict(Host host) {
+        long wait = host.nextStart - System.nanoTime();
+        if (wait > 0)
+            scheduleDispatch(host, wait); // which will evict, if still idle
+        else if (!host.dispatchScheduled && hosts.get(host.name) == host)
+            hosts.remove(host.name);
+    }
+
+    private void scheduleDispatch(final Host host, long delayNanos) {
+        if (host.dispatchScheduled) return;
+        host.dispatchScheduled = true;
+        timer().schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (Fetcher.this) {
+                    host.dispatchScheduled = false;
+                    dispatch(host);
+                }
+            }
+        }, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private ScheduledThreadPoolExecutor timer() {
+        if (timer == null) {
+            timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "jsoup-fetcher-timer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return timer;
+    }
+
+    /** Called by a task after an attempt completes, to release its slot and dispatch the next request. */
+    private synchronized void release(Host host, @Nullable Task retry, long retryDelayMillis) {
+        host.active--;
+        if (retry != null) {
+            long retryAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryDelayMillis);
+            if (retryAt - host.nextStart > 0)
+                host.nextStart = retryAt; // hold back the host, not just this request
+            if (closed)
+                retry.cancel(false);
+            else
+                host.queue.addFirst(retry);
+        }
+        dispatch(host);
+    }
+
+    /**
+     Gets the delay before retrying, from the response's Retry-After header (in seconds, or an HTTP date), else the
+     exponential backoff for this attempt.
+     */
+    synchronized long retryDelay(Connection.Response res, int attempt) {
+        long delay = -1;
+        String retryAfter = res.header("Retry-After");
+        if (retryAfter != null) {
+            retryAfter = retryAfter.trim();
+            try {
+                delay = TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter));
+            } catch (NumberFormatException e) {
+                long date = ResponseCache.parseDate(retryAfter);
+                if (date != -1)
+                    delay = date - System.currentTimeMillis();
+            }
+        }
+        if (delay < 0)
+            delay = initialBackoffMillis << Math.min(attempt - 1, 30);
+        return Math.max(0, Math.min(delay, maxRetryDelayMillis));
+    }
+
+    private synchronized int maxRetries() {
+        return maxRetries;
+    }
+
+    private static final class Host {
+        final String name;
+        final ArrayDeque<Task> queue = new ArrayDeque<>();
+        final Histogram latency = new Histogram();
+        int active = 0;
+        long nextStart = System.nanoTime(); // nanoTime at which the next request may start
+        boolean dispatchScheduled = false;
+
+        Host(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     A queued request, which executes one attempt each time it is run, and is the Future for its response.
+     */
+    private final class Task implements Runnable, Future<Connection.Response> {
+        final Connection request;
+        final String host;
+        final boolean ignoreHttpErrors;
+        Host hostState;
+        int attempts = 0;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private @Nullable Connection.Response response; // guarded by this
+        private @Nullable Throwable failure;
+        private boolean cancelled = false;
+        private @Nullable Thread runner;
+
+        Task(Connection request) {
+            this.request = request;
+            Validate.notNull(request.request().url(), "URL must be specified to connect");
+            host = lowerCase(request.request().url().getHost());
+            ignoreHttpErrors = request.request().ignoreHttpErrors();
+        }
+
+        @Override
+        public void run() {
+            boolean cancelled;
+            synchronized (this) {
+                cancelled = isDone();
+                if (!cancelled)
+                    runner = Thread.currentThread();
+            }
+            if (cancelled) { // while waiting for the executor
+                release(hostState, null, 0);
+                return;
+            }
+            attempts++;
+            Task retry = null;
+            long retryDelay = 0;
+            Connection.Response result = null;
+            Throwable error = null;
+            long start = System.nanoTime();
+            try {
+                Connection attempt = request.newRequest(); // a fresh copy, as redirects modify the request
+                attempt.ignoreHttpErrors(true);
+                Connection.Response res = attempt.execute();
+                res.bufferUp(); // read the body within the host's limits
+                long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                latency.add(millis);
+                hostState.latency.add(millis);
+
+                int status = res.statusCode();
+                if ((status == 429 || status == 503) && attempts <= maxRetries()) {
+                    retry = this;
+                    retryDelay = retryDelay(res, attempts);
+                } else if (!ignoreHttpErrors && (status < 200 || status >= 400)) {
+                    error = new HttpStatusException("HTTP error fetching URL", status, res.url().toString());
+                } else {
+                    result = res;
+                }
+            } catch (IOException | RuntimeException e) {
+                error = e;
+            } finally {
+                synchronized (this) {
+                    runner = null;
+                    Thread.interrupted(); // clear any interrupt from cancel, as the thread may be pooled
+                }
+                release(hostState, retry, retryDelay); // before completing, so the slot is free once done
+            }
+            if (error != null)
+                fail(error);
+            else if (result != null)
+                complete(result);
+        }
+
+        synchronized void complete(Connection.Response res) {
+            if (isDone()) return;
+            response = res;
+            done.countDown();
+        }
+
+        synchronized void fail(Throwable e) {
+            if (isDone()) return;
+            failure = e;
+            done.countDown();
+        }
+
+        @Override
+        public synchronized boolean cancel(boolean mayInterruptIfRunning) {
+            if (isDone()) return false;
+            cancelled = true;
+            done.countDown();
+            if (mayInterruptIfRunning && runner != null)
+                runner.interrupt();
+            return true;
+        }
+
+        @Override
+        public synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        @Override
+        public Connection.Response get() throws InterruptedException, ExecutionException {
+            done.await();
+            return result();
+        }
+
+        @Override
+        public Connection.Response get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            if (!done.await(timeout, unit))
+                throw new TimeoutException();
+            return result();
+        }
+
+        private synchronized Connection.Response result() throws ExecutionException {
+            if (cancelled)
+                throw new CancellationException();
+            if (failure != null)
+                throw new ExecutionException(failure);
+            Validate.notNull(response);
+            return response;
+        }
+    }
+
+    /**
+     A histogram of latencies, in milliseconds, counted into exponentially sized buckets. Thread-safe.
+     */
+    public static final class Histogram {
+        /** The upper bounds (inclusive) of each bucket, in milliseconds. The final bucket counts everything larger. */
+        public static final long[] Bounds = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 20000, 60000};
+
+        private final long[] counts = new long[Bounds.length + 1]; // guarded by this
+        private long count = 0;
+        private long total = 0;
+        private long max = 0;
+
+        synchronized void add(long millis) {
+            int bucket = 0;
+            while (bucket < Bounds.length && millis > Bounds[bucket])
+                bucket++;
+            counts[bucket]++;
+            count++;
+            total += millis;
+            if (millis > max) max = millis;
+        }
+
+        /**
+         Get the number of latencies recorded.
+         @return the count
+         */
+        public synchronized long count() {
+            return count;
+        }
+
+        /**
+         Get the mean latency.
+         @return the mean, in milliseconds; or 0 if none recorded
+         */
+        public synchronized double mean() {
+            return count == 0 ? 0 : (double) total / count;
+        }
+
+        /**
+         Get the maximum latency.
+         @return the max, in milliseconds
+         */
+        public synchronized long max() {
+            return max;
+        }
+
+        /**
+         Get an estimate of the latency at a percentile: the upper bound of the bucket that it falls in (or the max, if
+         that is smaller).
+         @param percentile the percentile, from 0 to 100
+         @return the estimated latency, in milliseconds; or 0 if none recorded
+         */
+        public synchronized long percentile(double percentile) {
+            Validate.isTrue(percentile >= 0 && percentile <= 100, "Percentile must be between 0 and 100");
+            if (count == 0) return 0;
+            long rank = (long) Math.ceil(percentile / 100 * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && seen > 0)
+                    return i < Bounds.length ? Math.min(Bounds[i], max) : max;
+            }
+            return max;
+        }
+
+        /**
+         Get the counts of each bucket. The count at index {@code i} is of latencies up to {@code Bounds[i]} (and
+         greater than the previous bound); the final count is of latencies greater than the last bound.
+         @return a copy of the bucket counts
+         */
+        public synchronized long[] bucketCounts() {
+            return counts.clone();
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("count=%d, mean=%.1fms, p50=%dms, p99=%dms, max=%dms",
+                count, mean(), percentile(50), percentile(99), max);
+        }
+    }
+}
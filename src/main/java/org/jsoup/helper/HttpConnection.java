@@ -9,6 +9,7 @@ import org.jsoup.internal.StringUtil;
 import org.jsoup.nodes.Document;
 import org.jsoup.parser.Parser;
 import org.jsoup.parser.TokenQueue;
+import org.jsoup.select.NodeVisitor;
 
 import javax.annotation.Nullable;
 import javax.net.ssl.HttpsURLConnection;
@@ -16,6 +17,8 @@ import javax.net.ssl.SSLSocketFactory;
 import java.io.BufferedInputStream;
 import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -41,10 +44,11 @@ import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.regex.Pattern;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.Inflater;
-import java.util.zip.InflaterInputStream;
 
 import static org.jsoup.Connection.Method.HEAD;
 import static org.jsoup.internal.Normalizer.lowerCase;
@@ -63,6 +67,7 @@ public class HttpConnection implements Connection {
     public static final String DEFAULT_UA =
         "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/79.0.3945.130 Safari/537.36";
     private static final String USER_AGENT = "User-Agent";
+    private static final String ACCEPT_ENCODING = "Accept-Encoding";
     public static final String CONTENT_TYPE = "Content-Type";
     public static final String MULTIPART_FORM_DATA = "multipart/form-data";
     public static final String FORM_URL_ENCODED = "application/x-www-form-urlencoded";
@@ -367,6 +372,42 @@ public class HttpConnection implements Connection {
         return res;
     }
 
+    @Override
+    public Future<Connection.Response> executeAsync() {
+        return executeAsync(RequestExecutor.get());
+    }
+
+    @Override
+    public Future<Connection.Response> executeAsync(Executor executor) {
+        Validate.notNull(executor, "Executor must not be null");
+        FutureTask<Connection.Response> task = new FutureTask<>(new Callable<Connection.Response>() {
+            @Override
+            public Connection.Response call() throws IOException {
+                return execute();
+            }
+        });
+        executor.execute(task);
+        return task;
+    }
+
+    @Override
+    public Future<Document> getAsync() {
+        return getAsync(RequestExecutor.get());
+    }
+
+    @Override
+    public Future<Document> getAsync(Executor executor) {
+        Validate.notNull(executor, "Executor must not be null");
+        FutureTask<Document> task = new FutureTask<>(new Callable<Document>() {
+            @Override
+            public Document call() throws IOException {
+                return get(); // the parse reads from the response body stream, as it is fetched
+            }
+        });
+        executor.execute(task);
+        return task;
+    }
+
     public Connection.Request request() {
         return req;
     }
@@ -393,6 +434,16 @@ public class HttpConnection implements Connection {
         return this;
     }
 
+    public Connection contentDecoder(String encoding, Connection.ContentDecoder decoder) {
+        req.contentDecoder(encoding, decoder);
+        return this;
+    }
+
+    public Connection responseCache(@Nullable ResponseCache cache) {
+        req.responseCache(cache);
+        return this;
+    }
+
 
     @SuppressWarnings("unchecked")
     private static abstract class Base<T extends Connection.Base<T>> implements Connection.Base<T> {
@@ -646,6 +697,8 @@ public class HttpConnection implements Connection {
         private String postDataCharset = DataUtil.defaultCharsetName;
         private @Nullable SSLSocketFactory sslSocketFactory;
         private CookieManager cookieManager;
+        private final Map<String, Connection.ContentDecoder> contentDecoders; // lower-cased encoding -> decoder
+        private @Nullable ResponseCache responseCache;
         private volatile boolean executing = false;
 
         Request() {
@@ -655,10 +708,12 @@ public class HttpConnection implements Connection {
             followRedirects = true;
             data = new ArrayList<>();
             method = Method.GET;
-            addHeader("Accept-Encoding", "gzip");
             addHeader(USER_AGENT, DEFAULT_UA);
             parser = Parser.htmlParser();
             cookieManager = new CookieManager(); // creates a default InMemoryCookieStore
+            contentDecoders = new LinkedHashMap<>();
+            contentDecoders.put(ContentDecoders.GzipEncoding, ContentDecoders.Gzip);
+            contentDecoders.put(ContentDecoders.DeflateEncoding, ContentDecoders.Deflate);
         }
 
         Request(Request copy) {
@@ -676,6 +731,8 @@ public class HttpConnection implements Connection {
             parserDefined = copy.parserDefined;
             sslSocketFactory = copy.sslSocketFactory; // these are all synchronized so safe to share
             cookieManager = copy.cookieManager;
+            contentDecoders = new LinkedHashMap<>(copy.contentDecoders);
+            responseCache = copy.responseCache; // shared, as caches are thread-safe
             executing = false;
         }
 
@@ -788,6 +845,31 @@ public class HttpConnection implements Connection {
             return postDataCharset;
         }
 
+        public Request contentDecoder(String encoding, Connection.ContentDecoder decoder) {
+            Validate.notEmpty(encoding, "Content encoding must not be empty");
+            Validate.notNull(decoder, "Content decoder must not be null");
+            contentDecoders.put(lowerCase(encoding.trim()), decoder);
+            return this;
+        }
+
+        public @Nullable Connection.ContentDecoder contentDecoder(String encoding) {
+            Validate.notNull(encoding, "Content encoding must not be null");
+            return contentDecoders.get(lowerCase(encoding.trim()));
+        }
+
+        public List<String> contentEncodings() {
+            return new ArrayList<>(contentDecoders.keySet());
+        }
+
+        public Request responseCache(@Nullable ResponseCache cache) {
+            responseCache = cache;
+            return this;
+        }
+
+        public @Nullable ResponseCache responseCache() {
+            return responseCache;
+        }
+
         CookieManager cookieManager() {
             return cookieManager;
         }
@@ -807,12 +889,18 @@ public class HttpConnection implements Connection {
         private boolean inputStreamRead = false;
         private int numRedirects = 0;
         private final HttpConnection.Request req;
+        private @Nullable ResponseCache.Entry cacheEntry; // if stored in, or served from, the response cache
+        private boolean retainDocument = false; // if the parsed document should be held in the cacheEntry
+        private boolean sharedBody = false; // if byteData wraps the cacheEntry's body, which must be copied if handed out
 
         /*
          * Matches XML content types (like text/xml, application/xhtml+xml;charset=UTF8, etc)
          */
         private static final Pattern xmlContentTypeRxp = Pattern.compile("(application|text)/\\w*\\+?xml.*");
 
+        /** Request headers that identify the user; responses to requests with these are cached per credentials. */
+        private static final String[] CredentialHeaders = {"Authorization", "Proxy-Authorization", "Cookie", "Cookie2"};
+
         /**
          <b>Internal only! </b>Creates a dummy HttpConnection.Response, useful for testing. All actual responses
          are created from the HttpURLConnection and fields defined.
@@ -852,8 +940,28 @@ public class HttpConnection implements Connection {
             else if (methodHasBody)
                 mimeBoundary = setOutputContentType(req);
 
+            // serve a fresh cached response without network I/O, or make a stale one conditional
+            final ResponseCache cache = req.method() == Method.GET ? req.responseCache() : null;
+            final @Nullable String credentials = cache != null ? credentials(req) : null;
+            final String cacheKey = ResponseCache.key(req.url().toExternalForm(), credentials);
+            ResponseCache.Entry cached = null;
+            if (cache != null) {
+                cached = cache.get(cacheKey);
+                String reqCacheControl = req.header(ResponseCache.CacheControl);
+                boolean revalidate = reqCacheControl != null && ResponseCache.hasDirective(reqCacheControl, "no-cache");
+                if (cached != null && !revalidate && cached.isFresh(System.currentTimeMillis())) {
+                    try {
+                        Response res = new Response(req, cached, previousResponse);
+                        res.validateContentType();
+                        return res;
+                    } finally {
+                        req.executing = false;
+                    }
+                }
+            }
+
             long startTime = System.nanoTime();
-            HttpURLConnection conn = createConnection(req);
+            HttpURLConnection conn = createConnection(req, cached);
             Response res = null;
             try {
                 conn.connect();
@@ -886,33 +994,27 @@ public class HttpConnection implements Connection {
                     req.executing = false;
                     return execute(req, res);
                 }
+                if (status == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null && cache != null) { // reuse the cached body
+                    ResponseCache.Entry revalidated = cached.revalidated(res.multiHeaders(), System.currentTimeMillis());
+                    cache.put(cacheKey, revalidated);
+                    Response cachedRes = new Response(req, revalidated, null);
+                    cachedRes.numRedirects = res.numRedirects;
+                    cachedRes.cookies.putAll(res.cookies); // any set on the 304
+                    res.safeClose();
+                    cachedRes.validateContentType();
+                    return cachedRes;
+                }
+
                 if ((status < 200 || status >= 400) && !req.ignoreHttpErrors())
                         throw new HttpStatusException("HTTP error fetching URL", status, req.url().toString());
 
                 // check that we can handle the returned content type; if not, abort before fetching it
-                String contentType = res.contentType();
-                if (contentType != null
-                        && !req.ignoreContentType()
-                        && !contentType.startsWith("text/")
-                        && !xmlContentTypeRxp.matcher(contentType).matches()
-                        )
-                    throw new UnsupportedMimeTypeException("Unhandled content type. Must be text/*, application/xml, or application/*+xml",
-                            contentType, req.url().toString());
-
-                // switch to the XML parser if content type is xml and not parser not explicitly set
-                if (contentType != null && xmlContentTypeRxp.matcher(contentType).matches()) {
-                    if (!req.parserDefined) req.parser(Parser.xmlParser());
-                }
+                res.validateContentType();
 
-                res.charset = DataUtil.getCharsetFromContentType(res.contentType); // may be null, readInputStream deals with it
                 if (conn.getContentLength() != 0 && req.method() != HEAD) { // -1 means unknown, chunked. sun throws an IO exception on 500 response with no content when trying to read body
                     res.bodyStream = conn.getErrorStream() != null ? conn.getErrorStream() : conn.getInputStream();
                     Validate.notNull(res.bodyStream);
-                    if (res.hasHeaderWithValue(CONTENT_ENCODING, "gzip")) {
-                        res.bodyStream = new GZIPInputStream(res.bodyStream);
-                    } else if (res.hasHeaderWithValue(CONTENT_ENCODING, "deflate")) {
-                        res.bodyStream = new InflaterInputStream(res.bodyStream, new Inflater(true));
-                    }
+                    res.bodyStream = res.decodeContent(res.bodyStream);
                     res.bodyStream = ConstrainableInputStream
                         .wrap(res.bodyStream, DataUtil.bufferSize, req.maxBodySize())
                         .timeout(startTime, req.timeout())
@@ -920,6 +1022,14 @@ public class HttpConnection implements Connection {
                 } else {
                     res.byteData = DataUtil.emptyByteBuffer();
                 }
+
+                if (cache != null && req.method() == Method.GET
+                    && ResponseCache.isStorable(status, req.header(ResponseCache.CacheControl), credentials != null, res.multiHeaders())) {
+                    if (res.bodyStream != null)
+                        res.bodyStream = new CachingInputStream(res.bodyStream, res, cache, cacheKey); // stored once read
+                    else
+                        res.store(cache, cacheKey, new byte[0]);
+                }
             } catch (IOException e) {
                 if (res != null) res.safeClose(); // will be non-null if got to conn
                 throw e;
@@ -931,6 +1041,125 @@ public class HttpConnection implements Connection {
             return res;
         }
 
+        /**
+         Check that we can handle the content type; if not, abort before fetching it. Switches to the XML parser if the
+         content type is XML and the parser was not explicitly set.
+         */
+        private void validateContentType() throws UnsupportedMimeTypeException {
+            if (contentType != null
+                    && !req.ignoreContentType()
+                    && !contentType.startsWith("text/")
+                    && !xmlContentTypeRxp.matcher(contentType).matches()
+                    )
+                throw new UnsupportedMimeTypeException("Unhandled content type. Must be text/*, application/xml, or application/*+xml",
+                        contentType, req.url().toString());
+
+            if (contentType != null && xmlContentTypeRxp.matcher(contentType).matches()) {
+                if (!req.parserDefined) req.parser(Parser.xmlParser());
+            }
+            charset = DataUtil.getCharsetFromContentType(contentType); // may be null, readInputStream deals with it
+        }
+
+        /**
+         Stores the response with its (decoded) body in the cache, unless the body was truncated by the max body size.
+         */
+        private void store(ResponseCache cache, String cacheKey, byte[] body) {
+            int max = req.maxBodySize();
+            if (max > 0 && body.length >= max)
+                return; // may be truncated
+
+            LinkedHashMap<String, List<String>> headers = new LinkedHashMap<>();
+            for (Map.Entry<String, List<String>> header : multiHeaders().entrySet()) {
+                if (ResponseCache.isStorableHeader(header.getKey()))
+                    headers.put(header.getKey(), header.getValue());
+            }
+            cacheEntry = new ResponseCache.Entry(url.toExternalForm(), statusCode, statusMessage, headers, body, System.currentTimeMillis());
+            cache.put(cacheKey, cacheEntry);
+            retainDocument = cache.retainsDocuments();
+        }
+
+        /**
+         Get the request's credential headers, including the cookies that will be sent, to key its cached response by.
+         @return the credentials, or null if the request has none
+         */
+        private static @Nullable String credentials(HttpConnection.Request req) throws IOException {
+            StringBuilder sb = StringUtil.borrowBuilder();
+            for (String name : CredentialHeaders) {
+                for (String value : req.headers(name))
+                    sb.append(name).append(": ").append(value).append('\n');
+            }
+            for (Map.Entry<String, String> cookies : CookieUtil.cookieHeaders(req).entrySet())
+                sb.append(cookies.getKey()).append(": ").append(cookies.getValue()).append('\n');
+            String credentials = StringUtil.releaseBuilder(sb);
+            return credentials.isEmpty() ? null : credentials;
+        }
+
+        /**
+         Copies the body as it is read, and stores the response in the cache once the body has been read in full. So the
+         body is still streamed to its reader (e.g. an incremental parse), rather than buffered before it can be read.
+         */
+        private static final class CachingInputStream extends FilterInputStream {
+            private final Response res;
+            private final ResponseCache cache;
+            private final String cacheKey;
+            private @Nullable ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+            CachingInputStream(InputStream in, Response res, ResponseCache cache, String cacheKey) {
+                super(in);
+                this.res = res;
+                this.cache = cache;
+                this.cacheKey = cacheKey;
+            }
+
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b == -1)
+                    complete();
+                else if (copy != null)
+                    copy.write(b);
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = super.read(b, off, len);
+                if (read == -1)
+                    complete();
+                else if (copy != null)
+                    copy.write(b, off, read);
+                return read;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                copy = null; // skipped bytes aren't copied, so the body can't be stored
+                return super.skip(n);
+            }
+
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+
+            @Override
+            public synchronized void mark(int readlimit) {
+                // not supported, as re-read bytes would be copied twice
+            }
+
+            @Override
+            public synchronized void reset() throws IOException {
+                throw new IOException("mark/reset not supported");
+            }
+
+            private void complete() {
+                if (copy != null) {
+                    res.store(cache, cacheKey, copy.toByteArray());
+                    copy = null;
+                }
+            }
+        }
+
         public int statusCode() {
             return statusCode;
         }
@@ -953,13 +1182,30 @@ public class HttpConnection implements Connection {
         }
 
         public Document parse() throws IOException {
+            return parseBody(null);
+        }
+
+        public Document parse(NodeVisitor listener) throws IOException {
+            Validate.notNull(listener, "Listener must not be null");
+            return parseBody(listener);
+        }
+
+        private Document parseBody(@Nullable NodeVisitor listener) throws IOException {
             Validate.isTrue(executed, "Request must be executed (with .execute(), .get(), or .post() before parsing response");
             if (byteData != null) { // bytes have been read in to the buffer, parse that
                 bodyStream = new ByteArrayInputStream(byteData.array());
                 inputStreamRead = false; // ok to reparse if in bytes
             }
             Validate.isFalse(inputStreamRead, "Input stream already read and parsed, cannot re-read.");
-            Document doc = DataUtil.parseInputStream(bodyStream, charset, url.toExternalForm(), req.parser());
+            Document doc;
+            Document retained = cacheEntry != null && retainDocument && listener == null ? cacheEntry.document(req.parser()) : null;
+            if (retained != null) {
+                doc = retained.clone(); // from a previous parse of the cached body
+            } else {
+                doc = DataUtil.parseInputStream(bodyStream, charset, url.toExternalForm(), req.parser(), listener);
+                if (cacheEntry != null && retainDocument)
+                    cacheEntry.document(doc.clone(), req.parser()); // retain a pristine copy, as the returned doc may be modified
+            }
             doc.connection(new HttpConnection(req, this)); // because we're static, don't have the connection obj. // todo - maybe hold in the req?
             charset = doc.outputSettings().charset().name(); // update charset from meta-equiv, possibly
             inputStreamRead = true;
@@ -995,7 +1241,7 @@ public class HttpConnection implements Connection {
         public byte[] bodyAsBytes() {
             prepareByteData();
             Validate.notNull(byteData);
-            return byteData.array();
+            return sharedBody ? byteData.array().clone() : byteData.array();
         }
 
         @Override
@@ -1007,13 +1253,15 @@ public class HttpConnection implements Connection {
         @Override
         public BufferedInputStream bodyStream() {
             Validate.isTrue(executed, "Request must be executed (with .execute(), .get(), or .post() before getting response body");
+            if (byteData != null) // already buffered (e.g. served from the cache), so can be re-read
+                return ConstrainableInputStream.wrap(new ByteArrayInputStream(byteData.array(), byteData.arrayOffset(), byteData.limit()), DataUtil.bufferSize, 0);
             Validate.isFalse(inputStreamRead, "Request has already been read");
             inputStreamRead = true;
             return ConstrainableInputStream.wrap(bodyStream, DataUtil.bufferSize, req.maxBodySize());
         }
 
         // set up connection defaults, and details from request
-        private static HttpURLConnection createConnection(HttpConnection.Request req) throws IOException {
+        private static HttpURLConnection createConnection(HttpConnection.Request req, @Nullable ResponseCache.Entry cached) throws IOException {
             Proxy proxy = req.proxy();
             final HttpURLConnection conn = (HttpURLConnection) (
                 proxy == null ?
@@ -1036,9 +1284,42 @@ public class HttpConnection implements Connection {
                     conn.addRequestProperty(header.getKey(), value);
                 }
             }
+            if (!req.hasHeader(ACCEPT_ENCODING) && !req.contentDecoders.isEmpty()) // advertise what we can decode
+                conn.addRequestProperty(ACCEPT_ENCODING, StringUtil.join(req.contentDecoders.keySet(), ", "));
+            if (cached != null) { // revalidate the stale cached response
+                String etag = cached.etag();
+                String lastModified = cached.lastModified();
+                if (etag != null && !req.hasHeader("If-None-Match"))
+                    conn.addRequestProperty("If-None-Match", etag);
+                if (lastModified != null && !req.hasHeader("If-Modified-Since"))
+                    conn.addRequestProperty("If-Modified-Since", lastModified);
+            }
             return conn;
         }
 
+        /**
+         Wraps the body stream in the registered decoders for the response's Content-Encoding(s). Multiple encodings are
+         listed in the order applied, so are decoded in reverse. If an encoding has no registered decoder, the body is
+         left encoded from that point (vs failing the request).
+         */
+        private InputStream decodeContent(InputStream body) throws IOException {
+            List<String> encodings = new ArrayList<>();
+            for (String header : headers(CONTENT_ENCODING)) {
+                for (String encoding : header.split(",")) {
+                    encoding = lowerCase(encoding.trim());
+                    if (!encoding.isEmpty() && !encoding.equals("identity"))
+                        encodings.add(encoding);
+                }
+            }
+            for (int i = encodings.size() - 1; i >= 0; i--) {
+                Connection.ContentDecoder decoder = req.contentDecoders.get(encodings.get(i));
+                if (decoder == null)
+                    break;
+                body = decoder.decode(body);
+            }
+            return body;
+        }
+
         /**
          * Call on completion of stream read, to close the body (or error) stream. The connection.disconnect allows
          * keep-alives to work (as the underlying connection is actually held open, despite the name).
@@ -1088,6 +1369,35 @@ public class HttpConnection implements Connection {
             }
         }
 
+        // a response served from the cache
+        private Response(HttpConnection.Request request, ResponseCache.Entry entry, @Nullable HttpConnection.Response previousResponse) throws IOException {
+            this.req = request;
+            method = Method.GET;
+            url = new URL(entry.url());
+            statusCode = entry.statusCode();
+            statusMessage = entry.statusMessage();
+            for (Map.Entry<String, List<String>> header : entry.headers().entrySet()) {
+                for (String value : header.getValue())
+                    addHeader(header.getKey(), value);
+            }
+            contentType = header(CONTENT_TYPE);
+            byteData = ByteBuffer.wrap(entry.body());
+            sharedBody = true;
+            cacheEntry = entry;
+            ResponseCache cache = request.responseCache();
+            retainDocument = cache != null && cache.retainsDocuments();
+            executed = true;
+
+            if (previousResponse != null) { // was redirected
+                for (Map.Entry<String, String> prevCookie : previousResponse.cookies().entrySet()) {
+                    if (!hasCookie(prevCookie.getKey()))
+                        cookie(prevCookie.getKey(), prevCookie.getValue());
+                }
+                previousResponse.safeClose();
+                numRedirects = previousResponse.numRedirects + 1;
+            }
+        }
+
         private static LinkedHashMap<String, List<String>> createHeaderMap(HttpURLConnection conn) {
             // the default sun impl of conn.getHeaderFields() returns header values out of order
             final LinkedHashMap<String, List<String>> headers = new LinkedHashMap<>();
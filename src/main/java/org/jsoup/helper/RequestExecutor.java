@@ -0,0 +1,71 @@
+package org.jsoup.helper;
+
+import javax.annotation.Nullable;
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ The default executor used for asynchronous requests ({@link org.jsoup.Connection#executeAsync()} etc.). A bounded pool,
+ lazily created on first use. Where the runtime supports virtual threads, the pool's threads are virtual, so a blocked
+ request holds no platform thread; otherwise they are daemon platform threads, and idle threads time out.
+ */
+final class RequestExecutor {
+    static final int MaxThreads = Math.max(16, Runtime.getRuntime().availableProcessors() * 4);
+    private static final long KeepAliveSecs = 30;
+
+    private RequestExecutor() {}
+
+    static Executor get() {
+        return Holder.Instance;
+    }
+
+    private static class Holder { // lazy init on first use
+        static final ThreadPoolExecutor Instance = create();
+    }
+
+    private static ThreadPoolExecutor create() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(MaxThreads, MaxThreads,
+            KeepAliveSecs, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ThreadFactory threadFactory() {
+        ThreadFactory virtual = virtualThreadFactory();
+        if (virtual != null)
+            return virtual;
+
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "jsoup-request-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     Looks up {@code Thread.ofVirtual().name("jsoup-request-", 1).factory()} reflectively, as we compile against (and
+     run on) runtimes that don't have it.
+     @return a virtual thread factory, or null if not supported on this runtime
+     */
+    private static @Nullable ThreadFactory virtualThreadFactory() {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Object builder = ofVirtual.invoke(null);
+            Class<?> builderClass = ofVirtual.getReturnType();
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "jsoup-request-", 1L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (Exception e) {
+            return null; // not available (or is a preview feature that's not enabled)
+        }
+    }
+}
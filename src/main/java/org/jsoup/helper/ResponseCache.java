@@ -0,0 +1,626 @@
+package org.jsoup.helper;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StringPool;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+import static org.jsoup.internal.Normalizer.lowerCase;
+
+/**
+ A cache of HTTP responses, used by a {@link org.jsoup.Connection} when set with {@link
+ org.jsoup.Connection#responseCache(ResponseCache)}.
+ <p>Successful (200) responses to GET requests are stored if they carry a validator ({@code ETag} or {@code
+ Last-Modified}) or a freshness lifetime ({@code Cache-Control: max-age} or {@code Expires}), and are not marked {@code
+ no-store}. A later request for the same URL is served from the cache without any network I/O while the entry is fresh;
+ once stale, the request is made conditional ({@code If-None-Match} / {@code If-Modified-Since}), and a {@code 304 Not
+ Modified} response is served from the cached body.</p>
+ <p>As a cache may be shared across sessions, responses marked {@code private} are not stored, nor are responses to
+ requests that carry credentials ({@code Authorization} or cookies) unless they are marked {@code public}. Those are keyed
+ by a digest of the credentials as well as the URL, so are only served to requests with the same credentials.</p>
+ <p>A response is stored once its body has been read in full, by parsing it, or reading it with {@code body()} or {@code
+ bodyStream()}; so the body is still streamed as it is read.</p>
+ <p>Use {@link #memory(int)} for an in-memory LRU cache, or {@link #disk(File)} for an on-disk store; or extend this class
+ to back the cache with a different store. Implementations must be thread-safe.</p>
+ @since 1.15.1
+ */
+public abstract class ResponseCache {
+    /**
+     Get a cached response.
+     @param key the cache key: the absolute request URL, followed by a digest of the request's credentials if it had
+     any (see {@link #key(String, String)})
+     @return the cached entry, or null if not cached
+     */
+    public abstract @Nullable Entry get(String key);
+
+    /**
+     Store a response, replacing any existing entry.
+     @param key the cache key
+     @param entry the response to store
+     */
+    public abstract void put(String key, Entry entry);
+
+    /**
+     Remove any cached response.
+     @param key the cache key
+     */
+    public abstract void remove(String key);
+
+    /**
+     Get the cache key for a request.
+     @param url the absolute request URL
+     @param credentials the request's credential headers ({@code Authorization}, {@code Cookie}, etc), or null if none
+     @return the URL if there are no credentials; otherwise the URL and a digest of the credentials
+     */
+    public static String key(String url, @Nullable String credentials) {
+        Validate.notNull(url);
+        if (credentials == null || credentials.isEmpty())
+            return url;
+        return url + " " + digest("SHA-256", credentials); // a space can't occur in the URL
+    }
+
+    /**
+     If the parsed Document of a cached response should be retained with the entry, so that subsequent responses served
+     from it can be cloned from that Document rather than re-parsed. Defaults to false.
+     @return true if parsed Documents should be retained
+     */
+    public boolean retainsDocuments() {
+        return false;
+    }
+
+    /**
+     Create a new in-memory cache, which evicts the least recently used entry when full.
+     @param maxEntries the maximum number of responses to hold
+     @return a new cache
+     */
+    public static ResponseCache memory(int maxEntries) {
+        return memory(maxEntries, false);
+    }
+
+    /**
+     Create a new in-memory cache, which evicts the least recently used entry when full.
+     @param maxEntries the maximum number of responses to hold
+     @param retainDocuments if true, the parsed Document of a cached response is also held, and responses served from
+     the cache are parsed by cloning it
+     @return a new cache
+     */
+    public static ResponseCache memory(int maxEntries, boolean retainDocuments) {
+        return new MemoryCache(maxEntries, retainDocuments);
+    }
+
+    /**
+     Create a new on-disk cache, storing one file per response in the directory (which will be created if required). The
+     size of the directory is not managed.
+     @param directory the directory to store responses in
+     @return a new cache
+     */
+    public static ResponseCache disk(File directory) {
+        return new DiskCache(directory);
+    }
+
+    /**
+     A cached response: the status, headers, and (decoded) body of a response, and when it was stored.
+     */
+    public static final class Entry {
+        private final String url;
+        private final int statusCode;
+        private final String statusMessage;
+        private final Map<String, List<String>> headers;
+        private final byte[] body;
+        private final long storedAt;
+        private volatile @Nullable Retained retained; // the parsed body, if documents are retained
+
+        /**
+         Create a new cache Entry.
+         @param url the URL of the response
+         @param statusCode the response status code
+         @param statusMessage the response status message
+         @param headers the response headers. Should not include per-response headers such as {@code Set-Cookie}.
+         @param body the decoded response body. Not copied, so must not be modified after.
+         @param storedAt the time the response was received, in epoch milliseconds
+         */
+        public Entry(String url, int statusCode, String statusMessage, Map<String, List<String>> headers, byte[] body, long storedAt) {
+            Validate.notNull(url);
+            Validate.notNull(statusMessage);
+            Validate.notNull(headers);
+            Validate.notNull(body);
+            this.url = url;
+            this.statusCode = statusCode;
+            this.statusMessage = statusMessage;
+            LinkedHashMap<String, List<String>> copy = new LinkedHashMap<>();
+            for (Map.Entry<String, List<String>> header : headers.entrySet())
+                copy.put(header.getKey(), Collections.unmodifiableList(new ArrayList<>(header.getValue())));
+            this.headers = Collections.unmodifiableMap(copy);
+            this.body = body;
+            this.storedAt = storedAt;
+        }
+
+        public String url() {
+            return url;
+        }
+
+        public int statusCode() {
+            return statusCode;
+        }
+
+        public String statusMessage() {
+            return statusMessage;
+        }
+
+        /**
+         Get the stored response headers.
+         @return an unmodifiable map of header names to values
+         */
+        public Map<String, List<String>> headers() {
+            return headers;
+        }
+
+        /**
+         Get the first value of a header, by case-insensitive name.
+         @param name the header name
+         @return the value, or null if not set
+         */
+        public @Nullable String header(String name) {
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                if (header.getKey().equalsIgnoreCase(name) && !header.getValue().isEmpty())
+                    return header.getValue().get(0);
+            }
+            return null;
+        }
+
+        /**
+         Get the decoded response body. This is not a copy, so must not be modified.
+         @return the body bytes
+         */
+        public byte[] body() {
+            return body;
+        }
+
+        /**
+         Get the time this response was received (or last revalidated).
+         @return epoch milliseconds
+         */
+        public long storedAt() {
+            return storedAt;
+        }
+
+        /**
+         Get the freshness lifetime of this response, from its {@code Cache-Control: max-age}, or else its {@code
+         Expires} header (relative to its {@code Date}). A {@code no-cache} directive gives a lifetime of 0.
+         @return the freshness lifetime, in milliseconds
+         */
+        public long freshnessLifetime() {
+            String cacheControl = header(CacheControl);
+            if (cacheControl != null) {
+                if (hasDirective(cacheControl, "no-cache"))
+                    return 0;
+                String maxAge = directiveValue(cacheControl, "max-age");
+                if (maxAge != null) {
+                    try {
+                        return Math.max(0, Long.parseLong(maxAge)) * 1000;
+                    } catch (NumberFormatException e) {
+                        return 0;
+                    }
+                }
+            }
+            long expires = parseDate(header("Expires"));
+            if (expires == -1)
+                return 0;
+            long date = parseDate(header("Date"));
+            return Math.max(0, expires - (date != -1 ? date : storedAt));
+        }
+
+        /**
+         Test if this response is fresh, and so can be served without revalidation.
+         @param now the current time, in epoch milliseconds
+         @return true if fresh
+         */
+        public boolean isFresh(long now) {
+            return now - storedAt < freshnessLifetime();
+        }
+
+        @Nullable String etag() {
+            return header("ETag");
+        }
+
+        @Nullable String lastModified() {
+            return header("Last-Modified");
+        }
+
+        /**
+         Get the retained document, if it was parsed with the same configuration as the given parser would use.
+         */
+        @Nullable Document document(Parser parser) {
+            Retained r = retained;
+            return r != null && r.parsedLike(parser) ? r.document : null;
+        }
+
+        void document(Document document, Parser parser) {
+            retained = new Retained(document, parser);
+        }
+
+        /**
+         Create an updated entry from a {@code 304 Not Modified} response, with its headers replacing those stored.
+         */
+        Entry revalidated(Map<String, List<String>> notModifiedHeaders, long now) {
+            LinkedHashMap<String, List<String>> merged = new LinkedHashMap<>(headers);
+            for (Map.Entry<String, List<String>> header : notModifiedHeaders.entrySet()) {
+                String name = header.getKey();
+                if (!isStorableHeader(name))
+                    continue;
+                for (String existing : new ArrayList<>(merged.keySet())) {
+                    if (existing.equalsIgnoreCase(name))
+                        merged.remove(existing);
+                }
+                merged.put(name, header.getValue());
+            }
+            Entry entry = new Entry(url, statusCode, statusMessage, merged, body, now);
+            entry.retained = retained;
+            return entry;
+        }
+    }
+
+    /**
+     A retained document, and the configuration of the parser that produced it (taken when parsed, as a parser may be
+     reconfigured after).
+     */
+    private static final class Retained {
+        final Document document;
+        final Class<?> treeBuilder;
+        final boolean preserveTagCase, preserveAttributeCase, trimToSize, lazyDecoding, offHeapText;
+        final @Nullable StringPool stringPool;
+
+        Retained(Document document, Parser parser) {
+            this.document = document;
+            treeBuilder = treeBuilder(parser);
+            preserveTagCase = parser.settings().preserveTagCase();
+            preserveAttributeCase = parser.settings().preserveAttributeCase();
+            trimToSize = parser.isTrimToSize();
+            lazyDecoding = parser.isLazyDecoding();
+            offHeapText = parser.isOffHeapText();
+            stringPool = parser.getStringPool();
+        }
+
+        private static Class<?> treeBuilder(Parser parser) {
+            Object treeBuilder = parser.getTreeBuilder(); // as TreeBuilder is not visible here
+            return treeBuilder.getClass();
+        }
+
+        boolean parsedLike(Parser parser) {
+            return !parser.isTrackErrors() // a clone wouldn't report the parse errors
+                && treeBuilder == treeBuilder(parser)
+                && preserveTagCase == parser.settings().preserveTagCase()
+                && preserveAttributeCase == parser.settings().preserveAttributeCase()
+                && trimToSize == parser.isTrimToSize()
+                && lazyDecoding == parser.isLazyDecoding()
+                && offHeapText == parser.isOffHeapText()
+                && stringPool == parser.getStringPool();
+        }
+    }
+
+    static final String CacheControl = "Cache-Control";
+
+    /** Headers that describe the received message, vs the cached (decoded) resource, or that are per-response. */
+    private static final String[] UnstoredHeaders = {"content-encoding", "content-length", "set-cookie", "set-cookie2", "transfer-encoding"};
+
+    static boolean isStorableHeader(String name) {
+        String lower = lowerCase(name);
+        for (String unstored : UnstoredHeaders) {
+            if (unstored.equals(lower))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     Test if a response (to a GET) may be stored: status 200, not no-store, not private, not varying on request headers
+     other than Accept-Encoding (as bodies are stored decoded), and with either a validator or a freshness lifetime. If
+     the request carried credentials, the response must be explicitly public.
+     */
+    static boolean isStorable(int statusCode, @Nullable String requestCacheControl, boolean hasCredentials, Map<String, List<String>> headers) {
+        if (statusCode != 200)
+            return false;
+        if (requestCacheControl != null && hasDirective(requestCacheControl, "no-store"))
+            return false;
+        boolean hasValidatorOrLifetime = false;
+        boolean isPublic = false;
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            String name = header.getKey();
+            for (String value : header.getValue()) {
+                if (name.equalsIgnoreCase(CacheControl)) {
+                    if (hasDirective(value, "no-store") || hasDirective(value, "private"))
+                        return false;
+                    if (hasDirective(value, "public"))
+                        isPublic = true;
+                    if (directiveValue(value, "max-age") != null)
+                        hasValidatorOrLifetime = true;
+                } else if (name.equalsIgnoreCase("Vary")) {
+                    for (String vary : value.split(","))
+                        if (!vary.trim().isEmpty() && !vary.trim().equalsIgnoreCase("Accept-Encoding"))
+                            return false;
+                } else if (name.equalsIgnoreCase("ETag") || name.equalsIgnoreCase("Last-Modified") || name.equalsIgnoreCase("Expires")) {
+                    hasValidatorOrLifetime = true;
+                }
+            }
+        }
+        return hasValidatorOrLifetime && (isPublic || !hasCredentials);
+    }
+
+    static boolean hasDirective(String cacheControl, String directive) {
+        for (String part : cacheControl.split(",")) {
+            String name = part.trim();
+            int eq = name.indexOf('=');
+            if (eq != -1)
+                name = name.substring(0, eq).trim();
+            if (name.equalsIgnoreCase(directive))
+                return true;
+        }
+        return false;
+    }
+
+    static @Nullable String directiveValue(String cacheControl, String directive) {
+        for (String part : cacheControl.split(",")) {
+            int eq = part.indexOf('=');
+            if (eq != -1 && part.substring(0, eq).trim().equalsIgnoreCase(directive))
+                return part.substring(eq + 1).trim().replace("\"", "");
+        }
+        return null;
+    }
+
+    /** Hex encodes the digest of a string. */
+    static String digest(String algorithm, String s) {
+        try {
+            byte[] hash = MessageDigest.getInstance(algorithm).digest(s.getBytes(DataUtil.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash)
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // SHA-1 and SHA-256 are always available
+        }
+    }
+
+    /** Parses an HTTP (RFC 1123) date, returning -1 if not set or invalid. */
+    static long parseDate(@Nullable String date) {
+        if (date == null)
+            return -1;
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US); // not thread-safe, so not shared
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            Date parsed = format.parse(date.trim());
+            return parsed.getTime();
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+
+    static final class MemoryCache extends ResponseCache {
+        private final LinkedHashMap<String, Entry> entries; // guarded by this
+        private final boolean retainDocuments;
+
+        MemoryCache(final int maxEntries, boolean retainDocuments) {
+            Validate.isTrue(maxEntries > 0, "maxEntries must be > 0");
+            this.retainDocuments = retainDocuments;
+            entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) { // access order
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+
+        @Override
+        public synchronized @Nullable Entry get(String key) {
+            return entries.get(key);
+        }
+
+        @Override
+        public synchronized void put(String key, Entry entry) {
+            Validate.notNull(key);
+            Validate.notNull(entry);
+            entries.put(key, entry);
+        }
+
+        @Override
+        public synchronized void remove(String key) {
+            entries.remove(key);
+        }
+
+        @Override
+        public boolean retainsDocuments() {
+            return retainDocuments;
+        }
+
+        synchronized int size() { // visible for testing
+            return entries.size();
+        }
+    }
+
+    static final class DiskCache extends ResponseCache {
+        private static final int Version = 2;
+        private final File directory;
+
+        DiskCache(File directory) {
+            Validate.notNull(directory, "Cache directory must not be null");
+            this.directory = directory;
+        }
+
+        @Override
+        public @Nullable Entry get(String key) {
+            File file = fileFor(key);
+            if (!file.exists())
+                return null;
+            DataInputStream in = null;
+            try {
+                FileInputStream fileIn = new FileInputStream(file);
+                CountingInputStream counter = new CountingInputStream(new BufferedInputStream(fileIn), fileIn.getChannel());
+                in = new DataInputStream(counter);
+                if (in.readInt() != Version || !in.readUTF().equals(key))
+                    return null; // stale format, or a hash collision
+                String url = in.readUTF();
+                int statusCode = in.readInt();
+                String statusMessage = in.readUTF();
+                long storedAt = in.readLong();
+                int headerCount = readLength(in, counter, 6); // each a name and a value count
+                LinkedHashMap<String, List<String>> headers = new LinkedHashMap<>();
+                for (int i = 0; i < headerCount; i++) {
+                    String name = in.readUTF();
+                    int valueCount = readLength(in, counter, 2);
+                    List<String> values = new ArrayList<>(valueCount);
+                    for (int j = 0; j < valueCount; j++)
+                        values.add(in.readUTF());
+                    headers.put(name, values);
+                }
+                byte[] body = new byte[readLength(in, counter, 1)];
+                in.readFully(body);
+                return new Entry(url, statusCode, statusMessage, headers, body, storedAt);
+            } catch (IOException e) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete(); // corrupt or truncated (including an invalid stored length); treat as a miss
+                return null;
+            } finally {
+                closeQuietly(in);
+            }
+        }
+
+        @Override
+        public void put(String key, Entry entry) {
+            Validate.notNull(key);
+            Validate.notNull(entry);
+            if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory())
+                return; // can't store; caching is best effort
+
+            File file = fileFor(key);
+            File temp = new File(directory, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+            DataOutputStream out = null;
+            boolean written = false;
+            try {
+                out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+                out.writeInt(Version);
+                out.writeUTF(key);
+                out.writeUTF(entry.url());
+                out.writeInt(entry.statusCode());
+                out.writeUTF(entry.statusMessage());
+                out.writeLong(entry.storedAt());
+                out.writeInt(entry.headers().size());
+                for (Map.Entry<String, List<String>> header : entry.headers().entrySet()) {
+                    out.writeUTF(header.getKey());
+                    out.writeInt(header.getValue().size());
+                    for (String value : header.getValue())
+                        out.writeUTF(value);
+                }
+                out.writeInt(entry.body().length);
+                out.write(entry.body());
+                out.close();
+                out = null;
+                //noinspection ResultOfMethodCallIgnored
+                file.delete(); // rename won't replace on all platforms
+                written = temp.renameTo(file);
+            } catch (IOException e) {
+                // best effort; e.g. disk full, or a header too long to encode
+            } finally {
+                closeQuietly(out);
+                if (!written)
+                    //noinspection ResultOfMethodCallIgnored
+                    temp.delete();
+            }
+        }
+
+        @Override
+        public void remove(String key) {
+            //noinspection ResultOfMethodCallIgnored
+            fileFor(key).delete();
+        }
+
+        File fileFor(String key) {
+            return new File(directory, digest("SHA-1", key) + ".res");
+        }
+
+        /**
+         Read a stored count or length, and check that the rest of the file can hold that many items of the given
+         minimum size, so that a corrupt file can't cause a huge or negative allocation.
+         */
+        private static int readLength(DataInputStream in, CountingInputStream counter, int itemSize) throws IOException {
+            int length = in.readInt();
+            if (length < 0 || (long) length * itemSize > counter.remaining())
+                throw new IOException("Invalid stored length " + length);
+            return length;
+        }
+
+        /** Counts the bytes read from a stored file, so that stored lengths can be checked against what remains. */
+        private static final class CountingInputStream extends FilterInputStream {
+            private final FileChannel file; // of the opened file, so its size is that being read, even if since replaced
+            private long read;
+
+            CountingInputStream(InputStream in, FileChannel file) {
+                super(in);
+                this.file = file;
+            }
+
+            long remaining() throws IOException {
+                return file.size() - read;
+            }
+
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b != -1)
+                    read++;
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0)
+                    read += n;
+                return n;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                long skipped = super.skip(n);
+                read += skipped;
+                return skipped;
+            }
+
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+        }
+
+        private static void closeQuietly(@Nullable java.io.Closeable closeable) {
+            if (closeable == null) return;
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+                // no-op
+            }
+        }
+    }
+}
@@ -69,9 +69,10 @@ public class Attribute implements Map.Entry<String, String>, Cloneable  {
         key = key.trim();
         Validate.notEmpty(key); // trimming could potentially make empty, so validate here
         if (parent != null) {
+            parent.decode(); // as the value is set directly
             int i = parent.indexOfKey(this.key);
             if (i != Attributes.NotFound)
-                parent.keys[i] = key;
+                parent.setKey(i, key);
         }
         this.key = key;
     }
@@ -100,6 +101,7 @@ public class Attribute implements Map.Entry<String, String>, Cloneable  {
     public String setValue(@Nullable String val) {
         String oldVal = this.val;
         if (parent != null) {
+            parent.decode(); // as the value is set directly
             int i = parent.indexOfKey(this.key);
             if (i != Attributes.NotFound) {
                 oldVal = parent.get(this.key); // trust the container more
@@ -41,15 +41,25 @@ public class Attributes implements Iterable<Attribute>, Cloneable {
     static final char InternalPrefix = '/';
     private static final int InitialCapacity = 3; // sampling found mean count when attrs present = 1.49; 1.08 overall. 2.6:1 don't have any attrs.
 
+    // if present, the values were left HTML encoded by the parser, and are decoded when first read. Always the last key
+    private static final String EncodedKey = internalKey("encoded");
+
     // manages the key/val arrays
     private static final int GrowthFactor = 2;
     static final int NotFound = -1;
     private static final String EmptyString = "";
 
-    // the number of instance fields is kept as low as possible giving an object size of 24 bytes
+    // above this many attributes, keys are found through a hash index, rather than by a linear scan
+    static final int IndexThreshold = 12;
+
+    // the number of instance fields is kept as low as possible giving an object size of 32 bytes
     private int size = 0; // number of slots used (not total capacity, which is keys.length)
     String[] keys = new String[InitialCapacity];
     String[] vals = new String[InitialCapacity];
+    // when there are more than IndexThreshold keys: an open addressing table of [key hash, position + 1] pairs (0 if the
+    // slot is empty). Built on a lookup; kept up to date by adds, and cleared by other changes to the keys. Volatile, and
+    // only set once fully built, so that concurrent readers of unmodified attributes see either no table or a whole one
+    private volatile @Nullable int[] index;
 
     // check there's room for more
     private void checkCapacity(int minNewSize) {
@@ -65,8 +75,82 @@ public class Attributes implements Iterable<Attribute>, Cloneable {
         vals = Arrays.copyOf(vals, newCap);
     }
 
+    /** Reduce the capacity of the key and value arrays to the number of attributes. */
+    void trimToSize() {
+        if (keys.length > size) {
+            keys = Arrays.copyOf(keys, size);
+            vals = Arrays.copyOf(vals, size);
+        }
+    }
+
+    /**
+     Bring the values onto the heap, ready to be changed: decode them if they were left encoded by the parser (and read
+     them, in stored attributes). Called before values are set (but not on key lookups, or removes).
+     */
+    void decode() {
+        decodeEncoded();
+    }
+
+    /**
+     If the values were left encoded by the parser, decode them. Called before values are read (through {@link
+     #val(int)}). As this updates the attributes in place, a lazily decoded document is resolved before it is shared
+     between reading threads; see {@link Element#resolveLazyState()}.
+     */
+    final void decodeEncoded() {
+        if (size == 0 || keys[size - 1] != EncodedKey) // identity check, as always set from the constant
+            return;
+        size--;
+        keys[size] = null;
+        vals[size] = null;
+        index = null;
+        for (int i = 0; i < size; i++) {
+            String val = vals[i];
+            if (val != null && val.indexOf('&') != -1 && !isInternalKey(keys[i]))
+                vals[i] = Entities.unescape(val, true);
+        }
+    }
+
+    /** Test if any (already decoded) value could be read as an entity, so that these values can't be decoded as a set. */
+    private boolean hasDecodedEntity() {
+        for (int i = 0; i < size; i++) {
+            String val = vals[i];
+            if (val != null && val.indexOf('&') != -1 && !isInternalKey(keys[i]))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     Get the value at the position, to read it. Stored attributes read it from their store each time, without keeping
+     it.
+     */
+    @Nullable String val(int i) {
+        return vals[i];
+    }
+
+    /**
+     Get the values array, decoded, for internal code that reads it alongside the keys. Stored attributes return a
+     decoded copy, leaving their values off the heap.
+     */
+    String[] decodedValues() {
+        decode();
+        return vals;
+    }
+
+    /**
+     Resolve the state that is otherwise filled in when first read: decode any encoded (or stored) values, and build the
+     key index if it is used. So that later reads don't modify these attributes.
+     */
+    void resolve() {
+        decode();
+        if (size > IndexThreshold && index == null)
+            buildIndex();
+    }
+
     int indexOfKey(String key) {
         Validate.notNull(key);
+        if (size > IndexThreshold)
+            return indexedKey(key, false);
         for (int i = 0; i < size; i++) {
             if (key.equals(keys[i]))
                 return i;
@@ -76,6 +160,8 @@ public class Attributes implements Iterable<Attribute>, Cloneable {
 
     private int indexOfKeyIgnoreCase(String key) {
         Validate.notNull(key);
+        if (size > IndexThreshold)
+            return indexedKey(key, true);
         for (int i = 0; i < size; i++) {
             if (key.equalsIgnoreCase(keys[i]))
                 return i;
@@ -83,6 +169,68 @@ public class Attributes implements Iterable<Attribute>, Cloneable {
         return NotFound;
     }
 
+    /**
+     Find a key through the hash index. The hash is case-insensitive, so one index serves both lookups. Keys are indexed
+     in order, so like the scan, the first of any duplicate keys is found.
+     */
+    private int indexedKey(String key, boolean ignoreCase) {
+        int[] table = index;
+        if (table == null)
+            table = buildIndex();
+        final int hash = keyHash(key);
+        final int mask = (table.length >> 1) - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int pos = table[slot << 1 | 1];
+            if (pos == 0)
+                return NotFound;
+            if (table[slot << 1] == hash) {
+                String found = keys[pos - 1];
+                if (ignoreCase ? key.equalsIgnoreCase(found) : key.equals(found))
+                    return pos - 1;
+            }
+        }
+    }
+
+    private int[] buildIndex() {
+        int slots = Integer.highestOneBit(size) << 2; // a load of at most half
+        int[] table = new int[slots << 1];
+        for (int i = 0; i < size; i++)
+            addToIndex(table, i);
+        index = table; // published once filled
+        return table;
+    }
+
+    private void addToIndex(int[] table, int pos) {
+        final int hash = keyHash(keys[pos]);
+        final int mask = (table.length >> 1) - 1;
+        int slot = hash & mask;
+        while (table[slot << 1 | 1] != 0)
+            slot = (slot + 1) & mask;
+        table[slot << 1] = hash;
+        table[slot << 1 | 1] = pos + 1;
+    }
+
+    /** A hash of the key that is equal for keys that are equal ignoring case. */
+    static int keyHash(String key) {
+        int h = 0;
+        final int len = key.length();
+        for (int i = 0; i < len; i++) {
+            char c = key.charAt(i);
+            if (c < 128)
+                c = c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+            else
+                c = Character.toLowerCase(Character.toUpperCase(c)); // as equalsIgnoreCase compares
+            h = 31 * h + c;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /** Set the key at the position, as when an attribute is renamed. */
+    void setKey(int i, String key) {
+        keys[i] = key;
+        index = null;
+    }
+
     // we track boolean attributes as null in values - they're just keys. so returns empty for consumers
     static String checkNotNull(@Nullable String val) {
         return val == null ? EmptyString : val;
@@ -95,8 +243,9 @@ public class Attributes implements Iterable<Attribute>, Cloneable {
      @see #hasKey(String)
      */
     public String get(String key) {
+        decodeEncoded();
         int i = indexOfKey(key);
-        return i == NotFound ? EmptyString : checkNotNull(vals[i]);
+        return i == NotFound ? EmptyString : checkNotNull(val(i));
     }
 
     /**
@@ -105,8 +254,9 @@ public class Attributes implements Iterable<Attribute>, Cloneable {
      * @return the first matching attribute value if set; or empty string if not set (ora boolean attribute).
      */
     public String getIgnoreCase(String key) {
+        decodeEncoded();
         int i = indexOfKeyIgnoreCase(key);
-        return i == NotFound ? EmptyString : checkNotNull(vals[i]);
+        return i == NotFound ? EmptyString : checkNotNull(val(i));
     }
 
     /**
@@ -114,10 +264,49 @@ public class Attributes implements Iterable<Attribute>, Cloneable {
      * @see Attributes#put(String, String)
      */
     public Attributes add(String key, @Nullable String value) {
+        decode();
         checkCapacity(size + 1);
         keys[size] = key;
         vals[size] = value;
         size++;
+        int[] table = index;
+        if (table != null) {
+            if (size << 1 > table.length >> 1)
+                index = null; // rebuilt larger on the next lookup
+            else
+                addToIndex(table, size - 1);
+        }
+        return this;
+    }
+
+    /**
+     * Adds a new attribute, with an HTML encoded (aka escaped) value (e.g. {@code a &amp;amp; b}), which is decoded when
+     * these attributes' values are first read. Will produce duplicates if the key already exists.
+     * @param key attribute key
+     * @param value encoded attribute value
+     * @return these attributes, for chaining
+     * @see org.jsoup.parser.Parser#setLazyDecoding(boolean)
+     * @since 1.15.1
+     */
+    public Attributes addEncoded(String key, String value) {
+        boolean encoded = size > 0 && keys[size - 1] == EncodedKey;
+        if (!encoded && value.indexOf('&') == -1) { // nothing to decode
+            add(key, value);
+            return this;
+        }
+        if (!encoded && hasDecodedEntity()) { // an earlier value would be decoded again, so decode this one now
+            add(key, Entities.unescape(value, true));
+            return this;
+        }
+
+        checkCapacity(size + (encoded ? 1 : 2));
+        int i = encoded ? size - 1 : size; // insert before the encoded key, which stays last
+        keys[i] = key;
+        vals[i] = value;
+        keys[i + 1] = EncodedKey;
+        vals[i + 1] = null;
+        size = i + 2;
+        index = null;
         return this;
     }
 
@@ -129,6 +318,7 @@ public class Attributes implements Iterable<Attribute>, Cloneable {
      */
     public Attributes put(String key, @Nullable String value) {
         Validate.notNull(key);
+        decode();
         int i = indexOfKey(key);
         if (i != NotFound)
             vals[i] = value;
@@ -138,11 +328,12 @@ public class Attributes implements Iterable<Attribute>, Cloneable {
     }
 
     void putIgnoreCase(String key, @Nullable String value) {
+        decode();
         int i = indexOfKeyIgnoreCase(key);
         if (i != NotFound) {
             vals[i] = value;
             if (!keys[i].equals(key)) // case changed, update
-                keys[i] = key;
+                setKey(i, key);
         }
         else
             add(key, value);
@@ -186,6 +377,7 @@ public class Attributes implements Iterable<Attribute>, Cloneable {
         size--;
         keys[size] = null; // release hold
         vals[size] = null;
+        this.index = null;
     }
 
     /**
@@ -252,7 +444,7 @@ public class Attributes implements Iterable<Attribute>, Cloneable {
      @return size
      */
     public int size() {
-        return size;
+        return size > 0 && keys[size - 1] == EncodedKey ? size - 1 : size; // not counting the encoded marker, without decoding
     }
 
     /**
@@ -267,6 +459,7 @@ public class Attributes implements Iterable<Attribute>, Cloneable {
      @param incoming attributes to add to these attributes.
      */
     public void addAll(Attributes incoming) {
+        decode();
         if (incoming.size() == 0)
             return;
         checkCapacity(size + incoming.size);
@@ -278,6 +471,7 @@ public class Attributes implements Iterable<Attribute>, Cloneable {
     }
 
     public Iterator<Attribute> iterator() {
+        decodeEncoded();
         return new Iterator<Attribute>() {
             int i = 0;
 
@@ -295,7 +489,7 @@ public class Attributes implements Iterable<Attribute>, Cloneable {
 
             @Override
             public Attribute next() {
-                final Attribute attr = new Attribute(keys[i], vals[i], Attributes.this);
+                final Attribute attr = new Attribute(keys[i], val(i), Attributes.this);
                 i++;
                 return attr;
             }
@@ -312,11 +506,12 @@ public class Attributes implements Iterable<Attribute>, Cloneable {
      @return an view of the attributes as an unmodifiable List.
      */
     public List<Attribute> asList() {
+        decodeEncoded();
         ArrayList<Attribute> list = new ArrayList<>(size);
         for (int i = 0; i < size; i++) {
             if (isInternalKey(keys[i]))
                 continue; // skip internal keys
-            Attribute attr = new Attribute(keys[i], vals[i], Attributes.this);
+            Attribute attr = new Attribute(keys[i], val(i), Attributes.this);
             list.add(attr);
         }
         return Collections.unmodifiableList(list);
@@ -346,13 +541,14 @@ public class Attributes implements Iterable<Attribute>, Cloneable {
     }
 
     final void html(final Appendable accum, final Document.OutputSettings out) throws IOException {
+        decodeEncoded();
         final int sz = size;
         for (int i = 0; i < sz; i++) {
             if (isInternalKey(keys[i]))
                 continue;
             final String key = Attribute.getValidKey(keys[i], out.syntax());
             if (key != null)
-                Attribute.htmlNoValidate(key, vals[i], accum.append(' '), out);
+                Attribute.htmlNoValidate(key, val(i), accum.append(' '), out);
         }
     }
 
@@ -370,17 +566,19 @@ public class Attributes implements Iterable<Attribute>, Cloneable {
     @Override
     public boolean equals(@Nullable Object o) {
         if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
+        if (!(o instanceof Attributes)) return false; // not by class, as values may be held in a TextArena
 
         Attributes that = (Attributes) o;
+        decodeEncoded();
+        that.decodeEncoded();
         if (size != that.size) return false;
         for (int i = 0; i < size; i++) {
             String key = keys[i];
             int thatI = that.indexOfKey(key);
             if (thatI == NotFound)
                 return false;
-            String val = vals[i];
-            String thatVal = that.vals[thatI];
+            String val = val(i);
+            String thatVal = that.val(thatI);
             if (val == null) {
                 if (thatVal != null)
                     return false;
@@ -396,9 +594,15 @@ public class Attributes implements Iterable<Attribute>, Cloneable {
      */
     @Override
     public int hashCode() {
+        decodeEncoded();
         int result = size;
         result = 31 * result + Arrays.hashCode(keys);
-        result = 31 * result + Arrays.hashCode(vals);
+        int valsHash = 1; // as Arrays.hashCode(vals), with the values as read
+        for (int i = 0; i < vals.length; i++) {
+            String val = i < size ? val(i) : vals[i];
+            valsHash = 31 * valsHash + (val == null ? 0 : val.hashCode());
+        }
+        result = 31 * result + valsHash;
         return result;
     }
 
@@ -413,6 +617,7 @@ public class Attributes implements Iterable<Attribute>, Cloneable {
         clone.size = size;
         keys = Arrays.copyOf(keys, size);
         vals = Arrays.copyOf(vals, size);
+        clone.index = null; // not shared, as adds update it
         return clone;
     }
 
@@ -423,6 +628,7 @@ public class Attributes implements Iterable<Attribute>, Cloneable {
         for (int i = 0; i < size; i++) {
             keys[i] = lowerCase(keys[i]);
         }
+        index = null;
     }
 
     /**
@@ -12,6 +12,10 @@ import org.jsoup.select.Elements;
 import org.jsoup.select.Evaluator;
 
 import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
 import java.util.ArrayList;
@@ -21,13 +25,15 @@ import java.util.List;
  A HTML Document.
 
  @author Jonathan Hedley, jonathan@hedley.net */
-public class Document extends Element {
+public class Document extends Element implements Closeable {
     private @Nullable Connection connection; // the connection this doc was fetched from, if any
     private OutputSettings outputSettings = new OutputSettings();
     private Parser parser; // the parser used to parse this document
     private QuirksMode quirksMode = QuirksMode.noQuirks;
     private final String location;
     private boolean updateMetaCharset = false;
+    private boolean textCaching = false;
+    private @Nullable TextArena textArena;
 
     /**
      Create a new, empty Document.
@@ -86,7 +92,7 @@ public class Document extends Element {
      * @return document type, or null if not set
      */
     public @Nullable DocumentType documentType() {
-        for (Node node : childNodes) {
+        for (Node node : nodes()) {
             if (node instanceof DocumentType)
                 return (DocumentType) node;
             else if (!(node instanceof LeafNode)) // scans forward across comments, text, processing instructions etc
@@ -203,7 +209,7 @@ public class Document extends Element {
     // does not recurse.
     private void normaliseTextNodes(Element element) {
         List<Node> toMove = new ArrayList<>();
-        for (Node node: element.childNodes) {
+        for (Node node: element.nodes()) {
             if (node instanceof TextNode) {
                 TextNode tn = (TextNode) node;
                 if (!tn.isBlank())
@@ -332,6 +338,105 @@ public class Document extends Element {
         return updateMetaCharset;
     }
 
+    /**
+     Set whether the text of this document's elements is cached. When enabled, {@link Element#text()} and {@link
+     Element#wholeText()} keep the text of each element of the subtree they read, and later calls on those elements and
+     their ancestors join that cached text, rather than walking the subtree again. That suits reading the text at several
+     nesting levels, or of each of many elements, as {@link org.jsoup.select.Elements#text()} does.
+     <p>An element's cached text is cleared when its children or the text of its text nodes change, along with that of its
+     ancestors. As each element holds the text of its subtree, the cache uses heap in proportion to the document's text
+     and its nesting depth.</p>
+     <p>Caching is off by default.</p>
+     @param caching true to cache element text; false to stop, and release any cached text
+     @return this document, for chaining
+     @since 1.15.1
+     */
+    public Document textCaching(boolean caching) {
+        textCaching = caching;
+        if (!caching) {
+            for (Element el : getAllElements())
+                el.clearTextCache();
+        }
+        return this;
+    }
+
+    /**
+     Get whether the text of this document's elements is cached.
+     @return true if element text is cached
+     @see #textCaching(boolean)
+     @since 1.15.1
+     */
+    public boolean textCaching() {
+        return textCaching;
+    }
+
+    /**
+     Get the store that holds this document's text off the Java heap, creating it if this document doesn't have one yet.
+     The parser uses this when {@link org.jsoup.parser.Parser#setOffHeapText(boolean)} is set.
+     @return the document's text store
+     @see #close()
+     @since 1.15.1
+     */
+    public TextArena textArena() {
+        if (textArena == null)
+            textArena = new TextArena();
+        return textArena;
+    }
+
+    /**
+     Release the off-heap store of this document's text, if it has one. After this, the values held in the store can't be
+     read (an {@link IllegalStateException} is thrown). Clones read their values from the store as they are made, so
+     stay readable; but nodes moved from this document into another still read from this store. Has no effect on
+     documents without a store.
+     @see org.jsoup.parser.Parser#setOffHeapText(boolean)
+     @since 1.15.1
+     */
+    @Override
+    public void close() {
+        if (textArena != null)
+            textArena.close();
+    }
+
+    /**
+     * Create a read-only copy of this document, in a compact columnar form. The frozen document is not connected to
+     * this one: later changes to this document are not reflected in it. As it can't be modified, a frozen document can
+     * be read and queried from many threads concurrently, without locking.
+     * @return a frozen copy of this document
+     * @see FrozenDocument#thaw()
+     * @since 1.15.1
+     */
+    public FrozenDocument freeze() {
+        return new FrozenDocument(this);
+    }
+
+    /**
+     * Write a compact binary snapshot of this document to the output stream. The snapshot can be loaded with {@link
+     * #readSnapshot(InputStream)} much faster than the original HTML could be parsed again, so is useful to cache
+     * parsed documents, e.g. across restarts.
+     * <p>The snapshot holds the document's nodes, its location, and its output and parser settings. The stream is
+     * flushed, but not closed.</p>
+     * @param out the output stream to write to
+     * @throws IOException if the stream can't be written to
+     * @since 1.15.1
+     */
+    public void writeSnapshot(OutputStream out) throws IOException {
+        Validate.notNull(out);
+        Snapshot.write(this, out);
+    }
+
+    /**
+     * Load a document from a snapshot written by {@link #writeSnapshot(OutputStream)}. Only the snapshot is read from
+     * the stream, which is not closed.
+     * @param in the input stream to read from
+     * @return the document
+     * @throws IOException if the stream can't be read, or doesn't hold a valid snapshot
+     * @since 1.15.1
+     */
+    public static Document readSnapshot(InputStream in) throws IOException {
+        Validate.notNull(in);
+        return Snapshot.read(in);
+    }
+
     @Override
     public Document clone() {
         Document clone = (Document) super.clone();
@@ -22,6 +22,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -42,12 +44,13 @@ import static org.jsoup.internal.Normalizer.normalize;
 @NonnullByDefault
 public class Element extends Node {
     private static final List<Element> EmptyChildren = Collections.emptyList();
-    private static final Pattern ClassSplit = Pattern.compile("\\s+");
     private static final String BaseUriKey = Attributes.internalKey("baseUri");
     private Tag tag;
-    private @Nullable WeakReference<List<Element>> shadowChildrenRef; // points to child elements shadowed from node children
-    List<Node> childNodes;
+    private volatile @Nullable WeakReference<List<Element>> shadowChildrenRef; // points to child elements shadowed from node children; filled on read
+    List<Node> childNodes; // or, in a lazily thawed element, a placeholder for its frozen children; see nodes()
     private @Nullable Attributes attributes; // field is nullable but all methods for attributes are non null
+    private @Nullable ClassTokens classTokens; // the parsed class attribute, for hasClass; valid while that value is current
+    private @Nullable TextCache textCache; // the text of this subtree, if the document caches text; cleared on changes
 
     /**
      * Create a new, standalone element.
@@ -97,9 +100,59 @@ public class Element extends Node {
         if (childNodes == EmptyNodes) {
             childNodes = new NodeList(this, 4);
         }
+        return nodes();
+    }
+
+    /**
+     Gets the child node list, first creating the children if this element was lazily thawed from a {@link
+     FrozenDocument} and they haven't been yet. Reads of the children go through here; the placeholder list knows their
+     count, and thaws them through here when read.
+     */
+    List<Node> nodes() {
+        if (childNodes instanceof FrozenDocument.Unthawed) {
+            Node[] children = ((FrozenDocument.Unthawed) childNodes).thaw();
+            childNodes = new NodeList(this, children.length);
+            for (int i = 0; i < children.length; i++) {
+                children[i].parentNode = this;
+                children[i].setSiblingIndex(i);
+            }
+            childNodes.addAll(Arrays.asList(children));
+        }
         return childNodes;
     }
 
+    /**
+     Resolve the state of this element's subtree that is otherwise filled in when it is first read: the children of
+     elements lazily thawed from a {@link FrozenDocument}, text and attribute values left encoded by the parser (see
+     {@link org.jsoup.parser.Parser#setLazyDecoding(boolean)}), and attribute key indexes. After this, reading the
+     subtree doesn't modify it, so once safely published (e.g. by handing it to an executor), it can be read from
+     multiple threads (as by {@link org.jsoup.select.Collector#collectParallel}) while it is not being modified.
+     <p>Text caches (see {@link Document#textCaching(boolean)}) and the lists of child elements are still filled when
+     first read, but are safely published, so may be filled by concurrent readers.</p>
+     @return this element, for chaining
+     @since 1.15.1
+     */
+    public Element resolveLazyState() {
+        NodeTraversor.traverse(new NodeVisitor() { // which thaws each element's children as it reaches them
+            @Override
+            public void head(Node node, int depth) {
+                if (node instanceof LeafNode)
+                    ((LeafNode) node).resolveValue();
+                if (node.hasAttributes())
+                    node.attributes().resolve();
+            }
+
+            @Override
+            public void tail(Node node, int depth) {}
+        }, this);
+        return this;
+    }
+
+    /** Checks if this element's children are still frozen, not yet thawed. */
+    boolean isUnthawed() {
+        return childNodes instanceof FrozenDocument.Unthawed;
+    }
+
     @Override
     protected boolean hasAttributes() {
         return attributes != null;
@@ -173,6 +226,7 @@ public class Element extends Node {
     public Element tagName(String tagName) {
         Validate.notEmpty(tagName, "Tag name must not be empty.");
         tag = Tag.valueOf(tagName, NodeUtils.parser(this).settings()); // maintains the case option of the original parse
+        invalidateText(); // the tag sets block and whitespace handling
         return this;
     }
 
@@ -332,17 +386,18 @@ public class Element extends Node {
         if (childNodeSize() == 0)
             return EmptyChildren; // short circuit creating empty
 
+        WeakReference<List<Element>> ref = shadowChildrenRef;
         List<Element> children;
-        if (shadowChildrenRef == null || (children = shadowChildrenRef.get()) == null) {
+        if (ref == null || (children = ref.get()) == null) {
             final int size = childNodes.size();
             children = new ArrayList<>(size);
             //noinspection ForLoopReplaceableByForEach (beacause it allocates an Iterator which is wasteful here)
             for (int i = 0; i < size; i++) {
-                final Node node = childNodes.get(i);
+                final Node node = nodes().get(i);
                 if (node instanceof Element)
                     children.add((Element) node);
             }
-            shadowChildrenRef = new WeakReference<>(children);
+            shadowChildrenRef = new WeakReference<>(children); // published once filled; a concurrent reader may build its own
         }
         return children;
     }
@@ -354,6 +409,16 @@ public class Element extends Node {
     void nodelistChanged() {
         super.nodelistChanged();
         shadowChildrenRef = null;
+        invalidateText();
+    }
+
+    /**
+     Clears the cached text of this element and of its ancestors, as their text includes this element's. A cached
+     element's descendants are always cached too, so this can stop at the first uncached element.
+     */
+    void invalidateText() {
+        for (Element el = this; el != null && el.textCache != null; el = el.parent())
+            el.textCache = null;
     }
 
     /**
@@ -374,7 +439,7 @@ public class Element extends Node {
      */
     public List<TextNode> textNodes() {
         List<TextNode> textNodes = new ArrayList<>();
-        for (Node node : childNodes) {
+        for (Node node : nodes()) {
             if (node instanceof TextNode)
                 textNodes.add((TextNode) node);
         }
@@ -392,7 +457,7 @@ public class Element extends Node {
      */
     public List<DataNode> dataNodes() {
         List<DataNode> dataNodes = new ArrayList<>();
-        for (Node node : childNodes) {
+        for (Node node : nodes()) {
             if (node instanceof DataNode)
                 dataNodes.add((DataNode) node);
         }
@@ -457,6 +522,33 @@ public class Element extends Node {
         return Collector.findFirst(evaluator, this);
     }
 
+    /**
+     * Find elements that match the {@link Selector} CSS query, with this element as the starting context, as a lazy
+     * iterator. This has the same matches as {@link #select(String)}, but the tree is only walked as far as is needed to
+     * find the next match, and the matches are not collected into a list. That is more efficient if you only need some
+     * of the matches, or process each in turn.
+     * <p>The DOM should not be modified while iterating.</p>
+     * @param cssQuery a {@link Selector} CSS-like query
+     * @return an iterator of the matching elements, in document order
+     * @throws Selector.SelectorParseException (unchecked) on an invalid CSS query.
+     * @since 1.15.1
+     */
+    public Iterator<Element> selectIterator(String cssQuery) {
+        Validate.notEmpty(cssQuery);
+        return Collector.iterator(QueryParser.compile(cssQuery), this);
+    }
+
+    /**
+     * Find elements that match the supplied Evaluator, as a lazy iterator.
+     * @param evaluator an element evaluator
+     * @return an iterator of the matching elements, in document order
+     * @see #selectIterator(String)
+     * @since 1.15.1
+     */
+    public Iterator<Element> selectIterator(Evaluator evaluator) {
+        return Collector.iterator(evaluator, this);
+    }
+
     /**
      * Checks if this element matches the given {@link Selector} CSS query. Also knows as {@code matches()} in the Web
      * DOM.
@@ -465,7 +557,7 @@ public class Element extends Node {
      * @return if this element matches the query
      */
     public boolean is(String cssQuery) {
-        return is(QueryParser.parse(cssQuery));
+        return is(QueryParser.compile(cssQuery));
     }
 
     /**
@@ -485,7 +577,7 @@ public class Element extends Node {
      * found.
      */
     public @Nullable Element closest(String cssQuery) {
-        return closest(QueryParser.parse(cssQuery));
+        return closest(QueryParser.compile(cssQuery));
     }
 
     /**
@@ -559,9 +651,9 @@ public class Element extends Node {
 
         // was - Node#addChildren(child). short-circuits an array create and a loop.
         reparentChild(child);
-        ensureChildNodes();
-        childNodes.add(child);
-        child.setSiblingIndex(childNodes.size() - 1);
+        final List<Node> nodes = ensureChildNodes();
+        nodes.add(child);
+        child.setSiblingIndex(nodes.size() - 1);
         return this;
     }
 
@@ -655,6 +747,73 @@ public class Element extends Node {
         return this;
     }
 
+    /**
+     Remove the child nodes that the filter selects for removal. Each child node is passed to the filter's {@link
+     NodeFilter#head(Node, int) head} method (with a depth of 0), and is removed if that returns {@link
+     NodeFilter.FilterResult#REMOVE}; if it returns {@link NodeFilter.FilterResult#STOP}, the remaining children are
+     kept. Descendants are not visited.
+     <p>The children are removed in a single pass, so this is much quicker than removing many children one at a time
+     from a wide element, as each single removal shifts and reindexes the following siblings.</p>
+     @param filter the filter to test each child node with
+     @return this element, for chaining
+     @see #replaceChildren(Collection)
+     @since 1.15.1
+     */
+    public Element removeChildren(NodeFilter filter) {
+        Validate.notNull(filter);
+        final int size = childNodeSize();
+        if (size == 0) return this;
+
+        Set<Node> out = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+        for (int i = 0; i < size; i++) {
+            Node child = nodes().get(i);
+            NodeFilter.FilterResult result = filter.head(child, 0);
+            if (result == NodeFilter.FilterResult.REMOVE)
+                out.add(child);
+            else if (result == NodeFilter.FilterResult.STOP)
+                break;
+        }
+        removeChildNodes(out);
+        return this;
+    }
+
+    /**
+     Replace all of this element's child nodes with the given nodes, in order. The new nodes will be moved from their
+     current parents (in bulk), and current children that are not in the new list are removed. The child list is
+     rebuilt and reindexed once.
+     @param children the new child nodes. Must not contain nulls or duplicates.
+     @return this element, for chaining
+     @see #removeChildren(NodeFilter)
+     @since 1.15.1
+     */
+    public Element replaceChildren(Collection<? extends Node> children) {
+        Validate.notNull(children, "Children collection must not be null.");
+        Node[] nodes = children.toArray(new Node[0]);
+        Validate.noNullElements(nodes);
+        Set<Node> incoming = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>(nodes.length));
+        List<Node> moving = new ArrayList<>();
+        for (Node node : nodes) {
+            Validate.isTrue(node != this, "Cannot add an element to itself.");
+            Validate.isTrue(incoming.add(node), "Children must not contain duplicates.");
+            if (node.parentNode != null && node.parentNode != this)
+                moving.add(node);
+        }
+        detach(moving);
+
+        final List<Node> current = ensureChildNodes();
+        for (Node child : current) {
+            if (!incoming.contains(child))
+                child.parentNode = null;
+        }
+        current.clear();
+        current.addAll(Arrays.asList(nodes));
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i].parentNode = this;
+            nodes[i].setSiblingIndex(i);
+        }
+        return this;
+    }
+
     /**
      * Create a new element by tag name, and add it as the last child.
      *
@@ -785,10 +944,47 @@ public class Element extends Node {
      */
     @Override
     public Element empty() {
-        childNodes.clear();
+        nodes().clear();
+        return this;
+    }
+
+    /**
+     Trim the storage of this element and its descendants to their current contents: the capacity of each child node
+     list and attribute list is reduced to its size, empty attribute lists are released, and cached child element lists
+     are cleared. This reduces the heap used by a large document that won't be modified much further, such as one that
+     has just been parsed. Later modifications will grow the storage again as needed.
+     <p>This is done at the end of a parse if {@link org.jsoup.parser.Parser#setTrimToSize(boolean)} is set.</p>
+     @return this element, for chaining
+     @since 1.15.1
+     */
+    public Element trimToSize() {
+        NodeTraversor.traverse(new NodeVisitor() {
+            @Override
+            public void head(Node node, int depth) {
+                if (node instanceof Element)
+                    ((Element) node).trimStorage();
+            }
+
+            @Override
+            public void tail(Node node, int depth) {
+                // void
+            }
+        }, this);
         return this;
     }
 
+    private void trimStorage() {
+        if (childNodes instanceof NodeList)
+            ((NodeList) childNodes).trimToSize();
+        if (attributes != null) {
+            if (attributes.size() == 0)
+                attributes = null; // recreated on demand
+            else
+                attributes.trimToSize();
+        }
+        shadowChildrenRef = null;
+    }
+
     /**
      * Wrap the supplied HTML around this element.
      *
@@ -954,6 +1150,21 @@ public class Element extends Node {
     }
 
     private static <E extends Element> int indexInList(Element search, List<E> elements) {
+        // the child elements are in sibling order, so binary search on the node sibling index
+        final int target = search.siblingIndex;
+        int low = 0, high = elements.size() - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final Element el = elements.get(mid);
+            if (el == search)
+                return mid;
+            if (el.siblingIndex < target)
+                low = mid + 1;
+            else
+                high = mid - 1;
+        }
+
+        // not found (an index is out of date, or search is not in the list), so scan
         final int size = elements.size();
         for (int i = 0; i < size; i++) {
             if (elements.get(i) == search)
@@ -1247,6 +1458,9 @@ public class Element extends Node {
      @see #textNodes()
      */
     public String text() {
+        if (cachesText())
+            return cachedText().text.trim();
+
         final StringBuilder accum = StringUtil.borrowBuilder();
         NodeTraversor.traverse(new NodeVisitor() {
             public void head(Node node, int depth) {
@@ -1284,6 +1498,9 @@ public class Element extends Node {
      * @see #text()
      */
     public String wholeText() {
+        if (cachesText())
+            return cachedWholeText();
+
         final StringBuilder accum = StringUtil.borrowBuilder();
         NodeTraversor.traverse(new NodeVisitor() {
             public void head(Node node, int depth) {
@@ -1300,6 +1517,190 @@ public class Element extends Node {
         return StringUtil.releaseBuilder(accum);
     }
 
+    private boolean cachesText() {
+        Document doc = ownerDocument();
+        return doc != null && doc.textCaching();
+    }
+
+    /**
+     The cached text of an element, and the parts of its context that the text depends on. The text is accumulated as
+     {@link #text()} would from an empty start, but not trimmed; the flags record how it joins onto the text before it.
+     Immutable, so safe to publish to other reading threads; a cache is replaced, not updated.
+     */
+    private static final class TextCache {
+        final @Nullable String text;
+        final boolean spaceBefore; // a block or br starts the text, so it needs a space after any preceding text
+        final boolean collapsibleStart; // the text starts with a normalized space, dropped after preceding whitespace
+        final int preserveDepth; // the preserveDepth() the text was normalized under
+        final @Nullable String wholeText;
+
+        TextCache(@Nullable String text, boolean spaceBefore, boolean collapsibleStart, int preserveDepth, @Nullable String wholeText) {
+            this.text = text;
+            this.spaceBefore = spaceBefore;
+            this.collapsibleStart = collapsibleStart;
+            this.preserveDepth = preserveDepth;
+            this.wholeText = wholeText;
+        }
+    }
+
+    void clearTextCache() {
+        textCache = null;
+    }
+
+    private boolean hasCachedText() {
+        TextCache cache = textCache;
+        return cache != null && cache.text != null && cache.preserveDepth == preserveDepth();
+    }
+
+    /**
+     The distance to the nearest of this element and its ancestors that preserves whitespace, within the reach of
+     {@link #preserveWhitespace(Node)}, or -1 if none. That is all the normalization of this subtree's text depends on
+     from outside of it.
+     */
+    private int preserveDepth() {
+        Element el = this;
+        for (int i = 0; i < 6 && el != null; i++) {
+            if (el.tag.preserveWhitespace())
+                return i;
+            el = el.parent();
+        }
+        return -1;
+    }
+
+    /**
+     Gets the cached text of this element, first caching any of its subtree that isn't, bottom up, so that each element
+     joins its children's cached text rather than walking their subtrees again.
+     */
+    private TextCache cachedText() {
+        TextCache cache = textCache;
+        if (cache == null || cache.text == null || cache.preserveDepth != preserveDepth()) {
+            NodeTraversor.filter(new NodeFilter() {
+                @Override
+                public FilterResult head(Node node, int depth) {
+                    if (node instanceof Element && !((Element) node).hasCachedText())
+                        return FilterResult.CONTINUE;
+                    return FilterResult.SKIP_ENTIRELY;
+                }
+
+                @Override
+                public FilterResult tail(Node node, int depth) {
+                    ((Element) node).cacheText();
+                    return FilterResult.CONTINUE;
+                }
+            }, this);
+            cache = textCache;
+            if (cache == null || cache.text == null)
+                cache = cacheText(); // replaced by a concurrent reader's wholeText cache
+        }
+        return cache;
+    }
+
+    /** Joins the text of this element from its text nodes and its children's cached text, as text() would. */
+    private TextCache cacheText() {
+        final StringBuilder accum = StringUtil.borrowBuilder();
+        final boolean preserve = preserveWhitespace(this);
+        boolean spaceBefore = isBlock() || tag.normalName().equals("br");
+        boolean collapsibleStart = false;
+
+        final int size = childNodeSize();
+        for (int i = 0; i < size; i++) {
+            Node child = nodes().get(i);
+            boolean empty = accum.length() == 0;
+            if (child instanceof TextNode) {
+                TextNode textNode = (TextNode) child;
+                boolean normalise = !preserve && !(textNode instanceof CDataNode);
+                if (normalise)
+                    StringUtil.appendNormalisedWhitespace(accum, textNode.getWholeText(), TextNode.lastCharIsWhitespace(accum));
+                else
+                    accum.append(textNode.getWholeText());
+                if (empty && accum.length() > 0)
+                    collapsibleStart = normalise && accum.charAt(0) == ' ';
+            } else if (child instanceof Element) {
+                Element el = (Element) child;
+                TextCache childText = el.textCache; // children are cached first
+                if (childText == null || childText.text == null)
+                    childText = el.cachedText(); // replaced by a concurrent reader's wholeText cache
+                String text = childText.text;
+                //noinspection ConstantConditions
+                if (childText.spaceBefore) {
+                    if (empty)
+                        spaceBefore = true;
+                    else if (!TextNode.lastCharIsWhitespace(accum))
+                        accum.append(' ');
+                }
+                if (empty) {
+                    accum.append(text);
+                    if (accum.length() > 0)
+                        collapsibleStart = childText.collapsibleStart;
+                } else if (childText.collapsibleStart && TextNode.lastCharIsWhitespace(accum)) {
+                    accum.append(text, 1, text.length());
+                } else {
+                    accum.append(text);
+                }
+
+                // the space after a block and before following text, as in text()'s tail
+                if (el.isBlock() && el.nextSibling() instanceof TextNode && !TextNode.lastCharIsWhitespace(accum)) {
+                    if (accum.length() == 0)
+                        collapsibleStart = true;
+                    accum.append(' ');
+                }
+            }
+        }
+
+        TextCache existing = textCache;
+        TextCache cache = new TextCache(StringUtil.releaseBuilder(accum), spaceBefore, collapsibleStart, preserveDepth(),
+            existing != null ? existing.wholeText : null);
+        textCache = cache;
+        return cache;
+    }
+
+    private String cachedWholeText() {
+        TextCache cache = textCache;
+        if (cache == null || cache.wholeText == null) {
+            NodeTraversor.filter(new NodeFilter() {
+                @Override
+                public FilterResult head(Node node, int depth) {
+                    if (node instanceof Element) {
+                        TextCache elCache = ((Element) node).textCache;
+                        if (elCache == null || elCache.wholeText == null)
+                            return FilterResult.CONTINUE;
+                    }
+                    return FilterResult.SKIP_ENTIRELY;
+                }
+
+                @Override
+                public FilterResult tail(Node node, int depth) {
+                    ((Element) node).cacheWholeText();
+                    return FilterResult.CONTINUE;
+                }
+            }, this);
+            cache = textCache;
+            if (cache == null || cache.wholeText == null)
+                return cacheWholeText(); // replaced by a concurrent reader's text cache
+        }
+        return cache.wholeText;
+    }
+
+    private String cacheWholeText() {
+        final StringBuilder accum = StringUtil.borrowBuilder();
+        final int size = childNodeSize();
+        for (int i = 0; i < size; i++) {
+            Node child = nodes().get(i);
+            if (child instanceof TextNode) {
+                accum.append(((TextNode) child).getWholeText());
+            } else if (child instanceof Element) {
+                TextCache childText = ((Element) child).textCache; // children are cached first
+                accum.append(childText != null && childText.wholeText != null ? childText.wholeText : ((Element) child).cachedWholeText());
+            }
+        }
+        TextCache existing = textCache;
+        String wholeText = StringUtil.releaseBuilder(accum);
+        textCache = existing != null ?
+            new TextCache(existing.text, existing.spaceBefore, existing.collapsibleStart, existing.preserveDepth, wholeText) :
+            new TextCache(null, false, false, 0, wholeText);
+        return wholeText;
+    }
+
     /**
      * Gets the (normalized) text owned by this element only; does not get the combined text of all children.
      * <p>
@@ -1319,7 +1720,7 @@ public class Element extends Node {
 
     private void ownText(StringBuilder accum) {
         for (int i = 0; i < childNodeSize(); i++) {
-            Node child = childNodes.get(i);
+            Node child = nodes().get(i);
             if (child instanceof TextNode) {
                 TextNode textNode = (TextNode) child;
                 appendNormalisedText(accum, textNode);
@@ -1384,7 +1785,7 @@ public class Element extends Node {
      @return true if element has non-blank text content.
      */
     public boolean hasText() {
-        for (Node child: childNodes) {
+        for (Node child: nodes()) {
             if (child instanceof TextNode) {
                 TextNode textNode = (TextNode) child;
                 if (!textNode.isBlank())
@@ -1410,7 +1811,7 @@ public class Element extends Node {
     public String data() {
         StringBuilder sb = StringUtil.borrowBuilder();
 
-        for (Node childNode : childNodes) {
+        for (Node childNode : nodes()) {
             if (childNode instanceof DataNode) {
                 DataNode data = (DataNode) childNode;
                 sb.append(data.getWholeData());
@@ -1447,11 +1848,9 @@ public class Element extends Node {
      * @return set of classnames, empty if no class attribute
      */
     public Set<String> classNames() {
-    	String[] names = ClassSplit.split(className());
-    	Set<String> classNames = new LinkedHashSet<>(Arrays.asList(names));
-    	classNames.remove(""); // if classNames() was empty, would include an empty class
-
-        return classNames;
+        if (attributes == null)
+            return new LinkedHashSet<>();
+        return new LinkedHashSet<>(Arrays.asList(classTokens(attributes.getIgnoreCase("class")).tokens));
     }
 
     /**
@@ -1492,33 +1891,80 @@ public class Element extends Node {
             return className.equalsIgnoreCase(classAttr);
         }
 
-        // otherwise, scan for whitespace and compare regions (with no string or arraylist allocations)
-        boolean inClass = false;
-        int start = 0;
-        for (int i = 0; i < len; i++) {
-            if (Character.isWhitespace(classAttr.charAt(i))) {
-                if (inClass) {
-                    // white space ends a class name, compare it with the requested one, ignore case
-                    if (i - start == wantLen && classAttr.regionMatches(true, start, className, 0, wantLen)) {
-                        return true;
+        // otherwise, test the tokens of the class attribute, which are parsed once and kept while it is unchanged
+        return classTokens(classAttr).contains(className);
+    }
+
+    private ClassTokens classTokens(String classAttr) {
+        ClassTokens tokens = classTokens;
+        if (tokens == null || tokens.source != classAttr) { // identity, as any change to the attribute sets a new value
+            tokens = new ClassTokens(classAttr);
+            classTokens = tokens;
+        }
+        return tokens;
+    }
+
+    /**
+     The whitespace separated class names of a class attribute, with a bitmask of their case-insensitive hashes so that
+     most misses are found without comparing strings. Immutable, so safe to publish to other reading threads.
+     */
+    private static final class ClassTokens {
+        private static final String[] Empty = new String[0];
+
+        final String source;
+        final String[] tokens;
+        final long bloom;
+
+        ClassTokens(String source) {
+            this.source = source;
+            ArrayList<String> found = null;
+            long mask = 0;
+            final int len = source.length();
+            int start = -1;
+            for (int i = 0; i <= len; i++) {
+                if (i == len || Character.isWhitespace(source.charAt(i))) {
+                    if (start != -1) {
+                        String token = source.substring(start, i);
+                        if (found == null)
+                            found = new ArrayList<>(4);
+                        if (!containsToken(found, token))
+                            found.add(token);
+                        mask |= bit(token);
+                        start = -1;
                     }
-                    inClass = false;
-                }
-            } else {
-                if (!inClass) {
-                    // we're in a class name : keep the start of the substring
-                    inClass = true;
+                } else if (start == -1) {
                     start = i;
                 }
             }
+            tokens = found == null ? Empty : found.toArray(new String[0]);
+            bloom = mask;
         }
 
-        // check the last entry
-        if (inClass && len - start == wantLen) {
-            return classAttr.regionMatches(true, start, className, 0, wantLen);
+        boolean contains(String className) {
+            if ((bloom & bit(className)) == 0)
+                return false;
+            for (String token : tokens) {
+                if (token.equalsIgnoreCase(className))
+                    return true;
+            }
+            return false;
         }
 
-        return false;
+        private static boolean containsToken(ArrayList<String> tokens, String token) {
+            for (int i = 0; i < tokens.size(); i++) {
+                if (tokens.get(i).equals(token)) // exact, as classNames() is case sensitive
+                    return true;
+            }
+            return false;
+        }
+
+        /** A bit for the case-insensitive hash of the name: equalsIgnoreCase strings fold to the same chars. */
+        private static long bit(String name) {
+            int hash = 0;
+            for (int i = 0; i < name.length(); i++)
+                hash = 31 * hash + Character.toLowerCase(Character.toUpperCase(name.charAt(i)));
+            return 1L << (hash & 63);
+        }
     }
 
     /**
@@ -1619,7 +2065,7 @@ public class Element extends Node {
     void outerHtmlTail(Appendable accum, int depth, Document.OutputSettings out) throws IOException {
         if (!(childNodes.isEmpty() && tag.isSelfClosing())) {
             if (out.prettyPrint() && (!childNodes.isEmpty() && (
-                    tag.formatAsBlock() || (out.outline() && (childNodes.size()>1 || (childNodes.size()==1 && !(childNodes.get(0) instanceof TextNode))))
+                    tag.formatAsBlock() || (out.outline() && (childNodes.size()>1 || (childNodes.size()==1 && !(nodes().get(0) instanceof TextNode))))
             )))
                 indent(accum, depth, out);
             accum.append("</").append(tagName()).append('>');
@@ -1644,7 +2090,7 @@ public class Element extends Node {
     public <T extends Appendable> T html(T appendable) {
         final int size = childNodes.size();
         for (int i = 0; i < size; i++)
-            childNodes.get(i).outerHtml(appendable);
+            nodes().get(i).outerHtml(appendable);
 
         return appendable;
     }
@@ -1676,8 +2122,13 @@ public class Element extends Node {
     protected Element doClone(@Nullable Node parent) {
         Element clone = (Element) super.doClone(parent);
         clone.attributes = attributes != null ? attributes.clone() : null;
-        clone.childNodes = new NodeList(clone, childNodes.size());
-        clone.childNodes.addAll(childNodes); // the children then get iterated and cloned in Node.clone
+        clone.textCache = null;
+        if (isUnthawed()) {
+            clone.childNodes = ((FrozenDocument.Unthawed) childNodes).forClone(clone); // the frozen children are thawed independently
+        } else {
+            clone.childNodes = new NodeList(clone, childNodes.size());
+            clone.childNodes.addAll(childNodes); // the children then get iterated and cloned in Node.clone
+        }
 
         return clone;
     }
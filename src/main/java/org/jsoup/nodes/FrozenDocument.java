@@ -0,0 +1,894 @@
+package org.jsoup.nodes;
+
+import org.jsoup.helper.Validate;
+import org.jsoup.internal.StringUtil;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.Tag;
+import org.jsoup.select.Selector;
+
+import javax.annotation.Nullable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ A read-only, compact copy of a {@link Document}, for documents that are parsed once and then only read. Created with
+ {@link Document#freeze()}.
+ <p>Rather than a graph of node objects, the tree is held in parallel arrays, indexed by each node's position in the
+ document (so the document is node 0, and a node's descendants follow it): its kind, parent, first child, next
+ sibling, the end of its subtree, and its tag or text. Text, attribute names and values are held once each, in a shared
+ pool. This uses a fraction of the heap of the node graph.</p>
+ <p>Nodes may be read by index with the methods here, or through {@link FrozenNode} views, which have a read-only
+ subset of the {@link Node} and {@link Element} API, including {@link FrozenNode#select(String)}. A frozen document is
+ immutable, so is safe to read concurrently from many threads without locking. To modify it, {@link #thaw()} a mutable
+ copy.</p>
+ <p>Thawing is lazy, so a frozen document also serves as a template that is copied and filled in for each use: a thawed
+ copy creates its nodes as they are first reached, and its unreached subtrees remain shared with the frozen document.
+ Find the nodes to change with {@link #select(String)}, and {@link #locate(Document, int)} them in the copy, and only
+ the nodes on the paths to them are created.</p>
+ @since 1.15.1
+ */
+public final class FrozenDocument {
+    static final byte KindDocument = 0, KindElement = 1, KindForm = 2, KindText = 3, KindCData = 4, KindData = 5,
+        KindComment = 6, KindDocType = 7, KindDeclaration = 8, KindInstruction = 9;
+    private static final String BaseUriKey = Attributes.internalKey("baseUri");
+
+    private final int size;
+    private final byte[] kind;
+    private final int[] parent, firstChild, nextSibling, end; // -1 for none; end is exclusive
+    private final int[] data; // an element's index in tags; a leaf's core value index in strings
+    private final int[] attrStart; // attributes of node i are at [attrStart[i], attrStart[i+1])
+    private final int[] attrKey, attrVal; // indexes in strings; -1 for a null value
+    private final @Nullable Attributes[] leafAttributes; // the rare leaf nodes with attributes; null if none
+    private final String[] strings;
+    private final Tag[] tags;
+
+    private final String location;
+    private final Document.OutputSettings outputSettings;
+    private final Parser parser;
+    private final Document.QuirksMode quirksMode;
+
+    FrozenDocument(Document doc) {
+        Builder builder = new Builder();
+        builder.add(doc, -1);
+
+        size = builder.count;
+        kind = Arrays.copyOf(builder.kind, size);
+        parent = Arrays.copyOf(builder.parent, size);
+        firstChild = Arrays.copyOf(builder.firstChild, size);
+        nextSibling = Arrays.copyOf(builder.nextSibling, size);
+        end = Arrays.copyOf(builder.end, size);
+        data = Arrays.copyOf(builder.data, size);
+        attrStart = Arrays.copyOf(builder.attrStart, size + 1);
+        attrStart[size] = builder.attrCount;
+        attrKey = Arrays.copyOf(builder.attrKey, builder.attrCount);
+        attrVal = Arrays.copyOf(builder.attrVal, builder.attrCount);
+        leafAttributes = builder.leafAttributes;
+        strings = builder.strings.toArray(new String[0]);
+        tags = builder.tags.toArray(new Tag[0]);
+
+        location = doc.location();
+        outputSettings = doc.outputSettings().clone();
+        parser = doc.parser();
+        quirksMode = doc.quirksMode();
+    }
+
+    /** Get the kind of a leaf node. */
+    static byte leafKind(LeafNode leaf) {
+        if (leaf instanceof CDataNode) return KindCData; // before TextNode, which it extends
+        if (leaf instanceof TextNode) return KindText;
+        if (leaf instanceof DataNode) return KindData;
+        if (leaf instanceof Comment) return KindComment;
+        if (leaf instanceof DocumentType) return KindDocType;
+        if (leaf instanceof XmlDeclaration)
+            return ((XmlDeclaration) leaf).isProcessingInstruction() ? KindInstruction : KindDeclaration;
+        throw new IllegalArgumentException("Unsupported node type: " + leaf.getClass().getName());
+    }
+
+    /** Walks the document, appending each node to the arrays. */
+    private static final class Builder {
+        int count, attrCount;
+        byte[] kind = new byte[64];
+        int[] parent = new int[64], firstChild = new int[64], nextSibling = new int[64], end = new int[64],
+            data = new int[64], attrStart = new int[65];
+        int[] attrKey = new int[64], attrVal = new int[64];
+        @Nullable Attributes[] leafAttributes;
+        final List<String> strings = new ArrayList<>();
+        final Map<String, Integer> stringIndex = new HashMap<>();
+        final List<Tag> tags = new ArrayList<>();
+        final Map<Tag, Integer> tagIndex = new HashMap<>();
+
+        void add(Node root, int rootParent) {
+            // iterative, as documents may be deep
+            Node node = root;
+            int id = append(node, rootParent, -1);
+            while (true) {
+                if (node.childNodeSize() > 0) {
+                    node = node.childNode(0);
+                    id = append(node, id, -1);
+                    continue;
+                }
+                while (true) {
+                    end[id] = count;
+                    if (node == root)
+                        return;
+                    Node next = node.nextSibling();
+                    if (next != null) {
+                        int sibling = append(next, parent[id], id);
+                        node = next;
+                        id = sibling;
+                        break;
+                    }
+                    node = node.parentNode();
+                    id = parent[id];
+                }
+            }
+        }
+
+        private int append(Node node, int parentId, int previousSibling) {
+            int id = count++;
+            ensureCapacity(count);
+            parent[id] = parentId;
+            firstChild[id] = -1;
+            nextSibling[id] = -1;
+            if (previousSibling != -1)
+                nextSibling[previousSibling] = id;
+            else if (parentId != -1)
+                firstChild[parentId] = id;
+            attrStart[id] = attrCount;
+
+            if (node instanceof Element) {
+                Element el = (Element) node;
+                kind[id] = node instanceof Document ? KindDocument : node instanceof FormElement ? KindForm : KindElement;
+                data[id] = tag(el.tag());
+                if (el.hasAttributes())
+                    addAttributes(el.attributes());
+            } else if (node instanceof LeafNode) {
+                LeafNode leaf = (LeafNode) node;
+                kind[id] = leafKind(leaf);
+                data[id] = string(leaf.coreValue());
+                if (leaf.hasAttributes()) {
+                    if (leafAttributes == null)
+                        leafAttributes = new Attributes[kind.length];
+                    else if (leafAttributes.length < kind.length)
+                        leafAttributes = Arrays.copyOf(leafAttributes, kind.length);
+                    leafAttributes[id] = leaf.attributes().clone();
+                }
+            } else {
+                throw new IllegalArgumentException("Unsupported node type for freeze: " + node.getClass().getName());
+            }
+            return id;
+        }
+
+        private void addAttributes(Attributes attributes) {
+            String[] vals = attributes.decodedValues();
+            int n = attributes.size();
+            if (attrCount + n > attrKey.length) {
+                int cap = Math.max(attrKey.length * 2, attrCount + n);
+                attrKey = Arrays.copyOf(attrKey, cap);
+                attrVal = Arrays.copyOf(attrVal, cap);
+            }
+            for (int i = 0; i < n; i++) { // including internal keys, such as the base URI
+                attrKey[attrCount] = string(attributes.keys[i]);
+                String val = vals[i];
+                attrVal[attrCount] = val == null ? -1 : string(val);
+                attrCount++;
+            }
+        }
+
+        private int string(String s) {
+            Integer index = stringIndex.get(s);
+            if (index == null) {
+                index = strings.size();
+                strings.add(s);
+                stringIndex.put(s, index);
+            }
+            return index;
+        }
+
+        private int tag(Tag tag) {
+            Integer index = tagIndex.get(tag);
+            if (index == null) {
+                index = tags.size();
+                tags.add(tag);
+                tagIndex.put(tag, index);
+            }
+            return index;
+        }
+
+        private void ensureCapacity(int min) {
+            if (min <= kind.length) return;
+            int cap = kind.length * 2;
+            kind = Arrays.copyOf(kind, cap);
+            parent = Arrays.copyOf(parent, cap);
+            firstChild = Arrays.copyOf(firstChild, cap);
+            nextSibling = Arrays.copyOf(nextSibling, cap);
+            end = Arrays.copyOf(end, cap);
+            data = Arrays.copyOf(data, cap);
+            attrStart = Arrays.copyOf(attrStart, cap + 1);
+        }
+    }
+
+    /**
+     Get the number of nodes in the document, including the document node itself.
+     @return the node count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     Get the URL the original document was parsed from.
+     @return location
+     @see Document#location()
+     */
+    public String location() {
+        return location;
+    }
+
+    /**
+     Get a view of the document node (node 0).
+     @return the document view
+     */
+    public FrozenNode root() {
+        return new FrozenNode(this, 0);
+    }
+
+    /**
+     Get a view of a node.
+     @param index the node's index
+     @return the node view
+     */
+    public FrozenNode node(int index) {
+        checkIndex(index);
+        return new FrozenNode(this, index);
+    }
+
+    /**
+     Find the elements that match the CSS query, from the document.
+     @param cssQuery a {@link Selector} CSS-like query
+     @return the matching elements, in document order
+     @see FrozenNode#select(String)
+     */
+    public List<FrozenNode> select(String cssQuery) {
+        return root().select(cssQuery);
+    }
+
+    /**
+     Create a mutable copy of this document. The copy's nodes are created lazily, each element's children when they are
+     first read, so the cost of a thaw is in proportion to the part of the document that is used.
+     @return a new Document, with the same content as the document that was frozen
+     */
+    public Document thaw() {
+        return (Document) thaw(0);
+    }
+
+    /**
+     Create a mutable copy of the node and its descendants. The copy has no parent. As with {@link #thaw()}, the
+     descendants are created as they are first read.
+     @param index the node's index
+     @return the new node
+     */
+    public Node thaw(int index) {
+        checkIndex(index);
+        Node root = create(index);
+        if (kind[index] == KindDocument) {
+            Document doc = (Document) root;
+            doc.outputSettings(outputSettings.clone());
+            doc.parser(parser.newInstance()); // a parser holds parse state, so each copy has its own
+            doc.quirksMode(quirksMode);
+        }
+        return root;
+    }
+
+    /**
+     Find the node in a document thawed from this one that is at the given index in this one, creating the nodes on the
+     path to it as needed. The path is followed by the position of each node in its parent, so this should be used
+     before the thawed document's structure on that path is changed.
+     @param thawed a document thawed from this one
+     @param index the node's index in this document
+     @return the corresponding node in the thawed document
+     */
+    public Node locate(Document thawed, int index) {
+        Validate.notNull(thawed);
+        checkIndex(index);
+        int depth = 0;
+        for (int i = index; parent[i] != -1; i = parent[i])
+            depth++;
+        int[] positions = new int[depth];
+        for (int i = index; parent[i] != -1; i = parent[i]) {
+            int position = 0;
+            for (int sibling = firstChild[parent[i]]; sibling != i; sibling = nextSibling[sibling])
+                position++;
+            positions[--depth] = position;
+        }
+
+        Node node = thawed;
+        for (int position : positions) {
+            Validate.isTrue(position < node.childNodeSize(), "Node not found in the thawed document");
+            node = node.childNode(position);
+        }
+        return node;
+    }
+
+    /**
+     The not yet thawed children of a lazily thawed element, held in place of its child node list. Knows only their
+     count; the element creates them with {@link #thaw()} when they are first read (see {@link Element#nodes()}), and a
+     read through this list thaws them through the element, so it is still a (read-only) list of the element's
+     children. As the frozen document is immutable, clones of the element each get a placeholder of the same children.
+     */
+    static final class Unthawed extends AbstractList<Node> {
+        private final FrozenDocument doc;
+        private final int index;
+        private final int size;
+        private final Element owner;
+
+        Unthawed(FrozenDocument doc, int index, int size, Element owner) {
+            this.doc = doc;
+            this.index = index;
+            this.size = size;
+            this.owner = owner;
+        }
+
+        /** Get a placeholder of the same children, for a clone of the element. */
+        Unthawed forClone(Element clone) {
+            return new Unthawed(doc, index, size, clone);
+        }
+
+        /** Create the children, without a parent yet. */
+        Node[] thaw() {
+            Node[] children = new Node[size];
+            int i = 0;
+            for (int child = doc.firstChild[index]; child != -1; child = doc.nextSibling[child])
+                children[i++] = doc.create(child);
+            return children;
+        }
+
+        @Override
+        public Node get(int index) {
+            return owner.nodes().get(index); // thaws the children, replacing this placeholder
+        }
+
+        @Override
+        public int size() {
+            return owner.childNodes == this ? size : owner.childNodes.size(); // a stale reference follows the thawed list
+        }
+    }
+
+    private Node create(int i) {
+        byte k = kind[i];
+        if (k == KindDocument || k == KindElement || k == KindForm) {
+            Attributes attributes = copyAttributes(i);
+            Element el;
+            if (k == KindDocument) {
+                el = new Document(location);
+                if (attributes != null)
+                    el.attributes().addAll(attributes); // including the frozen base URI
+            } else if (k == KindForm) {
+                el = new FormElement(tags[data[i]], null, attributes);
+            } else {
+                el = new Element(tags[data[i]], null, attributes);
+            }
+            int children = 0;
+            for (int child = firstChild[i]; child != -1; child = nextSibling[child])
+                children++;
+            if (children > 0)
+                el.childNodes = new Unthawed(this, i, children, el);
+            return el;
+        }
+
+        String value = strings[data[i]];
+        LeafNode leaf;
+        switch (k) {
+            case KindText: leaf = new TextNode(value); break;
+            case KindCData: leaf = new CDataNode(value); break;
+            case KindData: leaf = new DataNode(value); break;
+            case KindComment: leaf = new Comment(value); break;
+            case KindDocType: leaf = new DocumentType(value, "", ""); break;
+            case KindDeclaration: leaf = new XmlDeclaration(value, false); break;
+            default: leaf = new XmlDeclaration(value, true); break;
+        }
+        if (leafAttributes != null && i < leafAttributes.length && leafAttributes[i] != null)
+            leaf.value = leafAttributes[i].clone();
+        return leaf;
+    }
+
+    private @Nullable Attributes copyAttributes(int i) {
+        int from = attrStart[i], to = attrStart[i + 1];
+        if (from == to)
+            return null;
+        Attributes attributes = new Attributes();
+        for (int a = from; a < to; a++)
+            attributes.add(strings[attrKey[a]], attrVal[a] == -1 ? null : strings[attrVal[a]]);
+        return attributes;
+    }
+
+    // index based accessors
+
+    /**
+     Get the index of the node's parent.
+     @param index node index
+     @return the parent's index, or -1 for the document node
+     */
+    public int parent(int index) {
+        checkIndex(index);
+        return parent[index];
+    }
+
+    /**
+     Get the index of the node's first child.
+     @param index node index
+     @return the first child's index, or -1 if the node has no children
+     */
+    public int firstChild(int index) {
+        checkIndex(index);
+        return firstChild[index];
+    }
+
+    /**
+     Get the index of the node's next sibling.
+     @param index node index
+     @return the next sibling's index, or -1 if this is the last sibling
+     */
+    public int nextSibling(int index) {
+        checkIndex(index);
+        return nextSibling[index];
+    }
+
+    /**
+     Get the end of the node's subtree. The node's descendants are the nodes from {@code index + 1} up to, but not
+     including, the end.
+     @param index node index
+     @return the (exclusive) end index of the subtree
+     */
+    public int subtreeEnd(int index) {
+        checkIndex(index);
+        return end[index];
+    }
+
+    /**
+     Test if the node is an element (or the document).
+     @param index node index
+     @return true if an element
+     */
+    public boolean isElement(int index) {
+        checkIndex(index);
+        return isElementKind(index);
+    }
+
+    private boolean isElementKind(int index) {
+        byte k = kind[index];
+        return k == KindElement || k == KindDocument || k == KindForm;
+    }
+
+    private void checkIndex(int index) {
+        Validate.isTrue(index >= 0 && index < size, "Node index out of bounds");
+    }
+
+    /**
+     Get the element's tag.
+     @param index node index
+     @return the tag, or null if the node is not an element
+     */
+    public @Nullable Tag tag(int index) {
+        return isElement(index) ? tags[data[index]] : null;
+    }
+
+    /**
+     Get the node name: the tag name of an element, or the type name (e.g. {@code #text}) of another node.
+     @param index node index
+     @return the node name
+     */
+    public String nodeName(int index) {
+        checkIndex(index);
+        switch (kind[index]) {
+            case KindDocument: return "#document";
+            case KindElement: case KindForm: return tags[data[index]].getName();
+            case KindText: return "#text";
+            case KindCData: return "#cdata";
+            case KindData: return "#data";
+            case KindComment: return "#comment";
+            case KindDocType: return "#doctype";
+            default: return "#declaration";
+        }
+    }
+
+    /**
+     Get the normalized name of an element's tag, as used in selectors.
+     @param index node index
+     @return the normal name, or an empty string if the node is not an element
+     @see Element#normalName()
+     */
+    public String normalName(int index) {
+        return isElement(index) ? tags[data[index]].normalName() : "";
+    }
+
+    /**
+     Get an attribute's value by its key, case-insensitively. To get an absolute URL, prefix the key with {@code abs:}.
+     @param index node index
+     @param key the attribute key
+     @return the attribute value, or an empty string if not set
+     @see Node#attr(String)
+     */
+    public String attr(int index, String key) {
+        Validate.notNull(key);
+        checkIndex(index);
+        int a = attrIndex(index, key);
+        if (a != -1)
+            return attrVal[a] == -1 ? "" : strings[attrVal[a]];
+        if (key.startsWith("abs:"))
+            return absUrl(index, key.substring("abs:".length()));
+        return "";
+    }
+
+    /**
+     Test if the node has an attribute, case-insensitively. With an {@code abs:} prefix, tests that the absolute URL
+     is not empty.
+     @param index node index
+     @param key the attribute key
+     @return true if the attribute is set
+     @see Node#hasAttr(String)
+     */
+    public boolean hasAttr(int index, String key) {
+        Validate.notNull(key);
+        checkIndex(index);
+        if (key.startsWith("abs:")) {
+            String plain = key.substring("abs:".length());
+            if (attrIndex(index, plain) != -1 && !absUrl(index, plain).isEmpty())
+                return true;
+        }
+        return attrIndex(index, key) != -1;
+    }
+
+    /**
+     Test if the element has the class, case-insensitively.
+     @param index node index
+     @param className the class name
+     @return true if the element's class attribute has the class name
+     @see Element#hasClass(String)
+     */
+    public boolean hasClass(int index, String className) {
+        String classAttr = attr(index, "class");
+        final int len = classAttr.length();
+        final int wantLen = className.length();
+        if (len == 0 || len < wantLen)
+            return false;
+        if (len == wantLen)
+            return className.equalsIgnoreCase(classAttr);
+
+        int start = -1;
+        for (int i = 0; i <= len; i++) {
+            if (i == len || Character.isWhitespace(classAttr.charAt(i))) {
+                if (start != -1 && i - start == wantLen && classAttr.regionMatches(true, start, className, 0, wantLen))
+                    return true;
+                start = -1;
+            } else if (start == -1) {
+                start = i;
+            }
+        }
+        return false;
+    }
+
+    /**
+     Get the core value of a leaf node: the text of a text or CDATA node, the data of a data node or comment, or the
+     name of a doctype or declaration.
+     @param index node index
+     @return the value, or an empty string if the node is an element
+     */
+    public String value(int index) {
+        return isElement(index) ? "" : strings[data[index]];
+    }
+
+    /**
+     Get the normalized, combined text of the node and its descendants, as {@link Element#text()}. For a text node,
+     the text itself.
+     @param index node index
+     @return the text
+     */
+    public String text(int index) {
+        checkIndex(index);
+        byte k = kind[index];
+        if (k == KindText || k == KindCData)
+            return strings[data[index]];
+        if (!isElementKind(index))
+            return "";
+
+        final StringBuilder accum = StringUtil.borrowBuilder();
+        int node = index;
+        while (true) {
+            textHead(node, accum);
+            if (firstChild[node] != -1) {
+                node = firstChild[node];
+                continue;
+            }
+            while (true) {
+                textTail(node, accum);
+                if (node == index)
+                    return StringUtil.releaseBuilder(accum).trim();
+                if (nextSibling[node] != -1) {
+                    node = nextSibling[node];
+                    break;
+                }
+                node = parent[node];
+            }
+        }
+    }
+
+    // mirrors Element.text()
+    private void textHead(int node, StringBuilder accum) {
+        byte k = kind[node];
+        if (k == KindText || k == KindCData) {
+            String text = strings[data[node]];
+            if (k == KindCData || preserveWhitespace(parent[node]))
+                accum.append(text);
+            else
+                StringUtil.appendNormalisedWhitespace(accum, text, TextNode.lastCharIsWhitespace(accum));
+        } else if (isElementKind(node)) {
+            Tag tag = tags[data[node]];
+            if (accum.length() > 0 && (tag.isBlock() || tag.normalName().equals("br")) &&
+                !TextNode.lastCharIsWhitespace(accum))
+                accum.append(' ');
+        }
+    }
+
+    private void textTail(int node, StringBuilder accum) {
+        if (isElementKind(node) && tags[data[node]].isBlock()) {
+            int next = nextSibling[node];
+            if (next != -1 && (kind[next] == KindText || kind[next] == KindCData) && !TextNode.lastCharIsWhitespace(accum))
+                accum.append(' ');
+        }
+    }
+
+    private boolean preserveWhitespace(int node) {
+        // as Element.preserveWhitespace: looks only at this element and five levels up
+        int i = 0;
+        while (node != -1 && i < 6) {
+            if (isElementKind(node) && tags[data[node]].preserveWhitespace())
+                return true;
+            node = parent[node];
+            i++;
+        }
+        return false;
+    }
+
+    /**
+     Get the combined, unnormalized text of the node's text descendants, as {@link Element#wholeText()}.
+     @param index node index
+     @return the text
+     */
+    public String wholeText(int index) {
+        checkIndex(index);
+        StringBuilder accum = StringUtil.borrowBuilder();
+        for (int i = index; i < end[index]; i++) {
+            if (kind[i] == KindText || kind[i] == KindCData)
+                accum.append(strings[data[i]]);
+        }
+        return StringUtil.releaseBuilder(accum);
+    }
+
+    private int attrIndex(int index, String key) {
+        for (int a = attrStart[index]; a < attrStart[index + 1]; a++) {
+            if (key.equalsIgnoreCase(strings[attrKey[a]]))
+                return a;
+        }
+        return -1;
+    }
+
+    private String absUrl(int index, String key) {
+        int a = attrIndex(index, key);
+        if (a == -1)
+            return "";
+        return StringUtil.resolve(baseUri(index), attrVal[a] == -1 ? "" : strings[attrVal[a]]);
+    }
+
+    private String baseUri(int index) {
+        int node = isElementKind(index) ? index : parent[index];
+        while (node != -1) {
+            for (int a = attrStart[node]; a < attrStart[node + 1]; a++) {
+                if (BaseUriKey.equals(strings[attrKey[a]]))
+                    return attrVal[a] == -1 ? "" : strings[attrVal[a]];
+            }
+            node = parent[node];
+        }
+        return "";
+    }
+
+    /**
+     A read-only view of a node in a frozen document. Views are created as needed, and are equal if they are of the
+     same node.
+     */
+    public static final class FrozenNode {
+        private final FrozenDocument doc;
+        private final int index;
+
+        FrozenNode(FrozenDocument doc, int index) {
+            this.doc = doc;
+            this.index = index;
+        }
+
+        /**
+         Get the frozen document this node is in.
+         @return the document
+         */
+        public FrozenDocument document() {
+            return doc;
+        }
+
+        /**
+         Get the index of this node in the document.
+         @return the index
+         */
+        public int index() {
+            return index;
+        }
+
+        /** @see FrozenDocument#isElement(int) */
+        public boolean isElement() {
+            return doc.isElement(index);
+        }
+
+        /** @see Node#nodeName() */
+        public String nodeName() {
+            return doc.nodeName(index);
+        }
+
+        /** @see Element#normalName() */
+        public String normalName() {
+            return doc.normalName(index);
+        }
+
+        /** @see Element#tag() */
+        public @Nullable Tag tag() {
+            return doc.tag(index);
+        }
+
+        /** @see Node#parent() */
+        public @Nullable FrozenNode parent() {
+            return view(doc.parent[index]);
+        }
+
+        /** @see Node#childNode(int) */
+        public @Nullable FrozenNode firstChild() {
+            return view(doc.firstChild[index]);
+        }
+
+        /** @see Node#nextSibling() */
+        public @Nullable FrozenNode nextSibling() {
+            return view(doc.nextSibling[index]);
+        }
+
+        /** @see Node#childNodes() */
+        public List<FrozenNode> childNodes() {
+            List<FrozenNode> nodes = new ArrayList<>();
+            for (int child = doc.firstChild[index]; child != -1; child = doc.nextSibling[child])
+                nodes.add(new FrozenNode(doc, child));
+            return Collections.unmodifiableList(nodes);
+        }
+
+        /** @see Element#children() */
+        public List<FrozenNode> children() {
+            List<FrozenNode> nodes = new ArrayList<>();
+            for (int child = doc.firstChild[index]; child != -1; child = doc.nextSibling[child]) {
+                if (doc.isElement(child))
+                    nodes.add(new FrozenNode(doc, child));
+            }
+            return Collections.unmodifiableList(nodes);
+        }
+
+        /** @see Node#attr(String) */
+        public String attr(String key) {
+            return doc.attr(index, key);
+        }
+
+        /** @see Node#hasAttr(String) */
+        public boolean hasAttr(String key) {
+            return doc.hasAttr(index, key);
+        }
+
+        /**
+         Get a copy of the element's attributes. Modifying the copy does not change the frozen document.
+         @return a copy of the attributes
+         */
+        public Attributes attributes() {
+            Attributes attributes = doc.copyAttributes(index);
+            return attributes != null ? attributes : new Attributes();
+        }
+
+        /** @see Element#id() */
+        public String id() {
+            return doc.attr(index, "id");
+        }
+
+        /** @see Element#hasClass(String) */
+        public boolean hasClass(String className) {
+            return doc.hasClass(index, className);
+        }
+
+        /** @see FrozenDocument#value(int) */
+        public String value() {
+            return doc.value(index);
+        }
+
+        /** @see Element#text() */
+        public String text() {
+            return doc.text(index);
+        }
+
+        /** @see Element#wholeText() */
+        public String wholeText() {
+            return doc.wholeText(index);
+        }
+
+        /**
+         Find the elements that match the CSS query, with this node as the starting context. Matched elements may
+         include this node, or any of its descendants.
+         @param cssQuery a {@link Selector} CSS-like query
+         @return the matching elements, in document order
+         @see Element#select(String)
+         */
+        public List<FrozenNode> select(String cssQuery) {
+            return Selector.select(cssQuery, this);
+        }
+
+        /**
+         Create a mutable copy of this node and its descendants.
+         @return the new node
+         @see FrozenDocument#thaw(int)
+         */
+        public Node thaw() {
+            return doc.thaw(index);
+        }
+
+        /**
+         Find this node in a document thawed from its frozen document.
+         @param thawed a document thawed from this node's document
+         @return the corresponding node in the thawed document
+         @see FrozenDocument#locate(Document, int)
+         */
+        public Node locate(Document thawed) {
+            return doc.locate(thawed, index);
+        }
+
+        /**
+         Get the outer HTML of this node. The node is printed on its own, so when pretty printing, its indent may differ
+         from the node's in the whole document.
+         @return the HTML
+         @see Node#outerHtml()
+         */
+        public String outerHtml() {
+            Node node = thaw();
+            if (!(node instanceof Document)) {
+                Document shell = new Document(doc.location); // for the output settings
+                shell.outputSettings(doc.outputSettings.clone());
+                shell.appendChild(node);
+            }
+            return node.outerHtml();
+        }
+
+        private @Nullable FrozenNode view(int i) {
+            return i == -1 ? null : new FrozenNode(doc, i);
+        }
+
+        @Override
+        public boolean equals(@Nullable Object o) {
+            if (this == o) return true;
+            if (!(o instanceof FrozenNode)) return false;
+            FrozenNode that = (FrozenNode) o;
+            return doc == that.doc && index == that.index;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(doc) + index;
+        }
+
+        @Override
+        public String toString() {
+            return outerHtml();
+        }
+    }
+}
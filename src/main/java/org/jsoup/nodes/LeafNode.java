@@ -6,7 +6,7 @@ import java.util.Collections;
 import java.util.List;
 
 abstract class LeafNode extends Node {
-    Object value; // either a string value, or an attribute map (in the rare case multiple attributes are set)
+    Object value; // either a string value, or an attribute map (in the rare case multiple attributes are set); or an encoded string value, decoded when first read; or a value held in a TextArena
 
     protected final boolean hasAttributes() {
         return value instanceof Attributes;
@@ -20,14 +20,33 @@ abstract class LeafNode extends Node {
 
     private void ensureAttributes() {
         if (!hasAttributes()) {
-            Object coreValue = value;
+            String coreValue = stringValue();
             Attributes attributes = new Attributes();
             value = attributes;
             if (coreValue != null)
-                attributes.put(nodeName(), (String) coreValue);
+                attributes.put(nodeName(), coreValue);
         }
     }
 
+    /** Get the (non attributes) value, decoding it first if it is encoded, or reading it if it is stored off heap. */
+    private String stringValue() {
+        Object value = this.value; // read once, as a concurrent reader may decode it
+        if (value instanceof Encoded) {
+            String decoded = Entities.unescape(((Encoded) value).text);
+            this.value = decoded; // a string, so safe to publish; a racing reader just decodes it again
+            return decoded;
+        } else if (value instanceof TextArena.Stored) {
+            return ((TextArena.Stored) value).text(); // read each time, so not kept on the heap
+        }
+        return (String) value;
+    }
+
+    /** Decode the value now if it was left encoded, so that later reads don't modify this node. */
+    void resolveValue() {
+        if (value instanceof Encoded)
+            stringValue();
+    }
+
     String coreValue() {
         return attr(nodeName());
     }
@@ -40,7 +59,7 @@ abstract class LeafNode extends Node {
     public String attr(String key) {
         Validate.notNull(key);
         if (!hasAttributes()) {
-            return key.equals(nodeName()) ? (String) value : EmptyString;
+            return key.equals(nodeName()) ? stringValue() : EmptyString;
         }
         return super.attr(key);
     }
@@ -53,6 +72,8 @@ abstract class LeafNode extends Node {
             ensureAttributes();
             super.attr(key, value);
         }
+        if (parentNode instanceof Element)
+            ((Element) parentNode).invalidateText(); // the value may be the parent's text
         return this;
     }
 
@@ -106,7 +127,18 @@ abstract class LeafNode extends Node {
         // Object value could be plain string or attributes - need to clone
         if (hasAttributes())
             clone.value = ((Attributes) value).clone();
+        else if (value instanceof TextArena.Stored)
+            clone.value = ((TextArena.Stored) value).text(); // so the clone doesn't depend on this document's store
 
         return clone;
     }
+
+    /** A value that was left HTML encoded by the parser, to be decoded when first read. */
+    static final class Encoded {
+        final String text;
+
+        Encoded(String text) {
+            this.text = text;
+        }
+    }
 }
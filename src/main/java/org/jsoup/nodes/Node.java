@@ -11,10 +11,14 @@ import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  The base, abstract Node model. Elements, Documents, Comments etc are all Node instances.
@@ -534,12 +538,64 @@ public abstract class Node implements Cloneable {
         }
 
         Validate.noNullElements(children);
+        if (children.length > 1)
+            detach(Arrays.asList(children)); // remove from current parents in bulk, vs one at a time in reparent
         for (Node child : children) {
             reparentChild(child);
         }
         nodes.addAll(index, Arrays.asList(children));
         reindexChildren(index);
     }
+
+    /**
+     Remove the given children of this node, in one pass over the child list, and reindex the remaining children once.
+     Removing children one at a time shifts and reindexes the following siblings each time.
+     @param out the child nodes to remove (an identity set)
+     */
+    void removeChildNodes(Set<Node> out) {
+        if (out.isEmpty()) return;
+        final List<Node> nodes = ensureChildNodes();
+        final int size = nodes.size();
+        List<Node> kept = new ArrayList<>(Math.max(size - out.size(), 0));
+        int first = -1;
+        for (int i = 0; i < size; i++) {
+            Node node = nodes.get(i);
+            if (out.contains(node)) {
+                if (first < 0) first = i;
+                node.parentNode = null;
+            } else {
+                kept.add(node);
+            }
+        }
+        if (first < 0) return;
+        nodes.clear();
+        nodes.addAll(kept);
+        reindexChildren(first);
+    }
+
+    /**
+     Remove each of the nodes from its current parent (if any), removing the nodes of each parent in one pass.
+     */
+    static void detach(Collection<? extends Node> nodes) {
+        Map<Node, Set<Node>> byParent = new IdentityHashMap<>();
+        for (Node node : nodes) {
+            Node parent = node.parentNode;
+            if (parent == null) continue;
+            Set<Node> children = byParent.get(parent);
+            if (children == null) {
+                children = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+                byParent.put(parent, children);
+            }
+            children.add(node);
+        }
+        for (Map.Entry<Node, Set<Node>> entry : byParent.entrySet()) {
+            Set<Node> children = entry.getValue();
+            if (children.size() == 1)
+                entry.getKey().removeChild(children.iterator().next());
+            else
+                entry.getKey().removeChildNodes(children);
+        }
+    }
     
     protected void reparentChild(Node child) {
         child.setParentNode(this);
@@ -743,6 +799,8 @@ public abstract class Node implements Cloneable {
 
         while (!nodesToProcess.isEmpty()) {
             Node currParent = nodesToProcess.remove();
+            if (currParent instanceof Element && ((Element) currParent).isUnthawed())
+                continue; // shares the frozen children, thawed independently when first read
 
             final int size = currParent.childNodeSize();
             for (int i = 0; i < size; i++) {
@@ -0,0 +1,522 @@
+package org.jsoup.nodes;
+
+import org.jsoup.parser.ParseSettings;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.Tag;
+import org.jsoup.parser.XmlTreeBuilder;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+
+import javax.annotation.Nullable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.jsoup.nodes.FrozenDocument.*;
+
+/**
+ A compact binary form of a {@link Document}, to store a parsed document and load it again without re-parsing. Written
+ by {@link Document#writeSnapshot}, and read by {@link Document#readSnapshot}.
+ <p>The format is a header (a magic number, the format version, and the length of the body), then the body: the
+ document's location and settings, and its nodes in document order. Each node is its kind, its content, and for an
+ element, its number of children. Tags, attribute names and attribute values are pooled: each is written in full the
+ first time it is seen, and after that as its index in the pool. Integers are written as varints, and strings as their
+ length and then each char as one to three bytes (as in modified UTF-8, so that any string, including unpaired
+ surrogates, is kept exactly).</p>
+ <p>The form elements that the parser associated with each form are written after the nodes.</p>
+ */
+final class Snapshot {
+    private static final int Magic = 0x4a53504e; // "JSPN"
+    private static final int Version = 1;
+    private static final int HasAttributes = 0x80; // on a leaf's kind, if it holds attributes vs a single value
+    private static final int NullRef = 0, NewRef = 1; // pooled string references; then pool index + 2
+    private static final int NewTag = 0; // tag references; then pool index + 1
+    private static final int BodyChunk = 64 * 1024;
+
+    private Snapshot() {}
+
+    static void write(Document doc, OutputStream out) throws IOException {
+        final Output body = new Output();
+        writeSettings(doc, body);
+
+        final Map<String, Integer> strings = new HashMap<>();
+        final Map<Tag, Integer> tags = new HashMap<>();
+        final List<FormElement> forms = new ArrayList<>();
+        final Map<Element, Integer> indexes = new IdentityHashMap<>(); // of forms and their controls, to link them
+        final int[] count = {0};
+
+        NodeTraversor.traverse(new NodeVisitor() {
+            @Override
+            public void head(Node node, int depth) {
+                int index = count[0]++;
+                if (node instanceof Element) {
+                    Element el = (Element) node;
+                    if (el instanceof FormElement) {
+                        forms.add((FormElement) el);
+                        indexes.put(el, index);
+                    } else if (el.tag().isFormListed()) {
+                        indexes.put(el, index);
+                    }
+                    body.writeByte(node instanceof Document ? KindDocument : node instanceof FormElement ? KindForm : KindElement);
+                    if (!(node instanceof Document))
+                        writeTag(el.tag(), body, tags, strings);
+                    writeAttributes(el.hasAttributes() ? el.attributes() : null, body, strings);
+                    body.writeVarint(el.childNodeSize());
+                } else if (node instanceof LeafNode) {
+                    LeafNode leaf = (LeafNode) node;
+                    int kind = leafKind(leaf);
+                    if (leaf.hasAttributes()) {
+                        body.writeByte(kind | HasAttributes);
+                        writeAttributes((Attributes) leaf.value, body, strings);
+                    } else {
+                        body.writeByte(kind);
+                        body.writeString(leaf.coreValue());
+                    }
+                } else {
+                    throw new IllegalArgumentException("Unsupported node type for snapshot: " + node.getClass().getName());
+                }
+            }
+
+            @Override
+            public void tail(Node node, int depth) {
+                // void
+            }
+        }, doc);
+
+        body.writeVarint(forms.size());
+        for (FormElement form : forms) {
+            //noinspection ConstantConditions
+            body.writeVarint(indexes.get(form));
+            List<Integer> linked = new ArrayList<>();
+            for (Element control : form.elements()) {
+                Integer index = indexes.get(control); // controls removed from the document are dropped
+                if (index != null)
+                    linked.add(index);
+            }
+            body.writeVarint(linked.size());
+            for (int index : linked)
+                body.writeVarint(index);
+        }
+
+        Output header = new Output();
+        header.writeInt(Magic);
+        header.writeVarint(Version);
+        header.writeVarint(body.size);
+        out.write(header.buf, 0, header.size);
+        out.write(body.buf, 0, body.size);
+        out.flush();
+    }
+
+    private static void writeSettings(Document doc, Output out) {
+        out.writeString(doc.location());
+        Document.OutputSettings settings = doc.outputSettings();
+        out.writeString(settings.charset().name());
+        out.writeVarint(settings.escapeMode().ordinal());
+        out.writeVarint(settings.syntax().ordinal());
+        out.writeVarint((settings.prettyPrint() ? 1 : 0) | (settings.outline() ? 2 : 0) | (doc.updateMetaCharsetElement() ? 4 : 0));
+        out.writeVarint(settings.indentAmount());
+        out.writeVarint(settings.maxPaddingWidth() + 1); // may be -1 for unlimited
+
+        Parser parser = doc.parser();
+        ParseSettings parseSettings = parser.settings();
+        out.writeVarint((parser.getTreeBuilder() instanceof XmlTreeBuilder ? 1 : 0) |
+            (parseSettings.preserveTagCase() ? 2 : 0) | (parseSettings.preserveAttributeCase() ? 4 : 0));
+        out.writeVarint(doc.quirksMode().ordinal());
+    }
+
+    private static void writeTag(Tag tag, Output out, Map<Tag, Integer> tags, Map<String, Integer> strings) {
+        Integer index = tags.get(tag);
+        if (index != null) {
+            out.writeVarint(index + 1);
+        } else {
+            tags.put(tag, tags.size());
+            out.writeVarint(NewTag);
+            writePooled(tag.getName(), out, strings);
+            out.writeByte(tag.isSelfClosing() && !tag.isKnownTag() ? 1 : 0);
+        }
+    }
+
+    private static void writeAttributes(@Nullable Attributes attributes, Output out, Map<String, Integer> strings) {
+        @Nullable String[] vals = attributes == null ? null : attributes.decodedValues();
+        int size = attributes == null ? 0 : attributes.size();
+        out.writeVarint(size);
+        for (int i = 0; i < size; i++) { // including internal keys, such as the base URI
+            //noinspection ConstantConditions
+            writePooled(attributes.keys[i], out, strings);
+            writePooled(vals[i], out, strings);
+        }
+    }
+
+    private static void writePooled(@Nullable String s, Output out, Map<String, Integer> strings) {
+        if (s == null) {
+            out.writeVarint(NullRef);
+            return;
+        }
+        Integer index = strings.get(s);
+        if (index != null) {
+            out.writeVarint(index + 2);
+        } else {
+            strings.put(s, strings.size());
+            out.writeVarint(NewRef);
+            out.writeString(s);
+        }
+    }
+
+    static Document read(InputStream in) throws IOException {
+        if (readInt(in) != Magic)
+            throw new IOException("Input is not a document snapshot");
+        int version = readVarint(in);
+        if (version != Version)
+            throw new IOException("Unsupported document snapshot version " + version);
+        int length = readVarint(in);
+        if (length < 0)
+            throw new IOException("Document snapshot is corrupt");
+        byte[] buf = readBody(in, length);
+
+        try {
+            return new Input(buf).readDocument();
+        } catch (IndexOutOfBoundsException | IllegalArgumentException | ClassCastException e) {
+            throw new IOException("Document snapshot is corrupt", e);
+        }
+    }
+
+    /** Reads the body, growing the buffer as it is read, so that a corrupt length can't allocate more than is read. */
+    private static byte[] readBody(InputStream in, int length) throws IOException {
+        byte[] buf = new byte[Math.min(length, BodyChunk)];
+        int read = 0;
+        while (read < length) {
+            if (read == buf.length)
+                buf = Arrays.copyOf(buf, (int) Math.min(length, buf.length * 2L));
+            int n = in.read(buf, read, buf.length - read);
+            if (n < 0)
+                throw new EOFException("Document snapshot is truncated");
+            read += n;
+        }
+        return buf;
+    }
+
+    private static int readInt(InputStream in) throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++)
+            value = (value << 8) | readByte(in);
+        return value;
+    }
+
+    private static int readVarint(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte(in);
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Document snapshot is corrupt");
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0)
+            throw new EOFException("Document snapshot is truncated");
+        return b;
+    }
+
+    /** A growable byte buffer, with the snapshot encodings. */
+    private static final class Output {
+        byte[] buf = new byte[4096];
+        int size;
+
+        void writeByte(int b) {
+            ensureCapacity(1);
+            buf[size++] = (byte) b;
+        }
+
+        void writeInt(int value) {
+            ensureCapacity(4);
+            for (int shift = 24; shift >= 0; shift -= 8)
+                buf[size++] = (byte) (value >>> shift);
+        }
+
+        void writeVarint(int value) {
+            ensureCapacity(5);
+            while ((value & ~0x7f) != 0) {
+                buf[size++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            buf[size++] = (byte) value;
+        }
+
+        void writeString(String s) {
+            int len = s.length();
+            writeVarint(len);
+            ensureCapacity(len * 3);
+            byte[] buf = this.buf;
+            int pos = size;
+            for (int i = 0; i < len; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    buf[pos++] = (byte) c;
+                } else if (c < 0x800) {
+                    buf[pos++] = (byte) (0xc0 | (c >> 6));
+                    buf[pos++] = (byte) (0x80 | (c & 0x3f));
+                } else {
+                    buf[pos++] = (byte) (0xe0 | (c >> 12));
+                    buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    buf[pos++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+            size = pos;
+        }
+
+        private void ensureCapacity(int more) {
+            if (size + more > buf.length)
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + more));
+        }
+    }
+
+    /** Reads the body of a snapshot, building the document. */
+    private static final class Input {
+        private final byte[] buf;
+        private int pos;
+        private final List<String> strings = new ArrayList<>();
+        private final List<Tag> tags = new ArrayList<>();
+        private char[] chars = new char[64];
+
+        Input(byte[] buf) {
+            this.buf = buf;
+        }
+
+        Document readDocument() throws IOException {
+            Document doc = new Document(readString());
+            Document.OutputSettings settings = doc.outputSettings();
+            settings.charset(readString());
+            settings.escapeMode(Entities.EscapeMode.values()[readVarint()]);
+            settings.syntax(Document.OutputSettings.Syntax.values()[readVarint()]);
+            int flags = readVarint();
+            settings.prettyPrint((flags & 1) != 0);
+            settings.outline((flags & 2) != 0);
+            doc.updateMetaCharsetElement((flags & 4) != 0);
+            settings.indentAmount(readVarint());
+            settings.maxPaddingWidth(readVarint() - 1);
+
+            int parserFlags = readVarint();
+            Parser parser = (parserFlags & 1) != 0 ? Parser.xmlParser() : Parser.htmlParser();
+            parser.settings(new ParseSettings((parserFlags & 2) != 0, (parserFlags & 4) != 0));
+            doc.parser(parser);
+            doc.quirksMode(Document.QuirksMode.values()[readVarint()]);
+
+            readNodes(doc);
+            readForms(doc);
+            if (pos != buf.length)
+                throw new IOException("Document snapshot is corrupt");
+            return doc;
+        }
+
+        /** Reads the nodes, iteratively, appending each to its parent on the stack. */
+        private void readNodes(Document doc) throws IOException {
+            if (readByte() != KindDocument)
+                throw new IOException("Document snapshot is corrupt");
+            Attributes docAttributes = readAttributes();
+            if (docAttributes != null)
+                doc.attributes().addAll(docAttributes); // including the base URI
+            int docChildren = readCount();
+            if (docChildren == 0)
+                return;
+
+            Element[] stack = new Element[32];
+            int[] remaining = new int[32];
+            int depth = 0;
+            stack[0] = doc;
+            remaining[0] = docChildren;
+            ensureChildCapacity(doc, docChildren);
+
+            while (depth >= 0) {
+                Element parent = stack[depth];
+                if (--remaining[depth] == 0)
+                    depth--; // this is the parent's last child
+                Node node;
+
+                int kind = readByte();
+                if (kind == KindElement || kind == KindForm) {
+                    Tag tag = readTag();
+                    Attributes attributes = readAttributes();
+                    Element el = kind == KindForm ? new FormElement(tag, null, attributes) : new Element(tag, null, attributes);
+                    int children = readCount();
+                    if (children > 0) {
+                        ensureChildCapacity(el, children);
+                        depth++;
+                        if (depth == stack.length) {
+                            stack = Arrays.copyOf(stack, depth * 2);
+                            remaining = Arrays.copyOf(remaining, depth * 2);
+                        }
+                        stack[depth] = el;
+                        remaining[depth] = children;
+                    }
+                    node = el;
+                } else {
+                    node = readLeaf(kind);
+                }
+
+                List<Node> siblings = parent.childNodes;
+                node.parentNode = parent;
+                node.siblingIndex = siblings.size();
+                siblings.add(node);
+            }
+        }
+
+        private static void ensureChildCapacity(Element el, int children) {
+            List<Node> childNodes = el.ensureChildNodes();
+            if (childNodes instanceof ArrayList)
+                ((ArrayList<Node>) childNodes).ensureCapacity(children);
+        }
+
+        private LeafNode readLeaf(int kind) throws IOException {
+            boolean hasAttributes = (kind & HasAttributes) != 0;
+            @Nullable Attributes attributes = hasAttributes ? readAttributes() : null;
+            String value = hasAttributes ? "" : readString();
+
+            LeafNode leaf;
+            switch (kind & ~HasAttributes) {
+                case KindText: leaf = new TextNode(value); break;
+                case KindCData: leaf = new CDataNode(value); break;
+                case KindData: leaf = new DataNode(value); break;
+                case KindComment: leaf = new Comment(value); break;
+                case KindDocType: leaf = new DocumentType(value, "", ""); break;
+                case KindDeclaration: leaf = new XmlDeclaration(value, false); break;
+                case KindInstruction: leaf = new XmlDeclaration(value, true); break;
+                default: throw new IOException("Document snapshot is corrupt");
+            }
+            if (hasAttributes)
+                leaf.value = attributes != null ? attributes : new Attributes();
+            return leaf;
+        }
+
+        private void readForms(Document doc) {
+            int forms = readCount();
+            if (forms == 0)
+                return;
+
+            // find the forms and controls by their index in the document
+            final Map<Integer, Element> byIndex = new HashMap<>();
+            final int[] count = {0};
+            NodeTraversor.traverse(new NodeVisitor() {
+                @Override
+                public void head(Node node, int depth) {
+                    int index = count[0]++;
+                    if (node instanceof FormElement || (node instanceof Element && ((Element) node).tag().isFormListed()))
+                        byIndex.put(index, (Element) node);
+                }
+
+                @Override
+                public void tail(Node node, int depth) {
+                    // void
+                }
+            }, doc);
+
+            for (int f = 0; f < forms; f++) {
+                FormElement form = (FormElement) byIndex.get(readVarint());
+                int controls = readCount();
+                for (int c = 0; c < controls; c++) {
+                    Element control = byIndex.get(readVarint());
+                    if (form == null || control == null)
+                        throw new IllegalArgumentException("Form control index out of bounds");
+                    form.addElement(control);
+                }
+            }
+        }
+
+        private Tag readTag() {
+            int ref = readVarint();
+            if (ref != NewTag)
+                return tags.get(ref - 1);
+            String name = readPooled();
+            if (name == null)
+                throw new IllegalArgumentException("Null tag name");
+            Tag tag = Tag.valueOf(name, ParseSettings.preserveCase, readByte() == 1);
+            tags.add(tag);
+            return tag;
+        }
+
+        private @Nullable Attributes readAttributes() {
+            int size = readCount();
+            if (size == 0)
+                return null;
+            Attributes attributes = new Attributes();
+            for (int i = 0; i < size; i++) {
+                String key = readPooled();
+                if (key == null)
+                    throw new IllegalArgumentException("Null attribute key");
+                attributes.add(key, readPooled());
+            }
+            return attributes;
+        }
+
+        private @Nullable String readPooled() {
+            int ref = readVarint();
+            if (ref == NullRef)
+                return null;
+            if (ref == NewRef) {
+                String s = readString();
+                strings.add(s);
+                return s;
+            }
+            return strings.get(ref - 2);
+        }
+
+        private int readByte() {
+            return buf[pos++] & 0xff;
+        }
+
+        private int readVarint() {
+            int b = buf[pos++];
+            if (b >= 0)
+                return b; // the common single byte case
+            int value = b & 0x7f;
+            for (int shift = 7; shift < 35; shift += 7) {
+                b = buf[pos++];
+                value |= (b & 0x7f) << shift;
+                if (b >= 0)
+                    return value;
+            }
+            throw new IllegalArgumentException("Varint is too long");
+        }
+
+        /**
+         Reads a count of items that are each at least one byte, so that a corrupt count (which may be negative, or
+         very large) is caught before it is used to size anything.
+         */
+        private int readCount() {
+            int count = readVarint();
+            if (count < 0 || count > buf.length - pos)
+                throw new IllegalArgumentException("Count out of bounds");
+            return count;
+        }
+
+        private String readString() {
+            int len = readCount(); // each char is at least one byte
+            if (len > chars.length)
+                chars = new char[Math.max(len, chars.length * 2)];
+            char[] chars = this.chars;
+            byte[] buf = this.buf;
+            int pos = this.pos;
+            for (int i = 0; i < len; i++) {
+                int b = buf[pos++];
+                if (b >= 0) {
+                    chars[i] = (char) b;
+                } else if ((b & 0xe0) == 0xc0) {
+                    chars[i] = (char) (((b & 0x1f) << 6) | (buf[pos++] & 0x3f));
+                } else {
+                    chars[i] = (char) (((b & 0x0f) << 12) | ((buf[pos++] & 0x3f) << 6) | (buf[pos++] & 0x3f));
+                }
+            }
+            this.pos = pos;
+            return new String(chars, 0, len);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package org.jsoup.nodes;
+
+import org.jsoup.helper.DataUtil;
+import org.jsoup.helper.Validate;
+import org.jsoup.parser.ParseSettings;
+
+import javax.annotation.Nullable;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ Holds the text of a document off the Java heap, so that the heap used by a very large document is in proportion to its
+ structure, rather than its content. Text, data and comment node values, and attribute values, are stored UTF-8 encoded
+ in direct byte buffers, and referenced from their nodes by position. A text node's value is decoded to a string each
+ time it is read, as is an element's attribute value; an element's attribute values are read onto the heap for good
+ only when its attributes are changed.
+ <p>The store is created for a document parsed with {@link org.jsoup.parser.Parser#setOffHeapText(boolean)}, and is
+ released by {@link Document#close()}. Clones of stored nodes read their values onto the heap as they are made, so
+ don't depend on the store; but a stored node that is moved into another document still reads from this store, so
+ clone it instead if the original document will be closed. The memory of direct buffers is returned when they are garbage collected, and is
+ limited by the JVM's {@code -XX:MaxDirectMemorySize} option, which may need to be raised for very large documents.</p>
+ @since 1.15.1
+ */
+public final class TextArena {
+    static final int SegmentSize = 1 << 20;
+    // shorter values are kept on the heap, where they take about as much space as a reference into the store would
+    static final int MinLength = 16;
+
+    private final ArrayList<ByteBuffer> segments = new ArrayList<>();
+    private @Nullable ByteBuffer current;
+    private long size = 0;
+    private boolean closed = false;
+
+    TextArena() {}
+
+    /**
+     Move a leaf node's value (e.g. a text node's text) into this store. Elements, leaf nodes with attributes, and short
+     values are left as they are.
+     @param node the node to store the value of
+     */
+    public void store(Node node) {
+        Validate.notNull(node);
+        if (!(node instanceof LeafNode) || node.hasAttributes())
+            return;
+        LeafNode leaf = (LeafNode) node;
+        String value = leaf.coreValue();
+        if (value.length() < MinLength)
+            return;
+        byte[][] bytes = {value.getBytes(DataUtil.UTF_8)};
+        leaf.value = new Stored(this, write(bytes));
+    }
+
+    /**
+     Get a copy of the attributes with their values held in this store. If the values are short, the attributes are
+     returned as they are.
+     @param attributes the attributes to store the values of
+     @return attributes with the same keys and values, to use in place of the originals
+     */
+    public Attributes store(Attributes attributes) {
+        Validate.notNull(attributes);
+        attributes.decode(); // any encoded values first
+        final int size = attributes.size();
+        int length = 0;
+        for (int i = 0; i < size; i++) {
+            String val = attributes.vals[i];
+            if (val != null)
+                length += val.length();
+        }
+        if (length < MinLength)
+            return attributes;
+
+        StoredAttributes stored = new StoredAttributes();
+        byte[][] bytes = new byte[size][];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            String val = attributes.vals[i];
+            stored.add(attributes.keys[i], val == null ? null : ""); // placeholders, so boolean attributes still show
+            if (val != null)
+                bytes[count++] = val.getBytes(DataUtil.UTF_8);
+        }
+        stored.trimToSize();
+        stored.position = write(count == size ? bytes : Arrays.copyOf(bytes, count));
+        stored.arena = this;
+        return stored;
+    }
+
+    /**
+     Get the number of bytes held in this store.
+     @return the stored size
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     Check if this store has been closed (with its document), after which its values can't be read.
+     @return true if closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /** Release the buffers. Their memory is returned when they are garbage collected. */
+    void close() {
+        closed = true;
+        segments.clear();
+        current = null;
+    }
+
+    /** Write the values as one record, each prefixed with its length, and return the record's position. */
+    private long write(byte[][] values) {
+        Validate.isFalse(closed, "The document's text store has been closed");
+        int length = 0;
+        for (byte[] value : values)
+            length += varintLength(value.length) + value.length;
+
+        ByteBuffer buf = current;
+        if (buf == null || buf.remaining() < length) {
+            buf = ByteBuffer.allocateDirect(Math.max(SegmentSize, length));
+            segments.add(buf);
+            current = buf;
+        }
+        long position = ((long) (segments.size() - 1) << 32) | buf.position();
+        for (byte[] value : values) {
+            int n = value.length;
+            while ((n & ~0x7f) != 0) {
+                buf.put((byte) ((n & 0x7f) | 0x80));
+                n >>>= 7;
+            }
+            buf.put((byte) n);
+            buf.put(value);
+        }
+        size += length;
+        return position;
+    }
+
+    /** Get a buffer positioned at a record. Each reader gets its own view, so reads don't interfere. */
+    private ByteBuffer reader(long position) {
+        if (closed)
+            throw new IllegalStateException("The document's text store has been closed");
+        ByteBuffer buf = segments.get((int) (position >>> 32)).duplicate();
+        ((Buffer) buf).position((int) position); // cast to avoid covariant return type change in jdk9
+        return buf;
+    }
+
+    private static String read(ByteBuffer buf) {
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buf.get();
+            length |= (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, DataUtil.UTF_8);
+    }
+
+    /** Skip over the next value. */
+    private static void skip(ByteBuffer buf) {
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buf.get();
+            length |= (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        ((Buffer) buf).position(buf.position() + length);
+    }
+
+    private static int varintLength(int n) {
+        int length = 1;
+        while ((n & ~0x7f) != 0) {
+            length++;
+            n >>>= 7;
+        }
+        return length;
+    }
+
+    /** A leaf node value held in a store. */
+    static final class Stored {
+        private final TextArena arena;
+        private final long position;
+
+        Stored(TextArena arena, long position) {
+            this.arena = arena;
+            this.position = position;
+        }
+
+        String text() {
+            return read(arena.reader(position));
+        }
+    }
+
+    /**
+     Attributes with their values held in a store. Each non-null value is an empty placeholder: a read reads the value
+     from the store, without keeping it, so reads (as by selectors) don't modify these attributes; and a change first
+     reads them all from the store, with decode(), after which they are held on the heap.
+     */
+    static final class StoredAttributes extends Attributes {
+        @Nullable TextArena arena;
+        long position;
+
+        @Override
+        void decode() {
+            TextArena arena = this.arena;
+            if (arena != null) {
+                ByteBuffer buf = arena.reader(position); // throws if closed, leaving the placeholders unread
+                for (int i = 0; i < vals.length; i++) {
+                    if (vals[i] != null)
+                        vals[i] = read(buf);
+                }
+                this.arena = null;
+            }
+            super.decode();
+        }
+
+        @Override
+        @Nullable String val(int i) {
+            TextArena arena = this.arena;
+            String val = vals[i];
+            if (arena == null || val == null)
+                return val;
+            ByteBuffer buf = arena.reader(position);
+            for (int j = 0; j < i; j++) {
+                if (vals[j] != null)
+                    skip(buf); // the earlier values in the record
+            }
+            return read(buf);
+        }
+
+        @Override
+        public void remove(String key) {
+            decode(); // as the stored values are read by position
+            super.remove(key);
+        }
+
+        @Override
+        public void removeIgnoreCase(String key) {
+            decode();
+            super.removeIgnoreCase(key);
+        }
+
+        @Override
+        public int deduplicate(ParseSettings settings) {
+            decode();
+            return super.deduplicate(settings);
+        }
+
+        @Override
+        public Attributes addEncoded(String key, String value) {
+            decode(); // as the stored values are read by position
+            return super.addEncoded(key, value);
+        }
+
+        @Override
+        String[] decodedValues() {
+            TextArena arena = this.arena;
+            if (arena == null)
+                return super.decodedValues();
+            String[] copy = vals.clone(); // read, but not kept, so the values stay off the heap
+            ByteBuffer buf = arena.reader(position);
+            for (int i = 0; i < copy.length; i++) {
+                if (copy[i] != null)
+                    copy[i] = read(buf);
+            }
+            return copy;
+        }
+
+        @Override
+        public Attributes clone() {
+            StoredAttributes clone = (StoredAttributes) super.clone();
+            if (arena != null) { // the clone reads the values, so doesn't depend on this document's store; this stays stored
+                clone.vals = decodedValues();
+                clone.arena = null;
+            }
+            return clone;
+        }
+    }
+}
@@ -112,6 +112,20 @@ public class TextNode extends LeafNode {
         return new TextNode(text);
     }
 
+    /**
+     * Create a new TextNode from HTML encoded (aka escaped) data, which is decoded when the text is first read, rather
+     * than now. That saves decoding text that is never read.
+     * @param encodedText Text containing encoded HTML (e.g. &amp;lt;)
+     * @return TextNode that will contain unencoded data (e.g. &lt;)
+     * @see org.jsoup.parser.Parser#setLazyDecoding(boolean)
+     * @since 1.15.1
+     */
+    public static TextNode createLazilyDecoded(String encodedText) {
+        TextNode node = new TextNode("");
+        node.value = new LeafNode.Encoded(encodedText);
+        return node;
+    }
+
     static String normaliseWhitespace(String text) {
         text = StringUtil.normaliseWhitespace(text);
         return text;
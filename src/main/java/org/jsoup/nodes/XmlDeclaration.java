@@ -28,6 +28,10 @@ public class XmlDeclaration extends LeafNode {
         return "#declaration";
     }
 
+    boolean isProcessingInstruction() {
+        return isProcessingInstruction;
+    }
+
     /**
      * Get the name of this declaration.
      * @return name of this declaration.
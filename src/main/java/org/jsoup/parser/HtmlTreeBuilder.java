@@ -93,6 +93,7 @@ public class HtmlTreeBuilder extends TreeBuilder {
         // context may be null
         state = HtmlTreeBuilderState.Initial;
         initialiseParse(new StringReader(inputFragment), baseUri, parser);
+        fragmentTextArena(context);
         contextElement = context;
         fragmentParsing = true;
         Element root = null;
@@ -238,14 +239,14 @@ public class HtmlTreeBuilder extends TreeBuilder {
         // handle empty unknown tags
         // when the spec expects an empty tag, will directly hit insertEmpty, so won't generate this fake end tag.
         if (startTag.isSelfClosing()) {
-            Element el = insertEmpty(startTag);
+            Element el = insertEmptyNode(startTag); // will be closed by the emitted end tag
             stack.add(el);
             tokeniser.transition(TokeniserState.Data); // handles <script />, otherwise needs breakout steps from script data
             tokeniser.emit(emptyEnd.reset().name(el.tagName()));  // ensure we get out of whatever state we are in. emitted for yielded processing
             return el;
         }
 
-        Element el = new Element(tagFor(startTag.name(), settings), null, settings.normalizeAttributes(startTag.attributes));
+        Element el = new Element(tagFor(startTag.name(), settings), null, attributesFor(startTag));
         insert(el);
         return el;
     }
@@ -262,8 +263,14 @@ public class HtmlTreeBuilder extends TreeBuilder {
     }
 
     Element insertEmpty(Token.StartTag startTag) {
+        Element el = insertEmptyNode(startTag);
+        onNodeClosed(el); // not placed on the stack, so complete now
+        return el;
+    }
+
+    private Element insertEmptyNode(Token.StartTag startTag) {
         Tag tag = tagFor(startTag.name(), settings);
-        Element el = new Element(tag, null, settings.normalizeAttributes(startTag.attributes));
+        Element el = new Element(tag, null, attributesFor(startTag));
         insertNode(el);
         if (startTag.isSelfClosing()) {
             if (tag.isKnownTag()) {
@@ -278,7 +285,7 @@ public class HtmlTreeBuilder extends TreeBuilder {
 
     FormElement insertForm(Token.StartTag startTag, boolean onStack, boolean checkTemplateStack) {
         Tag tag = tagFor(startTag.name(), settings);
-        FormElement el = new FormElement(tag, null, settings.normalizeAttributes(startTag.attributes));
+        FormElement el = new FormElement(tag, null, attributesFor(startTag));
         if (checkTemplateStack) {
             if(!onStack("template"))
                 setFormElement(el);
@@ -288,12 +295,14 @@ public class HtmlTreeBuilder extends TreeBuilder {
         insertNode(el);
         if (onStack)
             stack.add(el);
+        else
+            onNodeClosed(el);
         return el;
     }
 
     void insert(Token.Comment commentToken) {
         Comment comment = new Comment(commentToken.getData());
-        insertNode(comment);
+        insertNode(stored(comment));
     }
 
     void insert(Token.Character characterToken) {
@@ -305,10 +314,13 @@ public class HtmlTreeBuilder extends TreeBuilder {
         if (characterToken.isCData())
             node = new CDataNode(data);
         else if (isContentForTagData(tagName))
-            node = new DataNode(data);
+            node = new DataNode(characterToken.getDecodedData());
+        else if (characterToken.encoded)
+            node = TextNode.createLazilyDecoded(data);
         else
             node = new TextNode(data);
-        el.appendChild(node); // doesn't use insertNode, because we don't foster these; and will always have a stack.
+        el.appendChild(stored(node)); // doesn't use insertNode, because we don't foster these; and will always have a stack.
+        onNodeInserted(node);
     }
 
     private void insertNode(Node node) {
@@ -325,6 +337,7 @@ public class HtmlTreeBuilder extends TreeBuilder {
             if (formElement != null)
                 formElement.addElement((Element) node);
         }
+        onNodeInserted(node);
     }
 
     Element pop() {
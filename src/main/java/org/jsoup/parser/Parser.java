@@ -3,7 +3,9 @@ package org.jsoup.parser;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.nodes.Node;
+import org.jsoup.select.NodeVisitor;
 
+import javax.annotation.Nullable;
 import java.io.Reader;
 import java.io.StringReader;
 import java.util.List;
@@ -16,6 +18,10 @@ public class Parser {
     private TreeBuilder treeBuilder;
     private ParseErrorList errors;
     private ParseSettings settings;
+    private boolean trimToSize = false;
+    @Nullable private StringPool stringPool;
+    private boolean lazyDecoding = false;
+    private boolean offHeapText = false;
 
     /**
      * Create a new Parser, using the specified TreeBuilder
@@ -39,6 +45,10 @@ public class Parser {
         treeBuilder = copy.treeBuilder.newInstance(); // because extended
         errors = new ParseErrorList(copy.errors); // only copies size, not contents
         settings = new ParseSettings(copy.settings);
+        trimToSize = copy.trimToSize;
+        stringPool = copy.stringPool; // shared
+        lazyDecoding = copy.lazyDecoding;
+        offHeapText = copy.offHeapText;
     }
     
     public Document parseInput(String html, String baseUri) {
@@ -49,6 +59,28 @@ public class Parser {
         return treeBuilder.parse(inputHtml, baseUri, this);
     }
 
+    /**
+     Parse the input incrementally, notifying the listener as the document is built. Content is tokenised and inserted
+     as it is read from the Reader, so with a slow source (e.g. a network stream), the listener sees the start of the
+     document before the input is complete.
+     <p>The listener's {@link NodeVisitor#head(Node, int) head} method is called as each node is inserted into the tree
+     (for an element, after its attributes are set but before its children are parsed), and its {@link
+     NodeVisitor#tail(Node, int) tail} method when the node is complete (for an element, when it is closed). The
+     partially built document is available from any node via {@link Node#ownerDocument()}. The document itself is
+     visited first and last, at depth 0.</p>
+     <p>The listener is called on the parsing thread, and must not modify the tree. Elements that the parser re-opens
+     or re-parents while recovering from invalid HTML may be reported more than once, or not closed.</p>
+
+     @param inputHtml the input to parse
+     @param baseUri base URI of document, to resolve relative links against
+     @param listener the listener to notify as nodes are inserted and closed
+     @return the completed Document
+     @since 1.15.1
+     */
+    public Document parseInput(Reader inputHtml, String baseUri, NodeVisitor listener) {
+        return treeBuilder.parse(inputHtml, baseUri, this, listener);
+    }
+
     public List<Node> parseFragmentInput(String fragment, Element context, String baseUri) {
         return treeBuilder.parseFragment(fragment, context, baseUri, this);
     }
@@ -99,6 +131,103 @@ public class Parser {
         return errors;
     }
 
+    /**
+     * Check if the storage of parsed documents is trimmed to size.
+     * @return current trim state.
+     * @see #setTrimToSize(boolean)
+     */
+    public boolean isTrimToSize() {
+        return trimToSize;
+    }
+
+    /**
+     * Enable or disable trimming the storage of each document at the end of the parse, with {@link
+     * Element#trimToSize()}. That reduces the heap used by large documents (particularly ones with many elements with
+     * only a few children or attributes), for the cost of an extra pass over the tree. Default is false.
+     * @param trimToSize true to trim parsed documents
+     * @return this, for chaining
+     * @since 1.15.1
+     */
+    public Parser setTrimToSize(boolean trimToSize) {
+        this.trimToSize = trimToSize;
+        return this;
+    }
+
+    /**
+     * Check if character references in text and attribute values are decoded lazily.
+     * @return current lazy decoding state.
+     * @see #setLazyDecoding(boolean)
+     */
+    public boolean isLazyDecoding() {
+        return lazyDecoding;
+    }
+
+    /**
+     * Enable or disable lazy decoding of character references (e.g. {@code &amp;amp;}). When enabled, text nodes and
+     * attribute values that hold named references keep their encoded text, which is decoded when it is first read;
+     * rather than each being decoded as it is parsed. That saves the work (and the garbage) of decoding text that is
+     * never read, e.g. when only the document's structure or links are used. Numeric references are still decoded as
+     * they are parsed. Default is false.
+     * <p>Lazy decoding is not used when tracking errors, so that invalid references are reported. As the nodes of a
+     * lazily decoded document are updated when first read, call {@link Element#resolveLazyState()} on the document
+     * before it is read from multiple threads.</p>
+     * @param lazyDecoding true to decode character references lazily
+     * @return this, for chaining
+     * @since 1.15.1
+     */
+    public Parser setLazyDecoding(boolean lazyDecoding) {
+        this.lazyDecoding = lazyDecoding;
+        return this;
+    }
+
+    /**
+     * Check if parsed documents hold their text off the Java heap.
+     * @return current off-heap text state.
+     * @see #setOffHeapText(boolean)
+     */
+    public boolean isOffHeapText() {
+        return offHeapText;
+    }
+
+    /**
+     * Enable or disable holding the text of parsed documents off the Java heap. When enabled, the values of text, data
+     * and comment nodes, and attribute values, are stored UTF-8 encoded in the document's {@link
+     * org.jsoup.nodes.TextArena}, and decoded as they are read. That keeps the heap used by very large documents (and
+     * so the garbage collector's work) in proportion to their structure, rather than their content; at the cost of
+     * decoding on each read. Call {@link Document#close()} to release the store when the document is no longer used.
+     * Default is false.
+     * @param offHeapText true to hold text off heap
+     * @return this, for chaining
+     * @since 1.15.1
+     */
+    public Parser setOffHeapText(boolean offHeapText) {
+        this.offHeapText = offHeapText;
+        return this;
+    }
+
+    /**
+     * Get the string pool that parsed tag names and attribute names and values are interned in, if set.
+     * @return the string pool, or null if not set
+     * @see #setStringPool(StringPool)
+     */
+    public @Nullable StringPool getStringPool() {
+        return stringPool;
+    }
+
+    /**
+     * Set a string pool to intern parsed tag names, attribute names, and short attribute values in. A pool may be shared
+     * by many parsers (including across threads), so that the names and values that recur across many documents are
+     * held only once; which reduces the heap used when many parsed documents are retained. Default is none, when
+     * strings are only reused within each document.
+     * @param stringPool the string pool to use, or null for none
+     * @return this, for chaining
+     * @since 1.15.1
+     */
+    public Parser setStringPool(@Nullable StringPool stringPool) {
+        this.stringPool = stringPool;
+        return this;
+    }
+
     public Parser settings(ParseSettings settings) {
         this.settings = settings;
         return this;
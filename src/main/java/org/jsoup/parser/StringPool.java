@@ -0,0 +1,86 @@
+package org.jsoup.parser;
+
+import org.jsoup.helper.Validate;
+
+/**
+ A bounded pool of strings, which can be shared across parses (and threads), so that the attribute names and short
+ values, and the tag names, that recur across many documents are held once, rather than once per document. Set on a
+ parser with {@link Parser#setStringPool(StringPool)}.
+ <p>As in the parser's own per-document string cache, the pool is a fixed size table: a string is stored in the slot
+ for its hash, replacing any string already there. So the pool never grows past its size, and recently seen strings are
+ the most likely to be pooled. Lookups take no lock. Strings are immutable, so a slot that is concurrently replaced is
+ always seen as either its old or its new string, and the worst case of a race is a string that is not pooled.</p>
+ @since 1.15.1
+ */
+public final class StringPool {
+    /** The default number of slots in the pool. */
+    public static final int DefaultSize = 8192;
+    /** The default maximum length of a string to pool. */
+    public static final int DefaultMaxLength = 64;
+
+    private final String[] slots;
+    private final int mask;
+    private final int maxLength;
+
+    /**
+     Create a new pool, with the default size and maximum string length.
+     */
+    public StringPool() {
+        this(DefaultSize, DefaultMaxLength);
+    }
+
+    /**
+     Create a new pool.
+     @param size the number of slots in the pool; rounded up to a power of two
+     @param maxLength the maximum length of a string to pool; longer strings are not pooled, as they are unlikely to
+     recur
+     */
+    public StringPool(int size, int maxLength) {
+        Validate.isTrue(size > 0, "Pool size must be positive");
+        Validate.isTrue(maxLength >= 0, "Max length must not be negative");
+        int capacity = Integer.highestOneBit(Math.min(size, 1 << 30));
+        if (capacity < size)
+            capacity <<= 1;
+        slots = new String[capacity];
+        mask = capacity - 1;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     Get the pooled copy of a string. If an equal string is in the pool, that is returned; otherwise this string is
+     added to the pool (if not longer than the maximum length) and returned.
+     @param s the string to intern
+     @return an equal string; the pooled instance if there is one
+     */
+    public String intern(String s) {
+        int length = s.length();
+        if (length > maxLength)
+            return s;
+        if (length == 0)
+            return "";
+
+        int hash = s.hashCode();
+        int index = (hash ^ (hash >>> 16)) & mask;
+        String pooled = slots[index];
+        if (pooled != null && pooled.equals(s))
+            return pooled;
+        slots[index] = s; // add or replace
+        return s;
+    }
+
+    /**
+     Get the number of slots in the pool (the maximum number of strings it can hold).
+     @return the pool size
+     */
+    public int size() {
+        return slots.length;
+    }
+
+    /**
+     Get the maximum length of a string that is pooled.
+     @return the maximum length
+     */
+    public int maxLength() {
+        return maxLength;
+    }
+}
@@ -46,6 +46,24 @@ public class Tag implements Cloneable {
         return normalName;
     }
 
+    /**
+     * Get a Tag by name, as {@link #valueOf(String, ParseSettings)}. If the tag is not known and {@code selfClosing} is
+     * set, the new tag is marked as self closing, as the parser does for unknown tags that are self closed in the input.
+     * Used to restore the tags of a document, e.g. from a {@link org.jsoup.nodes.Document#readSnapshot snapshot}.
+     *
+     * @param tagName Name of tag, e.g. "p".
+     * @param settings used to control tag name sensitivity
+     * @param selfClosing if an unknown tag should be marked as self closing
+     * @return The tag, either defined or new generic.
+     * @since 1.15.1
+     */
+    public static Tag valueOf(String tagName, ParseSettings settings, boolean selfClosing) {
+        Tag tag = valueOf(tagName, settings);
+        if (selfClosing && !tag.isKnownTag())
+            tag.setSelfClosing();
+        return tag;
+    }
+
     /**
      * Get a Tag by name. If not previously defined (unknown), returns a new generic tag, that can do anything.
      * <p>
@@ -91,9 +91,11 @@ abstract class Token {
         @Nullable private String attrValueS;
         private boolean hasAttrValue = false;
         private boolean hasEmptyAttrValue = false; // distinguish boolean attribute from empty string value
+        private boolean hasEncodedAttrValue = false; // if the value has character references left encoded, to decode when read
 
         boolean selfClosing = false;
         @Nullable Attributes attributes; // start tags get attributes on construction. End tags get attributes on first new attribute (but only for parser convenience, not used).
+        @Nullable StringPool stringPool; // if set, attribute names and values are interned in it. Not reset.
 
         @Override
         Tag reset() {
@@ -106,6 +108,7 @@ abstract class Token {
             attrValueS = null;
             hasEmptyAttrValue = false;
             hasAttrValue = false;
+            hasEncodedAttrValue = false;
             selfClosing = false;
             attributes = null;
             return this;
@@ -132,8 +135,16 @@ abstract class Token {
                         value = "";
                     else
                         value = null;
+                    if (stringPool != null) {
+                        name = stringPool.intern(name);
+                        if (value != null)
+                            value = stringPool.intern(value);
+                    }
                     // note that we add, not put. So that the first is kept, and rest are deduped, once in a context where case sensitivity is known (the appropriate tree builder).
-                    attributes.add(name, value);
+                    if (hasEncodedAttrValue && value != null)
+                        attributes.addEncoded(name, value);
+                    else
+                        attributes.add(name, value);
                 }
             }
             reset(attrName);
@@ -144,6 +155,7 @@ abstract class Token {
             attrValueS = null;
             hasAttrValue = false;
             hasEmptyAttrValue = false;
+            hasEncodedAttrValue = false;
         }
 
         final boolean hasAttributes() {
@@ -224,6 +236,12 @@ abstract class Token {
             }
         }
 
+        /** Append to the attribute value, which then holds character references to decode when it is read. */
+        final void appendEncodedAttributeValue(String append) {
+            appendAttributeValue(append);
+            hasEncodedAttrValue = true;
+        }
+
         final void appendAttributeValue(char append) {
             ensureAttrValue();
             attrValue.append(append);
@@ -361,6 +379,7 @@ abstract class Token {
 
     static class Character extends Token {
         private String data;
+        boolean encoded; // if the data has character references left encoded, to decode when read (in lazy decoding mode)
 
         Character() {
             super();
@@ -370,11 +389,13 @@ abstract class Token {
         @Override
         Token reset() {
             data = null;
+            encoded = false;
             return this;
         }
 
         Character data(String data) {
             this.data = data;
+            encoded = false;
             return this;
         }
 
@@ -382,9 +403,14 @@ abstract class Token {
             return data;
         }
 
+        /** Get the data, with any character references that were left encoded decoded. */
+        String getDecodedData() {
+            return encoded ? Parser.unescapeEntities(data, false) : data;
+        }
+
         @Override
         public String toString() {
-            return getData();
+            return getDecodedData();
         }
     }
 
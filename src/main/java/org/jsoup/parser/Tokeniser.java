@@ -46,6 +46,8 @@ final class Tokeniser {
     Token.Character charPending = new Token.Character();
     Token.Doctype doctypePending = new Token.Doctype(); // doctype building up
     Token.Comment commentPending = new Token.Comment(); // comment building up
+    private boolean lazyDecoding = false; // if named character references are left encoded, to decode when read
+    private boolean charsEncoded = false; // if the pending characters have character references left encoded
     private String lastStartTag; // the last start tag emitted, to test appropriate end tag
     @Nullable private String lastStartCloseSeq; // "</" + lastStartTag, so we can quickly check for that in RCData
 
@@ -54,6 +56,17 @@ final class Tokeniser {
         this.errors = errors;
     }
 
+    /** Set the pool that tag attributes are interned in. */
+    void stringPool(@Nullable StringPool stringPool) {
+        startPending.stringPool = stringPool;
+        endPending.stringPool = stringPool;
+    }
+
+    /** Set if named character references are left encoded in text and attribute values, to be decoded when read. */
+    void lazyDecoding(boolean lazyDecoding) {
+        this.lazyDecoding = lazyDecoding;
+    }
+
     Token read() {
         while (!isEmitPending) {
             state.read(this, reader);
@@ -65,9 +78,9 @@ final class Tokeniser {
             String str = cb.toString();
             cb.delete(0, cb.length());
             charsString = null;
-            return charPending.data(str);
+            return pendingCharacters(str);
         } else if (charsString != null) {
-            Token token = charPending.data(charsString);
+            Token token = pendingCharacters(charsString);
             charsString = null;
             return token;
         } else {
@@ -76,6 +89,12 @@ final class Tokeniser {
         }
     }
 
+    private Token.Character pendingCharacters(String data) {
+        charPending.data(data).encoded = charsEncoded;
+        charsEncoded = false;
+        return charPending;
+    }
+
     void emit(Token token) {
         Validate.isFalse(isEmitPending);
 
@@ -155,6 +174,64 @@ final class Tokeniser {
 
     final private int[] codepointHolder = new int[1]; // holder to not have to keep creating arrays
     final private int[] multipointHolder = new int[2];
+    /**
+     In lazy decoding mode, test if the character reference at the reader (after its &) should be left encoded, to be
+     decoded when its text is read. Only named references are: numeric references are decoded now, as they may be
+     whitespace or NUL, which the tree builder treats specially; as are the two named references to whitespace.
+     */
+    private boolean deferCharacterReference() {
+        return reader.matchesLetter() && !reader.matches("Tab;") && !reader.matches("NewLine;");
+    }
+
+    /**
+     Emit the character reference at the reader (after its &), in data or RCDATA. In lazy decoding mode, named references
+     are emitted as-is, and the text decoded when read; so any & that is emitted as a character is escaped.
+     */
+    void emitCharacterReference() {
+        if (lazyDecoding) {
+            charsEncoded = true;
+            if (deferCharacterReference()) {
+                emit('&'); // and the name is read as text
+                return;
+            }
+            int[] c = consumeCharacterReference(null, false);
+            if (c == null || (c.length == 1 && c[0] == '&'))
+                emit("&amp;");
+            else
+                emit(c);
+        } else {
+            int[] c = consumeCharacterReference(null, false);
+            if (c == null)
+                emit('&');
+            else
+                emit(c);
+        }
+    }
+
+    /**
+     Append the character reference at the reader (after its &) to the pending tag's attribute value. Lazily decoded as
+     {@link #emitCharacterReference()}.
+     */
+    void appendAttributeCharacterReference(char additionalAllowedCharacter) {
+        if (lazyDecoding) {
+            if (deferCharacterReference()) {
+                tagPending.appendEncodedAttributeValue("&");
+                return;
+            }
+            int[] ref = consumeCharacterReference(additionalAllowedCharacter, true);
+            if (ref == null || (ref.length == 1 && ref[0] == '&'))
+                tagPending.appendEncodedAttributeValue("&amp;");
+            else
+                tagPending.appendAttributeValue(ref);
+        } else {
+            int[] ref = consumeCharacterReference(additionalAllowedCharacter, true);
+            if (ref != null)
+                tagPending.appendAttributeValue(ref);
+            else
+                tagPending.appendAttributeValue('&');
+        }
+    }
+
     @Nullable int[] consumeCharacterReference(Character additionalAllowedCharacter, boolean inAttribute) {
         if (reader.isEmpty())
             return null;
@@ -753,11 +753,7 @@ enum TokeniserState {
                     t.transition(AfterAttributeValue_quoted);
                     break;
                 case '&':
-                    int[] ref = t.consumeCharacterReference('"', true);
-                    if (ref != null)
-                        t.tagPending.appendAttributeValue(ref);
-                    else
-                        t.tagPending.appendAttributeValue('&');
+                    t.appendAttributeCharacterReference('"');
                     break;
                 case nullChar:
                     t.error(this);
@@ -786,11 +782,7 @@ enum TokeniserState {
                     t.transition(AfterAttributeValue_quoted);
                     break;
                 case '&':
-                    int[] ref = t.consumeCharacterReference('\'', true);
-                    if (ref != null)
-                        t.tagPending.appendAttributeValue(ref);
-                    else
-                        t.tagPending.appendAttributeValue('&');
+                    t.appendAttributeCharacterReference('\'');
                     break;
                 case nullChar:
                     t.error(this);
@@ -821,11 +813,7 @@ enum TokeniserState {
                     t.transition(BeforeAttributeName);
                     break;
                 case '&':
-                    int[] ref = t.consumeCharacterReference('>', true);
-                    if (ref != null)
-                        t.tagPending.appendAttributeValue(ref);
-                    else
-                        t.tagPending.appendAttributeValue('&');
+                    t.appendAttributeCharacterReference('>');
                     break;
                 case '>':
                     t.emitTagPending();
@@ -1699,11 +1687,7 @@ enum TokeniserState {
     }
 
     private static void readCharRef(Tokeniser t, TokeniserState advance) {
-        int[] c = t.consumeCharacterReference(null, false);
-        if (c == null)
-            t.emit('&');
-        else
-            t.emit(c);
+        t.emitCharacterReference();
         t.transition(advance);
     }
 
@@ -5,6 +5,8 @@ import org.jsoup.nodes.Attributes;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextArena;
+import org.jsoup.select.NodeVisitor;
 
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
@@ -27,6 +29,8 @@ abstract class TreeBuilder {
     protected Token currentToken; // currentToken is used only for error tracking.
     protected ParseSettings settings;
     protected Map<String, Tag> seenTags; // tags we've used in this parse; saves tag GC for custom tags.
+    @Nullable NodeVisitor listener; // if set, notified as nodes are inserted and elements closed, during this parse
+    @Nullable TextArena textArena; // if set, text and attribute values are moved into it, off heap
 
     private Token.StartTag start = new Token.StartTag(); // start tag to process
     private Token.EndTag end  = new Token.EndTag();
@@ -46,7 +50,10 @@ abstract class TreeBuilder {
         reader.trackNewlines(parser.isTrackErrors()); // when tracking errors, enable newline tracking for better error reports
         currentToken = null;
         tokeniser = new Tokeniser(reader, parser.getErrors());
-        stack = new ArrayList<>(32);
+        tokeniser.stringPool(parser.getStringPool());
+        tokeniser.lazyDecoding(parser.isLazyDecoding() && !parser.isTrackErrors()); // so that reference errors are tracked
+        textArena = parser.isOffHeapText() ? doc.textArena() : null;
+        stack = listener == null ? new ArrayList<Element>(32) : new ListeningStack();
         seenTags = new HashMap<>();
         this.baseUri = baseUri;
     }
@@ -55,6 +62,8 @@ abstract class TreeBuilder {
     Document parse(Reader input, String baseUri, Parser parser) {
         initialiseParse(input, baseUri, parser);
         runParser();
+        if (parser.isTrimToSize())
+            doc.trimToSize();
 
         // tidy up - as the Parser and Treebuilder are retained in document for settings / fragments
         reader.close();
@@ -62,6 +71,38 @@ abstract class TreeBuilder {
         tokeniser = null;
         stack = null;
         seenTags = null;
+        textArena = null;
+
+        return doc;
+    }
+
+    /**
+     Parse the input, notifying the listener as the tree is built: {@code head} as each node is inserted, and {@code tail}
+     as each element is closed (and immediately after {@code head} for leaf nodes and void elements).
+     */
+    @ParametersAreNonnullByDefault
+    Document parse(Reader input, String baseUri, Parser parser, NodeVisitor listener) {
+        Validate.notNull(listener);
+        this.listener = listener;
+        try {
+            initialiseParse(input, baseUri, parser);
+            listener.head(doc, 0);
+            runParser();
+            for (int pos = stack.size() - 1; pos >= 0; pos--)
+                stack.remove(pos); // close any elements left open at EOF
+            if (parser.isTrimToSize())
+                doc.trimToSize();
+            listener.tail(doc, 0);
+        } finally {
+            this.listener = null;
+        }
+
+        reader.close();
+        reader = null;
+        tokeniser = null;
+        stack = null;
+        seenTags = null;
+        textArena = null;
 
         return doc;
     }
@@ -72,7 +113,7 @@ abstract class TreeBuilder {
      */
     abstract TreeBuilder newInstance();
 
-    abstract List<Node> parseFragment(String inputFragment, Element context, String baseUri, Parser parser);
+    abstract List<Node> parseFragment(String inputFragment, @Nullable Element context, String baseUri, Parser parser);
 
     protected void runParser() {
         final Tokeniser tokeniser = this.tokeniser;
@@ -165,10 +206,86 @@ abstract class TreeBuilder {
         return false;
     }
 
+    /**
+     Called after a node is inserted into the tree. Leaf nodes are complete when inserted, so are also closed.
+     */
+    final void onNodeInserted(Node node) {
+        if (listener == null) return;
+        int depth = depth(node);
+        listener.head(node, depth);
+        if (!(node instanceof Element))
+            listener.tail(node, depth);
+    }
+
+    /**
+     Called when an element is closed, i.e. it has been popped from the stack, or was a void element not pushed.
+     */
+    final void onNodeClosed(Element el) {
+        if (listener == null) return;
+        listener.tail(el, depth(el));
+    }
+
+    private static int depth(Node node) {
+        int depth = 0;
+        Node parent = node.parentNode();
+        while (parent != null) {
+            depth++;
+            parent = parent.parentNode();
+        }
+        return depth;
+    }
+
+    /**
+     The stack of open elements used when a listener is set, notifying as elements are popped off it. All pops go via
+     remove(int).
+     */
+    private final class ListeningStack extends ArrayList<Element> {
+        ListeningStack() {
+            super(32);
+        }
+
+        @Override
+        public Element remove(int index) {
+            Element el = super.remove(index);
+            if (el != doc) // the xml builder places the doc on the stack
+                onNodeClosed(el);
+            return el;
+        }
+    }
+
+    /**
+     Get a start tag's attributes for its new element: normalized, and with their values moved off heap if the parser
+     holds text off heap.
+     */
+    @Nullable Attributes attributesFor(Token.StartTag startTag) {
+        Attributes attributes = settings.normalizeAttributes(startTag.attributes);
+        return textArena != null && attributes != null ? textArena.store(attributes) : attributes;
+    }
+
+    /**
+     Hold a fragment's values in the store of its context's document, rather than of the fragment's own (discarded)
+     document, so that they are released when the context's document is closed.
+     */
+    void fragmentTextArena(@Nullable Element context) {
+        if (textArena == null || context == null)
+            return;
+        Document owner = context.ownerDocument();
+        if (owner != null)
+            textArena = owner.textArena();
+    }
+
+    /** Move a new leaf node's value off heap, if the parser holds text off heap. */
+    <T extends Node> T stored(T node) {
+        if (textArena != null)
+            textArena.store(node);
+        return node;
+    }
+
     protected Tag tagFor(String tagName, ParseSettings settings) {
         Tag tag = seenTags.get(tagName); // note that we don't normalize the cache key. But tag via valueOf may be normalized.
         if (tag == null) {
-            tag = Tag.valueOf(tagName, settings);
+            StringPool stringPool = parser.getStringPool();
+            tag = Tag.valueOf(stringPool != null ? stringPool.intern(tagName) : tagName, settings);
             seenTags.put(tagName, tag);
         }
         return tag;
@@ -11,6 +11,7 @@ import org.jsoup.nodes.Node;
 import org.jsoup.nodes.TextNode;
 import org.jsoup.nodes.XmlDeclaration;
 
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.io.Reader;
 import java.io.StringReader;
@@ -80,6 +81,7 @@ public class XmlTreeBuilder extends TreeBuilder {
 
     private void insertNode(Node node) {
         currentElement().appendChild(node);
+        onNodeInserted(node);
     }
 
     Element insert(Token.StartTag startTag) {
@@ -88,11 +90,12 @@ public class XmlTreeBuilder extends TreeBuilder {
         if (startTag.hasAttributes())
             startTag.attributes.deduplicate(settings);
 
-        Element el = new Element(tag, null, settings.normalizeAttributes(startTag.attributes));
+        Element el = new Element(tag, null, attributesFor(startTag));
         insertNode(el);
         if (startTag.isSelfClosing()) {
             if (!tag.isKnownTag()) // unknown tag, remember this is self closing for output. see above.
                 tag.setSelfClosing();
+            onNodeClosed(el);
         } else {
             stack.add(el);
         }
@@ -109,12 +112,12 @@ public class XmlTreeBuilder extends TreeBuilder {
             if (decl != null)
                 insert = decl;
         }
-        insertNode(insert);
+        insertNode(stored(insert));
     }
 
     void insert(Token.Character token) {
         final String data = token.getData();
-        insertNode(token.isCData() ? new CDataNode(data) : new TextNode(data));
+        insertNode(stored(token.isCData() ? new CDataNode(data) : token.encoded ? TextNode.createLazilyDecoded(data) : new TextNode(data)));
     }
 
     void insert(Token.Doctype d) {
@@ -159,12 +162,13 @@ public class XmlTreeBuilder extends TreeBuilder {
 
 
     List<Node> parseFragment(String inputFragment, String baseUri, Parser parser) {
+        return parseFragment(inputFragment, null, baseUri, parser);
+    }
+
+    List<Node> parseFragment(String inputFragment, @Nullable Element context, String baseUri, Parser parser) {
         initialiseParse(new StringReader(inputFragment), baseUri, parser);
+        fragmentTextArena(context);
         runParser();
         return doc.childNodes();
     }
-
-    List<Node> parseFragment(String inputFragment, Element context, String baseUri, Parser parser) {
-        return parseFragment(inputFragment, baseUri, parser);
-    }
 }
@@ -1,9 +1,18 @@
 package org.jsoup.select;
 
+import org.jsoup.helper.Validate;
 import org.jsoup.nodes.Element;
 import org.jsoup.nodes.Node;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import static org.jsoup.select.NodeFilter.FilterResult.CONTINUE;
 import static org.jsoup.select.NodeFilter.FilterResult.STOP;
@@ -25,10 +34,173 @@ public class Collector {
      */
     public static Elements collect (Evaluator eval, Element root) {
         Elements elements = new Elements();
-        NodeTraversor.traverse(new Accumulator(root, elements, eval), root);
+        eval.memoise(true);
+        try {
+            NodeTraversor.traverse(new Accumulator(root, elements, eval), root);
+        } finally {
+            eval.memoise(false);
+        }
         return elements;
     }
 
+    /**
+     Build a list of elements, by visiting root and every descendant of root, and testing it against the evaluator. The
+     tree is split into ranges of sibling subtrees which are traversed concurrently on the executor, and the matches are
+     merged in document order. So the result is the same as from {@link #collect(Evaluator, Element)}.
+     <p>The tree must not be modified during the collection, and the evaluator must be safe to call concurrently (as the
+     built-in evaluators are, other than {@code :matchText}, which modifies the tree; an evaluator that includes it is
+     collected serially, as by {@link #collect(Evaluator, Element)}). As evaluators may read any part of the tree (e.g.
+     an ancestor's siblings), state that the whole tree would otherwise fill in when first read is resolved before the
+     tasks start; see {@link Element#resolveLazyState()}. So a lazily thawed document is thawed in full. The text used
+     by {@code :contains} and {@code :matches} is likewise built once and shared by the tasks. This is only worthwhile
+     for very large documents; for small trees, the overhead of the tasks outweighs the gain.</p>
+     @param eval Evaluator to test elements against
+     @param root root of tree to descend
+     @param executor the executor to run the traversal tasks on
+     @return list of matches; empty if none
+     @since 1.15.1
+     */
+    public static Elements collectParallel(final Evaluator eval, final Element root, ExecutorService executor) {
+        Validate.notNull(eval);
+        Validate.notNull(root);
+        Validate.notNull(executor);
+
+        eval.memoise(true);
+        try {
+            if (!TextCache.suspended()) {
+                // resolve lazily held state first, so that reads in the tasks don't write to shared nodes
+                ((Element) root.root()).resolveLazyState(); // an element's root is an element
+                TextCache.Shared text = TextCache.share(root); // index the root's text once, rather than in each task
+                TextCache.use(text);
+                return collectParallel(eval, root, executor, text);
+            }
+        } finally {
+            eval.memoise(false);
+        }
+        return collect(eval, root); // the evaluator modifies the tree (:matchText), so can't be run concurrently
+    }
+
+    private static Elements collectParallel(final Evaluator eval, final Element root, ExecutorService executor,
+                                            @Nullable final TextCache.Shared text) {
+        List<Range> ranges = Range.split(root, Runtime.getRuntime().availableProcessors() * TasksPerThread);
+        List<Future<Elements>> futures = new ArrayList<>(ranges.size());
+        try {
+            for (final Range range : ranges) {
+                if (range.parent == null) // the ranges' parents are tested here, rather than in a task
+                    continue;
+                futures.add(executor.submit(new Callable<Elements>() {
+                    @Override
+                    public Elements call() {
+                        return range.collect(eval, root, text);
+                    }
+                }));
+            }
+
+            Elements elements = new Elements();
+            int task = 0;
+            for (Range range : ranges) {
+                if (range.parent == null) {
+                    if (eval.matches(root, range.element))
+                        elements.add(range.element);
+                } else {
+                    elements.addAll(futures.get(task++).get());
+                }
+            }
+            return elements;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while collecting", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException(cause);
+        } finally {
+            for (Future<Elements> future : futures)
+                future.cancel(false); // no-op if done; else, after a failure, don't run the rest
+        }
+    }
+
+    private static final int TasksPerThread = 4; // more tasks than threads, as subtrees vary in size
+    private static final int MaxSplitRounds = 32;
+
+    /**
+     A unit of the parallel collection: either a single element (when parent is null), or the subtrees of a range of
+     child nodes of a parent.
+     */
+    private static final class Range {
+        final @Nullable Element parent;
+        final Element element; // if single
+        final int from, to;
+
+        private Range(Element element) {
+            this.parent = null;
+            this.element = element;
+            from = to = 0;
+        }
+
+        private Range(Element parent, int from, int to) {
+            this.parent = parent;
+            this.element = parent;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         Split the tree into at least the target number of ranges (if it is big enough), in document order. Each round,
+         a range of many siblings is halved; a range of one element is replaced by that element and its children.
+         */
+        static List<Range> split(Element root, int target) {
+            List<Range> ranges = new ArrayList<>();
+            ranges.add(new Range(root));
+            ranges.add(new Range(root, 0, root.childNodeSize()));
+
+            for (int round = 0; round < MaxSplitRounds && ranges.size() < target; round++) {
+                List<Range> split = new ArrayList<>(ranges.size() * 2);
+                boolean changed = false;
+                for (Range range : ranges) {
+                    if (range.parent == null) {
+                        split.add(range);
+                    } else if (range.to - range.from > 1) {
+                        int mid = (range.from + range.to) >>> 1;
+                        split.add(new Range(range.parent, range.from, mid));
+                        split.add(new Range(range.parent, mid, range.to));
+                        changed = true;
+                    } else if (range.to - range.from == 1 && range.parent.childNode(range.from) instanceof Element) {
+                        Element child = (Element) range.parent.childNode(range.from);
+                        split.add(new Range(child));
+                        split.add(new Range(child, 0, child.childNodeSize()));
+                        changed = true;
+                    } // else an empty range, or a single non-element node, which can't match
+                }
+                ranges = split;
+                if (!changed)
+                    break;
+            }
+            return ranges;
+        }
+
+        Elements collect(Evaluator eval, Element root, @Nullable TextCache.Shared text) {
+            Elements elements = new Elements();
+            Accumulator accumulator = new Accumulator(root, elements, eval);
+            eval.memoise(true); // memos are per thread
+            TextCache.use(text);
+            try {
+                for (int i = from; i < to; i++) {
+                    //noinspection ConstantConditions
+                    Node node = parent.childNode(i);
+                    if (node instanceof Element)
+                        NodeTraversor.traverse(accumulator, node);
+                }
+            } finally {
+                eval.memoise(false);
+            }
+            return elements;
+        }
+    }
+
     private static class Accumulator implements NodeVisitor {
         private final Element root;
         private final Elements elements;
@@ -62,7 +234,92 @@ public class Collector {
      */
     public static @Nullable Element findFirst(Evaluator eval, Element root) {
         FirstFinder finder = new FirstFinder(eval);
-        return finder.find(root, root);
+        eval.memoise(true);
+        try {
+            return finder.find(root, root);
+        } finally {
+            eval.memoise(false);
+        }
+    }
+
+    /**
+     Get an iterator over the elements that match the evaluator, by visiting root and every descendant of root. Rather
+     than collecting every match up front, the tree is walked lazily, only as far as needed to find the next match. So
+     if only some of the matches are required, the rest of the tree is not visited.
+     <p>The tree should not be modified while iterating.</p>
+     @param eval Evaluator to test elements against
+     @param root root of tree to descend
+     @return an iterator of matches, in document order
+     @since 1.15.1
+     */
+    public static Iterator<Element> iterator(Evaluator eval, Element root) {
+        Validate.notNull(eval);
+        Validate.notNull(root);
+        return new MatchIterator(eval, root);
+    }
+
+    private static class MatchIterator implements Iterator<Element> {
+        private final Evaluator eval;
+        private final Element root;
+        private @Nullable Node cursor; // the next node to test; null when the walk is complete
+        private @Nullable Element next; // the next match, if found
+
+        MatchIterator(Evaluator eval, Element root) {
+            this.eval = eval;
+            this.root = root;
+            cursor = root;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && cursor != null)
+                next = findNext();
+            return next != null;
+        }
+
+        @Override
+        public Element next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Element match = next;
+            next = null;
+            return match;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove");
+        }
+
+        private @Nullable Element findNext() {
+            eval.memoise(true); // matches are only memoised while walking to the next, as the tree may change between
+            try {
+                while (cursor != null) {
+                    Node node = cursor;
+                    cursor = following(node);
+                    if (node instanceof Element && eval.matches(root, (Element) node))
+                        return (Element) node;
+                }
+                return null;
+            } finally {
+                eval.memoise(false);
+            }
+        }
+
+        /** The node after this one in a depth-first walk of root, or null if there is none. */
+        private @Nullable Node following(Node node) {
+            if (node.childNodeSize() > 0)
+                return node.childNode(0);
+            while (node != root) {
+                Node sibling = node.nextSibling();
+                if (sibling != null)
+                    return sibling;
+                node = node.parentNode();
+                if (node == null)
+                    return null;
+            }
+            return null;
+        }
     }
 
     static class FirstFinder implements NodeFilter {
@@ -39,6 +39,12 @@ public abstract class CombiningEvaluator extends Evaluator {
         num = evaluators.size();
     }
 
+    @Override
+    void memoise(boolean enable) {
+        for (int i = 0; i < num; i++)
+            evaluators.get(i).memoise(enable);
+    }
+
     public static final class And extends CombiningEvaluator {
         And(Collection<Evaluator> evaluators) {
             super(evaluators);
@@ -0,0 +1,215 @@
+package org.jsoup.select;
+
+import org.jsoup.nodes.Element;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Specialised evaluators for the common shapes of a parsed query. The parser builds a general tree of evaluators, where
+ * e.g. {@code div.foo} is an {@link CombiningEvaluator.And} over a list of a {@code Tag} and a {@code Class}, and every
+ * element test iterates that list and dispatches to each. Compiling replaces those shapes with final classes that hold
+ * their parts in fields of final (or leaf) types, so the calls are monomorphic and can be inlined, and the cheapest test
+ * runs first.
+ */
+abstract class CompiledEvaluator extends Evaluator {
+
+    /**
+     * Compile a parsed query. The result has the same matches and string form as the input; evaluators that are not
+     * one of the compiled shapes are kept (with their inner evaluators compiled).
+     * @param eval the parsed evaluator
+     * @return the compiled evaluator
+     */
+    static Evaluator compile(Evaluator eval) {
+        if (eval instanceof CombiningEvaluator.And)
+            return compileAnd((CombiningEvaluator.And) eval);
+        if (eval instanceof CombiningEvaluator.Or) {
+            CombiningEvaluator.Or source = (CombiningEvaluator.Or) eval;
+            CombiningEvaluator.Or or = new CombiningEvaluator.Or();
+            for (int i = 0; i < source.num; i++)
+                or.add(compile(source.evaluators.get(i)));
+            return or;
+        }
+        if (eval instanceof StructuralEvaluator.Parent)
+            return new StructuralEvaluator.Parent(compile(((StructuralEvaluator) eval).evaluator));
+        if (eval instanceof StructuralEvaluator.ImmediateParent)
+            return new StructuralEvaluator.ImmediateParent(compile(((StructuralEvaluator) eval).evaluator));
+        if (eval instanceof StructuralEvaluator.PreviousSibling)
+            return new StructuralEvaluator.PreviousSibling(compile(((StructuralEvaluator) eval).evaluator));
+        if (eval instanceof StructuralEvaluator.ImmediatePreviousSibling)
+            return new StructuralEvaluator.ImmediatePreviousSibling(compile(((StructuralEvaluator) eval).evaluator));
+        if (eval instanceof StructuralEvaluator.Has)
+            return new StructuralEvaluator.Has(compile(((StructuralEvaluator) eval).evaluator));
+        if (eval instanceof StructuralEvaluator.Not)
+            return new StructuralEvaluator.Not(compile(((StructuralEvaluator) eval).evaluator));
+        return eval;
+    }
+
+    private static Evaluator compileAnd(CombiningEvaluator.And and) {
+        if (and.num == 1)
+            return compile(and.evaluators.get(0));
+        if (and.num != 2) {
+            List<Evaluator> compiled = new ArrayList<>(and.num);
+            for (int i = 0; i < and.num; i++)
+                compiled.add(compile(and.evaluators.get(i)));
+            return new CombiningEvaluator.And(compiled);
+        }
+
+        Evaluator a = compile(and.evaluators.get(0));
+        Evaluator b = compile(and.evaluators.get(1));
+        if (a instanceof Evaluator.Tag) {
+            Evaluator.Tag tag = (Evaluator.Tag) a;
+            if (b instanceof Evaluator.Class)
+                return new TagClass(tag, (Evaluator.Class) b);
+            if (b instanceof Evaluator.Id)
+                return new TagId(tag, (Evaluator.Id) b);
+            if (b instanceof Evaluator.Attribute)
+                return new TagAttribute(tag, (Evaluator.Attribute) b);
+            if (b instanceof Evaluator.AttributeWithValue)
+                return new TagAttributeWithValue(tag, (Evaluator.AttributeWithValue) b);
+        }
+        if (a instanceof StructuralEvaluator.Parent && !(b instanceof StructuralEvaluator))
+            return new Descendant((StructuralEvaluator.Parent) a, b);
+        if (a instanceof StructuralEvaluator.ImmediateParent && !(b instanceof StructuralEvaluator))
+            return new Child((StructuralEvaluator.ImmediateParent) a, b);
+        return new CombiningEvaluator.And(a, b);
+    }
+
+    /** {@code tag.class} */
+    static final class TagClass extends CompiledEvaluator {
+        final Evaluator.Tag tag;
+        final Evaluator.Class className;
+
+        TagClass(Evaluator.Tag tag, Evaluator.Class className) {
+            this.tag = tag;
+            this.className = className;
+        }
+
+        @Override
+        public boolean matches(Element root, Element element) {
+            return tag.matches(root, element) && className.matches(root, element);
+        }
+
+        @Override
+        public String toString() {
+            return tag.toString() + className;
+        }
+    }
+
+    /** {@code tag#id} */
+    static final class TagId extends CompiledEvaluator {
+        final Evaluator.Tag tag;
+        final Evaluator.Id id;
+
+        TagId(Evaluator.Tag tag, Evaluator.Id id) {
+            this.tag = tag;
+            this.id = id;
+        }
+
+        @Override
+        public boolean matches(Element root, Element element) {
+            return tag.matches(root, element) && id.matches(root, element);
+        }
+
+        @Override
+        public String toString() {
+            return tag.toString() + id;
+        }
+    }
+
+    /** {@code tag[attr]} */
+    static final class TagAttribute extends CompiledEvaluator {
+        final Evaluator.Tag tag;
+        final Evaluator.Attribute attribute;
+
+        TagAttribute(Evaluator.Tag tag, Evaluator.Attribute attribute) {
+            this.tag = tag;
+            this.attribute = attribute;
+        }
+
+        @Override
+        public boolean matches(Element root, Element element) {
+            return tag.matches(root, element) && attribute.matches(root, element);
+        }
+
+        @Override
+        public String toString() {
+            return tag.toString() + attribute;
+        }
+    }
+
+    /** {@code tag[attr=value]} */
+    static final class TagAttributeWithValue extends CompiledEvaluator {
+        final Evaluator.Tag tag;
+        final Evaluator.AttributeWithValue attribute;
+
+        TagAttributeWithValue(Evaluator.Tag tag, Evaluator.AttributeWithValue attribute) {
+            this.tag = tag;
+            this.attribute = attribute;
+        }
+
+        @Override
+        public boolean matches(Element root, Element element) {
+            return tag.matches(root, element) && attribute.matches(root, element);
+        }
+
+        @Override
+        public String toString() {
+            return tag.toString() + attribute;
+        }
+    }
+
+    /** {@code ancestor subject}: tests the subject before walking the ancestors. */
+    static final class Descendant extends CompiledEvaluator {
+        final StructuralEvaluator.Parent ancestor;
+        final Evaluator subject;
+
+        Descendant(StructuralEvaluator.Parent ancestor, Evaluator subject) {
+            this.ancestor = ancestor;
+            this.subject = subject;
+        }
+
+        @Override
+        public boolean matches(Element root, Element element) {
+            return subject.matches(root, element) && ancestor.matches(root, element);
+        }
+
+        @Override
+        void memoise(boolean enable) {
+            ancestor.memoise(enable);
+            subject.memoise(enable);
+        }
+
+        @Override
+        public String toString() {
+            return ancestor.toString() + subject;
+        }
+    }
+
+    /** {@code parent > subject}: tests the subject before the parent. */
+    static final class Child extends CompiledEvaluator {
+        final StructuralEvaluator.ImmediateParent parent;
+        final Evaluator subject;
+
+        Child(StructuralEvaluator.ImmediateParent parent, Evaluator subject) {
+            this.parent = parent;
+            this.subject = subject;
+        }
+
+        @Override
+        public boolean matches(Element root, Element element) {
+            return subject.matches(root, element) && parent.matches(root, element);
+        }
+
+        @Override
+        void memoise(boolean enable) {
+            parent.memoise(enable);
+            subject.memoise(enable);
+        }
+
+        @Override
+        public String toString() {
+            return parent.toString() + subject;
+        }
+    }
+}
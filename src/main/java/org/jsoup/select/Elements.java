@@ -13,9 +13,13 @@ import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  A list of {@link Element}s, with methods that act on every element in the list.
@@ -442,8 +446,35 @@ public class Elements extends ArrayList<Element> {
      * @see #empty()
      */
     public Elements remove() {
+        // group by parent, so each parent's children are removed (and the rest reindexed) in one pass
+        Map<Element, Set<Node>> byParent = new IdentityHashMap<>();
         for (Element element : this) {
-            element.remove();
+            Element parent = element.parent();
+            Validate.notNull(parent);
+            Set<Node> children = byParent.get(parent);
+            if (children == null) {
+                children = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+                byParent.put(parent, children);
+            }
+            children.add(element);
+        }
+        for (Map.Entry<Element, Set<Node>> entry : byParent.entrySet()) {
+            final Set<Node> children = entry.getValue();
+            if (children.size() == 1) {
+                children.iterator().next().remove();
+                continue;
+            }
+            entry.getKey().removeChildren(new NodeFilter() {
+                @Override
+                public FilterResult head(Node node, int depth) {
+                    return children.contains(node) ? FilterResult.REMOVE : FilterResult.CONTINUE;
+                }
+
+                @Override
+                public FilterResult tail(Node node, int depth) {
+                    return FilterResult.CONTINUE;
+                }
+            });
         }
         return this;
     }
@@ -473,6 +504,104 @@ public class Elements extends ArrayList<Element> {
         Elements out = Selector.select(query, this);
         return Selector.filterOut(this, out);
     }
+
+    /**
+     * Get the elements that are in either this list or the other. Elements are compared by identity, and each is
+     * included once. If both lists are in document order (as from {@link #select(String)}), so is the union; the lists
+     * are merged, not re-selected.
+     * <p>
+     * E.g. <code>Elements headings = doc.select("h1").union(doc.select("h2"));</code>
+     * </p>
+     * @param other the elements to add
+     * @return a new elements list of the union
+     * @since 1.15.1
+     */
+    public Elements union(Collection<Element> other) {
+        Validate.notNull(other);
+        Set<Element> seen = Selector.identitySet(this);
+        List<Element> extra = new ArrayList<>();
+        for (Element el : other) {
+            if (seen.add(el))
+                extra.add(el);
+        }
+
+        Elements union = new Elements(size() + extra.size());
+        int i = 0, j = 0;
+        while (i < size() && j < extra.size()) {
+            if (compareDocumentOrder(extra.get(j), get(i)) < 0)
+                union.add(extra.get(j++));
+            else
+                union.add(get(i++));
+        }
+        while (i < size())
+            union.add(get(i++));
+        while (j < extra.size())
+            union.add(extra.get(j++));
+        return union;
+    }
+
+    /**
+     * Get the elements in this list that are also in the other. Elements are compared by identity, and the order of
+     * this list is kept.
+     * @param other the elements to retain
+     * @return a new elements list of the intersection
+     * @since 1.15.1
+     */
+    public Elements intersect(Collection<Element> other) {
+        Validate.notNull(other);
+        return Selector.filterIn(this, other);
+    }
+
+    /**
+     * Get the elements in this list that are not in the other. Elements are compared by identity, and the order of
+     * this list is kept.
+     * @param other the elements to exclude
+     * @return a new elements list of the difference
+     * @see #not(String)
+     * @since 1.15.1
+     */
+    public Elements except(Collection<Element> other) {
+        Validate.notNull(other);
+        return Selector.filterOut(this, other);
+    }
+
+    /**
+     * Compares the position of two elements in their document. Elements in different trees are considered equal.
+     */
+    static int compareDocumentOrder(Element a, Element b) {
+        if (a == b)
+            return 0;
+        int depthA = depth(a), depthB = depth(b);
+        Node nodeA = a, nodeB = b;
+        while (depthA > depthB) {
+            nodeA = nodeA.parent();
+            depthA--;
+        }
+        while (depthB > depthA) {
+            nodeB = nodeB.parent();
+            depthB--;
+        }
+        if (nodeA == nodeB) // one is an ancestor of the other, and so comes first
+            return a == nodeA ? -1 : 1;
+
+        while (nodeA.parent() != nodeB.parent()) {
+            nodeA = nodeA.parent();
+            nodeB = nodeB.parent();
+        }
+        if (nodeA.parent() == null) // different trees
+            return 0;
+        return nodeA.siblingIndex() - nodeB.siblingIndex(); // both non-negative, so no overflow
+    }
+
+    private static int depth(Node node) {
+        int depth = 0;
+        Node parent = node.parent();
+        while (parent != null) {
+            depth++;
+            parent = parent.parent();
+        }
+        return depth;
+    }
     
     /**
      * Get the <i>nth</i> matched element as an Elements object.
@@ -491,7 +620,7 @@ public class Elements extends ArrayList<Element> {
      * @return true if at least one element in the list matches the query.
      */
     public boolean is(String query) {
-        Evaluator eval = QueryParser.parse(query);
+        Evaluator eval = QueryParser.compile(query);
         for (Element e : this) {
             if (e.is(eval))
                 return true;
@@ -569,7 +698,7 @@ public class Elements extends ArrayList<Element> {
 
     private Elements siblings(@Nullable String query, boolean next, boolean all) {
         Elements els = new Elements();
-        Evaluator eval = query != null? QueryParser.parse(query) : null;
+        Evaluator eval = query != null? QueryParser.compile(query) : null;
         for (Element e : this) {
             do {
                 Element sib = next ? e.nextElementSibling() : e.previousElementSibling();
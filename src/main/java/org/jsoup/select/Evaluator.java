@@ -11,7 +11,10 @@ import org.jsoup.nodes.PseudoTextElement;
 import org.jsoup.nodes.TextNode;
 import org.jsoup.nodes.XmlDeclaration;
 
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -22,6 +25,11 @@ import static org.jsoup.internal.StringUtil.normaliseWhitespace;
 
 /**
  * Evaluates that an element matches the selector.
+ * <p>Evaluators may be called concurrently from multiple threads (e.g. by {@link Collector#collectParallel}), so
+ * {@link #matches(Element, Element)} must be safe to call concurrently on a tree that is not being modified. The
+ * built-in evaluators are, other than {@link MatchText} ({@code :matchText}), which modifies the tree as it matches, and
+ * so is collected serially; any state they hold during a select is per thread, or is built before the select's tasks
+ * start.</p>
  */
 public abstract class Evaluator {
     protected Evaluator() {
@@ -37,11 +45,20 @@ public abstract class Evaluator {
      */
     public abstract boolean matches(Element root, Element element);
 
+    /**
+     Called by the collectors at the start and end of a select, so that evaluators may memoise matches while the tree
+     is being traversed (and not across selects, when the tree may have changed).
+     @param enable true at the start of a select, false at the end
+     */
+    void memoise(boolean enable) {
+        // no state by default
+    }
+
     /**
      * Evaluator for tag name
      */
     public static final class Tag extends Evaluator {
-        private final String tagName;
+        final String tagName;
 
         public Tag(String tagName) {
             this.tagName = tagName;
@@ -84,7 +101,7 @@ public abstract class Evaluator {
      * Evaluator for element id
      */
     public static final class Id extends Evaluator {
-        private final String id;
+        final String id;
 
         public Id(String id) {
             this.id = id;
@@ -106,7 +123,7 @@ public abstract class Evaluator {
      * Evaluator for element class
      */
     public static final class Class extends Evaluator {
-        private final String className;
+        final String className;
 
         public Class(String className) {
             this.className = className;
@@ -128,7 +145,7 @@ public abstract class Evaluator {
      * Evaluator for attribute name matching
      */
     public static final class Attribute extends Evaluator {
-        private final String key;
+        final String key;
 
         public Attribute(String key) {
             this.key = key;
@@ -407,7 +424,7 @@ public abstract class Evaluator {
 		@Override
 		public boolean matches(Element root, Element element) {
 			final Element p = element.parent();
-			return p != null && !(p instanceof Document) && element.elementSiblingIndex() == p.children().size()-1;
+			return p != null && !(p instanceof Document) && element.elementSiblingIndex() == p.childrenSize()-1;
 		}
 
 		@Override
@@ -453,12 +470,43 @@ public abstract class Evaluator {
     		final Element p = element.parent();
     		if (p == null || (p instanceof Document)) return false;
 
-    		final int pos = calculatePosition(root, element);
+    		final int pos = position(root, element);
     		if (a == 0) return pos == b;
 
     		return (pos-b)*a >= 0 && (pos-b)%a==0;
     	}
 
+        // during a select, the positions of all the children of each parent are calculated in one pass and memoised
+        private final ThreadLocal<IdentityHashMap<Element, Integer>> positions = new ThreadLocal<>();
+
+        @Override
+        void memoise(boolean enable) {
+            if (enable)
+                positions.set(new IdentityHashMap<Element, Integer>());
+            else
+                positions.remove();
+        }
+
+        private int position(Element root, Element element) {
+            final IdentityHashMap<Element, Integer> memo = positions.get();
+            if (memo == null)
+                return calculatePosition(root, element);
+            Integer pos = memo.get(element);
+            if (pos == null) {
+                calculatePositions(root, element, memo);
+                pos = memo.get(element);
+            }
+            return pos;
+        }
+
+        /**
+         Calculate the position of the element, and of any of its siblings that can be calculated in the same pass.
+         @param positions the memo to populate, which must contain element afterwards
+         */
+        void calculatePositions(Element root, Element element, Map<Element, Integer> positions) {
+            positions.put(element, calculatePosition(root, element));
+        }
+
 		@Override
 		public String toString() {
 			if (a == 0)
@@ -488,6 +536,14 @@ public abstract class Evaluator {
 			return element.elementSiblingIndex()+1;
 		}
 
+        @Override
+        void calculatePositions(Element root, Element element, Map<Element, Integer> positions) {
+            final Element p = element.parent();
+            final int size = p.childrenSize();
+            for (int i = 0; i < size; i++)
+                positions.put(p.child(i), i + 1);
+        }
+
 
 		protected String getPseudoClass() {
 			return "nth-child";
@@ -508,7 +564,15 @@ public abstract class Evaluator {
         protected int calculatePosition(Element root, Element element) {
     	    if (element.parent() == null)
     	        return 0;
-        	return element.parent().children().size() - element.elementSiblingIndex();
+        	return element.parent().childrenSize() - element.elementSiblingIndex();
+        }
+
+        @Override
+        void calculatePositions(Element root, Element element, Map<Element, Integer> positions) {
+            final Element p = element.parent();
+            final int size = p.childrenSize();
+            for (int i = 0; i < size; i++)
+                positions.put(p.child(i), size - i);
         }
 
 		@Override
@@ -538,6 +602,20 @@ public abstract class Evaluator {
 			return pos;
 		}
 
+        @Override
+        void calculatePositions(Element root, Element element, Map<Element, Integer> positions) {
+            final Element p = element.parent();
+            final int size = p.childrenSize();
+            final Map<org.jsoup.parser.Tag, Integer> counts = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                final Element el = p.child(i);
+                Integer count = counts.get(el.tag());
+                count = count == null ? 1 : count + 1;
+                counts.put(el.tag(), count);
+                positions.put(el, count);
+            }
+        }
+
 		@Override
 		protected String getPseudoClass() {
 			return "nth-of-type";
@@ -562,6 +640,19 @@ public abstract class Evaluator {
 			return pos;
 		}
 
+        @Override
+        void calculatePositions(Element root, Element element, Map<Element, Integer> positions) {
+            final Element p = element.parent();
+            final Map<org.jsoup.parser.Tag, Integer> counts = new HashMap<>();
+            for (int i = p.childrenSize() - 1; i >= 0; i--) {
+                final Element el = p.child(i);
+                Integer count = counts.get(el.tag());
+                count = count == null ? 1 : count + 1;
+                counts.put(el.tag(), count);
+                positions.put(el, count);
+            }
+        }
+
 		@Override
 		protected String getPseudoClass() {
 			return "nth-last-of-type";
@@ -672,7 +763,13 @@ public abstract class Evaluator {
 
         @Override
         public boolean matches(Element root, Element element) {
-            return lowerCase(element.text()).contains(searchText);
+            TextCache.Span text = TextCache.text(root, element);
+            return text != null ? text.containsLower(searchText) : lowerCase(element.text()).contains(searchText);
+        }
+
+        @Override
+        void memoise(boolean enable) {
+            TextCache.memoise(enable);
         }
 
         @Override
@@ -758,10 +855,18 @@ public abstract class Evaluator {
 
         @Override
         public boolean matches(Element root, Element element) {
+            TextCache.Span text = TextCache.text(root, element);
+            if (text != null)
+                return text.find(pattern);
             Matcher m = pattern.matcher(element.text());
             return m.find();
         }
 
+        @Override
+        void memoise(boolean enable) {
+            TextCache.memoise(enable);
+        }
+
         @Override
         public String toString() {
             return String.format(":matches(%s)", pattern);
@@ -807,6 +912,11 @@ public abstract class Evaluator {
             return false;
         }
 
+        @Override
+        void memoise(boolean enable) {
+            TextCache.suspend(enable); // as this modifies the tree, element text can't be cached
+        }
+
         @Override
         public String toString() {
             return ":matchText";
@@ -0,0 +1,233 @@
+package org.jsoup.select;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.FrozenDocument;
+import org.jsoup.nodes.FrozenDocument.FrozenNode;
+import org.jsoup.nodes.Node;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ Runs a query on a {@link FrozenDocument}. The common evaluators (tag, id, class, attribute and attribute value, and
+ the descendant and child combinators, and groups of them) are matched directly against the frozen arrays. Other
+ queries are run on a thawed copy of the document, and the matches mapped back to their frozen nodes.
+ */
+abstract class FrozenMatcher {
+
+    abstract boolean matches(FrozenDocument doc, int root, int node);
+
+    static List<FrozenNode> select(String query, FrozenNode rootNode) {
+        Evaluator eval = QueryParser.compile(query);
+        FrozenDocument doc = rootNode.document();
+        int root = rootNode.index();
+        List<FrozenNode> found = new ArrayList<>();
+        if (!doc.isElement(root))
+            return found;
+
+        FrozenMatcher matcher = of(eval);
+        if (matcher != null) {
+            for (int i = root; i < doc.subtreeEnd(root); i++) {
+                if (doc.isElement(i) && matcher.matches(doc, root, i))
+                    found.add(doc.node(i));
+            }
+        } else {
+            selectThawed(eval, doc, root, found);
+        }
+        return found;
+    }
+
+    /**
+     Thaw the whole document (so the query sees the root's ancestors and siblings, as it would in the original), select
+     from the root's copy, and map the matches back by their position in the document.
+     */
+    private static void selectThawed(Evaluator eval, FrozenDocument doc, int root, final List<FrozenNode> found) {
+        Element thawed = doc.thaw();
+        Element thawedRoot = thawed;
+        if (root != 0) {
+            Positions positions = new Positions(root);
+            NodeTraversor.filter(positions, thawed);
+            //noinspection ConstantConditions
+            thawedRoot = (Element) positions.found;
+        }
+
+        Elements matches = Collector.collect(eval, thawedRoot);
+        if (matches.isEmpty())
+            return;
+        final Set<Element> matched = Selector.identitySet(matches);
+        final FrozenDocument frozen = doc;
+        final int[] position = {root};
+        NodeTraversor.traverse(new NodeVisitor() {
+            @Override
+            public void head(Node node, int depth) {
+                //noinspection SuspiciousMethodCalls
+                if (matched.contains(node))
+                    found.add(frozen.node(position[0]));
+                position[0]++;
+            }
+
+            @Override
+            public void tail(Node node, int depth) {
+                // void
+            }
+        }, thawedRoot);
+    }
+
+    /** Finds the thawed node at a position in the document. */
+    private static final class Positions implements NodeFilter {
+        private final int target;
+        private int position = 0;
+        @Nullable Node found;
+
+        Positions(int target) {
+            this.target = target;
+        }
+
+        @Override
+        public FilterResult head(Node node, int depth) {
+            if (position++ == target) {
+                found = node;
+                return FilterResult.STOP;
+            }
+            return FilterResult.CONTINUE;
+        }
+
+        @Override
+        public FilterResult tail(Node node, int depth) {
+            return FilterResult.CONTINUE;
+        }
+    }
+
+    /**
+     Get the matcher for an evaluator, or null if it (or any of its parts) can't be matched directly.
+     */
+    static @Nullable FrozenMatcher of(Evaluator eval) {
+        if (eval instanceof Evaluator.AllElements)
+            return new FrozenMatcher() {
+                @Override boolean matches(FrozenDocument doc, int root, int node) {
+                    return true;
+                }
+            };
+        if (eval instanceof Evaluator.Tag) {
+            final String tagName = ((Evaluator.Tag) eval).tagName;
+            return new FrozenMatcher() {
+                @Override boolean matches(FrozenDocument doc, int root, int node) {
+                    return doc.normalName(node).equals(tagName);
+                }
+            };
+        }
+        if (eval instanceof Evaluator.Id) {
+            final String id = ((Evaluator.Id) eval).id;
+            return new FrozenMatcher() {
+                @Override boolean matches(FrozenDocument doc, int root, int node) {
+                    return id.equals(doc.attr(node, "id"));
+                }
+            };
+        }
+        if (eval instanceof Evaluator.Class) {
+            final String className = ((Evaluator.Class) eval).className;
+            return new FrozenMatcher() {
+                @Override boolean matches(FrozenDocument doc, int root, int node) {
+                    return doc.hasClass(node, className);
+                }
+            };
+        }
+        if (eval instanceof Evaluator.Attribute) {
+            final String key = ((Evaluator.Attribute) eval).key;
+            return new FrozenMatcher() {
+                @Override boolean matches(FrozenDocument doc, int root, int node) {
+                    return doc.hasAttr(node, key);
+                }
+            };
+        }
+        if (eval instanceof Evaluator.AttributeWithValue) {
+            final String key = ((Evaluator.AttributeWithValue) eval).key;
+            final String value = ((Evaluator.AttributeWithValue) eval).value;
+            return new FrozenMatcher() {
+                @Override boolean matches(FrozenDocument doc, int root, int node) {
+                    return doc.hasAttr(node, key) && value.equalsIgnoreCase(doc.attr(node, key).trim());
+                }
+            };
+        }
+        if (eval instanceof CompiledEvaluator.TagClass)
+            return and(of(((CompiledEvaluator.TagClass) eval).tag), of(((CompiledEvaluator.TagClass) eval).className));
+        if (eval instanceof CompiledEvaluator.TagId)
+            return and(of(((CompiledEvaluator.TagId) eval).tag), of(((CompiledEvaluator.TagId) eval).id));
+        if (eval instanceof CompiledEvaluator.TagAttribute)
+            return and(of(((CompiledEvaluator.TagAttribute) eval).tag), of(((CompiledEvaluator.TagAttribute) eval).attribute));
+        if (eval instanceof CompiledEvaluator.TagAttributeWithValue)
+            return and(of(((CompiledEvaluator.TagAttributeWithValue) eval).tag),
+                of(((CompiledEvaluator.TagAttributeWithValue) eval).attribute));
+        if (eval instanceof CompiledEvaluator.Descendant)
+            return and(of(((CompiledEvaluator.Descendant) eval).subject), of(((CompiledEvaluator.Descendant) eval).ancestor));
+        if (eval instanceof CompiledEvaluator.Child)
+            return and(of(((CompiledEvaluator.Child) eval).subject), of(((CompiledEvaluator.Child) eval).parent));
+        if (eval instanceof StructuralEvaluator.Parent) {
+            final FrozenMatcher inner = of(((StructuralEvaluator) eval).evaluator);
+            if (inner == null) return null;
+            return new FrozenMatcher() {
+                @Override boolean matches(FrozenDocument doc, int root, int node) {
+                    if (node == root)
+                        return false;
+                    for (int parent = doc.parent(node); parent != -1; parent = doc.parent(parent)) {
+                        if (inner.matches(doc, root, parent))
+                            return true;
+                        if (parent == root)
+                            break;
+                    }
+                    return false;
+                }
+            };
+        }
+        if (eval instanceof StructuralEvaluator.ImmediateParent) {
+            final FrozenMatcher inner = of(((StructuralEvaluator) eval).evaluator);
+            if (inner == null) return null;
+            return new FrozenMatcher() {
+                @Override boolean matches(FrozenDocument doc, int root, int node) {
+                    int parent = doc.parent(node);
+                    return node != root && parent != -1 && inner.matches(doc, root, parent);
+                }
+            };
+        }
+        if (eval instanceof CombiningEvaluator) {
+            CombiningEvaluator combining = (CombiningEvaluator) eval;
+            final FrozenMatcher[] matchers = new FrozenMatcher[combining.num];
+            for (int i = 0; i < combining.num; i++) {
+                matchers[i] = of(combining.evaluators.get(i));
+                if (matchers[i] == null) return null;
+            }
+            if (eval instanceof CombiningEvaluator.And)
+                return new FrozenMatcher() {
+                    @Override boolean matches(FrozenDocument doc, int root, int node) {
+                        for (int i = matchers.length - 1; i >= 0; i--) { // backwards, as And
+                            if (!matchers[i].matches(doc, root, node))
+                                return false;
+                        }
+                        return true;
+                    }
+                };
+            return new FrozenMatcher() {
+                @Override boolean matches(FrozenDocument doc, int root, int node) {
+                    for (FrozenMatcher matcher : matchers) {
+                        if (matcher.matches(doc, root, node))
+                            return true;
+                    }
+                    return false;
+                }
+            };
+        }
+        return null;
+    }
+
+    private static @Nullable FrozenMatcher and(@Nullable final FrozenMatcher first, @Nullable final FrozenMatcher second) {
+        if (first == null || second == null)
+            return null;
+        return new FrozenMatcher() {
+            @Override boolean matches(FrozenDocument doc, int root, int node) {
+                return first.matches(doc, root, node) && second.matches(doc, root, node);
+            }
+        };
+    }
+}
@@ -5,7 +5,9 @@ import org.jsoup.helper.Validate;
 import org.jsoup.parser.TokenQueue;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -48,6 +50,20 @@ public class QueryParser {
         }
     }
 
+    /**
+     * Parse a CSS query into an Evaluator, and compile it for faster matching. Common shapes of the parsed query, like
+     * {@code tag.class}, {@code tag#id}, {@code tag[attr]}, and {@code ancestor > child} chains of those, are replaced
+     * with specialised evaluators. The compiled evaluator has the same matches as the one from {@link #parse(String)},
+     * and is what the {@code select} methods use; use this to hold a query that is run many times.
+     * @param query CSS query
+     * @return compiled Evaluator
+     * @see Selector selector query syntax
+     * @since 1.15.1
+     */
+    public static Evaluator compile(String query) {
+        return CompiledEvaluator.compile(parse(query));
+    }
+
     /**
      * Parse the query
      * @return Evaluator
@@ -284,7 +300,7 @@ public class QueryParser {
                 evals.add(new Evaluator.AttributeWithValueContaining(key, cq.remainder()));
 
             else if (cq.matchChomp("~="))
-                evals.add(new Evaluator.AttributeWithValueMatching(key, Pattern.compile(cq.remainder())));
+                evals.add(new Evaluator.AttributeWithValueMatching(key, pattern(cq.remainder())));
             else
                 throw new Selector.SelectorParseException("Could not parse attribute query '%s': unexpected token at '%s'", query, cq.remainder());
         }
@@ -391,9 +407,32 @@ public class QueryParser {
         Validate.notEmpty(regex, ":matches(regex) query must not be empty");
 
         if (own)
-            evals.add(new Evaluator.MatchesOwn(Pattern.compile(regex)));
+            evals.add(new Evaluator.MatchesOwn(pattern(regex)));
         else
-            evals.add(new Evaluator.Matches(Pattern.compile(regex)));
+            evals.add(new Evaluator.Matches(pattern(regex)));
+    }
+
+    private static final int MaxPatterns = 256;
+    private static final Map<String, Pattern> patterns = new LinkedHashMap<String, Pattern>(16, 0.75f, true) { // access order
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Pattern> eldest) {
+            return size() > MaxPatterns;
+        }
+    }; // guarded by itself
+
+    /**
+     Get the compiled pattern for a regex. Patterns are immutable, so are shared between queries (and threads); the
+     most recently used are kept.
+     */
+    static Pattern pattern(String regex) {
+        synchronized (patterns) {
+            Pattern pattern = patterns.get(regex);
+            if (pattern == null) {
+                pattern = Pattern.compile(regex);
+                patterns.put(regex, pattern);
+            }
+            return pattern;
+        }
     }
 
     // :not(selector)
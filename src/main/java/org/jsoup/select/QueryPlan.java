@@ -0,0 +1,594 @@
+package org.jsoup.select;
+
+import org.jsoup.helper.Validate;
+import org.jsoup.internal.StringUtil;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ A plan for running a CSS query: the compiled evaluator, and the strategy chosen for it. Use {@link #explain(Element)}
+ (or {@link Selector#explain(String, Element)}) to run a query and see how it was executed, with the number of elements
+ tested and matched, and the time taken, by each part of the query.
+ <p>Example:</p>
+ <pre>{@code
+ QueryPlan.Explanation explanation = Selector.explain("div:has(img) > a[href]", doc);
+ System.out.println(explanation);
+ }</pre>
+ @since 1.15.1
+ */
+public class QueryPlan {
+    /**
+     The strategy used to run a query.
+     */
+    public enum Strategy {
+        /** Each element is tested against the whole query. */
+        FullScan,
+        /** The query's subject has an id: each element's id is tested before the rest of the query. */
+        IdLookup,
+        /** The query has combinators: each element is tested against its own selector before its ancestors or
+         siblings are walked, and their matches are memoised. */
+        RightmostFirst,
+        /** The query has a {@code :has()}: its inner selector is run once, and the ancestors of its matches are the
+         only elements that can match the {@code :has()}. */
+        HasPruning
+    }
+
+    private final String query;
+    private final Strategy strategy;
+    private final Evaluator evaluator;
+
+    private QueryPlan(String query, Strategy strategy, Evaluator evaluator) {
+        this.query = query;
+        this.strategy = strategy;
+        this.evaluator = evaluator;
+    }
+
+    /**
+     Parse, compile, and plan a CSS query.
+     @param query CSS query
+     @return the plan
+     @throws Selector.SelectorParseException (unchecked) on an invalid CSS query.
+     */
+    public static QueryPlan plan(String query) {
+        Validate.notEmpty(query);
+        Evaluator compiled = QueryParser.compile(query);
+
+        String id = subjectId(compiled);
+        if (id != null)
+            return new QueryPlan(query, Strategy.IdLookup,
+                compiled instanceof Evaluator.Id ? compiled : new IdFirst(id, compiled));
+        if (hasPrunableHas(compiled))
+            return new QueryPlan(query, Strategy.HasPruning, rebuild(compiled, PruneHas));
+        if (hasCombinator(compiled))
+            return new QueryPlan(query, Strategy.RightmostFirst, compiled);
+        return new QueryPlan(query, Strategy.FullScan, compiled);
+    }
+
+    private static final int MaxPlans = 256;
+    private static final Map<String, QueryPlan> plans = new LinkedHashMap<String, QueryPlan>(16, 0.75f, true) { // access order
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, QueryPlan> eldest) {
+            return size() > MaxPlans;
+        }
+    }; // guarded by itself
+
+    /**
+     Get the plan for a query, reusing it if the query was recently planned. Evaluators hold no state between (or
+     during, other than per thread) selects, so plans are shared between selects and threads; so a repeated query is
+     not parsed, compiled, and planned again.
+     */
+    static QueryPlan cached(String query) {
+        synchronized (plans) {
+            QueryPlan plan = plans.get(query);
+            if (plan == null) {
+                plan = plan(query); // throws on an invalid query, which is not kept
+                plans.put(query, plan);
+            }
+            return plan;
+        }
+    }
+
+    /**
+     Get the query this plan is for.
+     @return the CSS query
+     */
+    public String query() {
+        return query;
+    }
+
+    /**
+     Get the strategy chosen for the query.
+     @return the strategy
+     */
+    public Strategy strategy() {
+        return strategy;
+    }
+
+    /**
+     Get the evaluator that runs this plan.
+     @return the planned evaluator
+     */
+    public Evaluator evaluator() {
+        return evaluator;
+    }
+
+    /**
+     Run the query.
+     @param root root element to descend into
+     @return matching elements, empty if none
+     */
+    public Elements select(Element root) {
+        return Collector.collect(evaluator, root);
+    }
+
+    /**
+     Run the query, and explain how it was executed.
+     @param root root element to descend into
+     @return the explanation, including the matching elements
+     */
+    public Explanation explain(Element root) {
+        Validate.notNull(root);
+        Evaluator probed = rebuild(evaluator, Probe);
+        long start = System.nanoTime();
+        Elements results = Collector.collect(probed, root);
+        long nanos = System.nanoTime() - start;
+
+        List<Step> steps = new ArrayList<>();
+        addSteps(probed, 0, steps);
+        return new Explanation(this, results, nanos, steps);
+    }
+
+    @Override
+    public String toString() {
+        return strategy + ": " + evaluator;
+    }
+
+    /**
+     The results of running a query, with how it was executed.
+     */
+    public static final class Explanation {
+        private final QueryPlan plan;
+        private final Elements results;
+        private final long nanos;
+        private final List<Step> steps;
+
+        Explanation(QueryPlan plan, Elements results, long nanos, List<Step> steps) {
+            this.plan = plan;
+            this.results = results;
+            this.nanos = nanos;
+            this.steps = Collections.unmodifiableList(steps);
+        }
+
+        /**
+         Get the plan that was run.
+         @return the plan
+         */
+        public QueryPlan plan() {
+            return plan;
+        }
+
+        /**
+         Get the elements that matched the query.
+         @return the matches
+         */
+        public Elements results() {
+            return results;
+        }
+
+        /**
+         Get the time taken to run the query. Note that measuring each step adds overhead, so this is greater than the
+         time the query takes when not explained.
+         @return the elapsed time, in nanoseconds
+         */
+        public long nanos() {
+            return nanos;
+        }
+
+        /**
+         Get the steps of the query: each evaluator in the plan, in a depth-first walk from the top.
+         @return the steps
+         */
+        public List<Step> steps() {
+            return steps;
+        }
+
+        /**
+         Get a report of the plan, with a line per step.
+         */
+        @Override
+        public String toString() {
+            StringBuilder sb = StringUtil.borrowBuilder();
+            sb.append("Query: ").append(plan.query).append('\n')
+                .append("Strategy: ").append(plan.strategy).append('\n')
+                .append("Results: ").append(results.size()).append(" in ").append(millis(nanos)).append('\n');
+            for (Step step : steps)
+                sb.append(step).append('\n');
+            return StringUtil.releaseBuilder(sb);
+        }
+    }
+
+    /**
+     An evaluator in a query plan, with how many elements it was tested against, how many matched, and the (inclusive)
+     time spent in it.
+     */
+    public static final class Step {
+        private final String evaluator;
+        private final int depth;
+        private final long tests;
+        private final long matches;
+        private final long nanos;
+
+        Step(String evaluator, int depth, long tests, long matches, long nanos) {
+            this.evaluator = evaluator;
+            this.depth = depth;
+            this.tests = tests;
+            this.matches = matches;
+            this.nanos = nanos;
+        }
+
+        /**
+         Get the evaluator, as a selector string.
+         @return the evaluator
+         */
+        public String evaluator() {
+            return evaluator;
+        }
+
+        /**
+         Get the depth of this step in the plan; the top evaluator is at 0, and the evaluators it uses at 1, etc.
+         @return the depth
+         */
+        public int depth() {
+            return depth;
+        }
+
+        /**
+         Get the number of elements this evaluator was tested against.
+         @return the number of tests
+         */
+        public long tests() {
+            return tests;
+        }
+
+        /**
+         Get the number of tests that matched.
+         @return the number of matches
+         */
+        public long matches() {
+            return matches;
+        }
+
+        /**
+         Get the time spent in this evaluator, including the evaluators it uses.
+         @return the time, in nanoseconds
+         */
+        public long nanos() {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            return StringUtil.padding(depth * 2) + "[" + evaluator.trim() + "] tests: " + tests + ", matches: " + matches
+                + ", time: " + millis(nanos);
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f ms", nanos / 1e6);
+    }
+
+    /** Tests the id of an element before the rest of the query. */
+    static final class IdFirst extends Evaluator {
+        final String id;
+        final Evaluator evaluator;
+
+        IdFirst(String id, Evaluator evaluator) {
+            this.id = id;
+            this.evaluator = evaluator;
+        }
+
+        @Override
+        public boolean matches(Element root, Element element) {
+            return id.equals(element.id()) && evaluator.matches(root, element);
+        }
+
+        @Override
+        void memoise(boolean enable) {
+            evaluator.memoise(enable);
+        }
+
+        @Override
+        public String toString() {
+            return evaluator.toString();
+        }
+    }
+
+    /**
+     A {@code :has()} whose inner evaluator only tests the element itself (so does not depend on the root it is run
+     from). During a select, the inner evaluator is run once over the tree, and the ancestors of its matches are kept:
+     those are the elements that have a matching descendant.
+     */
+    static final class PrunedHas extends Evaluator {
+        final StructuralEvaluator.Has has;
+        private final ThreadLocal<Pruning> pruning = new ThreadLocal<>(); // only set during a select
+
+        PrunedHas(StructuralEvaluator.Has has) {
+            this.has = has;
+        }
+
+        @Override
+        public boolean matches(Element root, Element element) {
+            Pruning p = pruning.get();
+            if (p == null)
+                return has.matches(root, element);
+            if (p.root != root)
+                p.find(root, has.evaluator);
+            return p.ancestors.contains(element);
+        }
+
+        @Override
+        void memoise(boolean enable) {
+            if (enable)
+                pruning.set(new Pruning());
+            else
+                pruning.remove();
+            has.memoise(enable);
+        }
+
+        @Override
+        public String toString() {
+            return has.toString();
+        }
+
+        private static final class Pruning {
+            @Nullable Element root;
+            final Set<Element> ancestors = Selector.identitySet();
+
+            void find(final Element root, final Evaluator inner) {
+                this.root = root;
+                ancestors.clear();
+                NodeTraversor.traverse(new NodeVisitor() {
+                    @Override
+                    public void head(Node node, int depth) {
+                        if (node instanceof Element && inner.matches(root, (Element) node)) {
+                            Element parent = ((Element) node).parent();
+                            // stop at an ancestor already added, as its ancestors will have been too
+                            while (parent != null && ancestors.add(parent) && parent != root)
+                                parent = parent.parent();
+                        }
+                    }
+
+                    @Override
+                    public void tail(Node node, int depth) {
+                        // void
+                    }
+                }, root);
+            }
+        }
+    }
+
+    /** Counts and times the tests of an evaluator, for explain. */
+    static final class Probed extends Evaluator {
+        final Evaluator evaluator;
+        long tests, matches, nanos; // explain runs on one thread
+
+        Probed(Evaluator evaluator) {
+            this.evaluator = evaluator;
+        }
+
+        @Override
+        public boolean matches(Element root, Element element) {
+            long start = System.nanoTime();
+            boolean matched = evaluator.matches(root, element);
+            nanos += System.nanoTime() - start;
+            tests++;
+            if (matched)
+                matches++;
+            return matched;
+        }
+
+        @Override
+        void memoise(boolean enable) {
+            evaluator.memoise(enable);
+        }
+
+        @Override
+        public String toString() {
+            return evaluator.toString();
+        }
+    }
+
+    /** A transform applied to each evaluator in a tree, after its inner evaluators have been rebuilt. */
+    private interface Transform {
+        Evaluator apply(Evaluator eval);
+    }
+
+    private static final Transform PruneHas = new Transform() {
+        @Override
+        public Evaluator apply(Evaluator eval) {
+            if (eval instanceof StructuralEvaluator.Has && isSelfContained(((StructuralEvaluator.Has) eval).evaluator))
+                return new PrunedHas((StructuralEvaluator.Has) eval);
+            return eval;
+        }
+    };
+
+    private static final Transform Probe = new Transform() {
+        @Override
+        public Evaluator apply(Evaluator eval) {
+            return new Probed(eval);
+        }
+    };
+
+    /**
+     Rebuild an evaluator tree, applying the transform to each evaluator.
+     */
+    private static Evaluator rebuild(Evaluator eval, Transform transform) {
+        Evaluator rebuilt;
+        if (eval instanceof CombiningEvaluator.And) {
+            CombiningEvaluator.And and = (CombiningEvaluator.And) eval;
+            List<Evaluator> evaluators = new ArrayList<>(and.num);
+            for (int i = 0; i < and.num; i++)
+                evaluators.add(rebuild(and.evaluators.get(i), transform));
+            rebuilt = new CombiningEvaluator.And(evaluators);
+        } else if (eval instanceof CombiningEvaluator.Or) {
+            CombiningEvaluator.Or source = (CombiningEvaluator.Or) eval;
+            CombiningEvaluator.Or or = new CombiningEvaluator.Or();
+            for (int i = 0; i < source.num; i++)
+                or.add(rebuild(source.evaluators.get(i), transform));
+            rebuilt = or;
+        } else if (eval instanceof CompiledEvaluator.Descendant) {
+            CompiledEvaluator.Descendant descendant = (CompiledEvaluator.Descendant) eval;
+            rebuilt = new CompiledEvaluator.Descendant(
+                new StructuralEvaluator.Parent(rebuild(descendant.ancestor.evaluator, transform)),
+                rebuild(descendant.subject, transform));
+        } else if (eval instanceof CompiledEvaluator.Child) {
+            CompiledEvaluator.Child child = (CompiledEvaluator.Child) eval;
+            rebuilt = new CompiledEvaluator.Child(
+                new StructuralEvaluator.ImmediateParent(rebuild(child.parent.evaluator, transform)),
+                rebuild(child.subject, transform));
+        } else if (eval instanceof StructuralEvaluator.Parent) {
+            rebuilt = new StructuralEvaluator.Parent(rebuild(((StructuralEvaluator) eval).evaluator, transform));
+        } else if (eval instanceof StructuralEvaluator.ImmediateParent) {
+            rebuilt = new StructuralEvaluator.ImmediateParent(rebuild(((StructuralEvaluator) eval).evaluator, transform));
+        } else if (eval instanceof StructuralEvaluator.PreviousSibling) {
+            rebuilt = new StructuralEvaluator.PreviousSibling(rebuild(((StructuralEvaluator) eval).evaluator, transform));
+        } else if (eval instanceof StructuralEvaluator.ImmediatePreviousSibling) {
+            rebuilt = new StructuralEvaluator.ImmediatePreviousSibling(rebuild(((StructuralEvaluator) eval).evaluator, transform));
+        } else if (eval instanceof StructuralEvaluator.Has) {
+            rebuilt = new StructuralEvaluator.Has(rebuild(((StructuralEvaluator) eval).evaluator, transform));
+        } else if (eval instanceof StructuralEvaluator.Not) {
+            rebuilt = new StructuralEvaluator.Not(rebuild(((StructuralEvaluator) eval).evaluator, transform));
+        } else if (eval instanceof IdFirst) {
+            rebuilt = new IdFirst(((IdFirst) eval).id, rebuild(((IdFirst) eval).evaluator, transform));
+        } else {
+            rebuilt = eval; // a leaf, or a PrunedHas, whose inner evaluator is only run to find the ancestors
+        }
+        return transform.apply(rebuilt);
+    }
+
+    /** The evaluators that this evaluator uses, in the order they are shown in an explanation. */
+    private static List<Evaluator> inner(Evaluator eval) {
+        if (eval instanceof CombiningEvaluator) {
+            CombiningEvaluator combining = (CombiningEvaluator) eval;
+            return combining.evaluators.subList(0, combining.num);
+        }
+        if (eval instanceof CompiledEvaluator.Descendant) {
+            CompiledEvaluator.Descendant descendant = (CompiledEvaluator.Descendant) eval;
+            List<Evaluator> inner = new ArrayList<>(2);
+            inner.add(descendant.ancestor.evaluator);
+            inner.add(descendant.subject);
+            return inner;
+        }
+        if (eval instanceof CompiledEvaluator.Child) {
+            CompiledEvaluator.Child child = (CompiledEvaluator.Child) eval;
+            List<Evaluator> inner = new ArrayList<>(2);
+            inner.add(child.parent.evaluator);
+            inner.add(child.subject);
+            return inner;
+        }
+        if (eval instanceof StructuralEvaluator)
+            return Collections.singletonList(((StructuralEvaluator) eval).evaluator);
+        if (eval instanceof IdFirst)
+            return Collections.singletonList(((IdFirst) eval).evaluator);
+        if (eval instanceof Probed)
+            return Collections.singletonList(((Probed) eval).evaluator);
+        return Collections.emptyList();
+    }
+
+    private static void addSteps(Evaluator eval, int depth, List<Step> steps) {
+        if (eval instanceof Probed) {
+            Probed probed = (Probed) eval;
+            steps.add(new Step(probed.toString(), depth, probed.tests, probed.matches, probed.nanos));
+            depth++;
+        }
+        for (Evaluator inner : inner(eval))
+            addSteps(inner, depth, steps);
+    }
+
+    private static @Nullable String subjectId(Evaluator eval) {
+        if (eval instanceof Evaluator.Id)
+            return ((Evaluator.Id) eval).id;
+        if (eval instanceof CompiledEvaluator.TagId)
+            return ((CompiledEvaluator.TagId) eval).id.id;
+        if (eval instanceof CompiledEvaluator.Descendant)
+            return subjectId(((CompiledEvaluator.Descendant) eval).subject);
+        if (eval instanceof CompiledEvaluator.Child)
+            return subjectId(((CompiledEvaluator.Child) eval).subject);
+        if (eval instanceof CombiningEvaluator.And) {
+            for (Evaluator inner : inner(eval)) {
+                if (!(inner instanceof StructuralEvaluator)) {
+                    String id = subjectId(inner);
+                    if (id != null)
+                        return id;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean hasPrunableHas(Evaluator eval) {
+        if (eval instanceof StructuralEvaluator.Has && isSelfContained(((StructuralEvaluator.Has) eval).evaluator))
+            return true;
+        for (Evaluator inner : inner(eval)) {
+            if (hasPrunableHas(inner))
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean hasCombinator(Evaluator eval) {
+        if (eval instanceof CompiledEvaluator.Descendant || eval instanceof CompiledEvaluator.Child
+            || eval instanceof StructuralEvaluator.Parent || eval instanceof StructuralEvaluator.ImmediateParent
+            || eval instanceof StructuralEvaluator.PreviousSibling || eval instanceof StructuralEvaluator.ImmediatePreviousSibling)
+            return true;
+        for (Evaluator inner : inner(eval)) {
+            if (hasCombinator(inner))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     Tests if the evaluator only tests the element itself, and not the root or other elements, so its result is the
+     same wherever it is run from.
+     */
+    private static boolean isSelfContained(Evaluator eval) {
+        if (eval instanceof CombiningEvaluator) {
+            for (Evaluator inner : inner(eval)) {
+                if (!isSelfContained(inner))
+                    return false;
+            }
+            return true;
+        }
+        return SelfContained.contains(eval.getClass());
+    }
+
+    /** The evaluators that only test the element (including its position in its parent, and its text). Not {@code
+     :root}, which tests the root, nor {@code :matchText}, which modifies the tree; and not user evaluators. */
+    private static final Set<Class<? extends Evaluator>> SelfContained = new HashSet<>(Arrays.asList(
+        Evaluator.Tag.class, Evaluator.TagEndsWith.class, Evaluator.Id.class, Evaluator.Class.class,
+        Evaluator.Attribute.class, Evaluator.AttributeStarting.class, Evaluator.AttributeWithValue.class,
+        Evaluator.AttributeWithValueNot.class, Evaluator.AttributeWithValueStarting.class,
+        Evaluator.AttributeWithValueEnding.class, Evaluator.AttributeWithValueContaining.class,
+        Evaluator.AttributeWithValueMatching.class, Evaluator.AllElements.class,
+        Evaluator.IndexLessThan.class, Evaluator.IndexGreaterThan.class, Evaluator.IndexEquals.class,
+        Evaluator.IsFirstChild.class, Evaluator.IsLastChild.class, Evaluator.IsOnlyChild.class,
+        Evaluator.IsFirstOfType.class, Evaluator.IsLastOfType.class, Evaluator.IsOnlyOfType.class,
+        Evaluator.IsNthChild.class, Evaluator.IsNthLastChild.class, Evaluator.IsNthOfType.class,
+        Evaluator.IsNthLastOfType.class, Evaluator.IsEmpty.class,
+        Evaluator.ContainsText.class, Evaluator.ContainsWholeText.class, Evaluator.ContainsData.class,
+        Evaluator.ContainsOwnText.class, Evaluator.Matches.class, Evaluator.MatchesOwn.class,
+        CompiledEvaluator.TagClass.class, CompiledEvaluator.TagId.class, CompiledEvaluator.TagAttribute.class,
+        CompiledEvaluator.TagAttributeWithValue.class));
+}
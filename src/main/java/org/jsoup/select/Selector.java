@@ -2,11 +2,15 @@ package org.jsoup.select;
 
 import org.jsoup.helper.Validate;
 import org.jsoup.nodes.Element;
+import org.jsoup.nodes.FrozenDocument.FrozenNode;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
 
 /**
  * CSS-like element selector, that finds elements matching a query.
@@ -93,7 +97,7 @@ public class Selector {
      */
     public static Elements select(String query, Element root) {
         Validate.notEmpty(query);
-        return select(QueryParser.parse(query), root);
+        return select(QueryPlan.cached(query).evaluator(), root);
     }
 
     /**
@@ -119,15 +123,14 @@ public class Selector {
     public static Elements select(String query, Iterable<Element> roots) {
         Validate.notEmpty(query);
         Validate.notNull(roots);
-        Evaluator evaluator = QueryParser.parse(query);
+        Evaluator evaluator = QueryPlan.cached(query).evaluator();
         Elements elements = new Elements();
-        IdentityHashMap<Element, Boolean> seenElements = new IdentityHashMap<>();
-        // dedupe elements by identity, not equality
+        Set<Element> seenElements = identitySet(); // dedupe elements by identity, not equality
 
         for (Element root : roots) {
             final Elements found = select(evaluator, root);
             for (Element el : found) {
-                if (seenElements.put(el, Boolean.TRUE) == null) {
+                if (seenElements.add(el)) {
                     elements.add(el);
                 }
             }
@@ -138,20 +141,41 @@ public class Selector {
     // exclude set. package open so that Elements can implement .not() selector.
     static Elements filterOut(Collection<Element> elements, Collection<Element> outs) {
         Elements output = new Elements();
+        if (outs.isEmpty()) {
+            output.addAll(elements);
+            return output;
+        }
+        Set<Element> excluded = identitySet(outs);
         for (Element el : elements) {
-            boolean found = false;
-            for (Element out : outs) {
-                if (el.equals(out)) {
-                    found = true;
-                    break;
-                }
-            }
-            if (!found)
+            if (!excluded.contains(el))
                 output.add(el);
         }
         return output;
     }
 
+    // retain set. package open so that Elements can implement .intersect().
+    static Elements filterIn(Collection<Element> elements, Collection<Element> ins) {
+        Elements output = new Elements();
+        if (ins.isEmpty())
+            return output;
+        Set<Element> included = identitySet(ins);
+        for (Element el : elements) {
+            if (included.contains(el))
+                output.add(el);
+        }
+        return output;
+    }
+
+    static Set<Element> identitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<Element, Boolean>());
+    }
+
+    static Set<Element> identitySet(Collection<Element> elements) {
+        Set<Element> set = Collections.newSetFromMap(new IdentityHashMap<Element, Boolean>(elements.size()));
+        set.addAll(elements);
+        return set;
+    }
+
     /**
      * Find the first element that matches the query.
      * @param cssQuery CSS selector
@@ -160,7 +184,36 @@ public class Selector {
      */
     public static @Nullable Element selectFirst(String cssQuery, Element root) {
         Validate.notEmpty(cssQuery);
-        return Collector.findFirst(QueryParser.parse(cssQuery), root);
+        return Collector.findFirst(QueryParser.compile(cssQuery), root);
+    }
+
+    /**
+     * Find elements matching selector, in a frozen document.
+     *
+     * @param query CSS selector
+     * @param root  root node to descend into
+     * @return matching elements, in document order; empty if none
+     * @throws Selector.SelectorParseException (unchecked) on an invalid CSS query.
+     * @see FrozenNode#select(String)
+     * @since 1.15.1
+     */
+    public static List<FrozenNode> select(String query, FrozenNode root) {
+        Validate.notEmpty(query);
+        Validate.notNull(root);
+        return FrozenMatcher.select(query, root);
+    }
+
+    /**
+     * Find elements matching selector, and explain how the query was run: the strategy chosen for it, and the number of
+     * elements tested and matched, and the time taken, by each part of the query.
+     * @param query CSS selector
+     * @param root root element to descend into
+     * @return the explanation, including the matching elements
+     * @throws Selector.SelectorParseException (unchecked) on an invalid CSS query.
+     * @since 1.15.1
+     */
+    public static QueryPlan.Explanation explain(String query, Element root) {
+        return QueryPlan.plan(query).explain(root);
     }
 
     public static class SelectorParseException extends IllegalStateException {
@@ -0,0 +1,289 @@
+package org.jsoup.select;
+
+import org.jsoup.helper.Validate;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.jsoup.internal.Normalizer.lowerCase;
+
+/**
+ A set of CSS queries that are run together, in a single traversal of the tree. When many queries are run against the
+ same document, that is much faster than calling {@link Element#select(String)} for each, which walks the tree once per
+ query.
+ <p>As browsers do, each query is indexed by the rightmost simple selector of its subject: by id, else by class, else by
+ tag name. At each element, only the queries indexed under its tag, id, or classes (plus any queries that could not be
+ indexed, like {@code [href]} or {@code *}) are tested.</p>
+ <p>Example:</p>
+ <pre>{@code
+ SelectorSet queries = new SelectorSet("h1", "div.content p", "#nav a[href]");
+ List<Elements> results = queries.select(doc);
+ Elements links = results.get(2);
+ }</pre>
+ <p>A SelectorSet is not thread-safe while queries are being added. As with evaluators, selecting concurrently with the
+ same set is not supported for queries using {@code :has()}.</p>
+ @since 1.15.1
+ */
+public class SelectorSet {
+    private final ArrayList<String> queries = new ArrayList<>();
+    private final ArrayList<Evaluator> evaluators = new ArrayList<>();
+
+    // the index, built on first select after a change:
+    private boolean indexed = false;
+    private final HashMap<String, Candidate[]> byTag = new HashMap<>();
+    private final HashMap<String, Candidate[]> byId = new HashMap<>();
+    private final HashMap<String, Candidate[]> byClass = new HashMap<>(); // keyed by lower-case class, as hasClass is case-insensitive
+    private Candidate[] unindexed = new Candidate[0];
+
+    /**
+     Create a new, empty SelectorSet.
+     */
+    public SelectorSet() {}
+
+    /**
+     Create a new SelectorSet with the supplied queries.
+     @param queries CSS queries
+     @throws Selector.SelectorParseException (unchecked) on an invalid CSS query.
+     */
+    public SelectorSet(String... queries) {
+        for (String query : queries)
+            add(query);
+    }
+
+    /**
+     Add a query to this set. Its results will be at this position (the previous {@link #size()}) in the results.
+     @param query CSS query
+     @return this SelectorSet, for chaining
+     @throws Selector.SelectorParseException (unchecked) on an invalid CSS query.
+     */
+    public SelectorSet add(String query) {
+        Validate.notEmpty(query);
+        return add(query, QueryParser.parse(query));
+    }
+
+    /**
+     Add a parsed query to this set.
+     @param evaluator the query evaluator
+     @return this SelectorSet, for chaining
+     */
+    public SelectorSet add(Evaluator evaluator) {
+        Validate.notNull(evaluator);
+        return add(evaluator.toString(), evaluator);
+    }
+
+    private SelectorSet add(String query, Evaluator evaluator) {
+        queries.add(query);
+        evaluators.add(evaluator);
+        indexed = false;
+        return this;
+    }
+
+    /**
+     Get the number of queries in this set.
+     @return the number of queries
+     */
+    public int size() {
+        return queries.size();
+    }
+
+    /**
+     Get the queries in this set, in the order they were added.
+     @return an unmodifiable list of the queries
+     */
+    public List<String> queries() {
+        return Collections.unmodifiableList(queries);
+    }
+
+    /**
+     Run all the queries against the root element and its descendants, in one traversal.
+     @param root the root element to descend into
+     @return the matches for each query, in the order the queries were added. Each query's matches are in document
+     order, as from {@link Element#select(String)}.
+     */
+    public List<Elements> select(Element root) {
+        Validate.notNull(root);
+        index();
+        final int size = evaluators.size();
+        final List<Elements> results = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            results.add(new Elements());
+        if (size == 0)
+            return results;
+
+        final Element[] lastMatch = new Element[size]; // a query with a selector group (a, b) may be indexed more than once
+        for (Evaluator eval : evaluators)
+            eval.memoise(true);
+        try {
+            traverse(root, results, lastMatch);
+        } finally {
+            for (Evaluator eval : evaluators)
+                eval.memoise(false);
+        }
+        return results;
+    }
+
+    private void traverse(final Element root, final List<Elements> results, final Element[] lastMatch) {
+        NodeTraversor.traverse(new NodeVisitor() {
+            @Override
+            public void head(Node node, int depth) {
+                if (!(node instanceof Element))
+                    return;
+                Element el = (Element) node;
+                test(unindexed, root, el, results, lastMatch);
+                test(byTag.get(el.normalName()), root, el, results, lastMatch);
+                if (el.attributesSize() == 0)
+                    return;
+                if (!byId.isEmpty()) {
+                    String id = el.id();
+                    if (id.length() > 0)
+                        test(byId.get(id), root, el, results, lastMatch);
+                }
+                if (!byClass.isEmpty())
+                    testClasses(el, root, results, lastMatch);
+            }
+
+            @Override
+            public void tail(Node node, int depth) {
+                // void
+            }
+        }, root);
+    }
+
+    /**
+     Run all the queries against the root element and its descendants, in one traversal, and return the matches keyed
+     by query.
+     @param root the root element to descend into
+     @return an ordered map of each query to its matches. If a query was added more than once, it appears once.
+     */
+    public Map<String, Elements> selectMap(Element root) {
+        List<Elements> results = select(root);
+        Map<String, Elements> map = new LinkedHashMap<>();
+        for (int i = 0; i < results.size(); i++)
+            map.put(queries.get(i), results.get(i));
+        return map;
+    }
+
+    private void testClasses(Element el, Element root, List<Elements> results, Element[] lastMatch) {
+        String classAttr = el.attributes().getIgnoreCase("class");
+        int len = classAttr.length();
+        int start = -1;
+        for (int i = 0; i <= len; i++) { // scan for whitespace separated tokens, as hasClass does
+            boolean ws = i == len || Character.isWhitespace(classAttr.charAt(i));
+            if (ws) {
+                if (start != -1) {
+                    test(byClass.get(lowerCase(classAttr.substring(start, i))), root, el, results, lastMatch);
+                    start = -1;
+                }
+            } else if (start == -1) {
+                start = i;
+            }
+        }
+    }
+
+    private static void test(@Nullable Candidate[] candidates, Element root, Element el, List<Elements> results, Element[] lastMatch) {
+        if (candidates == null)
+            return;
+        for (Candidate candidate : candidates) {
+            int query = candidate.query;
+            if (lastMatch[query] != el && candidate.evaluator.matches(root, el)) {
+                lastMatch[query] = el;
+                results.get(query).add(el);
+            }
+        }
+    }
+
+    private void index() {
+        if (indexed)
+            return;
+        HashMap<String, ArrayList<Candidate>> tags = new HashMap<>();
+        HashMap<String, ArrayList<Candidate>> ids = new HashMap<>();
+        HashMap<String, ArrayList<Candidate>> classes = new HashMap<>();
+        ArrayList<Candidate> others = new ArrayList<>();
+
+        for (int i = 0; i < evaluators.size(); i++) {
+            Evaluator eval = evaluators.get(i);
+            if (eval instanceof CombiningEvaluator.Or) { // index each selector group separately
+                CombiningEvaluator.Or or = (CombiningEvaluator.Or) eval;
+                for (int j = 0; j < or.num; j++)
+                    indexCandidate(new Candidate(i, or.evaluators.get(j)), tags, ids, classes, others);
+            } else {
+                indexCandidate(new Candidate(i, eval), tags, ids, classes, others);
+            }
+        }
+
+        toArrays(tags, byTag);
+        toArrays(ids, byId);
+        toArrays(classes, byClass);
+        unindexed = others.toArray(new Candidate[0]);
+        indexed = true;
+    }
+
+    private static void indexCandidate(Candidate candidate, Map<String, ArrayList<Candidate>> tags, Map<String, ArrayList<Candidate>> ids,
+                                       Map<String, ArrayList<Candidate>> classes, List<Candidate> others) {
+        Evaluator key = indexKey(candidate.evaluator);
+        if (key instanceof Evaluator.Id)
+            bucket(ids, ((Evaluator.Id) key).id).add(candidate);
+        else if (key instanceof Evaluator.Class)
+            bucket(classes, lowerCase(((Evaluator.Class) key).className)).add(candidate);
+        else if (key instanceof Evaluator.Tag)
+            bucket(tags, ((Evaluator.Tag) key).tagName).add(candidate);
+        else
+            others.add(candidate);
+    }
+
+    /**
+     Find the most selective simple selector that the subject element must match: an id, else a class, else a tag. In
+     an And, the structural evaluators hold the ancestor / sibling selectors, so the other evaluators are of the subject.
+     */
+    private static @Nullable Evaluator indexKey(Evaluator eval) {
+        if (eval instanceof Evaluator.Id || eval instanceof Evaluator.Class || eval instanceof Evaluator.Tag)
+            return eval;
+        if (!(eval instanceof CombiningEvaluator.And))
+            return null;
+
+        Evaluator best = null;
+        CombiningEvaluator.And and = (CombiningEvaluator.And) eval;
+        for (int i = 0; i < and.num; i++) {
+            Evaluator sub = and.evaluators.get(i);
+            if (sub instanceof Evaluator.Id)
+                return sub;
+            if (sub instanceof Evaluator.Class && !(best instanceof Evaluator.Class))
+                best = sub;
+            else if (sub instanceof Evaluator.Tag && best == null)
+                best = sub;
+        }
+        return best;
+    }
+
+    private static ArrayList<Candidate> bucket(Map<String, ArrayList<Candidate>> buckets, String key) {
+        ArrayList<Candidate> bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = new ArrayList<>();
+            buckets.put(key, bucket);
+        }
+        return bucket;
+    }
+
+    private static void toArrays(Map<String, ArrayList<Candidate>> lists, Map<String, Candidate[]> arrays) {
+        arrays.clear();
+        for (Map.Entry<String, ArrayList<Candidate>> entry : lists.entrySet())
+            arrays.put(entry.getKey(), entry.getValue().toArray(new Candidate[0]));
+    }
+
+    private static final class Candidate {
+        final int query;
+        final Evaluator evaluator;
+
+        Candidate(int query, Evaluator evaluator) {
+            this.query = query;
+            this.evaluator = evaluator;
+        }
+    }
+}
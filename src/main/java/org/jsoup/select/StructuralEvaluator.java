@@ -3,11 +3,81 @@ package org.jsoup.select;
 import org.jsoup.nodes.Element;
 import org.jsoup.nodes.Node;
 
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
 /**
  * Base structural evaluator.
  */
 abstract class StructuralEvaluator extends Evaluator {
     Evaluator evaluator;
+    private final ThreadLocal<Memo> memo = new ThreadLocal<>(); // only set during a select; per thread as evaluators may be shared
+
+    @Override
+    void memoise(boolean enable) {
+        if (enable)
+            memo.set(new Memo());
+        else
+            memo.remove();
+        evaluator.memoise(enable);
+    }
+
+    /**
+     Get the memo for the current select, or null if not in a select.
+     */
+    @Nullable Memo memo(Element root) {
+        Memo m = memo.get();
+        if (m != null && m.root != root) // e.g. within :has(), which tests from each candidate; only keep the current
+            m.reset(root);
+        return m;
+    }
+
+    /**
+     Test the inner evaluator, memoising its result for the current select, so that a shared ancestor or sibling is
+     only evaluated once.
+     */
+    boolean innerMatches(@Nullable Memo m, Element root, Element element) {
+        if (m == null)
+            return evaluator.matches(root, element);
+        Boolean matched = m.inner.get(element);
+        if (matched == null) {
+            matched = evaluator.matches(root, element);
+            m.inner.put(element, matched);
+        }
+        return matched;
+    }
+
+    /**
+     The matches of a structural evaluator within one select. Holds the results of the inner evaluator, and the results
+     of this evaluator (used by the chained ancestor and sibling combinators, where an element's result follows from its
+     parent's or previous sibling's).
+     */
+    static final class Memo {
+        @Nullable Element root;
+        IdentityHashMap<Element, Boolean> inner = new IdentityHashMap<>();
+        IdentityHashMap<Element, Boolean> results = new IdentityHashMap<>();
+        final ArrayList<Element> walked = new ArrayList<>();
+
+        /**
+         Start over for a new root. Used maps are replaced rather than cleared, as clear() costs the map's capacity, and
+         the root changes for every candidate within :has(), which would make a large select quadratic.
+         */
+        void reset(Element root) {
+            this.root = root;
+            if (!inner.isEmpty()) inner = new IdentityHashMap<>();
+            if (!results.isEmpty()) results = new IdentityHashMap<>();
+            walked.clear();
+        }
+
+        /** Record the result for all the elements walked to find it. */
+        boolean remember(boolean matched) {
+            for (int i = 0; i < walked.size(); i++)
+                results.put(walked.get(i), matched);
+            walked.clear();
+            return matched;
+        }
+    }
 
     static class Root extends Evaluator {
         public boolean matches(Element root, Element element) {
@@ -16,15 +86,21 @@ abstract class StructuralEvaluator extends Evaluator {
     }
 
     static class Has extends StructuralEvaluator {
-        final Collector.FirstFinder finder;
+        final ThreadLocal<Collector.FirstFinder> finders; // the finder holds state during a find, so one per thread
 
-        public Has(Evaluator evaluator) {
+        public Has(final Evaluator evaluator) {
             this.evaluator = evaluator;
-            finder = new Collector.FirstFinder(evaluator);
+            finders = new ThreadLocal<Collector.FirstFinder>() {
+                @Override
+                protected Collector.FirstFinder initialValue() {
+                    return new Collector.FirstFinder(evaluator);
+                }
+            };
         }
 
         public boolean matches(Element root, Element element) {
             // for :has, we only want to match children (or below), not the input element. And we want to minimize GCs
+            final Collector.FirstFinder finder = finders.get();
             for (int i = 0; i < element.childNodeSize(); i++) {
                 Node node = element.childNode(i);
                 if (node instanceof Element) {
@@ -66,15 +142,35 @@ abstract class StructuralEvaluator extends Evaluator {
             if (root == element)
                 return false;
 
-            Element parent = element.parent();
-            while (parent != null) {
-                if (evaluator.matches(root, parent))
-                    return true;
+            Memo m = memo(root);
+            if (m == null) {
+                Element parent = element.parent();
+                while (parent != null) {
+                    if (evaluator.matches(root, parent))
+                        return true;
+                    if (parent == root)
+                        break;
+                    parent = parent.parent();
+                }
+                return false;
+            }
+
+            // an element matches if its parent matches the inner evaluator, or if its parent matches this
+            Element el = element;
+            while (true) {
+                Boolean known = m.results.get(el);
+                if (known != null)
+                    return m.remember(known);
+                m.walked.add(el);
+                Element parent = el.parent();
+                if (parent == null)
+                    return m.remember(false);
+                if (innerMatches(m, root, parent))
+                    return m.remember(true);
                 if (parent == root)
-                    break;
-                parent = parent.parent();
+                    return m.remember(false);
+                el = parent;
             }
-            return false;
         }
 
         @Override
@@ -93,7 +189,7 @@ abstract class StructuralEvaluator extends Evaluator {
                 return false;
 
             Element parent = element.parent();
-            return parent != null && evaluator.matches(root, parent);
+            return parent != null && innerMatches(memo(root), root, parent);
         }
 
         @Override
@@ -111,15 +207,32 @@ abstract class StructuralEvaluator extends Evaluator {
             if (root == element)
                 return false;
 
-            Element prev = element.previousElementSibling();
+            Memo m = memo(root);
+            if (m == null) {
+                Element prev = element.previousElementSibling();
+                while (prev != null) {
+                    if (evaluator.matches(root, prev))
+                        return true;
 
-            while (prev != null) {
-                if (evaluator.matches(root, prev))
-                    return true;
+                    prev = prev.previousElementSibling();
+                }
+                return false;
+            }
 
-                prev = prev.previousElementSibling();
+            // an element matches if its previous sibling matches the inner evaluator, or if that sibling matches this
+            Element el = element;
+            while (true) {
+                Boolean known = m.results.get(el);
+                if (known != null)
+                    return m.remember(known);
+                m.walked.add(el);
+                Element prev = el.previousElementSibling();
+                if (prev == null)
+                    return m.remember(false);
+                if (innerMatches(m, root, prev))
+                    return m.remember(true);
+                el = prev;
             }
-            return false;
         }
 
         @Override
@@ -138,7 +251,7 @@ abstract class StructuralEvaluator extends Evaluator {
                 return false;
 
             Element prev = element.previousElementSibling();
-            return prev != null && evaluator.matches(root, prev);
+            return prev != null && innerMatches(memo(root), root, prev);
         }
 
         @Override
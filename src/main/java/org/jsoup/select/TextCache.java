@@ -0,0 +1,279 @@
+package org.jsoup.select;
+
+import org.jsoup.internal.StringUtil;
+import org.jsoup.nodes.CDataNode;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import static org.jsoup.internal.Normalizer.lowerCase;
+
+/**
+ The normalised text of the elements in a select, so that the text evaluators ({@code :contains}, {@code :matches})
+ don't walk and normalise each element's subtree again for every element tested.
+ <p>The text of a subtree is built once, in a single walk, into one string; each element's {@link Element#text()} is a
+ trimmed span of it. Matches are then tested on the span in place: a regex by a matcher region, and a contains by a
+ search for the occurrences of the search text in the whole string, once.</p>
+ <p>The cache is per thread, and is only held during a select (while any text evaluator is memoised). It is suspended
+ while a {@code :matchText} is memoised, as that modifies the tree. A parallel select indexes its root once, and
+ {@linkplain #share shares} that index with each of its tasks' caches.</p>
+ */
+final class TextCache {
+    private static final ThreadLocal<TextCache> current = new ThreadLocal<>();
+
+    private int users; // the memoised text evaluators
+    private int suspended; // the memoised evaluators that modify the tree
+    private final Map<Element, Span> spans = new IdentityHashMap<>();
+    private final Set<Element> indexed = Selector.identitySet(); // the roots that have been indexed
+    private @Nullable Shared shared; // the index of a parallel select's root, read by each of its tasks
+
+    private TextCache() {}
+
+    /** Called from the memoise hook of the text evaluators. */
+    static void memoise(boolean enable) {
+        TextCache cache = current.get();
+        if (enable) {
+            if (cache == null) {
+                cache = new TextCache();
+                current.set(cache);
+            }
+            cache.users++;
+        } else if (cache != null && --cache.users <= 0) {
+            current.remove();
+        }
+    }
+
+    /** Tests if an evaluator memoised on this thread modifies the tree, and so can't be used concurrently. */
+    static boolean suspended() {
+        TextCache cache = current.get();
+        return cache != null && cache.suspended > 0;
+    }
+
+    /**
+     Index the root of a parallel select once, on this thread, before its tasks start.
+     @return the index to {@linkplain #use use} in each task, or null if no text evaluator is memoised here
+     */
+    static @Nullable Shared share(Element root) {
+        TextCache cache = current.get();
+        if (cache == null || cache.suspended > 0)
+            return null;
+        Map<Element, Span> spans = new IdentityHashMap<>();
+        index(root, spans);
+        return new Shared(root, spans);
+    }
+
+    /** Use the shared index of a parallel select's root, for the rest of the select on this thread. */
+    static void use(@Nullable Shared shared) {
+        TextCache cache = current.get();
+        if (cache != null && shared != null) {
+            cache.shared = shared;
+            cache.indexed.add(shared.root);
+        }
+    }
+
+    /** Called from the memoise hook of the evaluators that modify the tree during a select. */
+    static void suspend(boolean suspend) {
+        memoise(suspend);
+        TextCache cache = current.get();
+        if (cache != null) {
+            cache.suspended += suspend ? 1 : -1;
+            cache.spans.clear(); // the tree may have changed
+            cache.indexed.clear();
+        }
+    }
+
+    /**
+     Get the span of the element's text, if a select is in progress.
+     @param root the root of the select
+     @param element the element
+     @return the span of its text, or null if not cached (when the caller should use {@link Element#text()}).
+     */
+    static @Nullable Span text(Element root, Element element) {
+        TextCache cache = current.get();
+        if (cache == null || cache.suspended > 0)
+            return null;
+
+        Span span = cache.shared != null ? cache.shared.spans.get(element) : null;
+        if (span == null)
+            span = cache.spans.get(element);
+        if (span == null && cache.indexed.add(root)) { // index each root once; elements outside it are not cached
+            index(root, cache.spans);
+            span = cache.spans.get(element);
+        }
+        return span;
+    }
+
+    /**
+     Walk the root, building its text, and the span of each element. Mirrors {@link Element#text()}: an element's text
+     is the same as the root's text between the element's head and tail, except for leading and trailing whitespace,
+     which is trimmed.
+     */
+    private static void index(Element root, Map<Element, Span> spans) {
+        final StringBuilder accum = new StringBuilder();
+        final List<Element> elements = new ArrayList<>();
+        final List<int[]> offsets = new ArrayList<>();
+        final Map<Element, int[]> open = new IdentityHashMap<>();
+
+        NodeTraversor.traverse(new NodeVisitor() {
+            public void head(Node node, int depth) {
+                if (node instanceof TextNode) {
+                    TextNode textNode = (TextNode) node;
+                    String text = textNode.getWholeText();
+                    if (preserveWhitespace(textNode.parentNode()) || textNode instanceof CDataNode)
+                        accum.append(text);
+                    else
+                        StringUtil.appendNormalisedWhitespace(accum, text, lastCharIsWhitespace(accum));
+                } else if (node instanceof Element) {
+                    Element element = (Element) node;
+                    if (accum.length() > 0 &&
+                        (element.isBlock() || element.normalName().equals("br")) &&
+                        !lastCharIsWhitespace(accum))
+                        accum.append(' ');
+                    int[] offset = {accum.length(), 0};
+                    open.put(element, offset);
+                    elements.add(element);
+                    offsets.add(offset);
+                }
+            }
+
+            public void tail(Node node, int depth) {
+                if (node instanceof Element) {
+                    Element element = (Element) node;
+                    //noinspection ConstantConditions
+                    open.remove(element)[1] = accum.length();
+                    if (element.isBlock() && (node.nextSibling() instanceof TextNode) && !lastCharIsWhitespace(accum))
+                        accum.append(' ');
+                }
+            }
+        }, root);
+
+        Text text = new Text(accum.toString());
+        for (int i = 0; i < elements.size(); i++) {
+            int[] offset = offsets.get(i);
+            spans.put(elements.get(i), text.span(offset[0], offset[1]));
+        }
+    }
+
+    private static boolean lastCharIsWhitespace(StringBuilder sb) {
+        return sb.length() != 0 && sb.charAt(sb.length() - 1) == ' ';
+    }
+
+    private static boolean preserveWhitespace(@Nullable Node node) {
+        // as Element.preserveWhitespace: looks only at this element and five levels up
+        if (node instanceof Element) {
+            Element el = (Element) node;
+            int i = 0;
+            do {
+                if (el.tag().preserveWhitespace())
+                    return true;
+                el = el.parent();
+                i++;
+            } while (i < 6 && el != null);
+        }
+        return false;
+    }
+
+    /** The index of a parallel select's root. Not modified once built, so may be read by each task's thread. */
+    static final class Shared {
+        final Element root;
+        final Map<Element, Span> spans;
+
+        Shared(Element root, Map<Element, Span> spans) {
+            this.root = root;
+            this.spans = spans;
+        }
+    }
+
+    /** The text of an indexed root. May be shared by the threads of a parallel select, so its lazy state is too. */
+    private static final class Text {
+        final String text;
+        private @Nullable String lower; // lazily; if the lower case text is not the same length, spans are lowered singly
+        private volatile boolean lowerChecked; // written after lower, so that lower is visible once checked
+        private final Map<String, int[]> occurrences = new ConcurrentHashMap<>(); // search text -> the (sorted) offsets it occurs at
+
+        Text(String text) {
+            this.text = text;
+        }
+
+        Span span(int start, int end) {
+            // trim, as String.trim()
+            while (start < end && text.charAt(start) <= ' ')
+                start++;
+            while (end > start && text.charAt(end - 1) <= ' ')
+                end--;
+            return new Span(this, start, end);
+        }
+
+        @Nullable String lower() {
+            if (!lowerChecked) {
+                String lowered = lowerCase(text);
+                lower = lowered.length() == text.length() ? lowered : null;
+                lowerChecked = true;
+            }
+            return lower;
+        }
+
+        int[] occurrences(String lower, String search) {
+            int[] found = occurrences.get(search);
+            if (found == null) {
+                int[] offsets = new int[8];
+                int count = 0;
+                for (int i = lower.indexOf(search); i >= 0; i = lower.indexOf(search, i + 1)) {
+                    if (count == offsets.length)
+                        offsets = Arrays.copyOf(offsets, count * 2);
+                    offsets[count++] = i;
+                }
+                found = Arrays.copyOf(offsets, count);
+                occurrences.put(search, found); // a concurrent put would be the same
+            }
+            return found;
+        }
+    }
+
+    /** An element's text: a span of its root's text. */
+    static final class Span {
+        private final Text text;
+        private final int start, end;
+
+        Span(Text text, int start, int end) {
+            this.text = text;
+            this.start = start;
+            this.end = end;
+        }
+
+        /** Tests if the lower case text contains the (lower case) search text. */
+        boolean containsLower(String search) {
+            if (search.isEmpty())
+                return true;
+            String lower = text.lower();
+            if (lower == null)
+                return lowerCase(toString()).contains(search);
+
+            int[] found = text.occurrences(lower, search);
+            int i = Arrays.binarySearch(found, start);
+            if (i < 0)
+                i = -i - 1; // the first occurrence at or after start
+            return i < found.length && found[i] + search.length() <= end;
+        }
+
+        /** Tests if the pattern is found in the text, as {@code pattern.matcher(text).find()}. */
+        boolean find(Pattern pattern) {
+            return pattern.matcher(text.text).region(start, end).find();
+        }
+
+        @Override
+        public String toString() {
+            return text.text.substring(start, end);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.jsoup.helper;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContentDecodersTest {
+    private static final String Text = "<p>Hello, World!</p><p>That should be enough, right?</p>";
+
+    @Test public void decodesGzip() throws IOException {
+        InputStream in = ContentDecoders.Gzip.decode(new ByteArrayInputStream(gzip(largeText())));
+        assertEquals(largeText(), read(in));
+    }
+
+    @Test public void decodesConcatenatedGzipMembers() throws IOException {
+        ByteArrayOutputStream both = new ByteArrayOutputStream();
+        both.write(gzip("One "));
+        both.write(gzip("Two"));
+        InputStream in = ContentDecoders.Gzip.decode(new ByteArrayInputStream(both.toByteArray()));
+        assertEquals("One Two", read(in));
+    }
+
+    @Test public void decodesDeflate() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DeflaterOutputStream stream = new DeflaterOutputStream(out, new Deflater(Deflater.BEST_COMPRESSION, true));
+        stream.write(largeText().getBytes(StandardCharsets.UTF_8));
+        stream.close();
+
+        InputStream in = ContentDecoders.Deflate.decode(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(largeText(), read(in));
+    }
+
+    @Test public void rejectsCorruptGzip() throws IOException {
+        byte[] bytes = gzip(Text);
+        bytes[bytes.length - 5] ^= 0x01; // in the crc
+        InputStream in = ContentDecoders.Gzip.decode(new ByteArrayInputStream(bytes));
+        assertThrows(ZipException.class, () -> read(in));
+
+        InputStream notGzip = ContentDecoders.Gzip.decode(new ByteArrayInputStream(Text.getBytes(StandardCharsets.UTF_8)));
+        assertThrows(ZipException.class, () -> read(notGzip));
+    }
+
+    @Test public void returnsInflatersToPool() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            InputStream in = ContentDecoders.Gzip.decode(new ByteArrayInputStream(gzip(Text)));
+            assertEquals(Text, read(in));
+        }
+        int pooled = ContentDecoders.pooledCount();
+        assertTrue(pooled >= 1 && pooled <= ContentDecoders.MaxPooled);
+
+        InputStream in = ContentDecoders.Deflate.decode(new ByteArrayInputStream(new byte[0]));
+        assertEquals(pooled - 1, ContentDecoders.pooledCount()); // borrowed
+        in.close();
+        in.close(); // only released once
+        assertEquals(pooled, ContentDecoders.pooledCount());
+    }
+
+    private static String largeText() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2000; i++)
+            sb.append(Text).append(i);
+        return sb.toString();
+    }
+
+    private static byte[] gzip(String text) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GZIPOutputStream stream = new GZIPOutputStream(out);
+        stream.write(text.getBytes(StandardCharsets.UTF_8));
+        stream.close();
+        return out.toByteArray();
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[1000];
+        int read;
+        while ((read = in.read(buf)) != -1)
+            out.write(buf, 0, read);
+        in.close();
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,170 @@
+package org.jsoup.helper;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.parser.ParseSettings;
+import org.jsoup.parser.Parser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResponseCacheEntryTest {
+    private static ResponseCache.Entry entry(long storedAt, String... headerKeyVals) {
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        for (int i = 0; i < headerKeyVals.length; i += 2)
+            headers.put(headerKeyVals[i], Collections.singletonList(headerKeyVals[i + 1]));
+        return new ResponseCache.Entry("http://example.com/", 200, "OK", headers, new byte[0], storedAt);
+    }
+
+    @Test public void freshnessFromMaxAge() {
+        ResponseCache.Entry entry = entry(1000, "Cache-Control", "public, max-age=10");
+        assertEquals(10_000, entry.freshnessLifetime());
+        assertTrue(entry.isFresh(10_999));
+        assertFalse(entry.isFresh(11_000));
+        assertEquals(0, entry(1000, "cache-control", "no-cache, max-age=10").freshnessLifetime());
+    }
+
+    @Test public void freshnessFromExpires() {
+        ResponseCache.Entry entry = entry(0,
+            "Date", "Sun, 06 Nov 1994 08:49:37 GMT",
+            "Expires", "Sun, 06 Nov 1994 08:50:37 GMT");
+        assertEquals(60_000, entry.freshnessLifetime());
+        assertEquals(0, entry(0, "Expires", "0").freshnessLifetime());
+    }
+
+    @Test public void storability() {
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        assertFalse(ResponseCache.isStorable(200, null, false, headers)); // no validator or lifetime
+        headers.put("ETag", Collections.singletonList("\"x\""));
+        assertTrue(ResponseCache.isStorable(200, null, false, headers));
+        assertFalse(ResponseCache.isStorable(404, null, false, headers));
+        assertFalse(ResponseCache.isStorable(200, "no-store", false, headers));
+
+        headers.put("Vary", Collections.singletonList("Accept-Encoding"));
+        assertTrue(ResponseCache.isStorable(200, null, false, headers));
+        headers.put("Vary", Arrays.asList("Accept-Encoding, Cookie"));
+        assertFalse(ResponseCache.isStorable(200, null, false, headers));
+        headers.remove("Vary");
+
+        headers.put("Cache-Control", Collections.singletonList("private, no-store"));
+        assertFalse(ResponseCache.isStorable(200, null, false, headers));
+    }
+
+    @Test public void privateAndCredentialedStorability() {
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        headers.put("ETag", Collections.singletonList("\"x\""));
+        assertFalse(ResponseCache.isStorable(200, null, true, headers)); // credentialed, not public
+
+        headers.put("Cache-Control", Collections.singletonList("private, max-age=60"));
+        assertFalse(ResponseCache.isStorable(200, null, false, headers));
+        assertFalse(ResponseCache.isStorable(200, null, true, headers));
+
+        headers.put("Cache-Control", Collections.singletonList("public, max-age=60"));
+        assertTrue(ResponseCache.isStorable(200, null, false, headers));
+        assertTrue(ResponseCache.isStorable(200, null, true, headers));
+    }
+
+    @Test public void keysByCredentials() {
+        String url = "http://example.com/";
+        assertEquals(url, ResponseCache.key(url, null));
+        assertEquals(url, ResponseCache.key(url, ""));
+        String one = ResponseCache.key(url, "Authorization: one\n");
+        String two = ResponseCache.key(url, "Authorization: two\n");
+        assertTrue(one.startsWith(url + " "));
+        assertFalse(one.contains("one")); // a digest, not the credentials themselves
+        assertNotEquals(one, two);
+        assertEquals(one, ResponseCache.key(url, "Authorization: one\n"));
+    }
+
+    @Test public void revalidationMergesHeaders() {
+        ResponseCache.Entry entry = entry(0, "ETag", "\"a\"", "Cache-Control", "max-age=1", "Content-Type", "text/html");
+        Map<String, List<String>> notModified = new LinkedHashMap<>();
+        notModified.put("cache-control", Collections.singletonList("max-age=100"));
+        notModified.put("Set-Cookie", Collections.singletonList("a=b"));
+
+        ResponseCache.Entry revalidated = entry.revalidated(notModified, 5000);
+        assertEquals(5000, revalidated.storedAt());
+        assertEquals("max-age=100", revalidated.header("Cache-Control"));
+        assertEquals("text/html", revalidated.header("Content-Type"));
+        assertNull(revalidated.header("Set-Cookie"));
+        assertSame(entry.body(), revalidated.body());
+    }
+
+    @Test public void memoryCacheEvictsLeastRecentlyUsed() {
+        ResponseCache.MemoryCache cache = new ResponseCache.MemoryCache(2, false);
+        cache.put("a", entry(0));
+        cache.put("b", entry(0));
+        assertNotNull(cache.get("a")); // a now most recent
+        cache.put("c", entry(0));
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+    }
+
+    @Test public void diskCacheTreatsInvalidLengthsAsMisses(@TempDir File dir) throws IOException {
+        ResponseCache.DiskCache cache = new ResponseCache.DiskCache(dir);
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        headers.put("ETag", Collections.singletonList("\"x\""));
+        byte[] body = "<p>Hello".getBytes(StandardCharsets.UTF_8);
+        String key = "http://example.com/";
+        ResponseCache.Entry entry = new ResponseCache.Entry(key, 200, "OK", headers, body, 0);
+        int headerCountAt = 4 + (2 + key.length()) + (2 + key.length()) + 4 + (2 + "OK".length()) + 8;
+
+        for (int invalid : new int[]{-1, Integer.MAX_VALUE, body.length + 1}) {
+            cache.put(key, entry);
+            File file = cache.fileFor(key);
+            assertArrayEquals(body, cache.get(key).body());
+
+            writeInt(file, file.length() - body.length - 4, invalid); // the body length
+            assertNull(cache.get(key));
+            assertFalse(file.exists()); // removed as corrupt
+
+            cache.put(key, entry);
+            writeInt(file, headerCountAt, invalid);
+            assertNull(cache.get(key));
+            assertFalse(file.exists());
+        }
+    }
+
+    private static void writeInt(File file, long position, int value) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(position);
+            raf.writeInt(value);
+        } finally {
+            raf.close();
+        }
+    }
+
+    @Test public void retainedDocumentIsOnlyUsedForTheSameParser() {
+        ResponseCache.Entry entry = entry(0);
+        Document doc = Jsoup.parse("<p>One");
+        entry.document(doc, Parser.htmlParser());
+
+        assertSame(doc, entry.document(Parser.htmlParser())); // a new instance, but configured the same
+        assertNull(entry.document(Parser.xmlParser()));
+        assertNull(entry.document(Parser.htmlParser().settings(ParseSettings.preserveCase)));
+        assertNull(entry.document(Parser.htmlParser().setLazyDecoding(true)));
+        assertNull(entry.document(Parser.htmlParser().setTrackErrors(10))); // the errors would not be reported
+
+        Parser parser = Parser.xmlParser();
+        entry.document(doc, parser);
+        parser.settings(ParseSettings.htmlDefault); // configured when parsed, not now
+        assertNull(entry.document(parser));
+        assertSame(doc, entry.document(Parser.xmlParser()));
+        assertSame(doc, entry.revalidated(new LinkedHashMap<String, List<String>>(), 1).document(Parser.xmlParser()));
+    }
+}
@@ -9,9 +9,11 @@ import org.jsoup.internal.StringUtil;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.nodes.FormElement;
+import org.jsoup.nodes.Node;
 import org.jsoup.parser.HtmlTreeBuilder;
 import org.jsoup.parser.Parser;
 import org.jsoup.parser.XmlTreeBuilder;
+import org.jsoup.select.NodeVisitor;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -21,8 +23,18 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 import static org.jsoup.helper.HttpConnection.CONTENT_TYPE;
 import static org.jsoup.helper.HttpConnection.MULTIPART_FORM_DATA;
@@ -54,6 +66,52 @@ public class ConnectTest {
         assertEquals("Hello, World!", p.text());
     }
 
+    @Test
+    public void canGetAsync() throws Exception {
+        Future<Document> future = Jsoup.connect(HelloServlet.Url).getAsync();
+        Document doc = future.get(10, TimeUnit.SECONDS);
+        assertEquals("Hello, World!", doc.selectFirst("p").text());
+    }
+
+    @Test
+    public void canExecuteAsyncOnExecutor() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Connection.Response> future = Jsoup.connect(echoUrl).data("Thread", "async").executeAsync(executor);
+            Connection.Response res = future.get(10, TimeUnit.SECONDS);
+            assertEquals(200, res.statusCode());
+            assertEquals("async", ihVal("Thread", res.parse()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void asyncFailureThrowsFromGet() {
+        Future<Document> future = Jsoup.connect(FileServlet.urlTo("/htmltests/does-not-exist.html")).getAsync();
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof HttpStatusException);
+    }
+
+    @Test
+    public void canParseIncrementally() throws IOException {
+        final List<String> closed = new ArrayList<>();
+        Connection.Response res = Jsoup.connect(echoUrl).execute();
+        Document doc = res.parse(new NodeVisitor() {
+            @Override public void head(Node node, int depth) {}
+
+            @Override public void tail(Node node, int depth) {
+                if (node instanceof Element) closed.add(node.nodeName());
+            }
+        });
+
+        assertTrue(doc.title().contains("Environment"));
+        assertEquals("title", closed.get(0));
+        assertEquals("#document", closed.get(closed.size() - 1));
+        assertEquals(doc.getAllElements().size(), closed.size());
+        assertEquals("UTF-8", res.charset());
+    }
+
     @Test
     public void fetchURl() throws IOException {
         Document doc = Jsoup.parse(new URL(echoUrl), 10 * 1000);
@@ -124,7 +182,7 @@ public class ConnectTest {
             .post();
 
         assertEquals("POST", ihVal("Method", doc));
-        assertEquals("gzip", ihVal("Accept-Encoding", doc));
+        assertEquals("gzip, deflate", ihVal("Accept-Encoding", doc));
         assertEquals("auth=token", ihVal("Cookie", doc));
         assertEquals("度一下", ihVal("百", doc));
         assertEquals("Jsoup, Jonathan", ihVal("uname", doc));
@@ -254,7 +312,7 @@ public class ConnectTest {
 
         Document doc = res.parse();
         assertEquals("PUT", ihVal("Method", doc));
-        assertEquals("gzip", ihVal("Accept-Encoding", doc));
+        assertEquals("gzip, deflate", ihVal("Accept-Encoding", doc));
         assertEquals("auth=token", ihVal("Cookie", doc));
     }
 
@@ -388,6 +446,26 @@ public class ConnectTest {
         assertEquals("Hello, World!", doc.selectFirst("p").text());
     }
 
+    @Test
+    public void canRegisterContentDecoder() throws IOException {
+        final AtomicInteger decodes = new AtomicInteger();
+        Connection con = Jsoup.connect(Deflateservlet.Url)
+            .contentDecoder("DEFLATE", encoded -> {
+                decodes.incrementAndGet();
+                return new InflaterInputStream(encoded, new Inflater(true));
+            });
+        Document doc = con.get();
+        assertEquals("Hello, World!", doc.selectFirst("p").text());
+        assertEquals(1, decodes.get());
+        assertEquals(Arrays.asList("gzip", "deflate"), con.request().contentEncodings());
+
+        Document echo = Jsoup.connect(echoUrl).contentDecoder("br", encoded -> encoded).get();
+        assertEquals("gzip, deflate, br", ihVal("Accept-Encoding", echo));
+
+        Document explicit = Jsoup.connect(echoUrl).header("Accept-Encoding", "identity").get();
+        assertEquals("identity", ihVal("Accept-Encoding", explicit));
+    }
+
     @Test
     public void handlesLargerContentLengthParseRead() throws IOException {
         // this handles situations where the remote server sets a content length greater than it actually writes
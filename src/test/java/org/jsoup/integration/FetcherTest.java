@@ -0,0 +1,140 @@
+package org.jsoup.integration;
+
+import org.jsoup.Connection;
+import org.jsoup.HttpStatusException;
+import org.jsoup.helper.Fetcher;
+import org.jsoup.integration.servlets.CookieServlet;
+import org.jsoup.integration.servlets.RateLimitServlet;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.HttpCookie;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ Tests the rate limited Fetcher against a local server.
+ */
+public class FetcherTest {
+    @BeforeAll
+    public static void setUp() {
+        TestServer.start();
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        TestServer.stop();
+    }
+
+    @BeforeEach
+    public void reset() {
+        RateLimitServlet.reset();
+    }
+
+    private static String url(String key, String... params) {
+        StringBuilder url = new StringBuilder(RateLimitServlet.Url).append("?key=").append(key);
+        for (int i = 0; i < params.length; i += 2)
+            url.append('&').append(params[i]).append('=').append(params[i + 1]);
+        return url.toString();
+    }
+
+    @Test public void limitsConcurrencyPerHost() throws Exception {
+        Fetcher fetcher = new Fetcher().maxConcurrentPerHost(2);
+        List<Future<Connection.Response>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++)
+            futures.add(fetcher.submit(url("c" + i, RateLimitServlet.SleepParam, "100")));
+        assertTrue(fetcher.queueDepth() > 0);
+        assertTrue(fetcher.queueDepth("localhost") > 0);
+
+        for (int i = 0; i < futures.size(); i++)
+            assertEquals("c" + i, futures.get(i).get(10, TimeUnit.SECONDS).parse().text());
+        assertEquals(2, RateLimitServlet.PeakConcurrent.get());
+        assertEquals(0, fetcher.queueDepth());
+        assertEquals(0, fetcher.activeCount());
+
+        Fetcher.Histogram latency = fetcher.latency();
+        assertEquals(8, latency.count());
+        assertTrue(latency.percentile(50) >= 100);
+        assertEquals(0, fetcher.latency("localhost").count()); // idle, so the host's state was released
+        fetcher.close();
+    }
+
+    @Test public void releasesIdleHosts() throws Exception {
+        Fetcher fetcher = new Fetcher().maxRequestsPerSecondPerHost(10);
+        Future<Connection.Response> first = fetcher.submit(url("i1", RateLimitServlet.SleepParam, "100"));
+        assertEquals(1, fetcher.hostCount());
+        assertEquals(200, first.get(10, TimeUnit.SECONDS).statusCode());
+
+        long start = System.nanoTime();
+        while (fetcher.hostCount() > 0 && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5))
+            Thread.sleep(10); // held until its rate limit interval passes
+        assertEquals(0, fetcher.hostCount());
+        assertEquals(0, fetcher.queueDepth("localhost"));
+
+        Future<Connection.Response> second = fetcher.submit(url("i2")); // state is recreated
+        assertEquals(200, second.get(10, TimeUnit.SECONDS).statusCode());
+        fetcher.close();
+    }
+
+    @Test public void limitsRatePerHost() throws Exception {
+        Fetcher fetcher = new Fetcher().maxConcurrentPerHost(4).maxRequestsPerSecondPerHost(10);
+        long start = System.nanoTime();
+        List<Future<Connection.Response>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+            futures.add(fetcher.submit(url("r" + i)));
+        for (Future<Connection.Response> future : futures)
+            assertEquals(200, future.get(10, TimeUnit.SECONDS).statusCode());
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(millis >= 400, "Took " + millis); // 5 requests at 10/s: starts at 0, 100, 200, 300, 400ms
+        fetcher.close();
+    }
+
+    @Test public void retriesTooManyRequests() throws Exception {
+        Fetcher fetcher = new Fetcher().maxRetries(3);
+        Connection.Response res = fetcher.submit(url("retry", RateLimitServlet.RejectParam, "2")).get(10, TimeUnit.SECONDS);
+        assertEquals(200, res.statusCode());
+        assertEquals(3, RateLimitServlet.hits("retry"));
+        assertEquals(3, fetcher.latency().count());
+        fetcher.close();
+    }
+
+    @Test public void failsWhenRetriesExhausted() {
+        Fetcher fetcher = new Fetcher().maxRetries(1).retryBackoff(10);
+        Future<Connection.Response> future = fetcher.submit(url("exhaust", RateLimitServlet.RejectParam, "5"));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof HttpStatusException);
+        assertEquals(429, ((HttpStatusException) e.getCause()).getStatusCode());
+        assertEquals(2, RateLimitServlet.hits("exhaust"));
+
+        Future<Connection.Response> ignored = fetcher.submit(
+            fetcher.newRequest(url("ignore", RateLimitServlet.RejectParam, "5")).ignoreHttpErrors(true));
+        assertDoesNotThrow(() -> assertEquals(429, ignored.get(10, TimeUnit.SECONDS).statusCode()));
+        fetcher.close();
+    }
+
+    @Test public void sharesCookieStore() throws Exception {
+        Fetcher fetcher = new Fetcher();
+        fetcher.submit(CookieServlet.Url + "?" + CookieServlet.SetCookiesParam + "=1").get(10, TimeUnit.SECONDS);
+        List<HttpCookie> cookies = fetcher.cookieStore().getCookies();
+        assertFalse(cookies.isEmpty());
+        fetcher.close();
+    }
+
+    @Test public void closeCancelsQueued() throws IOException {
+        Fetcher fetcher = new Fetcher().maxConcurrentPerHost(1);
+        Future<Connection.Response> first = fetcher.submit(url("a", RateLimitServlet.SleepParam, "200"));
+        Future<Connection.Response> second = fetcher.submit(url("b"));
+        fetcher.close();
+        assertTrue(second.isCancelled());
+        assertDoesNotThrow(() -> first.get(10, TimeUnit.SECONDS));
+        assertThrows(IllegalArgumentException.class, () -> fetcher.submit(url("c")));
+    }
+}
@@ -0,0 +1,223 @@
+package org.jsoup.integration;
+
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+import org.jsoup.helper.ResponseCache;
+import org.jsoup.integration.servlets.CacheServlet;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Node;
+import org.jsoup.parser.Parser;
+import org.jsoup.select.NodeVisitor;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ Tests Connection response caching against a local server.
+ */
+public class ResponseCacheTest {
+    @BeforeAll
+    public static void setUp() {
+        TestServer.start();
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        TestServer.stop();
+    }
+
+    @BeforeEach
+    public void resetCounts() {
+        CacheServlet.Requests.set(0);
+        CacheServlet.FullResponses.set(0);
+    }
+
+    @Test
+    public void servesFreshResponseWithoutRequest() throws IOException {
+        ResponseCache cache = ResponseCache.memory(10);
+        String url = CacheServlet.Url + "?" + CacheServlet.MaxAgeParam + "=60";
+
+        Document first = Jsoup.connect(url).responseCache(cache).get();
+        Document second = Jsoup.connect(url).responseCache(cache).get();
+
+        assertEquals("Hello, cache!", first.selectFirst("p").text());
+        assertEquals("Hello, cache!", second.selectFirst("p").text());
+        assertEquals(1, CacheServlet.Requests.get());
+        assertEquals("UTF-8", second.charset().name());
+    }
+
+    @Test
+    public void revalidatesStaleResponse() throws IOException {
+        ResponseCache cache = ResponseCache.memory(10);
+        Connection.Response first = Jsoup.connect(CacheServlet.Url).responseCache(cache).execute();
+        assertEquals(200, first.statusCode());
+        assertEquals("Cached", first.parse().title());
+
+        Connection.Response second = Jsoup.connect(CacheServlet.Url).responseCache(cache).execute();
+        assertEquals(200, second.statusCode()); // served from the cache after a 304
+        assertEquals("Cached", second.parse().title());
+        assertEquals(CacheServlet.ETag, second.header("ETag"));
+
+        assertEquals(2, CacheServlet.Requests.get());
+        assertEquals(1, CacheServlet.FullResponses.get());
+    }
+
+    @Test
+    public void reusesRetainedDocument() throws IOException {
+        ResponseCache cache = ResponseCache.memory(10, true);
+        Document first = Jsoup.connect(CacheServlet.Url).responseCache(cache).get();
+        first.selectFirst("p").text("Modified");
+
+        Document second = Jsoup.connect(CacheServlet.Url).responseCache(cache).get();
+        assertNotSame(first, second);
+        assertEquals("Hello, cache!", second.selectFirst("p").text()); // a clone of the pristine parse
+        assertEquals(CacheServlet.Url, second.location());
+        assertEquals(1, CacheServlet.FullResponses.get());
+    }
+
+    @Test
+    public void cachedBodyBytesAreCopies() throws IOException {
+        ResponseCache cache = ResponseCache.memory(10);
+        String url = CacheServlet.Url + "?" + CacheServlet.MaxAgeParam + "=60";
+        Jsoup.connect(url).responseCache(cache).execute().body();
+
+        byte[] bytes = Jsoup.connect(url).responseCache(cache).execute().bodyAsBytes(); // served from the cache
+        Arrays.fill(bytes, (byte) 'x');
+        assertEquals("<title>Cached</title><p>Hello, cache!", Jsoup.connect(url).responseCache(cache).execute().body());
+        assertEquals("Hello, cache!", Jsoup.connect(url).responseCache(cache).get().selectFirst("p").text());
+        assertEquals(1, CacheServlet.Requests.get());
+    }
+
+    @Test
+    public void retainedDocumentIsNotUsedForAnotherParser() throws IOException {
+        ResponseCache cache = ResponseCache.memory(10, true);
+        String url = CacheServlet.Url + "?" + CacheServlet.MaxAgeParam + "=60";
+        Document html = Jsoup.connect(url).responseCache(cache).get();
+        assertEquals("Cached", html.title());
+
+        Document xml = Jsoup.connect(url).responseCache(cache).parser(Parser.xmlParser()).get();
+        assertEquals(0, xml.select("html").size()); // parsed as XML, so no html wrapper added
+        assertEquals("Hello, cache!", xml.selectFirst("p").text());
+        assertEquals(1, Jsoup.connect(url).responseCache(cache).get().select("html").size());
+        assertEquals(1, CacheServlet.Requests.get());
+    }
+
+    @Test
+    public void noCacheRequestRevalidates() throws IOException {
+        ResponseCache cache = ResponseCache.memory(10);
+        String url = CacheServlet.Url + "?" + CacheServlet.MaxAgeParam + "=60";
+        Jsoup.connect(url).responseCache(cache).get();
+        Document doc = Jsoup.connect(url).responseCache(cache).header("Cache-Control", "no-cache").get();
+        assertEquals("Hello, cache!", doc.selectFirst("p").text());
+        assertEquals(2, CacheServlet.Requests.get());
+        assertEquals(1, CacheServlet.FullResponses.get());
+    }
+
+    @Test
+    public void diskCacheSurvivesNewInstance(@TempDir File dir) throws IOException {
+        String url = CacheServlet.Url + "?" + CacheServlet.MaxAgeParam + "=60";
+        Jsoup.connect(url).responseCache(ResponseCache.disk(dir)).get();
+        assertEquals(1, dir.listFiles().length);
+
+        Document doc = Jsoup.connect(url).responseCache(ResponseCache.disk(dir)).get();
+        assertEquals("Hello, cache!", doc.selectFirst("p").text());
+        assertEquals(1, CacheServlet.Requests.get());
+    }
+
+    @Test
+    public void doesNotStorePrivateResponse() throws IOException {
+        ResponseCache cache = ResponseCache.memory(10);
+        String url = CacheServlet.Url + "?" + CacheServlet.MaxAgeParam + "=60&" + CacheServlet.CacheControlParam + "=private";
+        Jsoup.connect(url).responseCache(cache).get();
+        Jsoup.connect(url).responseCache(cache).get();
+        assertNull(cache.get(url));
+        assertEquals(2, CacheServlet.FullResponses.get());
+    }
+
+    @Test
+    public void doesNotStoreCredentialedResponseUnlessPublic() throws IOException {
+        ResponseCache cache = ResponseCache.memory(10);
+        String url = CacheServlet.Url + "?" + CacheServlet.MaxAgeParam + "=60";
+        Jsoup.connect(url).responseCache(cache).header("Authorization", "Basic b25lOm9uZQ==").get();
+        Jsoup.connect(url).responseCache(cache).cookie("session", "one").get();
+        assertEquals(2, CacheServlet.FullResponses.get());
+
+        Jsoup.connect(url).responseCache(cache).get(); // anonymous, so stored, but not served to credentialed requests
+        Jsoup.connect(url).responseCache(cache).cookie("session", "one").get();
+        assertEquals(4, CacheServlet.FullResponses.get());
+        Jsoup.connect(url).responseCache(cache).get();
+        assertEquals(4, CacheServlet.FullResponses.get());
+    }
+
+    @Test
+    public void keysPublicCredentialedResponseByCredentials() throws IOException {
+        ResponseCache cache = ResponseCache.memory(10);
+        String url = CacheServlet.Url + "?" + CacheServlet.MaxAgeParam + "=60&" + CacheServlet.CacheControlParam + "=public";
+        Jsoup.connect(url).responseCache(cache).header("Authorization", "Basic b25lOm9uZQ==").get();
+        Jsoup.connect(url).responseCache(cache).header("Authorization", "Basic b25lOm9uZQ==").get();
+        assertEquals(1, CacheServlet.FullResponses.get());
+        assertNull(cache.get(url));
+
+        Jsoup.connect(url).responseCache(cache).header("Authorization", "Basic dHdvOnR3bw==").get(); // another user
+        Jsoup.connect(url).responseCache(cache).get(); // anonymous
+        assertEquals(3, CacheServlet.FullResponses.get());
+    }
+
+    @Test
+    public void storesOnceBodyStreamIsRead() throws IOException {
+        ResponseCache cache = ResponseCache.memory(10);
+        String url = CacheServlet.Url + "?" + CacheServlet.MaxAgeParam + "=60";
+        Connection.Response first = Jsoup.connect(url).responseCache(cache).execute();
+        assertNull(cache.get(url)); // not until read
+        assertEquals("<title>Cached</title><p>Hello, cache!", readAll(first.bodyStream()));
+        assertNotNull(cache.get(url));
+
+        Connection.Response second = Jsoup.connect(url).responseCache(cache).execute(); // served from the cache
+        assertEquals("<title>Cached</title><p>Hello, cache!", readAll(second.bodyStream()));
+        assertEquals("<title>Cached</title><p>Hello, cache!", readAll(second.bodyStream())); // buffered, so re-readable
+        assertEquals(1, CacheServlet.Requests.get());
+    }
+
+    @Test
+    public void storesIncrementallyParsedResponse() throws IOException {
+        ResponseCache cache = ResponseCache.memory(10);
+        String url = CacheServlet.Url + "?" + CacheServlet.MaxAgeParam + "=60";
+        AtomicInteger nodes = new AtomicInteger();
+        Document doc = Jsoup.connect(url).responseCache(cache).execute().parse(new NodeVisitor() {
+            @Override public void head(Node node, int depth) { nodes.incrementAndGet(); }
+            @Override public void tail(Node node, int depth) {}
+        });
+        assertEquals("Cached", doc.title());
+        assertTrue(nodes.get() > 0);
+        assertNotNull(cache.get(url));
+    }
+
+    private static String readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1)
+            out.write(buffer, 0, read);
+        in.close();
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void doesNotCachePost() throws IOException {
+        ResponseCache cache = ResponseCache.memory(10);
+        Jsoup.connect(CacheServlet.Url).responseCache(cache).ignoreHttpErrors(true).method(Connection.Method.POST).execute();
+        assertNull(cache.get(CacheServlet.Url));
+    }
+}
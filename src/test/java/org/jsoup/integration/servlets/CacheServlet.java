@@ -0,0 +1,43 @@
+package org.jsoup.integration.servlets;
+
+import org.jsoup.integration.TestServer;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ Serves a page with an ETag and (optionally) a max-age and other Cache-Control directives, and answers matching
+ conditional requests with a 304. Counts the requests and the full responses it has served.
+ */
+public class CacheServlet extends BaseServlet {
+    public static final String Url = TestServer.map(CacheServlet.class);
+    public static final String MaxAgeParam = "maxAge";
+    public static final String CacheControlParam = "cacheControl"; // e.g. private, or public
+    public static final String ETag = "\"v1\"";
+    public static final AtomicInteger Requests = new AtomicInteger();
+    public static final AtomicInteger FullResponses = new AtomicInteger();
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse res) throws IOException {
+        Requests.incrementAndGet();
+        res.setHeader("ETag", ETag);
+        String maxAge = req.getParameter(MaxAgeParam);
+        String cacheControl = req.getParameter(CacheControlParam);
+        if (maxAge != null)
+            cacheControl = cacheControl != null ? cacheControl + ", max-age=" + maxAge : "max-age=" + maxAge;
+        if (cacheControl != null)
+            res.setHeader("Cache-Control", cacheControl);
+
+        if (ETag.equals(req.getHeader("If-None-Match"))) {
+            res.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        FullResponses.incrementAndGet();
+        res.setContentType(TextHtml);
+        res.setStatus(HttpServletResponse.SC_OK);
+        res.getWriter().write("<title>Cached</title><p>Hello, cache!");
+    }
+}
@@ -0,0 +1,62 @@
+package org.jsoup.integration.servlets;
+
+import org.jsoup.integration.TestServer;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ Rejects the first requests for a key with a 429 and a Retry-After header, then serves a page after a short pause.
+ Tracks the peak number of concurrent requests.
+ */
+public class RateLimitServlet extends BaseServlet {
+    public static final String Url = TestServer.map(RateLimitServlet.class);
+    public static final String KeyParam = "key";
+    public static final String RejectParam = "reject"; // how many requests for the key to reject
+    public static final String SleepParam = "sleep";
+    public static final AtomicInteger Concurrent = new AtomicInteger();
+    public static final AtomicInteger PeakConcurrent = new AtomicInteger();
+    private static final ConcurrentHashMap<String, AtomicInteger> Hits = new ConcurrentHashMap<>();
+
+    public static void reset() {
+        Concurrent.set(0);
+        PeakConcurrent.set(0);
+        Hits.clear();
+    }
+
+    public static int hits(String key) {
+        AtomicInteger hits = Hits.get(key);
+        return hits == null ? 0 : hits.get();
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse res) throws IOException {
+        int concurrent = Concurrent.incrementAndGet();
+        PeakConcurrent.accumulateAndGet(concurrent, Math::max);
+        try {
+            String key = req.getParameter(KeyParam);
+            Hits.putIfAbsent(key, new AtomicInteger());
+            int hit = Hits.get(key).incrementAndGet();
+            String reject = req.getParameter(RejectParam);
+            if (reject != null && hit <= Integer.parseInt(reject)) {
+                res.setStatus(429);
+                res.setHeader("Retry-After", "0");
+                return;
+            }
+
+            String sleep = req.getParameter(SleepParam);
+            if (sleep != null)
+                Thread.sleep(Integer.parseInt(sleep));
+            res.setContentType(TextHtml);
+            res.setStatus(HttpServletResponse.SC_OK);
+            res.getWriter().write("<p>" + key);
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        } finally {
+            Concurrent.decrementAndGet();
+        }
+    }
+}
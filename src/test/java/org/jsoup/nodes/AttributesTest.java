@@ -3,9 +3,14 @@ package org.jsoup.nodes;
 import org.jsoup.Jsoup;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -301,4 +306,107 @@ public class AttributesTest {
         assertEquals(four, four.clone());
         assertNotEquals(one, four);
     }
+
+    @Test
+    public void encodedValuesDecodeOnRead() {
+        Attributes attributes = new Attributes();
+        attributes.addEncoded("title", "One &amp; two");
+        attributes.addEncoded("id", "plain");
+        assertEquals(2, attributes.size());
+        assertEquals("One & two", attributes.get("title"));
+        assertEquals(" title=\"One &amp; two\" id=\"plain\"", attributes.html());
+
+        attributes = new Attributes();
+        attributes.addEncoded("href", "?a=1&copy=2&amp;b=3");
+        assertEquals(" href=\"?a=1&amp;copy=2&amp;b=3\"", attributes.html());
+        assertEquals("?a=1&copy=2&b=3", attributes.get("href"));
+
+        Attributes plain = new Attributes();
+        plain.addEncoded("id", "plain");
+        assertEquals(1, plain.size());
+        assertEquals("plain", plain.get("id"));
+
+        Attributes read = new Attributes();
+        read.addEncoded("title", "a &amp;lt; b");
+        assertEquals("a &lt; b", read.get("title")); // decoded, so not to be decoded again
+        read.addEncoded("alt", "c &amp;gt; d");
+        assertEquals(2, read.size());
+        assertEquals("a &lt; b", read.get("title"));
+        assertEquals("c &gt; d", read.get("alt"));
+    }
+
+    @Test
+    public void indexIsSafeForConcurrentReaders() throws Exception {
+        int count = Attributes.IndexThreshold * 4;
+        StringBuilder html = new StringBuilder("<div");
+        for (int i = 0; i < count; i++)
+            html.append(" a").append(i).append("=v").append(i);
+        html.append("></div>");
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            for (int round = 0; round < 200; round++) {
+                final Attributes attributes = Jsoup.parse(html.toString()).selectFirst("div").attributes();
+                final CountDownLatch start = new CountDownLatch(1);
+                List<Future<Boolean>> futures = new ArrayList<>();
+                for (int t = 0; t < 4; t++) {
+                    futures.add(pool.submit(() -> { // each may build the index as it reads
+                        start.await();
+                        for (int i = count - 1; i >= 0; i--) {
+                            if (!attributes.get("a" + i).equals("v" + i))
+                                return false;
+                        }
+                        return true;
+                    }));
+                }
+                start.countDown();
+                for (Future<Boolean> future : futures)
+                    assertTrue(future.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void manyAttributesAreIndexed() {
+        Attributes attributes = new Attributes();
+        int count = Attributes.IndexThreshold * 3;
+        for (int i = 0; i < count; i++)
+            attributes.put("Key" + i, "v" + i);
+        attributes.put("data-one", "1");
+        attributes.add("key1", "dupe"); // differs in case only, so found by the case insensitive lookups after Key1
+
+        assertEquals(count + 2, attributes.size());
+        assertEquals("v7", attributes.get("Key7"));
+        assertEquals("", attributes.get("key7"));
+        assertEquals("v7", attributes.getIgnoreCase("KEY7"));
+        assertEquals("v1", attributes.getIgnoreCase("key1"));
+        assertEquals("dupe", attributes.get("key1"));
+        assertFalse(attributes.hasKey("Key" + count));
+
+        attributes.remove("Key0");
+        assertFalse(attributes.hasKey("Key0"));
+        assertEquals("v20", attributes.get("Key20"));
+        attributes.putIgnoreCase("KEY5", "five"); // renames
+        assertEquals("five", attributes.get("KEY5"));
+        assertFalse(attributes.hasKey("Key5"));
+        for (Attribute attribute : attributes) {
+            if (attribute.getKey().equals("Key9"))
+                attribute.setKey("nine");
+        }
+        assertEquals("v9", attributes.get("nine"));
+        assertFalse(attributes.hasKey("Key9"));
+
+        Attributes clone = attributes.clone();
+        clone.put("added", "1");
+        assertTrue(clone.hasKey("added"));
+        assertFalse(attributes.hasKey("added"));
+        assertEquals(attributes.get("Key30"), clone.get("Key30"));
+        assertEquals("1", attributes.dataset().get("one"));
+
+        Iterator<Attribute> iterator = attributes.iterator(); // order kept
+        assertEquals("Key1", iterator.next().getKey());
+        assertEquals("Key2", iterator.next().getKey());
+    }
 }
@@ -526,4 +526,121 @@ public class DocumentTest {
             "</html>";
         assertEquals(expected, doc.html());
     }
+
+    private static Document roundTrip(Document doc) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        doc.writeSnapshot(out);
+        return Document.readSnapshot(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    @Test public void snapshotRoundTrips() throws IOException {
+        String html = "<!doctype html><html><head><title>Snap</title><script>if (a < b) x();</script></head><body>" +
+            "<p id=one class='a b'>One <b>two</b> &amp; \ud83d\ude00 <foo /> <img src=x.png></p><!-- comment -->" +
+            "<pre>  keep\n  this </pre><form id=f><input name=q value=v><select name=s><option selected>1</select></form>" +
+            "<input form=f name=after value=a></body></html>";
+        Document doc = Jsoup.parse(html, "https://example.com/dir/");
+        doc.outputSettings().charset("ascii").escapeMode(Entities.EscapeMode.xhtml).indentAmount(3).maxPaddingWidth(-1);
+        doc.quirksMode(Document.QuirksMode.limitedQuirks);
+
+        Document loaded = roundTrip(doc);
+        assertEquals(doc.html(), loaded.html());
+        assertTrue(loaded.hasSameValue(doc));
+        assertEquals("https://example.com/dir/", loaded.location());
+        assertEquals("https://example.com/dir/x.png", loaded.selectFirst("img").absUrl("src"));
+        assertEquals(doc.charset(), loaded.charset());
+        assertEquals(Entities.EscapeMode.xhtml, loaded.outputSettings().escapeMode());
+        assertEquals(3, loaded.outputSettings().indentAmount());
+        assertEquals(-1, loaded.outputSettings().maxPaddingWidth());
+        assertEquals(Document.QuirksMode.limitedQuirks, loaded.quirksMode());
+        assertFalse(loaded.parser().isTrackErrors());
+        assertTrue(loaded.selectFirst("foo").tag().isSelfClosing());
+
+        FormElement form = (FormElement) loaded.getElementById("f");
+        FormElement original = (FormElement) doc.getElementById("f");
+        assertEquals(2, form.elements().size());
+        assertEquals(original.elements().outerHtml(), form.elements().outerHtml());
+        assertEquals(original.formData().toString(), form.formData().toString());
+
+        Element p = loaded.getElementById("one");
+        assertSame(loaded.body(), p.parent());
+        assertEquals(0, p.siblingIndex());
+        assertEquals(p, p.child(0).parent());
+        assertEquals("script", loaded.select("script").first().tagName());
+    }
+
+    @Test public void snapshotRoundTripsXml() throws IOException {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><?pi some data?><!DOCTYPE feed>" +
+            "<Feed xmlns:x='urn:x'><Entry Id=1><x:Title>One</x:Title><Empty/><![CDATA[<b>raw</b>]]></Entry></Feed>";
+        Document doc = Jsoup.parse(xml, "", Parser.xmlParser());
+        Document loaded = roundTrip(doc);
+        assertEquals(doc.outerHtml(), loaded.outerHtml());
+        assertEquals(Syntax.xml, loaded.outputSettings().syntax());
+        assertTrue(loaded.parser().getTreeBuilder() instanceof org.jsoup.parser.XmlTreeBuilder);
+        assertTrue(loaded.parser().settings().preserveTagCase());
+        assertEquals("<b>raw</b>", ((CDataNode) loaded.selectFirst("Entry").childNode(2)).text());
+        assertEquals("UTF-8", ((XmlDeclaration) loaded.childNode(0)).attr("encoding"));
+    }
+
+    @Test public void snapshotsCanBeConcatenated() throws IOException {
+        Document one = Jsoup.parse("<p>One</p>");
+        Document two = Jsoup.parse("<p>Two</p>");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        one.writeSnapshot(out);
+        two.writeSnapshot(out);
+
+        InputStream in = new ByteArrayInputStream(out.toByteArray());
+        assertEquals("One", Document.readSnapshot(in).text());
+        assertEquals("Two", Document.readSnapshot(in).text());
+        assertEquals(-1, in.read());
+    }
+
+    @Test public void snapshotIsCompact() throws IOException {
+        Document doc = Jsoup.parse(ParseTest.getFile("/htmltests/news-com-au-home.html.gz"), "UTF-8");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        doc.writeSnapshot(out);
+        assertTrue(out.size() < doc.outerHtml().length(), "snapshot: " + out.size());
+        assertEquals(doc.outerHtml(), Document.readSnapshot(new ByteArrayInputStream(out.toByteArray())).outerHtml());
+    }
+
+    @Test public void readSnapshotRejectsInvalidInput() throws IOException {
+        assertThrows(IOException.class, () -> Document.readSnapshot(new ByteArrayInputStream("<html>".getBytes())));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Jsoup.parse("<p>One</p>").writeSnapshot(out);
+        byte[] bytes = out.toByteArray();
+        byte[] truncated = java.util.Arrays.copyOf(bytes, bytes.length - 4);
+        assertThrows(EOFException.class, () -> Document.readSnapshot(new ByteArrayInputStream(truncated)));
+    }
+
+    @Test public void readSnapshotRejectsTruncatedAndCorruptInput() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Jsoup.parse("<!doctype html><title>T &amp; t</title><form id=f><input name=q value=1><select name=s>" +
+            "<option selected>A</option></select></form><p class=x>One <b>two</b><!-- c --></p><input form=f>").writeSnapshot(out);
+        byte[] bytes = out.toByteArray();
+
+        for (int length = 0; length < bytes.length; length++) {
+            byte[] truncated = java.util.Arrays.copyOf(bytes, length);
+            assertThrows(IOException.class, () -> Document.readSnapshot(new ByteArrayInputStream(truncated)), "length " + length);
+        }
+
+        // each byte replaced, so headers, counts, pool references, kinds, and form links are corrupt: either still a
+        // document, or an IOException; not a runtime exception, or an allocation of the corrupt size
+        int[] large = {0x7f, 0x80, 0xfe, 0xff};
+        for (int i = 0; i < bytes.length; i++) {
+            for (int r = 0; r < 32 + large.length; r++) { // small values are also node indexes, e.g. of the input vs form
+                byte[] corrupt = bytes.clone();
+                corrupt[i] = (byte) (r < 32 ? r : large[r - 32]);
+                try {
+                    Document.readSnapshot(new ByteArrayInputStream(corrupt));
+                } catch (IOException expected) {
+                    // ok
+                }
+            }
+        }
+
+        byte[] huge = {0x4a, 0x53, 0x50, 0x4e, 1, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07, 0, 0}; // a 2GB body
+        assertThrows(EOFException.class, () -> Document.readSnapshot(new ByteArrayInputStream(huge)));
+        byte[] negative = {0x4a, 0x53, 0x50, 0x4e, 1, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f};
+        assertThrows(IOException.class, () -> Document.readSnapshot(new ByteArrayInputStream(negative)));
+    }
 }
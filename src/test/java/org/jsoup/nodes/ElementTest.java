@@ -16,6 +16,7 @@ import org.junit.jupiter.api.Test;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -2099,4 +2100,293 @@ public class ElementTest {
         p.removeAttr("foo");
         assertEquals(0, p.attributesSize());
     }
+
+    @Test void elementSiblingIndexInWideList() {
+        StringBuilder sb = new StringBuilder("<div>");
+        for (int i = 0; i < 1000; i++)
+            sb.append("<p>").append(i).append("</p> ");
+        Document doc = Jsoup.parse(sb.toString());
+        Element div = doc.selectFirst("div");
+        Elements ps = div.children();
+        for (int i = 0; i < ps.size(); i += 7) {
+            Element p = ps.get(i);
+            assertEquals(i, p.elementSiblingIndex());
+            assertEquals(i == 0 ? null : ps.get(i - 1), p.previousElementSibling());
+            assertEquals(ps.get(i + 1), p.nextElementSibling());
+        }
+
+        ps.get(10).remove();
+        div.child(500).before(new Element("span"));
+        assertEquals(10, ps.get(11).elementSiblingIndex());
+        assertEquals("span", div.child(500).tagName());
+        assertEquals(499, ps.get(500).elementSiblingIndex());
+        assertEquals(501, ps.get(501).elementSiblingIndex());
+        assertEquals(999, ps.get(999).elementSiblingIndex());
+    }
+
+    @Test void selectIteratorMatchesSelect() {
+        Document doc = Jsoup.parse("<div id=1><p>One<p>Two <span>s</span></div><div id=2><p>Three</div><p>Four");
+        String[] queries = {"p", "div p", "div", "#2 p", "*", "span", "nope", "div:has(span) ~ p", "p:nth-child(2)"};
+        for (String query : queries) {
+            Elements lazy = new Elements();
+            Iterator<Element> it = doc.selectIterator(query);
+            while (it.hasNext())
+                lazy.add(it.next());
+            assertFalse(it.hasNext());
+            assertEquals(doc.select(query), lazy, query);
+        }
+
+        Element div = doc.getElementById("1");
+        Iterator<Element> it = div.selectIterator(QueryParser.parse("div, p"));
+        assertSame(div, it.next()); // includes the root
+        assertEquals("One", it.next().text());
+        assertEquals("Two s", it.next().text());
+        assertFalse(it.hasNext());
+        assertThrows(java.util.NoSuchElementException.class, it::next);
+        assertThrows(UnsupportedOperationException.class, it::remove);
+    }
+
+    @Test void selectIteratorIsLazy() {
+        Document doc = Jsoup.parse("<p>One<p>Two<p>Three");
+        AtomicInteger tested = new AtomicInteger();
+        Evaluator counting = new Evaluator() {
+            @Override public boolean matches(Element root, Element element) {
+                tested.incrementAndGet();
+                return element.normalName().equals("p");
+            }
+        };
+
+        Iterator<Element> it = doc.selectIterator(counting);
+        assertEquals(0, tested.get());
+        assertEquals("One", it.next().text());
+        assertEquals(5, tested.get()); // #root, html, head, body, p; not the other ps
+        assertTrue(it.hasNext());
+        assertEquals(6, tested.get());
+        assertEquals("Two", it.next().text());
+        assertEquals(6, tested.get());
+    }
+
+    @Test void classTokensFollowAttributeChanges() {
+        Element div = Jsoup.parse("<div class='One two  Three one'>").selectFirst("div");
+        assertTrue(div.hasClass("one"));
+        assertTrue(div.hasClass("THREE"));
+        assertFalse(div.hasClass("four"));
+        assertFalse(div.hasClass("on"));
+        assertEquals("[One, two, Three, one]", div.classNames().toString());
+
+        div.addClass("four");
+        assertTrue(div.hasClass("Four"));
+        div.removeClass("two");
+        assertFalse(div.hasClass("two"));
+        div.attr("class", "five six");
+        assertTrue(div.hasClass("six"));
+        assertFalse(div.hasClass("one"));
+        div.attributes().put("class", "seven eight");
+        assertTrue(div.hasClass("eight"));
+        div.removeAttr("class");
+        assertFalse(div.hasClass("eight"));
+        assertEquals(0, div.classNames().size());
+        div.toggleClass("nine").toggleClass("ten");
+        assertTrue(div.hasClass("nine"));
+        assertEquals("nine ten", div.className());
+
+        Element clone = div.clone();
+        clone.removeClass("nine");
+        assertTrue(div.hasClass("nine"));
+        assertFalse(clone.hasClass("nine"));
+        assertTrue(clone.hasClass("ten"));
+    }
+
+    @Test void hasClassIsCaseInsensitiveForAllTokens() {
+        // each token is tested by case insensitive comparison, with the hash mask only skipping definite misses
+        Element el = new Element("p").attr("class", "a-B \u00e9T\u00c9 \u0130x ss");
+        assertTrue(el.hasClass("A-b"));
+        assertTrue(el.hasClass("\u00c9t\u00e9"));
+        assertTrue(el.hasClass("ix"));
+        assertTrue(el.hasClass("SS"));
+        assertFalse(el.hasClass("\u00df"));
+        assertEquals(el.select(".A-B, .\u00c9T\u00c9").size(), 1);
+    }
+
+    private static void assertSiblingIndexes(Element parent) {
+        for (int i = 0; i < parent.childNodeSize(); i++) {
+            assertEquals(i, parent.childNode(i).siblingIndex());
+            assertSame(parent, parent.childNode(i).parent());
+        }
+    }
+
+    @Test void removeChildrenByFilter() {
+        Document doc = Jsoup.parse("<ul><li class=ad>0</li><li>1</li><!-- track --><li class=ad>2</li>Text<li>3</li><li class=ad>4</li></ul>");
+        Element ul = doc.selectFirst("ul");
+        List<Node> before = new ArrayList<>(ul.childNodes());
+
+        ul.removeChildren(new NodeFilter() {
+            @Override public FilterResult head(Node node, int depth) {
+                assertEquals(0, depth);
+                if (node instanceof Comment || (node instanceof Element && ((Element) node).hasClass("ad")))
+                    return FilterResult.REMOVE;
+                return FilterResult.CONTINUE;
+            }
+            @Override public FilterResult tail(Node node, int depth) {
+                return FilterResult.CONTINUE;
+            }
+        });
+        assertEquals("<li>1</li>Text<li>3</li>", TextUtil.stripNewlines(ul.html()));
+        assertSiblingIndexes(ul);
+        assertEquals(2, ul.children().size());
+        for (Node node : before) {
+            if (node.parent() == null)
+                assertFalse(ul.childNodes().contains(node));
+        }
+        assertEquals(1, ul.select("li:nth-child(1)").size());
+    }
+
+    @Test void removeChildrenStopsAtStop() {
+        Element div = Jsoup.parse("<div><p>1<p>2<p>3<p>4</div>").selectFirst("div");
+        final int[] seen = {0};
+        div.removeChildren(new NodeFilter() {
+            @Override public FilterResult head(Node node, int depth) {
+                return ++seen[0] == 3 ? FilterResult.STOP : FilterResult.REMOVE;
+            }
+            @Override public FilterResult tail(Node node, int depth) {
+                return FilterResult.CONTINUE;
+            }
+        });
+        assertEquals(3, seen[0]);
+        assertEquals("34", div.text().replace(" ", ""));
+        assertSiblingIndexes(div);
+    }
+
+    @Test void replaceChildren() {
+        Document doc = Jsoup.parse("<div id=a><p>1</p><p>2</p><p>3</p></div><div id=b><span>x</span><span>y</span><span>z</span></div>");
+        Element a = doc.getElementById("a");
+        Element b = doc.getElementById("b");
+        Element p1 = a.child(0);
+        Element p3 = a.child(2);
+        Elements spans = b.select("span");
+
+        List<Node> children = new ArrayList<>();
+        children.add(p3);
+        children.add(spans.get(0));
+        children.add(new TextNode("t"));
+        children.add(spans.get(2));
+        children.add(p1);
+        a.replaceChildren(children);
+
+        assertEquals("<p>3</p><span>x</span>t<span>z</span><p>1</p>", TextUtil.stripNewlines(a.html()));
+        assertEquals("<span>y</span>", TextUtil.stripNewlines(b.html()));
+        assertSiblingIndexes(a);
+        assertSiblingIndexes(b);
+        assertNull(doc.selectFirst("p:contains(2)"));
+
+        assertThrows(IllegalArgumentException.class, () -> a.replaceChildren(java.util.Arrays.asList(p1, p1)));
+        a.replaceChildren(new ArrayList<Node>());
+        assertEquals(0, a.childNodeSize());
+        assertNull(p1.parent());
+    }
+
+    @Test void bulkMovesKeepIndexes() {
+        Element from = new Element("ul");
+        for (int i = 0; i < 100; i++)
+            from.appendElement("li").text(Integer.toString(i));
+        List<Node> evens = new ArrayList<>();
+        for (int i = 0; i < 100; i += 2)
+            evens.add(from.childNode(i));
+
+        Element to = new Element("ol").appendElement("li").text("first").parent();
+        to.insertChildren(1, evens);
+        assertEquals(50, from.childNodeSize());
+        assertEquals(51, to.childNodeSize());
+        assertEquals("1", from.child(0).text());
+        assertEquals("98", to.child(50).text());
+        assertSiblingIndexes(from);
+        assertSiblingIndexes(to);
+    }
+
+    @Test void trimToSizeKeepsContent() {
+        Document doc = Jsoup.parse("<div id=1 class=a title=t><p>One<p>Two <b>Three</b></div><span></span>");
+        String html = doc.html();
+        Element span = doc.selectFirst("span");
+        span.attributes(); // creates an empty attributes
+        assertTrue(span.hasAttributes());
+        Element div = doc.selectFirst("div");
+        div.attributes().put("data-x", "1").remove("data-x"); // grows the arrays past the size
+
+        assertSame(doc, doc.trimToSize());
+        assertEquals(html, doc.html());
+        assertFalse(span.hasAttributes());
+        assertEquals(3, div.attributes().keys.length);
+        assertEquals(2, div.children().size());
+
+        div.attr("data-y", "2").appendElement("p").text("Four");
+        span.attr("id", "s").appendText("Five");
+        assertEquals("2", div.attr("data-y"));
+        assertEquals("One Two Three Four", div.text());
+        assertEquals(3, div.children().size());
+        assertEquals("Five", doc.getElementById("s").text());
+    }
+
+    @Test
+    public void cachedTextMatchesText() {
+        String html = "<div> One <b>Two</b><p>Three  <i> four</i></p>five<br>six<span><div></div> seven</span>" +
+            "<pre> keep <b> this </b>\n</pre><p><![CDATA[ cdata ]]> eight</p></div><ul><li> 1 <li>2</ul>after";
+        Document doc = Jsoup.parse(html);
+        Document cached = Jsoup.parse(html).textCaching(true);
+        assertFalse(doc.textCaching());
+        assertTrue(cached.textCaching());
+
+        List<Element> els = doc.getAllElements();
+        List<Element> cachedEls = cached.getAllElements();
+        for (int i = els.size() - 1; i >= 0; i--) { // bottom up, so ancestors join their children's cached text
+            assertEquals(els.get(i).text(), cachedEls.get(i).text());
+            assertEquals(els.get(i).wholeText(), cachedEls.get(i).wholeText());
+        }
+        assertEquals(doc.select("p").text(), cached.select("p").text());
+        assertEquals(doc.text(), cached.text());
+    }
+
+    @Test
+    public void cachedTextIsInvalidatedOnChange() {
+        Document doc = Jsoup.parse("<div><p>One <b>Two</b></p><p>Three</p></div>").textCaching(true);
+        Element div = doc.selectFirst("div");
+        Element b = doc.selectFirst("b");
+        assertEquals("One Two Three", div.text());
+        assertEquals("One TwoThree", div.wholeText());
+
+        b.textNodes().get(0).text("2");
+        assertEquals("One 2 Three", div.text());
+        assertEquals("One 2Three", div.wholeText());
+
+        b.appendElement("i").text("and");
+        assertEquals("One 2and Three", div.text());
+
+        doc.select("p").last().remove();
+        assertEquals("One 2and", div.text());
+        assertEquals("One 2and", doc.text());
+
+        b.tagName("div"); // a block, so now spaced
+        assertEquals("2and", b.text());
+        assertCachedTextMatches(div);
+        b.before("x");
+        assertEquals("One x 2and", div.text());
+
+        Element pre = doc.body().appendElement("pre");
+        pre.appendChild(div); // moved under pre, so its text is no longer normalized
+        assertCachedTextMatches(div);
+        assertCachedTextMatches(b);
+
+        doc.textCaching(false);
+        b.textNodes().get(0).text("Two");
+        assertEquals("One x Twoand", div.text());
+    }
+
+    private static void assertCachedTextMatches(Element el) {
+        Document doc = el.ownerDocument();
+        assertNotNull(doc);
+        int index = doc.getAllElements().indexOf(el);
+        Document uncached = doc.clone().textCaching(false);
+        Element copy = uncached.getAllElements().get(index);
+        assertEquals(copy.text(), el.text());
+        assertEquals(copy.wholeText(), el.wholeText());
+    }
 }
@@ -0,0 +1,282 @@
+package org.jsoup.nodes;
+
+import org.jsoup.Jsoup;
+import org.jsoup.parser.Parser;
+import org.jsoup.select.Elements;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FrozenDocumentTest {
+    private static final String Html = "<!doctype html><html><head><title>Frozen</title><script>var a = 1 < 2;</script></head>" +
+        "<body><div id=nav class='menu top'><a href=/one>One</a> <a href=two>Two <img src=x></a></div><!-- note -->" +
+        "<div class=content><h1 id=title>Title</h1><p class='intro lead'>Intro <b>bold</b>\n text</p><p>Two <a href=/three>Three</a></p>" +
+        "<ul><li>1</li><li class=odd><b>2</b></li><li>3</li></ul><pre>  keep\n  this </pre>" +
+        "<form><input name=q value=query><textarea name=t>Text area</textarea></form></div><p class=foot id=foot>Foot<br>Line</p></body></html>";
+
+    private static Document parse() {
+        return Jsoup.parse(Html, "https://example.com/dir/");
+    }
+
+    @Test public void thawsToTheSameHtml() {
+        Document doc = parse();
+        FrozenDocument frozen = doc.freeze();
+        Document thawed = frozen.thaw();
+        assertEquals(doc.html(), thawed.html());
+        assertEquals(doc.location(), thawed.location());
+        assertEquals(doc.location(), frozen.location());
+        assertEquals(doc.getAllElements().size(), thawed.getAllElements().size());
+        assertEquals(doc.outerHtml(), frozen.root().outerHtml());
+
+        Document xml = Jsoup.parse("<?xml version='1.0'?><?pi data?><doc><![CDATA[<b>one</b>]]><a x=1>two</a></doc>", "", Parser.xmlParser());
+        assertEquals(xml.html(), xml.freeze().thaw().html());
+    }
+
+    @Test public void readsMatchTheDocument() {
+        Document doc = parse();
+        doc.outputSettings().prettyPrint(false); // as the frozen nodes are printed without their context
+        FrozenDocument frozen = doc.freeze();
+        List<Node> nodes = preOrder(doc);
+        assertEquals(nodes.size(), frozen.size());
+
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get(i);
+            FrozenDocument.FrozenNode frozenNode = frozen.node(i);
+            assertEquals(node.nodeName(), frozenNode.nodeName());
+            assertEquals(node.outerHtml(), frozenNode.outerHtml());
+            assertEquals(node.childNodeSize(), frozenNode.childNodes().size());
+            if (node.parent() != null)
+                assertEquals(nodes.indexOf(node.parent()), frozenNode.parent().index());
+            else
+                assertNull(frozenNode.parent());
+
+            if (node instanceof Element) {
+                Element el = (Element) node;
+                assertTrue(frozenNode.isElement());
+                assertSame(el.tag(), frozenNode.tag());
+                assertEquals(el.text(), frozenNode.text(), el.cssSelector());
+                assertEquals(el.wholeText(), frozenNode.wholeText());
+                assertEquals(el.id(), frozenNode.id());
+                assertEquals(el.children().size(), frozenNode.children().size());
+                assertEquals(el.attributes(), frozenNode.attributes());
+                for (Attribute attribute : el.attributes()) {
+                    assertEquals(el.attr(attribute.getKey()), frozenNode.attr(attribute.getKey()));
+                    assertEquals(el.absUrl(attribute.getKey()), frozenNode.attr("abs:" + attribute.getKey()));
+                }
+                assertEquals(el.hasClass("lead"), frozenNode.hasClass("LEAD"));
+            } else {
+                assertFalse(frozenNode.isElement());
+                if (node instanceof TextNode || node instanceof DataNode || node instanceof Comment)
+                    assertEquals(((LeafNode) node).coreValue(), frozenNode.value());
+            }
+        }
+    }
+
+    @Test public void selectsAsTheDocument() {
+        String[] queries = {
+            "a", "p", "#title", "h1#title", ".lead", "p.intro", "a[href]", "[href=/one]", "a[href=two]", "div > h1",
+            "div p", "div.content p b", "a, li", "*", "li.odd b, #foot", // matched directly
+            "li:nth-child(2)", "p:has(b)", ":containsOwn(two)", "p:contains(intro text)", "h1 + p", "p:matches(^Foot)",
+            ":root", "#nav ~ div a", // run on a thawed copy
+        };
+        Document doc = parse();
+        FrozenDocument frozen = doc.freeze();
+        List<Node> nodes = preOrder(doc);
+        Element content = doc.selectFirst("div.content");
+        FrozenDocument.FrozenNode frozenContent = frozen.node(nodes.indexOf(content));
+
+        for (String query : queries) {
+            assertEquals(positions(nodes, doc.select(query)), indexes(frozen.select(query)), query);
+            assertEquals(positions(nodes, content.select(query)), indexes(frozenContent.select(query)), query);
+        }
+    }
+
+    @Test public void frozenIsDetached() {
+        Document doc = parse();
+        FrozenDocument frozen = doc.freeze();
+        doc.select("p").remove();
+        doc.selectFirst("h1").text("Changed");
+
+        assertEquals(3, frozen.select("p").size());
+        assertEquals("Title", frozen.select("h1").get(0).text());
+
+        Node thawed = frozen.select("h1").get(0).thaw();
+        assertEquals("<h1 id=\"title\">Title</h1>", thawed.outerHtml());
+        assertNull(thawed.parent());
+    }
+
+    @Test public void concurrentSelects() throws Exception {
+        final FrozenDocument frozen = parse().freeze();
+        final String[] queries = {"p", "div a", "li:nth-child(2)", ":contains(one)", "#foot"};
+        final int[] expected = new int[queries.length];
+        for (int i = 0; i < queries.length; i++)
+            expected[i] = frozen.select(queries[i]).size();
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int t = 0; t < 16; t++) {
+                futures.add(pool.submit(() -> {
+                    for (int n = 0; n < 50; n++) {
+                        for (int i = 0; i < queries.length; i++) {
+                            if (frozen.select(queries[i]).size() != expected[i])
+                                return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> future : futures)
+                assertTrue(future.get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test public void concurrentThawAndEdit() throws Exception {
+        final FrozenDocument frozen = parse().freeze();
+        Document expected = parse();
+        expected.selectFirst("#nav").html("<b>Nav</b> <i>x</i>");
+        expected.body().append("<p class=added>One <a href=/four>Four</a></p>");
+        final String expectedHtml = expected.html();
+        assertNotSame(frozen.thaw().parser(), frozen.thaw().parser()); // parsers hold parse state, so aren't shared
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int t = 0; t < 16; t++) {
+                futures.add(pool.submit(() -> {
+                    for (int n = 0; n < 50; n++) {
+                        Document thawed = frozen.thaw();
+                        thawed.selectFirst("#nav").html("<b>Nav</b> <i>x</i>"); // parses with the thawed document's parser
+                        thawed.body().append("<p class=added>One <a href=/four>Four</a></p>");
+                        if (!thawed.html().equals(expectedHtml))
+                            return false;
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> future : futures)
+                assertTrue(future.get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test public void validatesIndexes() {
+        FrozenDocument frozen = parse().freeze();
+        int size = frozen.size();
+        assertThrows(IllegalArgumentException.class, () -> frozen.parent(size));
+        assertThrows(IllegalArgumentException.class, () -> frozen.firstChild(-1));
+        assertThrows(IllegalArgumentException.class, () -> frozen.nextSibling(size));
+        assertThrows(IllegalArgumentException.class, () -> frozen.subtreeEnd(size));
+        assertThrows(IllegalArgumentException.class, () -> frozen.isElement(size));
+        assertThrows(IllegalArgumentException.class, () -> frozen.tag(-1));
+        assertThrows(IllegalArgumentException.class, () -> frozen.nodeName(size));
+        assertThrows(IllegalArgumentException.class, () -> frozen.normalName(size));
+        assertThrows(IllegalArgumentException.class, () -> frozen.attr(size, "id"));
+        assertThrows(IllegalArgumentException.class, () -> frozen.hasAttr(size, "id"));
+        assertThrows(IllegalArgumentException.class, () -> frozen.hasClass(size, "menu"));
+        assertThrows(IllegalArgumentException.class, () -> frozen.value(size));
+        assertThrows(IllegalArgumentException.class, () -> frozen.text(size));
+        assertThrows(IllegalArgumentException.class, () -> frozen.wholeText(size));
+        assertEquals(-1, frozen.parent(0));
+        assertEquals(size, frozen.subtreeEnd(0));
+    }
+
+    private static List<Node> preOrder(Node root) {
+        List<Node> nodes = new ArrayList<>();
+        NodeTraversor.traverse(new NodeVisitor() {
+            @Override public void head(Node node, int depth) {
+                nodes.add(node);
+            }
+
+            @Override public void tail(Node node, int depth) {}
+        }, root);
+        return nodes;
+    }
+
+    private static List<Integer> positions(List<Node> nodes, Elements elements) {
+        List<Integer> positions = new ArrayList<>();
+        for (Element el : elements)
+            positions.add(nodes.indexOf(el));
+        return positions;
+    }
+
+    private static List<Integer> indexes(List<FrozenDocument.FrozenNode> frozenNodes) {
+        List<Integer> indexes = new ArrayList<>();
+        for (FrozenDocument.FrozenNode node : frozenNodes)
+            indexes.add(node.index());
+        return indexes;
+    }
+
+    @Test public void thawsLazily() {
+        Document doc = parse();
+        FrozenDocument frozen = doc.freeze();
+        Document thawed = frozen.thaw();
+        assertTrue(thawed.isUnthawed());
+        assertEquals(2, thawed.childNodeSize()); // the count is known without thawing: the doctype and html
+        Element html = thawed.child(0);
+        assertFalse(thawed.isUnthawed());
+        assertTrue(html.isUnthawed());
+
+        Document clone = thawed.clone(); // shares the unthawed html children
+        assertTrue(clone.child(0).isUnthawed());
+        html.selectFirst("h1").text("Changed");
+        assertEquals(doc.html().replace(">Title<", ">Changed<"), thawed.html());
+        assertEquals(doc.html(), clone.html());
+        assertEquals(doc.html(), frozen.thaw().html());
+    }
+
+    @Test public void unthawedPlaceholderIsAList() {
+        Document doc = parse();
+        Document thawed = doc.freeze().thaw();
+        Element body = thawed.child(0).child(1);
+        List<Node> placeholder = body.childNodes; // read directly, as by internal code
+        assertTrue(body.isUnthawed());
+        assertEquals(doc.body().childNodeSize(), placeholder.size());
+
+        Document clone = thawed.clone();
+        assertEquals("nav", ((Element) placeholder.get(0)).id()); // thaws through the element
+        assertFalse(body.isUnthawed());
+        assertSame(body, placeholder.get(0).parent());
+        body.appendElement("hr");
+        assertEquals(doc.body().childNodeSize() + 1, placeholder.size()); // follows the thawed children
+        int i = 0;
+        for (Node node : placeholder)
+            assertSame(body.childNode(i++), node);
+        assertThrows(UnsupportedOperationException.class, () -> placeholder.add(new TextNode("x")));
+
+        Element cloneBody = clone.child(0).child(1);
+        assertTrue(cloneBody.isUnthawed()); // its own placeholder, thawed independently
+        assertEquals(doc.body().html(), cloneBody.html());
+        assertNotSame(body.child(0), cloneBody.child(0));
+    }
+
+    @Test public void locatesInThawed() {
+        Document doc = parse();
+        FrozenDocument frozen = doc.freeze();
+        Document thawed = frozen.thaw();
+        List<FrozenDocument.FrozenNode> links = frozen.select("a[href]");
+        for (FrozenDocument.FrozenNode link : links)
+            ((Element) link.locate(thawed)).attr("href", "/changed").text("Link");
+
+        Document expected = doc.clone();
+        for (Element link : expected.select("a[href]"))
+            link.attr("href", "/changed").text("Link");
+        assertEquals(expected.html(), thawed.html());
+
+        Element p = (Element) frozen.select("p.foot").get(0).locate(thawed);
+        assertEquals("Foot Line", p.text());
+        assertSame(thawed, frozen.root().locate(thawed));
+        assertThrows(IllegalArgumentException.class, () -> frozen.select("li").get(0).locate(new Document("")));
+    }
+}
@@ -0,0 +1,150 @@
+package org.jsoup.nodes;
+
+import org.jsoup.Jsoup;
+import org.jsoup.parser.Parser;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TextArenaTest {
+    private static final String Html = "<html><head><title>A title that is long enough</title>" +
+        "<script>var a = 1 < 2 && 'a long script body';</script></head>" +
+        "<body><div id=main class='content with several classes' hidden><p>Some text that is stored off heap &amp; decoded.</p>" +
+        "<!-- a comment that is long enough to store --><p title='Short'>Hi <b>there</b></p>" +
+        "<a href='https://example.com/a/long/path?q=1&amp;r=2'>Link text in an anchor</a></div></body></html>";
+
+    private static Document parse(Parser parser) {
+        return Jsoup.parse(Html, "https://example.com/", parser);
+    }
+
+    @Test public void parsesTheSame() {
+        Document doc = parse(Parser.htmlParser());
+        Document stored = parse(Parser.htmlParser().setOffHeapText(true));
+        assertEquals(doc.html(), stored.html());
+        assertEquals(doc.text(), stored.text());
+        assertEquals(doc.select("div").first().attributes(), stored.select("div").first().attributes());
+        assertEquals(doc.select("script").first().data(), stored.select("script").first().data());
+        assertTrue(stored.textArena().size() > 0);
+
+        Document xml = parse(Parser.xmlParser());
+        Document storedXml = parse(Parser.xmlParser().setOffHeapText(true));
+        assertEquals(xml.html(), storedXml.html());
+    }
+
+    @Test public void storesLongValues() {
+        Document doc = parse(Parser.htmlParser().setOffHeapText(true));
+        TextNode text = (TextNode) doc.selectFirst("p").childNode(0);
+        assertTrue(text.value instanceof TextArena.Stored);
+        assertEquals("Some text that is stored off heap & decoded.", text.text());
+
+        TextNode shortText = (TextNode) doc.selectFirst("p[title]").childNode(0);
+        assertEquals("Hi ", shortText.value); // short values stay on the heap
+
+        Element div = doc.selectFirst("div");
+        assertTrue(div.attributes() instanceof TextArena.StoredAttributes);
+        assertTrue(div.hasAttr("hidden"));
+        assertEquals("", div.attr("hidden"));
+        assertEquals("content with several classes", div.className());
+        assertEquals("https://example.com/a/long/path?q=1&r=2", doc.selectFirst("a").attr("href"));
+    }
+
+    @Test public void canModifyStoredValues() {
+        Document doc = parse(Parser.htmlParser().setOffHeapText(true));
+        Element div = doc.selectFirst("div");
+        div.removeAttr("id");
+        div.attr("data-x", "y");
+        assertEquals("content with several classes", div.attr("class"));
+        assertTrue(div.outerHtml().startsWith("<div class=\"content with several classes\" hidden data-x=\"y\">"));
+
+        Element p = doc.selectFirst("p");
+        p.text("New text");
+        assertEquals("New text", p.text());
+        ((TextNode) doc.selectFirst("a").childNode(0)).text("Changed");
+        assertEquals("Changed", doc.selectFirst("a").text());
+    }
+
+    @Test public void closedStoreCanNotBeRead() throws IOException {
+        Document doc = parse(Parser.htmlParser().setOffHeapText(true));
+        Element a = doc.selectFirst("a").clone(); // reads its stored values, so remains readable
+        Document clone = doc.clone();
+        Element div = doc.selectFirst("div");
+        Element p = doc.selectFirst("p");
+        try (Closeable closeable = doc) {
+            assertSame(doc, closeable);
+        }
+
+        assertTrue(doc.textArena().isClosed());
+        assertEquals("https://example.com/a/long/path?q=1&r=2", a.attr("href"));
+        assertEquals("Link text in an anchor", a.text());
+        assertEquals(parse(Parser.htmlParser()).html(), clone.html());
+        assertThrows(IllegalStateException.class, () -> doc.selectFirst("p").text());
+        assertThrows(IllegalStateException.class, () -> div.attr("class"));
+
+        Document other = Jsoup.parse("<div></div>");
+        other.selectFirst("div").appendChild(p); // moved, so still reads from the closed store
+        assertThrows(IllegalStateException.class, p::text);
+    }
+
+    @Test public void copiesDontReadStoredAttributesOntoTheHeap() throws IOException {
+        Document doc = parse(Parser.htmlParser().setOffHeapText(true));
+        TextArena.StoredAttributes attributes = (TextArena.StoredAttributes) doc.selectFirst("div").attributes();
+        doc.trimToSize();
+        FrozenDocument frozen = doc.freeze();
+        doc.writeSnapshot(new ByteArrayOutputStream());
+        Document clone = doc.clone();
+        assertNotNull(attributes.arena); // still stored
+        assertEquals("", attributes.vals[1]); // the placeholder
+
+        assertEquals("content with several classes", frozen.select("div").get(0).attr("class"));
+        assertEquals("content with several classes", clone.selectFirst("div").attr("class"));
+        assertEquals(3, attributes.size());
+        assertNotNull(attributes.arena);
+    }
+
+    @Test public void readsDontReadStoredAttributesOntoTheHeap() {
+        Document doc = parse(Parser.htmlParser().setOffHeapText(true));
+        Element div = doc.selectFirst("div");
+        TextArena.StoredAttributes attributes = (TextArena.StoredAttributes) div.attributes();
+        assertEquals(1, doc.select(".content").size());
+        assertEquals(1, doc.select("[href^=https]").size());
+        assertEquals("main", div.id());
+        assertEquals("content with several classes", div.attr("class"));
+        assertTrue(div.outerHtml().startsWith("<div id=\"main\" class=\"content with several classes\" hidden>"));
+        for (Attribute attribute : attributes)
+            assertFalse(attribute.getValue().isEmpty() && !attribute.getKey().equals("hidden"));
+        assertEquals(parse(Parser.htmlParser()).selectFirst("div").attributes().hashCode(), attributes.hashCode());
+        assertNotNull(attributes.arena); // still stored
+        assertEquals("", attributes.vals[1]);
+
+        attributes.asList().get(0).setValue("changed"); // a change reads them onto the heap
+        assertNull(attributes.arena);
+        assertEquals("changed", div.id());
+        assertEquals("content with several classes", div.className());
+    }
+
+    @Test public void fragmentsAreStoredInTheirDocument() {
+        Document doc = parse(Parser.htmlParser().setOffHeapText(true));
+        long size = doc.textArena().size();
+        Element div = doc.selectFirst("div");
+        div.html("<p title='A title that is long enough'>Some new text that is long enough</p>");
+        assertTrue(doc.textArena().size() > size);
+        Element p = div.selectFirst("p");
+        assertTrue(((TextNode) p.childNode(0)).value instanceof TextArena.Stored);
+        assertEquals("Some new text that is long enough", p.text());
+
+        doc.close(); // releases the fragment's values too
+        assertThrows(IllegalStateException.class, p::text);
+        assertThrows(IllegalStateException.class, () -> p.attr("title"));
+    }
+
+    @Test public void notStoredByDefault() {
+        Document doc = parse(Parser.htmlParser());
+        TextNode text = (TextNode) doc.selectFirst("p").childNode(0);
+        assertFalse(text.value instanceof TextArena.Stored);
+        assertEquals(0, doc.textArena().size());
+    }
+}
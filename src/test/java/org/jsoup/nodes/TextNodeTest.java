@@ -157,4 +157,17 @@ public class TextNodeTest {
         }
         assertTrue(foundFirst);
     }
+
+    @Test
+    public void lazilyDecodedTextDecodesOnRead() {
+        TextNode node = TextNode.createLazilyDecoded("One &amp; &lt;two&gt;");
+        assertTrue(node.value instanceof LeafNode.Encoded);
+        assertEquals("One &amp; &lt;two&gt;", node.outerHtml());
+        assertEquals("One & <two>", node.text());
+        assertFalse(node.value instanceof LeafNode.Encoded);
+
+        TextNode attrs = TextNode.createLazilyDecoded("a &amp; b");
+        attrs.attr("x", "y"); // converts the value to attributes, so must decode
+        assertEquals("a & b", attrs.text());
+    }
 }
@@ -2,12 +2,23 @@ package org.jsoup.parser;
 
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.select.NodeVisitor;
 import org.junit.jupiter.api.Test;
 
+import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 public class ParserTest {
 
@@ -35,4 +46,167 @@ public class ParserTest {
         String text = parsed.selectFirst("p").wholeText();
         assertEquals(text, "H\u00E9llo, w\u00F6rld!");
     }
+
+    @Test
+    public void incrementalParseNotifiesAsInputIsRead() {
+        StringBuilder html = new StringBuilder("<title>Inc</title><p id=first>One</p>");
+        for (int i = 0; i < 2000; i++)
+            html.append("<div>Filler ").append(i).append("</div>");
+        html.append("<p id=last>Two<br>Three");
+        final CountingReader reader = new CountingReader(new StringReader(html.toString()), 512);
+        final int total = html.length();
+
+        final List<String> events = new ArrayList<>();
+        final int[] readAtFirstP = {-1};
+        Document doc = Parser.htmlParser().parseInput(new BufferedReader(reader, 1024), "", new NodeVisitor() {
+            @Override public void head(Node node, int depth) {
+                if (node instanceof Element && node.attr("id").equals("first")) {
+                    readAtFirstP[0] = reader.count;
+                    assertNotNull(node.ownerDocument()); // partial doc is visible
+                    assertEquals("Inc", node.ownerDocument().title());
+                }
+                if (!node.nodeName().equals("div") && !node.nodeName().equals("#text"))
+                    events.add("+" + node.nodeName() + depth);
+            }
+
+            @Override public void tail(Node node, int depth) {
+                if (!node.nodeName().equals("div") && !node.nodeName().equals("#text"))
+                    events.add("-" + node.nodeName() + depth);
+            }
+        });
+
+        assertTrue(readAtFirstP[0] > 0 && readAtFirstP[0] < total / 4, "Saw first p at " + readAtFirstP[0]);
+        assertEquals(2002, doc.select("p, div").size());
+        assertEquals("[+#document0, +html1, +head2, +title3, -title3, -head2, +body2, +p3, -p3, +p3, +br4, -br4, -p3, -body2, -html1, -#document0]",
+            events.toString());
+    }
+
+    @Test
+    public void incrementalXmlParseClosesElements() {
+        final List<String> events = new ArrayList<>();
+        Parser.xmlParser().parseInput(new StringReader("<a><b/><c>Text</c></a>"), "", new NodeVisitor() {
+            @Override public void head(Node node, int depth) {
+                events.add("+" + node.nodeName() + depth);
+            }
+
+            @Override public void tail(Node node, int depth) {
+                events.add("-" + node.nodeName() + depth);
+            }
+        });
+        assertEquals("[+#document0, +a1, +b2, -b2, +c2, +#text3, -#text3, -c2, -a1, -#document0]", events.toString());
+    }
+
+    /** Reads at most chunk chars per read, and tracks how many chars have been read. */
+    static class CountingReader extends Reader {
+        final Reader in;
+        final int chunk;
+        int count = 0;
+
+        CountingReader(Reader in, int chunk) {
+            this.in = in;
+            this.chunk = chunk;
+        }
+
+        @Override public int read(char[] buf, int off, int len) throws IOException {
+            int read = in.read(buf, off, Math.min(len, chunk));
+            if (read > 0) count += read;
+            return read;
+        }
+
+        @Override public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    @Test
+    public void trimToSizeParsesTheSame() {
+        String html = "<title>T</title><div id=a class=b><p>One <a href=/x>Two</a><p>Three</div><ul><li>1<li>2</ul>";
+        Parser parser = Parser.htmlParser().setTrimToSize(true);
+        assertTrue(parser.isTrimToSize());
+        assertTrue(parser.newInstance().isTrimToSize());
+        assertFalse(Parser.htmlParser().isTrimToSize());
+
+        Document trimmed = parser.parseInput(html, "");
+        Document parsed = Jsoup.parse(html);
+        assertEquals(parsed.html(), trimmed.html());
+        assertEquals(parsed.select("p a[href]").size(), trimmed.select("p a[href]").size());
+
+        String xml = "<doc><a x=1>One</a><b/></doc>";
+        assertEquals(Parser.xmlParser().parseInput(xml, "").html(),
+            Parser.xmlParser().setTrimToSize(true).parseInput(xml, "").html());
+    }
+
+    @Test
+    public void lazyDecodingParsesTheSame() {
+        String html = "<title>A &amp; B &lt;c&gt;</title><head><style>a&amp;b</style></head>" +
+            "<p title='x &quot;y&quot; &amp;amp;'>One &amp; two &#38;amp; &copy; a & b &notin &notit; &Tab;|&NewLine;|&#x26;lt;</p>" +
+            "<a href='?a=1&copy=2&amp;b=3&lang=en'>Link</a><textarea>&lt;b&gt;</textarea>" +
+            "<table><tr><td>&amp;</td></tr>&nbsp;x</table><svg><text>&amp;&#0;</text></svg>" +
+            "<section title='a &amp;lt; b' a1='v&amp;1' a2=plain a3='&amp;amp;'>";
+        Parser parser = Parser.htmlParser().setLazyDecoding(true);
+        assertTrue(parser.isLazyDecoding());
+        assertTrue(parser.newInstance().isLazyDecoding());
+        assertFalse(Parser.htmlParser().isLazyDecoding());
+
+        Document lazy = parser.parseInput(html, "https://example.com/");
+        Document eager = Parser.htmlParser().parseInput(html, "https://example.com/");
+        assertEquals(eager.text(), lazy.text());
+        assertEquals(eager.html(), lazy.html());
+        assertEquals(eager.select("a").attr("abs:href"), lazy.select("a").attr("abs:href"));
+        assertEquals(eager.select("p").attr("title"), lazy.select("p").attr("title"));
+        assertEquals(eager.select("p").first().attributes(), lazy.select("p").first().attributes());
+        assertEquals(eager.title(), lazy.title());
+        assertEquals(eager.selectFirst("section").attributes(), lazy.selectFirst("section").attributes());
+        assertEquals("a &lt; b", lazy.selectFirst("section").attr("title")); // each value decoded once
+
+        String xml = "<doc a='1 &amp; 2'>One &amp; &lt;two&gt; &#38; &foo;</doc>";
+        Document lazyXml = Parser.xmlParser().setLazyDecoding(true).parseInput(xml, "");
+        Document eagerXml = Parser.xmlParser().parseInput(xml, "");
+        assertEquals(eagerXml.html(), lazyXml.html());
+        assertEquals(eagerXml.text(), lazyXml.text());
+    }
+
+    @Test
+    public void resolvedLazyDocumentCanBeReadConcurrently() throws Exception {
+        StringBuilder html = new StringBuilder();
+        for (int i = 0; i < 200; i++)
+            html.append("<p title='a &amp;lt; ").append(i).append("' data-x='&amp;amp;'>One &amp; ").append(i)
+                .append(" <a href='?a=1&amp;b=").append(i).append("'>&lt;two&gt;</a></p>");
+        final Document eager = Jsoup.parse(html.toString());
+        final List<String> expected = new ArrayList<>();
+        for (Element p : eager.select("p"))
+            expected.add(p.attr("title") + p.attr("data-x") + p.text() + p.selectFirst("a").attr("href"));
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            for (int round = 0; round < 20; round++) {
+                final Document lazy = Jsoup.parse(html.toString(), "", Parser.htmlParser().setLazyDecoding(true));
+                lazy.resolveLazyState(); // then published to the readers by the executor
+                List<Future<Boolean>> futures = new ArrayList<>();
+                for (int t = 0; t < 4; t++) {
+                    futures.add(pool.submit(() -> {
+                        int i = 0;
+                        for (Element p : lazy.select("p")) {
+                            String read = p.attr("title") + p.attr("data-x") + p.text() + p.selectFirst("a").attr("href");
+                            if (!read.equals(expected.get(i++)))
+                                return false;
+                        }
+                        return lazy.html().equals(eager.html());
+                    }));
+                }
+                for (Future<Boolean> future : futures)
+                    assertTrue(future.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void lazyDecodingIsNotUsedWhenTrackingErrors() {
+        Parser parser = Parser.htmlParser().setLazyDecoding(true).setTrackErrors(10);
+        Document doc = parser.parseInput("<p>One &amp; &notit; two</p>", "");
+        assertEquals("One & &notit; two", doc.text());
+        assertEquals(1, parser.getErrors().size());
+    }
 }
@@ -0,0 +1,85 @@
+package org.jsoup.parser;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StringPoolTest {
+    @Test public void internsEqualStrings() {
+        StringPool pool = new StringPool();
+        String one = new String("nav-item");
+        String two = new String("nav-item");
+        assertSame(one, pool.intern(one));
+        assertSame(one, pool.intern(two));
+        assertSame("", pool.intern(new String("")));
+    }
+
+    @Test public void doesNotInternLongStrings() {
+        StringPool pool = new StringPool(16, 4);
+        String one = new String("12345");
+        assertSame(one, pool.intern(one));
+        assertNotSame(one, pool.intern(new String("12345")));
+        assertEquals(16, pool.size());
+        assertEquals(4, pool.maxLength());
+    }
+
+    @Test public void isBounded() {
+        StringPool pool = new StringPool(100, 64);
+        assertEquals(128, pool.size());
+        for (int i = 0; i < 10000; i++)
+            assertEquals("s" + i, pool.intern("s" + i));
+        assertEquals(128, pool.size());
+    }
+
+    @Test public void sharesAttributesAcrossParses() {
+        StringPool pool = new StringPool();
+        Parser parser = Parser.htmlParser().setStringPool(pool);
+        String html = "<a class=nav-item rel=nofollow href=/one>One</a><foo-bar data-x=y></foo-bar>";
+        Document one = Jsoup.parse(html, "", parser);
+        Document two = Jsoup.parse(html, "", parser.newInstance());
+        assertSame(pool, parser.newInstance().getStringPool());
+
+        Element a1 = one.selectFirst("a"), a2 = two.selectFirst("a");
+        assertSame(a1.attr("class"), a2.attr("class"));
+        assertSame(a1.attr("rel"), a2.attr("rel"));
+        assertSame(a1.attributes().asList().get(0).getKey(), a2.attributes().asList().get(0).getKey());
+        assertSame(one.selectFirst("foo-bar").tagName(), two.selectFirst("foo-bar").tagName());
+
+        Document unpooled = Jsoup.parse(html);
+        assertNotSame(a1.attr("class"), unpooled.selectFirst("a").attr("class"));
+        assertEquals(unpooled.html(), one.html());
+    }
+
+    @Test public void concurrentParsesShareThePool() throws Exception {
+        final Parser parser = Parser.htmlParser().setStringPool(new StringPool(64, 16));
+        final String html = "<div class=a><p class=b title=c>One</p><p class=d title=e>Two</p></div>";
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(pool.submit(() -> {
+                    Parser threadParser = parser.newInstance();
+                    for (int i = 0; i < 100; i++) {
+                        String input = html + "<i id=i" + i + ">";
+                        if (!Jsoup.parse(input, "", threadParser).html().equals(Jsoup.parse(input).html()))
+                            return false;
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> future : futures)
+                assertTrue(future.get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
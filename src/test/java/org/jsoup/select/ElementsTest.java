@@ -426,4 +426,72 @@ public class ElementsTest {
         assertEquals("http://example.com/bar", absAttrs.get(1));
         assertEquals("http://example.com", absAttrs.get(2));
     }
+
+    @Test void unionKeepsDocumentOrder() {
+        Document doc = Jsoup.parse("<h1>1</h1><p>2</p><h2>3</h2><div><h1>4</h1><h2>5</h2></div><p>6</p>");
+        Elements h1 = doc.select("h1");
+        Elements h2 = doc.select("h2");
+        Elements union = h1.union(h2);
+        assertEquals("1 3 4 5", union.text());
+        assertEquals("1 3 4 5", h2.union(h1).text());
+        assertEquals(doc.select("h1, h2"), union);
+        assertEquals("1 4", h1.text()); // not modified
+
+        Elements withDupes = doc.select("h1, p").union(doc.select("p, div"));
+        assertEquals(doc.select("h1, p, div"), withDupes);
+        assertEquals(h1, h1.union(new Elements()));
+        assertEquals(h1, new Elements().union(h1));
+
+        Element orphan = new Element("span").text("orphan");
+        assertEquals("1 4 orphan", h1.union(new Elements(orphan)).text());
+    }
+
+    @Test void intersectAndExcept() {
+        Document doc = Jsoup.parse("<p class=a>1<p class='a b'>2<p class=b>3<p>4");
+        Elements a = doc.select(".a");
+        Elements b = doc.select(".b");
+        assertEquals("2", a.intersect(b).text());
+        assertEquals("1", a.except(b).text());
+        assertEquals("3", b.except(a).text());
+        assertEquals(0, a.intersect(new Elements()).size());
+        assertEquals(a, a.except(new Elements()));
+
+        // by identity, not by content
+        Document other = Jsoup.parse("<p class=a>1<p class='a b'>2<p class=b>3<p>4");
+        assertEquals(0, a.intersect(other.select(".a")).size());
+        assertEquals(a, a.except(other.select(".a")));
+    }
+
+    @Test void notOnLargeList() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20000; i++)
+            sb.append(i % 2 == 0 ? "<p class=even>" : "<p>").append(i).append("</p>");
+        Document doc = Jsoup.parse(sb.toString());
+        Elements odd = doc.select("p").not(".even");
+        assertEquals(10000, odd.size());
+        assertEquals("1", odd.first().text());
+        assertEquals(doc.select("p:not(.even)"), odd);
+    }
+
+    @Test public void removeManyFromWideParents() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 500; i++)
+            sb.append("<p class=").append(i % 3 == 0 ? "ad" : "keep").append('>').append(i).append("<span class=ad>x</span></p>");
+        Document doc = Jsoup.parse(sb.toString());
+        Elements ads = doc.select(".ad");
+        assertEquals(167 + 500, ads.size());
+
+        ads.remove();
+        assertEquals(0, doc.select(".ad").size());
+        Element body = doc.body();
+        assertEquals(333, body.childNodeSize());
+        for (int i = 0; i < body.childNodeSize(); i++)
+            assertEquals(i, body.childNode(i).siblingIndex());
+        for (Element ad : ads)
+            assertNull(ad.parent());
+        assertEquals("1", body.child(0).text());
+        assertEquals("2", doc.selectFirst("p:nth-child(2)").text());
+
+        assertThrows(IllegalArgumentException.class, () -> new Elements(new Element("p")).remove());
+    }
 }
@@ -85,4 +85,34 @@ public class QueryParserTest {
         Evaluator parse = QueryParser.parse(q);
         assertEquals(q, parse.toString());
     }
+
+    @Test public void compilesCommonShapes() {
+        assertTrue(QueryParser.compile("p.foo") instanceof CompiledEvaluator.TagClass);
+        assertTrue(QueryParser.compile("p#foo") instanceof CompiledEvaluator.TagId);
+        assertTrue(QueryParser.compile("a[href]") instanceof CompiledEvaluator.TagAttribute);
+        assertTrue(QueryParser.compile("a[href=/]") instanceof CompiledEvaluator.TagAttributeWithValue);
+        assertTrue(QueryParser.compile("div p.foo") instanceof CompiledEvaluator.Descendant);
+        assertTrue(QueryParser.compile("div.bar > p") instanceof CompiledEvaluator.Child);
+        assertTrue(QueryParser.compile("p") instanceof Evaluator.Tag);
+        assertTrue(QueryParser.compile("p.foo.bar") instanceof CombiningEvaluator.And);
+
+        Evaluator or = QueryParser.compile("ul li a[href], div > p#one");
+        assertTrue(or instanceof CombiningEvaluator.Or);
+        assertTrue(((CombiningEvaluator.Or) or).evaluators.get(0) instanceof CompiledEvaluator.Descendant);
+        assertTrue(((CombiningEvaluator.Or) or).evaluators.get(1) instanceof CompiledEvaluator.Child);
+    }
+
+    @Test public void compiledHasSameMatchesAndString() {
+        Document doc = Jsoup.parse("<div id=1 class='bar Foo'><p class=foo id=one>One <a href=/>A</a></p><ul><li><a href=/x>X</a>" +
+            "<li class=foo>Y</ul></div><div><p>Two</p><h1>H</h1><p id=one class=foo>Three <a>B</a></p></div>");
+        String[] queries = {"p.foo", "p#one", "a[href]", "a[href=/]", "div p.foo", "div.bar > p", "p.foo.bar", "ul li a[href]",
+            "div > p#one, li.foo", "h1 + p.foo", "h1 ~ p", "div:has(p.foo) > h1", "p:not(p.foo)", "* > a", "div p a",
+            "div.foo p:matchText", "#one", ":root > body > div.bar"};
+        for (String query : queries) {
+            Evaluator parsed = QueryParser.parse(query);
+            Evaluator compiled = QueryParser.compile(query);
+            assertEquals(parsed.toString(), compiled.toString(), query);
+            assertEquals(Collector.collect(parsed, doc), Collector.collect(compiled, doc), query);
+        }
+    }
 }
@@ -0,0 +1,132 @@
+package org.jsoup.select;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QueryPlanTest {
+    private static final String Html = "<div id=nav class='menu top'><a href=/one>One</a> <a>Two <img src=x></a></div>" +
+        "<div class=content><h1 id=title>Title</h1><p class='intro lead'>Intro <b>bold</b></p><p>Two <a href=/three>Three</a></p>" +
+        "<ul><li>1</li><li class=odd><b>2</b></li><li>3</li></ul><section><div><p>Deep <b>x</b></p></div></section></div>" +
+        "<p class=foot id=foot>Foot</p>";
+
+    @Test public void choosesStrategy() {
+        assertEquals(QueryPlan.Strategy.FullScan, QueryPlan.plan("p.intro").strategy());
+        assertEquals(QueryPlan.Strategy.FullScan, QueryPlan.plan("a, p").strategy());
+        assertEquals(QueryPlan.Strategy.IdLookup, QueryPlan.plan("#title").strategy());
+        assertEquals(QueryPlan.Strategy.IdLookup, QueryPlan.plan("h1#title").strategy());
+        assertEquals(QueryPlan.Strategy.IdLookup, QueryPlan.plan("div.content > h1#title").strategy());
+        assertEquals(QueryPlan.Strategy.IdLookup, QueryPlan.plan("p.foot#foot[class]").strategy());
+        assertEquals(QueryPlan.Strategy.RightmostFirst, QueryPlan.plan("#nav a").strategy()); // the id is not the subject's
+        assertEquals(QueryPlan.Strategy.RightmostFirst, QueryPlan.plan("h1 + p").strategy());
+        assertEquals(QueryPlan.Strategy.HasPruning, QueryPlan.plan("p:has(b)").strategy());
+        assertEquals(QueryPlan.Strategy.HasPruning, QueryPlan.plan("div:has(a[href], img) > a").strategy());
+        assertEquals(QueryPlan.Strategy.RightmostFirst, QueryPlan.plan("div:has(p b) a").strategy()); // inner has a combinator
+        assertEquals(QueryPlan.Strategy.FullScan, QueryPlan.plan("div:has(:root)").strategy());
+        assertEquals(QueryPlan.Strategy.FullScan, QueryPlan.plan("p:has(:matchText)").strategy()); // modifies the tree
+        assertEquals(QueryPlan.Strategy.HasPruning, QueryPlan.plan("ul:has(li:nth-child(2n):contains(2))").strategy());
+    }
+
+    @Test public void cachesPlans() {
+        QueryPlan plan = QueryPlan.cached("p:has(b)");
+        assertSame(plan, QueryPlan.cached("p:has(b)"));
+        assertNotSame(plan, QueryPlan.plan("p:has(b)")); // plan() is always fresh
+        assertThrows(Selector.SelectorParseException.class, () -> QueryPlan.cached("p:has("));
+
+        Document doc = Jsoup.parse(Html);
+        assertEquals(2, doc.select("p:has(b)").size());
+        doc.select("p.intro b").remove(); // a shared plan holds no state between selects
+        assertEquals(1, doc.select("p:has(b)").size());
+        assertEquals(1, Jsoup.parse(Html).select("p.intro:has(b)").size());
+    }
+
+    @Test public void plannedMatchesParsed() {
+        String[] queries = {
+            "a", "p", "#title", "h1#title", "div > h1#title", "#nav a", "div.content p", "h1 + p", "h1 ~ p", "a, p",
+            "p:has(b)", "div:has(b)", "div:has(p b)", "div:has(> p)", "li:has(b), p:has(b)", "*:has(img)",
+            ":not(p:has(b))", "div:has(p:has(b))", "section:has(b) p", "div:has(li.odd) > ul", "div:has(:containsOwn(deep))",
+            "p:has(b):has(a)", "div:has(a[href=/one])", "li:nth-child(2):has(b)", "body:has(#foot)", "html:has(html)",
+            "div:has(:root)", "#nope", "p.foot#foot",
+        };
+        Document doc = Jsoup.parse(Html);
+        Element content = doc.selectFirst("div.content");
+        for (String query : queries) {
+            QueryPlan plan = QueryPlan.plan(query);
+            Evaluator parsed = QueryParser.parse(query);
+            assertEquals(Collector.collect(parsed, doc), plan.select(doc), query);
+            assertEquals(Collector.collect(parsed, content), plan.select(content), query);
+            assertEquals(Collector.collect(parsed, doc), doc.select(query), query);
+            if (!query.contains(">")) // :has(> p) uses a Root, which has no selector form
+                assertEquals(parsed.toString(), plan.evaluator().toString(), query);
+
+            for (Element el : doc.getAllElements()) // outside of a select, as in Element.is()
+                assertEquals(parsed.matches(doc, el), plan.evaluator().matches(doc, el), query);
+        }
+    }
+
+    @Test public void prunedHasFollowsMutations() {
+        Document doc = Jsoup.parse(Html);
+        QueryPlan plan = QueryPlan.plan("p:has(b)");
+        assertEquals(2, plan.select(doc).size());
+
+        doc.select("p.intro b").remove();
+        assertEquals(1, plan.select(doc).size());
+        doc.selectFirst("#foot").appendElement("b");
+        assertEquals(2, plan.select(doc).size());
+    }
+
+    @Test public void explainCountsTests() {
+        Document doc = Jsoup.parse(Html);
+        int size = doc.getAllElements().size();
+
+        QueryPlan.Explanation explanation = Selector.explain("div.content p", doc);
+        assertEquals(QueryPlan.Strategy.RightmostFirst, explanation.plan().strategy());
+        assertEquals(doc.select("div.content p"), explanation.results());
+        assertTrue(explanation.nanos() > 0);
+
+        List<QueryPlan.Step> steps = explanation.steps();
+        assertEquals(3, steps.size());
+        QueryPlan.Step top = steps.get(0);
+        assertEquals(0, top.depth());
+        assertEquals(size, top.tests());
+        assertEquals(3, top.matches());
+
+        QueryPlan.Step ancestor = steps.get(1);
+        assertEquals(1, ancestor.depth());
+        assertEquals("div.content", ancestor.evaluator());
+
+        QueryPlan.Step subject = steps.get(2);
+        assertEquals("p", subject.evaluator().trim());
+        assertEquals(size, subject.tests()); // the subject is tested first
+        assertEquals(4, subject.matches());
+        assertTrue(ancestor.tests() < size); // so the ancestors are only walked for the four p
+
+        String report = explanation.toString();
+        assertTrue(report.startsWith("Query: div.content p\nStrategy: RightmostFirst\nResults: 3 in "), report);
+        assertTrue(report.contains("\n  [div.content] tests: "), report);
+    }
+
+    @Test public void explainHasPruning() {
+        Document doc = Jsoup.parse(Html);
+        QueryPlan.Explanation explanation = QueryPlan.plan("p:has(b)").explain(doc);
+        assertEquals(QueryPlan.Strategy.HasPruning, explanation.plan().strategy());
+        assertEquals(2, explanation.results().size());
+
+        List<QueryPlan.Step> steps = explanation.steps();
+        assertEquals(3, steps.size());
+        assertEquals(":has(b)", steps.get(2).evaluator());
+        assertEquals(doc.getAllElements().size(), steps.get(2).tests());
+        assertEquals(doc.select(":has(b)").size(), steps.get(2).matches());
+        assertEquals(steps.get(2).matches(), steps.get(1).tests()); // p is only tested where :has matched
+    }
+
+    @Test public void toStringShowsStrategy() {
+        assertEquals("IdLookup: h1#title", QueryPlan.plan("h1#title").toString());
+        assertEquals("p", QueryPlan.plan("p").query());
+    }
+}
@@ -0,0 +1,91 @@
+package org.jsoup.select;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SelectorSetTest {
+    private static final String Html = "<div id=nav class='Menu top'><a href=/one>One</a> <a>Two</a> <span class=menu>Three</span></div>" +
+        "<div class=content><h1 id=title>Title</h1><p class='intro lead'>Intro <b>bold</b></p><p>Two <a href=/three>Three</a></p>" +
+        "<ul><li>1</li><li class=odd>2</li><li>3</li></ul></div><p class=foot id=foot>Foot</p>";
+
+    private static final String[] Queries = {
+        "a", "p", "#title", ".menu", ".MENU", "div.content p", "#nav a[href]", "div > p", "h1 + p", "h1 ~ p",
+        "a, p", "li:nth-child(2)", "p:has(b)", ":not(p)", "*", "[href]", "p.intro.lead", "div#nav.top", "#nope",
+        ".content li.odd", "p:contains(two)", "p.foot#foot", "body p, #nav span", "a, #nav a", "ul li:last-child",
+    };
+
+    @Test public void matchesIndividualSelects() {
+        Document doc = Jsoup.parse(Html);
+        SelectorSet set = new SelectorSet(Queries);
+        assertEquals(Queries.length, set.size());
+
+        List<Elements> results = set.select(doc);
+        assertEquals(Queries.length, results.size());
+        for (int i = 0; i < Queries.length; i++)
+            assertEquals(doc.select(Queries[i]), results.get(i), Queries[i]);
+    }
+
+    @Test public void selectsFromSubtreeIncludingRoot() {
+        Document doc = Jsoup.parse(Html);
+        Element content = doc.selectFirst("div.content");
+        List<Elements> results = new SelectorSet("div", "p", "#nav a").select(content);
+
+        assertEquals(1, results.get(0).size());
+        assertSame(content, results.get(0).first());
+        assertEquals(content.select("p"), results.get(1));
+        assertEquals(0, results.get(2).size());
+    }
+
+    @Test public void selectGroupMatchesOnce() {
+        Document doc = Jsoup.parse("<p class=a id=b>One</p><p class=a>Two</p>");
+        Elements els = new SelectorSet("p, .a, #b").select(doc).get(0);
+        assertEquals(2, els.size());
+        assertEquals("One", els.get(0).text());
+        assertEquals("Two", els.get(1).text());
+    }
+
+    @Test public void canAddQueriesAndEvaluators() {
+        Document doc = Jsoup.parse(Html);
+        SelectorSet set = new SelectorSet();
+        assertEquals(0, set.select(doc).size());
+
+        set.add("h1").add(new Evaluator.Class("odd"));
+        List<Elements> results = set.select(doc);
+        assertEquals(2, results.size());
+        assertEquals("Title", results.get(0).text());
+        assertEquals("2", results.get(1).text());
+
+        set.add("li"); // reindexes
+        assertEquals(3, set.select(doc).get(2).size());
+        assertEquals(3, set.queries().size());
+        assertEquals("li", set.queries().get(2));
+    }
+
+    @Test public void selectMapIsKeyedByQuery() {
+        Document doc = Jsoup.parse(Html);
+        Map<String, Elements> map = new SelectorSet("li", "h1").selectMap(doc);
+        assertEquals(2, map.size());
+        assertEquals(3, map.get("li").size());
+        assertEquals("Title", map.get("h1").text());
+    }
+
+    @Test public void matchesNamespacedAndCaseSensitiveXml() {
+        Document doc = Jsoup.parse("<root><Item id=One class=A/><ns:item id=two/><item class=b/></root>", "", Parser.xmlParser());
+        String[] queries = {"Item", "item", "ns|item", "#One", "#one", ".a", ".A", "root > item"};
+        List<Elements> results = new SelectorSet(queries).select(doc);
+        for (int i = 0; i < queries.length; i++)
+            assertEquals(doc.select(queries[i]), results.get(i), queries[i]);
+    }
+
+    @Test public void invalidQueryThrows() {
+        assertThrows(Selector.SelectorParseException.class, () -> new SelectorSet("p", "div["));
+    }
+}
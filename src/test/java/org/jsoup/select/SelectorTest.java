@@ -7,7 +7,13 @@ import org.jsoup.nodes.Element;
 import org.jsoup.parser.Parser;
 import org.junit.jupiter.api.Test;
 
+import java.util.IdentityHashMap;
 import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -1048,4 +1054,349 @@ public class SelectorTest {
         assertEquals(0, e.size());
         assertNotEquals(a, e);
     }
+
+    @Test void deepDescendantAndSiblingCombinators() {
+        // the inner evaluators are memoised per select, so shared ancestors and siblings are tested once each
+        int depth = 5000;
+        StringBuilder sb = new StringBuilder("<div class=a>");
+        for (int i = 0; i < depth; i++)
+            sb.append("<span>");
+        Document doc = Jsoup.parse(sb.toString());
+        assertEquals(depth, doc.select("div.a span").size());
+        assertEquals(depth - 1, doc.select("div.a span span").size());
+        assertEquals(0, doc.select("p span").size());
+        assertEquals(1, doc.select("div.a > span").size());
+
+        sb = new StringBuilder("<div><p class=first>");
+        for (int i = 0; i < depth; i++)
+            sb.append("<p>");
+        doc = Jsoup.parse(sb.toString());
+        assertEquals(depth, doc.select("p.first ~ p").size());
+        assertEquals(depth - 1, doc.select("p.first ~ p ~ p").size());
+        assertEquals(1, doc.select("p.first + p").size());
+        assertEquals(0, doc.select("p ~ p.first").size());
+    }
+
+    @Test void memoisedMatchesDoNotOutliveSelect() {
+        Document doc = Jsoup.parse("<div class=a><p>One</p></div><div><p>Two</p></div>");
+        Evaluator eval = QueryParser.parse("div.a p");
+        assertEquals("One", doc.select(eval).text());
+
+        doc.select("div").last().addClass("a");
+        assertEquals("One Two", doc.select(eval).text());
+        assertTrue(doc.select("p").last().is(eval));
+
+        doc.select("div").removeClass("a");
+        assertEquals(0, doc.select(eval).size());
+        assertNull(doc.selectFirst(eval));
+    }
+
+    @Test void memoIsPerRoot() {
+        Document doc = Jsoup.parse("<div id=1><section><p>One</p></section></div><div id=2><p>Two</p></div>");
+        Evaluator eval = QueryParser.parse("div p, section p");
+        Elements divs = doc.select("div:has(section p)");
+        assertEquals(1, divs.size());
+        assertEquals("1", divs.first().id());
+        assertEquals(2, doc.select(eval).size());
+        assertEquals(1, doc.getElementById("1").select("div p").size()); // the root is an ancestor
+    }
+
+    @Test void hasOnLargeTreeStartsEachMemoOver() {
+        // within :has, the root changes for each candidate, so the memo is started over each time
+        int n = 2000;
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++)
+            sb.append("<section><div><p>x</p></div><span>y</span></section>");
+        Document doc = Jsoup.parse(sb.toString());
+        assertEquals(0, doc.select("*:has(article p)").size());
+        assertEquals(n, doc.select("section:has(div p)").size());
+        assertEquals(n, doc.select("section:has(div p):has(span)").size());
+        assertEquals(1, doc.select("body:has(section div p)").size());
+
+        final int[] evaluations = {0};
+        Evaluator article = new Evaluator() {
+            @Override public boolean matches(Element root, Element element) {
+                evaluations[0]++;
+                return "article".equals(element.normalName());
+            }
+        };
+        StructuralEvaluator.Parent parent = new StructuralEvaluator.Parent(article);
+        Elements sections = doc.select("section");
+        parent.memoise(true);
+        try {
+            for (Element p : doc.select("p"))
+                assertFalse(parent.matches(doc, p));
+            assertEquals(2 * n + 3, evaluations[0]); // each div and section, then body, html, and #root once
+
+            StructuralEvaluator.Memo memo = parent.memo(doc);
+            assertNotNull(memo);
+            IdentityHashMap<Element, Boolean> used = memo.inner;
+            assertEquals(2 * n + 3, used.size());
+
+            evaluations[0] = 0;
+            for (Element section : sections) // as :has does, with each candidate as the root
+                assertFalse(parent.matches(section, section.selectFirst("p")));
+            assertEquals(2 * n, evaluations[0]);
+            assertNotSame(used, memo.inner); // a new map, not the large one cleared
+            assertEquals(2, memo.inner.size());
+
+            IdentityHashMap<Element, Boolean> empty = new IdentityHashMap<>();
+            memo.inner = empty;
+            parent.memo(sections.first());
+            assertSame(empty, memo.inner); // an unused map is kept
+        } finally {
+            parent.memoise(false);
+        }
+        assertNull(parent.memo(doc));
+    }
+
+    @Test void nthSelectorsOnWideLists() {
+        // positions are calculated once per parent per select
+        int rows = 3000;
+        StringBuilder sb = new StringBuilder("<table>");
+        for (int i = 0; i < rows; i++)
+            sb.append(i % 3 == 0 ? "<tr class=x><th>" : "<tr><td>").append(i);
+        Document doc = Jsoup.parse(sb.toString());
+        Element tbody = doc.selectFirst("tbody");
+
+        assertEquals(rows / 2, doc.select("tr:nth-child(2n)").size());
+        assertEquals("1", doc.selectFirst("tr:nth-child(2)").text());
+        assertEquals(String.valueOf(rows - 2), doc.selectFirst("tr:nth-last-child(2)").text());
+        assertEquals(rows, doc.select("tr > :nth-of-type(1)").size());
+        assertEquals("3", doc.select("tr.x:nth-child(3n+1)").get(1).text());
+        assertEquals("0", doc.selectFirst("tr:first-child").text());
+        assertEquals(String.valueOf(rows - 1), doc.selectFirst("tr:last-child").text());
+        assertEquals(tbody.child(100), doc.selectFirst("tr:nth-of-type(101)"));
+        assertEquals(tbody.child(rows - 100), doc.selectFirst("tr:nth-last-of-type(100)"));
+
+        Document types = Jsoup.parse("<div><p>1</p><span>2</span><p>3</p><span>4</span><p>5</p></div>");
+        assertEquals("3", types.select("p:nth-of-type(2)").text());
+        assertEquals("2", types.select("span:nth-last-of-type(2)").text());
+        assertEquals("1 2", types.select(":first-of-type").not("html, head, body, div").text());
+        assertEquals("4 5", types.select(":last-of-type").not("html, head, body, div").text());
+    }
+
+    @Test void nthSelectorsAfterMutation() {
+        Document doc = Jsoup.parse("<ul><li>1<li>2<li>3</ul>");
+        Evaluator second = QueryParser.parse("li:nth-child(2)");
+        assertEquals("2", doc.select(second).text());
+
+        doc.selectFirst("li").remove();
+        assertEquals("3", doc.select(second).text());
+        doc.selectFirst("ul").prependElement("li").text("0");
+        assertEquals("2", doc.select(second).text());
+        assertTrue(doc.select("li").get(1).is(second));
+    }
+
+    @Test void collectParallelMatchesCollect() throws InterruptedException {
+        StringBuilder sb = new StringBuilder("<feed>");
+        for (int i = 0; i < 2000; i++) {
+            sb.append("<entry id=e").append(i).append("><title>Entry ").append(i).append("</title>");
+            if (i % 3 == 0) sb.append("<link href=/").append(i).append(" />");
+            sb.append("<content><p>Text <b>").append(i).append("</b></p></content></entry>");
+        }
+        sb.append("</feed>");
+        Document doc = Jsoup.parse(sb.toString(), "", Parser.xmlParser());
+
+        String[] queries = {"entry", "entry:has(link) title", "entry > title", "b", "feed", "*", "entry:nth-child(3n+1)",
+            "title ~ content p", "#e1999", "nope", "entry:containsOwn(nope)"};
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (String query : queries) {
+                Evaluator eval = QueryParser.parse(query);
+                assertEquals(Collector.collect(eval, doc), Collector.collectParallel(eval, doc, executor), query);
+            }
+
+            Element entry = doc.getElementById("e10");
+            Evaluator eval = QueryParser.parse("entry b, title");
+            assertEquals(Collector.collect(eval, entry), Collector.collectParallel(eval, entry, executor));
+
+            Element leaf = doc.selectFirst("b");
+            assertEquals(1, Collector.collectParallel(QueryParser.parse("b"), leaf, executor).size());
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test void collectParallelOverLazyState() throws InterruptedException {
+        // the section's attributes and text are read by every task, so are resolved concurrently if not first
+        StringBuilder sb = new StringBuilder("<section title='a &amp;lt; b'");
+        for (int j = 0; j < 16; j++) // enough attributes to be indexed
+            sb.append(" a").append(j).append("='v&amp;").append(j).append("'");
+        sb.append(">");
+        for (int i = 0; i < 600; i++) {
+            sb.append("<div class=d data-i=").append(i).append(" title='a &amp;lt; b'><p>x &amp;lt; y &lt; ").append(i).append("</p>");
+            if (i % 40 == 0)
+                sb.append("<span>s</span>");
+            sb.append("</div>");
+        }
+        sb.append("</section>");
+        String html = sb.toString();
+        Document eager = Jsoup.parse(html);
+        String[] queries = {"section[title='a &lt; b'] p", "section[a15='v&15'] span", "p:contains(x &lt; y < 7)",
+            "div:has(span) + div p", "[title]", "section:contains(x &lt; y < 599) div[data-i=5]",
+            "section:containsWholeText(x &lt; y < 599) span", "div.d:nth-child(40n) > p"};
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int round = 0; round < 5; round++) {
+                Document lazy = Jsoup.parse(html, "", Parser.htmlParser().setLazyDecoding(true));
+                Document stored = Jsoup.parse(html, "", Parser.htmlParser().setOffHeapText(true));
+                Document cached = Jsoup.parse(html);
+                cached.textCaching(true);
+                Document thawed = eager.freeze().thaw();
+                for (Document doc : new Document[]{lazy, stored, cached, thawed}) {
+                    for (String query : queries) {
+                        Evaluator eval = QueryParser.parse(query);
+                        Elements expected = Collector.collect(eval, eager);
+                        Elements found = Collector.collectParallel(eval, doc, executor);
+                        assertEquals(expected.size(), found.size(), query);
+                        assertEquals(expected.outerHtml(), found.outerHtml(), query);
+                    }
+                }
+                assertEquals(eager.html(), lazy.html());
+            }
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test void collectParallelCollectsMatchTextSerially() throws InterruptedException {
+        // :matchText modifies the tree as it matches, so can't be run concurrently
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 500; i++)
+            sb.append("<div><p>One ").append(i).append("<br>Two</p><p>Three</p></div>");
+        String html = sb.toString();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (String query : new String[]{"p:matchText", "div, p:matchText:contains(Two)", "div:has(p:matchText)"}) {
+                Document serial = Jsoup.parse(html);
+                Document parallel = Jsoup.parse(html);
+                Evaluator eval = QueryParser.parse(query);
+                Elements expected = Collector.collect(eval, serial);
+                Elements found = Collector.collectParallel(eval, parallel, executor);
+                assertEquals(expected.outerHtml(), found.outerHtml(), query);
+                assertEquals(serial.html(), parallel.html(), query);
+            }
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test void collectParallelSharesText() throws InterruptedException {
+        // the root's text is indexed once, before the tasks start, rather than by each task
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2000; i++)
+            sb.append("<div><p>Entry ").append(i).append("</p></div>");
+        Document doc = Jsoup.parse(sb.toString());
+
+        final Set<TextCache.Span> rootText = ConcurrentHashMap.newKeySet();
+        Evaluator recorder = new Evaluator() {
+            @Override public boolean matches(Element root, Element element) {
+                TextCache.Span span = TextCache.text(root, root);
+                if (span != null)
+                    rootText.add(span);
+                return false;
+            }
+        };
+        Evaluator eval = new CombiningEvaluator.Or(QueryParser.parse("p:contains(Entry 1999)"), recorder);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Elements found = Collector.collectParallel(eval, doc, executor);
+            assertEquals(1, found.size());
+            assertEquals("Entry 1999", found.text());
+            assertEquals(1, rootText.size()); // the same span, from the one index
+            assertTrue(rootText.iterator().next().toString().startsWith("Entry 0 Entry 1 "));
+
+            for (String query : new String[]{"div:contains(Entry 5)", "p:matches(Entry \\d+5$)", "div:has(p:contains(99))"}) {
+                Evaluator text = QueryParser.parse(query);
+                assertEquals(Collector.collect(text, doc), Collector.collectParallel(text, doc, executor), query);
+            }
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test void collectParallelThrowsEvaluatorExceptions() {
+        Document doc = Jsoup.parse("<div><p>One<p>Two</div><div><p>Three</div>");
+        Evaluator failing = new Evaluator() {
+            @Override public boolean matches(Element root, Element element) {
+                if (element.text().equals("Three"))
+                    throw new IllegalArgumentException("Three");
+                return false;
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> Collector.collectParallel(failing, doc, executor));
+            assertEquals("Three", e.getMessage());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test void cachedTextMatchesElementText() {
+        String html = "<div> One <p>Two <b> Three </b>four</p>Five<br>Six<span> </span><div>  <i>Seven</i> </div>End</div>" +
+            "<pre>  Pre\n <b>formatted </b>\n</pre><p>\u00a0Nbsp <br> br</p><ul><li> a <li>b<li></ul>" +
+            "<table><tr><td>One</td><td>Two</td></tr></table><p><span>x</span><span> y </span></p>";
+        Document doc = Jsoup.parse(html);
+        TextCache.memoise(true);
+        try {
+            for (Element root : new Element[]{doc, doc.selectFirst("div"), doc.selectFirst("pre")}) {
+                for (Element el : root.getAllElements()) {
+                    TextCache.Span text = TextCache.text(root, el);
+                    if (text != null) // elements outside the first indexed root are not cached
+                        assertEquals(el.text(), text.toString(), el.tagName());
+                    else
+                        assertNotSame(doc, root);
+                }
+            }
+        } finally {
+            TextCache.memoise(false);
+        }
+        assertNull(TextCache.text(doc, doc.body())); // only held during a select
+
+        String[] queries = {":contains(one)", ":contains(three four)", ":contains(pre formatted)", ":contains(six seven)",
+            ":matches(^Two Three)", ":matches(four$)", ":matches(\\bSeven\\b)", ":matches(x y)", ":contains(a b)",
+            "p:contains(br)", "div:has(:contains(seven))", ":matches((?i)^pre)", "div:not(:contains(one))",
+            ":containsOwn(five)", ":matchesOwn(^End$)"};
+        for (String query : queries) {
+            Document fresh = Jsoup.parse(html);
+            Elements expected = new Elements();
+            for (Element el : fresh.getAllElements()) {
+                if (el.is(query)) // not memoised, so not cached
+                    expected.add(el);
+            }
+            Document selected = Jsoup.parse(html);
+            assertEquals(expected.eachText(), selected.select(query).eachText(), query);
+        }
+    }
+
+    @Test void containsScalesOnDeepTrees() {
+        StringBuilder sb = new StringBuilder();
+        int depth = 3000;
+        for (int i = 0; i < depth; i++)
+            sb.append("<div>").append(i).append(' ');
+        Document doc = Jsoup.parse(sb.toString());
+        doc.outputSettings().prettyPrint(false);
+
+        assertEquals(1, doc.select("div:contains(0 1 2)").size());
+        assertEquals(depth, doc.select("div:contains(2999)").size());
+        assertEquals(depth - 1, doc.select("div:matches(^\\d+ \\d+)").size());
+        assertEquals(0, doc.select(":contains(nope)").size());
+    }
+
+    @Test void regexPatternsAreShared() {
+        assertSame(QueryParser.pattern("a+b"), QueryParser.pattern("a+b"));
+        Evaluator.Matches one = (Evaluator.Matches) QueryParser.parse(":matches(\\d+)");
+        Evaluator.Matches two = (Evaluator.Matches) QueryParser.parse(":matches(\\d+)");
+        assertEquals(one.toString(), two.toString());
+        assertSame(QueryParser.pattern("\\d+"), QueryParser.pattern("\\d+"));
+    }
 }